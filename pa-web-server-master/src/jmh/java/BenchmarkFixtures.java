@@ -0,0 +1,419 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+/**
+ * The server's code paths measured by the benchmarks in the <code>benchmarks</code> package. <p>
+ * JMH refuses benchmarks in the default package, and classes in named packages can't use the server's classes,
+ * so the benchmarks create these fixtures by name, and only see them through {@link Callable} and {@link AutoCloseable}.
+ * Each call of a fixture is one operation of the measured path.
+ */
+public class BenchmarkFixtures {
+
+    /**
+     * A typical request sent by a browser.
+     */
+    private static final byte[] BROWSER_REQUEST = ("GET /index.html HTTP/1.1\r\n"
+            + "Host: localhost:4444\r\n"
+            + "User-Agent: Mozilla/5.0 (X11; Linux x86_64; rv:120.0) Gecko/20100101 Firefox/120.0\r\n"
+            + "Accept: text/html,application/xhtml+xml,application/xml;q=0.9,image/avif,image/webp,*/*;q=0.8\r\n"
+            + "Accept-Language: en-US,en;q=0.5\r\n"
+            + "Accept-Encoding: gzip, deflate, br\r\n"
+            + "Connection: keep-alive\r\n"
+            + "Upgrade-Insecure-Requests: 1\r\n"
+            + "Sec-Fetch-Dest: document\r\n"
+            + "Sec-Fetch-Mode: navigate\r\n"
+            + "\r\n").getBytes(StandardCharsets.ISO_8859_1);
+
+    /**
+     * A measured operation, with the resources it holds.
+     */
+    public abstract static class Fixture implements Callable<Object>, AutoCloseable {
+
+        /**
+         * Releases the fixture's resources.
+         *
+         * @throws Exception if a resource can't be released.
+         */
+        @Override
+        public void close() throws Exception {
+        }
+
+    }
+
+    /**
+     * Creates a document root with an index page of the given size and an error page.
+     *
+     * @param pageSize The size of the index page, in bytes.
+     * @return {@link Path} - the document root, a new temporary folder.
+     * @throws IOException if the documents can't be written.
+     */
+    private static Path createDocumentRoot(int pageSize) throws IOException {
+        Path documentRoot = Files.createTempDirectory("benchmark-root");
+        byte[] page = new byte[pageSize];
+        for (int index = 0; index < page.length; index++) {
+            page[index] = (byte) ('a' + index % 26);
+        }
+        Files.write(documentRoot.resolve("index.html"), page);
+        Files.writeString(documentRoot.resolve("404.html"), "<h1>404</h1>");
+        return documentRoot;
+    }
+
+    /**
+     * Deletes a document root created by {@link #createDocumentRoot(int)}.
+     *
+     * @param documentRoot The document root.
+     * @throws IOException if the documents can't be deleted.
+     */
+    private static void deleteDocumentRoot(Path documentRoot) throws IOException {
+        try (Stream<Path> paths = Files.walk(documentRoot)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    /**
+     * Creates the settings of a server serving a document root.
+     *
+     * @param documentRoot The document root.
+     * @param extraConfig  Settings added to the defaults, as key and value pairs.
+     * @return {@link ServerSettings} - the server's settings.
+     */
+    private static ServerSettings createSettings(Path documentRoot, String... extraConfig) {
+        Properties serverConfig = new Properties();
+        serverConfig.setProperty("server.port", "0");
+        serverConfig.setProperty("server.maximum.requests", "1000");
+        serverConfig.setProperty("server.root", documentRoot.toString());
+        serverConfig.setProperty("server.default.page", "index");
+        serverConfig.setProperty("server.default.page.extension", "html");
+        serverConfig.setProperty("server.404.root", documentRoot.toString());
+        serverConfig.setProperty("server.404.page", "404");
+        serverConfig.setProperty("server.404.page.extension", "html");
+        serverConfig.setProperty("server.log.path", documentRoot.resolve("log.txt").toString());
+        for (int index = 0; index < extraConfig.length; index += 2) {
+            serverConfig.setProperty(extraConfig[index], extraConfig[index + 1]);
+        }
+        return new ServerSettings(serverConfig);
+    }
+
+    /**
+     * Parses a browser's request from a connection's read buffer.
+     *
+     * @param buffer <code>heap</code> for a buffer backed by an array, as the blocking engine reads into, or <code>direct</code> as the nio engine's.
+     * @return {@link Fixture} - returns the parsed route.
+     */
+    public static Fixture parseRequest(String buffer) {
+        return new Fixture() {
+            private final HttpRequestParser requestParser = new HttpRequestParser(8192);
+            private final HttpRequest request = new HttpRequest(new BufferPool("head", false, 1, false, new ServerMetrics()), 8192, 100);
+            private final ByteBuffer readBuffer = buffer.equals("direct") ? ByteBuffer.allocateDirect(8192) : ByteBuffer.allocate(8192);
+
+            @Override
+            public Object call() {
+                readBuffer.clear();
+                readBuffer.put(BROWSER_REQUEST);
+                requestParser.parse(readBuffer, request);
+                return request.getRoute();
+            }
+        };
+    }
+
+    /**
+     * Reads a document the way the request handler does.
+     *
+     * @param mode     <code>cached</code> for the heap cache, <code>uncached</code> to read the file every time,
+     *                 or <code>mapped</code> for the memory-mapped documents.
+     * @param pageSize The size of the document, in bytes.
+     * @return {@link Fixture} - returns the document's content.
+     * @throws IOException if the document can't be created.
+     */
+    public static Fixture readFile(String mode, int pageSize) throws IOException {
+        Path documentRoot = createDocumentRoot(pageSize);
+        Path page = documentRoot.resolve("index.html");
+        ServerMetrics serverMetrics = new ServerMetrics();
+        FileCache fileCache = new FileCache(mode.equals("uncached") ? 0 : 64L * 1024 * 1024, 1024L * 1024 * 1024, serverMetrics);
+        MappedFileStore mappedFileStore = mode.equals("mapped") ? new MappedFileStore(1024L * 1024 * 1024, 1024L * 1024 * 1024, serverMetrics) : null;
+        return new Fixture() {
+            @Override
+            public Object call() throws IOException {
+                return (mappedFileStore != null ? mappedFileStore.get(page) : fileCache.get(page)).content();
+            }
+
+            @Override
+            public void close() throws IOException {
+                deleteDocumentRoot(documentRoot);
+            }
+        };
+    }
+
+    /**
+     * Builds the response to a cached document and writes it with a gathering write, to a channel that discards the bytes.
+     *
+     * @param pageSize The size of the document, in bytes.
+     * @return {@link Fixture} - returns the number of bytes written.
+     * @throws IOException if the document can't be created.
+     */
+    public static Fixture writeResponse(int pageSize) throws IOException {
+        Path documentRoot = createDocumentRoot(pageSize);
+        ServerMetrics serverMetrics = new ServerMetrics();
+        ServerSettings serverSettings = createSettings(documentRoot);
+        NotFoundCache notFoundCache = new NotFoundCache(Path.of(serverSettings.getPageNotFoundPath()), serverSettings.getNotFoundCacheMaximumEntries(), serverSettings.getNotFoundCacheTimeToLive());
+        RequestHandler requestHandler = new RequestHandler(serverSettings, new FileCache(64L * 1024 * 1024, 1024L * 1024 * 1024, serverMetrics), null, null, null, notFoundCache, serverMetrics);
+        DiscardingChannel channel = new DiscardingChannel();
+        HttpRequest request = new HttpRequest(new BufferPool("head", false, 1, false, new ServerMetrics()), 8192, 100);
+        ByteBuffer requestBuffer = ByteBuffer.allocate(8192).put("GET /index.html HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+        new HttpRequestParser(8192).parse(requestBuffer, request);
+        return new Fixture() {
+            @Override
+            public Object call() throws IOException {
+                ByteBuffer[] responseBuffers = requestHandler.handle(request, true).toByteBuffers();
+                long written = 0;
+                while (responseBuffers[0].hasRemaining() || responseBuffers[responseBuffers.length - 1].hasRemaining()) {
+                    written += channel.write(responseBuffers);
+                }
+                return written;
+            }
+
+            @Override
+            public void close() throws IOException {
+                deleteDocumentRoot(documentRoot);
+            }
+        };
+    }
+
+    /**
+     * Acquires and releases the permit of a document, as the clients served it do.
+     * The fixture is shared by the benchmark's threads, so they compete for the same document.
+     *
+     * @param locking <code>shared</code> or <code>exclusive</code>, as the <code>server.document.locking</code> setting.
+     * @return {@link Fixture} - returns the document's path.
+     */
+    public static Fixture lockDocument(String locking) {
+        DocumentLocks documentLocks = new DocumentLocks(ServerSettings.DocumentLocking.valueOf(locking.toUpperCase()));
+        String documentPath = "/var/www/index.html";
+        return new Fixture() {
+            @Override
+            public Object call() throws InterruptedException {
+                DocumentLocks.Permit documentPermit = documentLocks.acquire(documentPath);
+                try {
+                    return documentPath;
+                } finally {
+                    documentPermit.release();
+                }
+            }
+        };
+    }
+
+    /**
+     * Adds requests to the log's queue, while the log's writer writes them to a file.
+     *
+     * @param backpressure <code>drop</code> or <code>block</code>, as the <code>server.log.backpressure</code> setting.
+     * @return {@link Fixture} - returns the route logged.
+     * @throws IOException if the log's folder can't be created.
+     */
+    public static Fixture logRequest(String backpressure) throws IOException {
+        Path documentRoot = createDocumentRoot(0);
+        ServerSettings serverSettings = createSettings(documentRoot, "server.log.backpressure", backpressure, "server.log.rotate.bytes", "0");
+        RequestLogger requestLogger = new RequestLogger(serverSettings.getLogQueueCapacity(), serverSettings.getLogBackpressure());
+        LogRequestsInformationThread logRequestsInformationThread = new LogRequestsInformationThread(requestLogger, serverSettings);
+        logRequestsInformationThread.setDaemon(true);
+        logRequestsInformationThread.start();
+        InetAddress clientAddress = InetAddress.getLoopbackAddress();
+        return new Fixture() {
+            @Override
+            public Object call() {
+                requestLogger.log("GET", "/index.html", clientAddress);
+                return clientAddress;
+            }
+
+            @Override
+            public void close() throws Exception {
+                logRequestsInformationThread.shutdown();
+                logRequestsInformationThread.join();
+                deleteDocumentRoot(documentRoot);
+            }
+        };
+    }
+
+    /**
+     * Starts a server on a loopback port, with the given connection engine.
+     *
+     * @param engine   <code>blocking</code> or <code>nio</code>, as the <code>server.engine</code> setting.
+     * @param pageSize The size of the index page, in bytes.
+     * @return {@link Fixture} - returns the server's port.
+     * @throws IOException if the server can't be started.
+     */
+    public static Fixture startServer(String engine, int pageSize) throws IOException {
+
+        Path documentRoot = createDocumentRoot(pageSize);
+        ServerSettings serverSettings = createSettings(documentRoot, "server.engine", engine, "server.keepalive.max.requests", String.valueOf(Integer.MAX_VALUE));
+        ServerMetrics serverMetrics = new ServerMetrics();
+        NotFoundCache notFoundCache = new NotFoundCache(Path.of(serverSettings.getPageNotFoundPath()), serverSettings.getNotFoundCacheMaximumEntries(), serverSettings.getNotFoundCacheTimeToLive());
+        RequestHandler requestHandler = new RequestHandler(serverSettings, new FileCache(serverSettings.getCacheMaximumBytes(), serverSettings.getStreamingThreshold(), serverMetrics), null, null, null, notFoundCache, serverMetrics);
+        RequestLogger requestLogger = new RequestLogger(serverSettings.getLogQueueCapacity(), serverSettings.getLogBackpressure());
+        ConnectionRegistry connectionRegistry = new ConnectionRegistry();
+        boolean nio = serverSettings.getEngine() == ServerSettings.Engine.NIO;
+        BufferPool bufferPool = new BufferPool("read", nio, serverSettings.getBufferPoolMaximumBuffers(), false, serverMetrics);
+        BufferPool headPool = new BufferPool("head", false, serverSettings.getBufferPoolMaximumBuffers(), false, serverMetrics);
+
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+
+        ArrayList<Thread> serverThreads = new ArrayList<>();
+        serverThreads.add(new LogRequestsInformationThread(requestLogger, serverSettings));
+        if (nio) {
+            ReactorThread[] reactors = new ReactorThread[Math.max(1, serverSettings.getNioReactors())];
+            for (int reactor = 0; reactor < reactors.length; reactor++) {
+                reactors[reactor] = new ReactorThread("nio-reactor-" + reactor, requestHandler, serverMetrics, connectionRegistry, Executors.newThreadPerTaskExecutor(Thread.ofVirtual().factory()),
+                        new AdmissionController(serverSettings), new DocumentLocks(serverSettings.getDocumentLocking()), requestLogger, bufferPool, headPool);
+                serverThreads.add(reactors[reactor]);
+            }
+            serverThreads.add(new NioAcceptClientsThread("nio-accept-clients", serverChannel, reactors, serverSettings, serverMetrics));
+        } else {
+            serverThreads.add(new AcceptClientsThread("accept-clients", serverChannel.socket(), serverSettings, Executors.newThreadPerTaskExecutor(Thread.ofVirtual().factory()), serverMetrics, requestHandler,
+                    new AdmissionController(serverSettings), connectionRegistry, new DocumentLocks(serverSettings.getDocumentLocking()), requestLogger, bufferPool));
+        }
+        for (Thread serverThread : serverThreads) {
+            serverThread.setDaemon(true);
+            serverThread.start();
+        }
+
+        int port = serverChannel.socket().getLocalPort();
+        return new Fixture() {
+            @Override
+            public Object call() {
+                return port;
+            }
+
+            @Override
+            public void close() throws IOException {
+                serverChannel.close();
+                deleteDocumentRoot(documentRoot);
+            }
+        };
+    }
+
+    /**
+     * Opens a persistent connection to a server on a loopback port, that requests the index page and reads the whole response.
+     *
+     * @param port The server's port.
+     * @return {@link Fixture} - returns the size of the response's body.
+     * @throws IOException if the connection can't be opened.
+     */
+    public static Fixture loopbackClient(int port) throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        socket.setTcpNoDelay(true);
+        OutputStream output = socket.getOutputStream();
+        InputStream input = socket.getInputStream();
+        byte[] request = "GET / HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+        byte[] buffer = new byte[64 * 1024];
+        return new Fixture() {
+            @Override
+            public Object call() throws IOException {
+                output.write(request);
+                output.flush();
+                return readResponse(input, buffer);
+            }
+
+            @Override
+            public void close() throws IOException {
+                socket.close();
+            }
+        };
+    }
+
+    /**
+     * Reads a complete response, using its Content-Length header to find where it ends.
+     *
+     * @param input  The input stream of the client's socket.
+     * @param buffer The buffer the response is read into.
+     * @return <code>long</code> - the size of the response's body.
+     * @throws IOException if the connection is closed before the response is complete.
+     */
+    private static long readResponse(InputStream input, byte[] buffer) throws IOException {
+
+        int received = 0;
+        int headEnd = -1;
+        while (headEnd < 0) {
+            int read = input.read(buffer, received, buffer.length - received);
+            if (read == -1) {
+                throw new IOException("Connection closed before the response's head.");
+            }
+            for (int index = Math.max(3, received); index < received + read; index++) {
+                if (buffer[index] == '\n' && buffer[index - 1] == '\r' && buffer[index - 2] == '\n' && buffer[index - 3] == '\r') {
+                    headEnd = index + 1;
+                    break;
+                }
+            }
+            received += read;
+        }
+
+        String head = new String(buffer, 0, headEnd, StandardCharsets.ISO_8859_1);
+        int lengthStart = head.indexOf("Content-Length: ") + "Content-Length: ".length();
+        long contentLength = Long.parseLong(head.substring(lengthStart, head.indexOf('\r', lengthStart)));
+
+        long bodyToRead = contentLength - (received - headEnd);
+        while (bodyToRead > 0) {
+            int read = input.read(buffer, 0, (int) Math.min(buffer.length, bodyToRead));
+            if (read == -1) {
+                throw new IOException("Connection closed before the response's body.");
+            }
+            bodyToRead -= read;
+        }
+        return contentLength;
+    }
+
+    /**
+     * A channel that accepts every byte written to it, and discards them.
+     */
+    private static class DiscardingChannel implements GatheringByteChannel {
+
+        @Override
+        public long write(ByteBuffer[] sources, int offset, int length) {
+            long written = 0;
+            for (int index = offset; index < offset + length; index++) {
+                written += write(sources[index]);
+            }
+            return written;
+        }
+
+        @Override
+        public long write(ByteBuffer[] sources) {
+            return write(sources, 0, sources.length);
+        }
+
+        @Override
+        public int write(ByteBuffer source) {
+            int written = source.remaining();
+            source.position(source.limit());
+            return written;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+
+    }
+
+}
@@ -0,0 +1,40 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Taking and releasing the lock of a document, by several threads serving the same document.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class DocumentLockBenchmark {
+
+    @Param({"shared", "exclusive"})
+    public String locking;
+
+    private Callable<Object> lockDocument;
+
+    @Setup
+    public void setUp() throws Exception {
+        lockDocument = Fixtures.create("lockDocument", locking);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Fixtures.close(lockDocument);
+    }
+
+    @Benchmark
+    public Object lockDocument() throws Exception {
+        return lockDocument.call();
+    }
+
+}
@@ -0,0 +1,42 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading of a served document, from the heap cache, from the filesystem every time, or from a memory-mapped file.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileReadingBenchmark {
+
+    @Param({"cached", "uncached", "mapped"})
+    public String mode;
+
+    @Param({"4096", "65536"})
+    public int pageSize;
+
+    private Callable<Object> readFile;
+
+    @Setup
+    public void setUp() throws Exception {
+        readFile = Fixtures.create("readFile", mode, pageSize);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Fixtures.close(readFile);
+    }
+
+    @Benchmark
+    public Object readFile() throws Exception {
+        return readFile.call();
+    }
+
+}
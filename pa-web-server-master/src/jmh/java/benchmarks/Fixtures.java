@@ -0,0 +1,49 @@
+package benchmarks;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+
+/**
+ * Creates the fixtures of the default package class <code>BenchmarkFixtures</code>, which can't be referenced from a named package.
+ */
+final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    /**
+     * Calls one of the fixture factories by name.
+     *
+     * @param factory   The name of the factory method.
+     * @param arguments The factory's arguments, of types String or int.
+     * @return {@link Callable} - the fixture, which is also {@link AutoCloseable}.
+     * @throws Exception if the factory can't be found, or fails.
+     */
+    @SuppressWarnings("unchecked")
+    static Callable<Object> create(String factory, Object... arguments) throws Exception {
+        Class<?>[] parameterTypes = new Class<?>[arguments.length];
+        for (int index = 0; index < arguments.length; index++) {
+            parameterTypes[index] = arguments[index] instanceof Integer ? int.class : arguments[index].getClass();
+        }
+        Method factoryMethod = Class.forName("BenchmarkFixtures").getMethod(factory, parameterTypes);
+        try {
+            return (Callable<Object>) factoryMethod.invoke(null, arguments);
+        } catch (InvocationTargetException exception) {
+            throw (Exception) exception.getCause();
+        }
+    }
+
+    /**
+     * Releases a fixture's resources.
+     *
+     * @param fixture A fixture created by {@link #create(String, Object...)}, or null.
+     * @throws Exception if the fixture's resources can't be released.
+     */
+    static void close(Callable<Object> fixture) throws Exception {
+        if (fixture != null) {
+            ((AutoCloseable) fixture).close();
+        }
+    }
+
+}
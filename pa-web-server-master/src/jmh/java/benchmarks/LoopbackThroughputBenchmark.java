@@ -0,0 +1,72 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Complete requests to a server running in the same process, each benchmark thread through its own persistent loopback connection.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class LoopbackThroughputBenchmark {
+
+    /**
+     * The server, shared by every benchmark thread.
+     */
+    @State(Scope.Benchmark)
+    public static class Server {
+
+        @Param({"blocking", "nio"})
+        public String engine;
+
+        @Param({"4096"})
+        public int pageSize;
+
+        private Callable<Object> server;
+        private int port;
+
+        @Setup
+        public void setUp() throws Exception {
+            server = Fixtures.create("startServer", engine, pageSize);
+            port = (Integer) server.call();
+        }
+
+        @TearDown
+        public void tearDown() throws Exception {
+            Fixtures.close(server);
+        }
+
+    }
+
+    /**
+     * The connection of a benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class Client {
+
+        private Callable<Object> client;
+
+        @Setup
+        public void setUp(Server server) throws Exception {
+            client = Fixtures.create("loopbackClient", server.port);
+        }
+
+        @TearDown
+        public void tearDown() throws Exception {
+            Fixtures.close(client);
+        }
+
+    }
+
+    @Benchmark
+    public Object request(Client client) throws Exception {
+        return client.client.call();
+    }
+
+}
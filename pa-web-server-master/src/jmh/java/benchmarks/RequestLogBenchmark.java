@@ -0,0 +1,40 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adding requests to the log's queue from several threads, while the log's writer writes them to a file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class RequestLogBenchmark {
+
+    @Param({"drop", "block"})
+    public String backpressure;
+
+    private Callable<Object> logRequest;
+
+    @Setup
+    public void setUp() throws Exception {
+        logRequest = Fixtures.create("logRequest", backpressure);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Fixtures.close(logRequest);
+    }
+
+    @Benchmark
+    public Object logRequest() throws Exception {
+        return logRequest.call();
+    }
+
+}
@@ -0,0 +1,39 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of a browser's request line and headers from a connection's read buffer, on the heap (blocking engine) or direct (nio engine).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestParsingBenchmark {
+
+    @Param({"heap", "direct"})
+    public String buffer;
+
+    private Callable<Object> parseRequest;
+
+    @Setup
+    public void setUp() throws Exception {
+        parseRequest = Fixtures.create("parseRequest", buffer);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Fixtures.close(parseRequest);
+    }
+
+    @Benchmark
+    public Object parseRequest() throws Exception {
+        return parseRequest.call();
+    }
+
+}
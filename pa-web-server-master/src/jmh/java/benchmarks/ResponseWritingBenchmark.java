@@ -0,0 +1,39 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the response to a cached document, and writing its head and body with a gathering write.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseWritingBenchmark {
+
+    @Param({"4096", "65536"})
+    public int pageSize;
+
+    private Callable<Object> writeResponse;
+
+    @Setup
+    public void setUp() throws Exception {
+        writeResponse = Fixtures.create("writeResponse", pageSize);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Fixtures.close(writeResponse);
+    }
+
+    @Benchmark
+    public Object writeResponse() throws Exception {
+        return writeResponse.call();
+    }
+
+}
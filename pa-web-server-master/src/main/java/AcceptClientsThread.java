@@ -1,17 +1,13 @@
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.ArrayList;
-import java.util.Properties;
-import java.util.Queue;
-import java.util.Set;
+import java.net.SocketException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Semaphore;
-import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * The class of the thread responsible for accepting the HTTP server's clients.
- * After accepting a client, a new thread is created to serve that individual client.
+ * Several acceptors can share the server's socket, or each accept from its own socket when SO_REUSEPORT is enabled.
+ * After accepting a client, a task is submitted to the client executor to serve that individual client.
  */
 public class AcceptClientsThread extends Thread {
 
@@ -21,107 +17,119 @@ public class AcceptClientsThread extends Thread {
     private final ServerSocket serverSocket;
 
     /**
-     * The server's configuration, imported from the configuration file when the server started.
+     * The server's settings, imported from the configuration file when the server started, which configure the accepted sockets.
+     * The clients are served with the server's current settings, which may have been reloaded since.
      */
-    private final Properties serverConfig;
+    private final ServerSettings serverSettings;
     /**
-     * The semaphore responsible for the number of requests that can be served simultaneously.
+     * The executor that runs the tasks serving each accepted client.
      */
-    private final Semaphore numberOfConcurrentRequests;
-
+    private final ExecutorService clientExecutor;
+    /**
+     * The server's performance counters.
+     */
+    private final ServerMetrics serverMetrics;
     /**
-     * The lock responsible for the client sockets array,
-     * which contains all the clients that are making requests at a given point in time.
+     * Resolves the routes requested by the clients to the documents served to them.
      */
-    private final ReentrantLock clientSocketsLock;
+    private final RequestHandler requestHandler;
     /**
-     * The server's array that contains the sockets of each request being made at a given point in time.
+     * Decides which requests are served, and which are refused because the server is overloaded.
      */
-    private final ArrayList<Socket> clientSockets;
+    private final AdmissionController admissionController;
 
     /**
-     * The lock responsible for the opened documents array,
-     * which contains a list of the documents the clients are requesting at a given point in time.
+     * The clients connected to the server.
      */
-    private final ReentrantLock currentlyOpenedDocumentsLock;
+    private final ConnectionRegistry connectionRegistry;
+
     /**
-     * Contains a list of the documents being requested at a given point in time.
+     * The locks that coordinate the threads serving the same document.
      */
-    private final Set<String> currentlyOpenedDocuments;
+    private final DocumentLocks documentLocks;
 
     /**
-     * The lock responsible for the requests' information array,
-     * which contains a list of requests information to save to the log.
+     * Collects the requests to be written to the log.
      */
-    private final ReentrantLock requestsInformationLock;
+    private final RequestLogger requestLogger;
+
     /**
-     * Contains a list of the requests' information not yet saved to the log.
+     * The pool the connections' read buffers are acquired from.
      */
-    private final Queue<String> requestsInformation;
+    private final BufferPool bufferPool;
 
     /**
      * Constructor for the thread responsible for accepting the clients.
      *
+     * @param name                         The thread's name.
      * @param serverSocket                 The HTTP server's socket.
-     * @param serverConfig                 The server's configuration, imported from the configuration file when the server started.
-     * @param clientSocketsLock            The lock responsible for the client sockets array.
-     * @param clientSockets                The server's array that contains the sockets of each request being made at a given point in time.
-     * @param currentlyOpenedDocumentsLock The lock responsible for the opened documents array.
-     * @param currentlyOpenedDocuments     Contains a list of the documents being requested at a given point in time.
-     * @param requestsInformationLock      The lock responsible for the requests' information array.
-     * @param requestsInformation          Contains a list of the requests' information not yet saved to the log.
-     * @param numberOfConcurrentRequests   The semaphore responsible for the number of requests that can be served simultaneously
+     * @param serverSettings               The server's settings, imported from the configuration file when the server started.
+     * @param clientExecutor               The executor that runs the tasks serving each accepted client.
+     * @param serverMetrics                The server's performance counters.
+     * @param requestHandler               Resolves the routes requested by the clients to the documents served to them.
+     * @param connectionRegistry           The clients connected to the server.
+     * @param documentLocks                The locks that coordinate the threads serving the same document.
+     * @param requestLogger                Collects the requests to be written to the log.
+     * @param admissionController          Decides which requests are served, and which are refused because the server is overloaded.
+     * @param bufferPool                   The pool the connections' read buffers and request storage are acquired from, backed by arrays.
      */
-    public AcceptClientsThread(ServerSocket serverSocket, Properties serverConfig, Semaphore numberOfConcurrentRequests, ReentrantLock clientSocketsLock, ArrayList<Socket> clientSockets, ReentrantLock currentlyOpenedDocumentsLock, Set<String> currentlyOpenedDocuments, ReentrantLock requestsInformationLock, Queue<String> requestsInformation) {
+    public AcceptClientsThread(String name, ServerSocket serverSocket, ServerSettings serverSettings, ExecutorService clientExecutor, ServerMetrics serverMetrics, RequestHandler requestHandler, AdmissionController admissionController, ConnectionRegistry connectionRegistry, DocumentLocks documentLocks, RequestLogger requestLogger, BufferPool bufferPool) {
+        super(name);
         this.serverSocket = serverSocket;
-        this.serverConfig = serverConfig;
+        this.serverSettings = serverSettings;
+        this.clientExecutor = clientExecutor;
+        this.serverMetrics = serverMetrics;
+        this.requestHandler = requestHandler;
 
-        this.clientSocketsLock = clientSocketsLock;
-        this.clientSockets = clientSockets;
+        this.connectionRegistry = connectionRegistry;
 
-        this.currentlyOpenedDocumentsLock = currentlyOpenedDocumentsLock;
-        this.currentlyOpenedDocuments = currentlyOpenedDocuments;
+        this.documentLocks = documentLocks;
 
-        this.requestsInformationLock = requestsInformationLock;
-        this.requestsInformation = requestsInformation;
+        this.requestLogger = requestLogger;
 
-        this.numberOfConcurrentRequests = numberOfConcurrentRequests;
+        this.admissionController = admissionController;
+
+        this.bufferPool = bufferPool;
     }
 
     /**
-     * Main cycle of the server, it creates the {@link ServerSocket} at the specified port. <p>
-     * The server then creates a {@link ExecutorService} thread pool to continuously accept clients. <p>
+     * Main cycle of the server, it continuously accepts clients on the {@link ServerSocket}. <p>
      * After accepting a new client, a {@link Socket} is created,
-     * and a new {@link ServeClientThread} is added to the thread pool to serve that client.
+     * and a new {@link ServeClientThread} task is submitted to the {@link ExecutorService} to serve that client.
      */
     @Override
     public void run() {
 
         try {
 
-            // ExecutorService clientPool = Executors.newFixedThreadPool(10);
-
-            //* Continuously accept clients, and spawn a thread to serve them
+            //* Continuously accept clients, and submit a task to serve them
             //noinspection InfiniteLoopStatement
             while (true) {
 
                 Socket newClientSocket = serverSocket.accept(); // Accept a client and create a socket
-
-
-                clientSocketsLock.lock();
-                clientSockets.add(newClientSocket); // Adds the accepted client to the clients array
-                System.out.println("New client accepted: " + newClientSocket.toString());
-                System.out.println("Clients connected: " + clientSockets + "\n");
-                Socket clientAdded = clientSockets.get(clientSockets.size() - 1);
-                clientSocketsLock.unlock();
-                ServeClientThread newClientThread = new ServeClientThread(serverConfig, numberOfConcurrentRequests, clientAdded, clientSocketsLock, clientSockets, currentlyOpenedDocumentsLock, currentlyOpenedDocuments, requestsInformationLock, requestsInformation, 0, 0); // Create a new thread to serve the accepted client
-                newClientThread.start();
+                long acceptedTime = System.nanoTime();
+                serverMetrics.recordAcceptedConnection();
+                try {
+                    ServerListeners.configureClient(newClientSocket, serverSettings);
+                } catch (SocketException exception) {
+                    DiagnosticLog.info(exception.getMessage());
+                }
+
+                ConnectionRegistry.Connection connection = connectionRegistry.register(newClientSocket, newClientSocket.getRemoteSocketAddress(), acceptedTime);
+                if (DiagnosticLog.isDebugEnabled()) {
+                    DiagnosticLog.debug("New client accepted: " + connection);
+                }
+                ServeClientThread newClientTask = new ServeClientThread(requestHandler.getServerSettings(), serverMetrics, requestHandler, admissionController, newClientSocket, connectionRegistry, connection, documentLocks, requestLogger, bufferPool, 0); // Create a new task to serve the accepted client
+                clientExecutor.execute(newClientTask);
 
 
             }
 
         } catch (IOException exception) {
-            System.out.println(exception.getMessage());
+            // The socket is closed when the server shuts down, which ends the thread
+            if (!serverSocket.isClosed()) {
+                DiagnosticLog.info(exception.getMessage());
+            }
         }
 
     }
@@ -0,0 +1,279 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Decides which requests are served, so an overloaded server refuses the excess quickly instead of piling up waiting threads. <p>
+ * Up to a limit of requests are served simultaneously. Requests above it wait in a bounded queue for a limited time,
+ * and are refused when the queue is full or the time runs out, so the client can be answered with a 503 and retry later. <p>
+ * With a target latency, the limit adapts to the server's capacity (additive increase, multiplicative decrease):
+ * it shrinks while the requests take longer than the target, and grows back while they are faster and the limit is reached. <p>
+ * The limits can be replaced while requests are served, such as when the server's settings are reloaded.
+ */
+public class AdmissionController {
+
+    /**
+     * The factor the limit is multiplied by when the requests are slower than the target latency.
+     */
+    private static final double DECREASE_FACTOR = 0.9;
+
+    /**
+     * The limits of the admission, replaced together when they are reconfigured.
+     *
+     * @param maximumLimit  The largest limit, and the limit when it doesn't adapt.
+     * @param minimumLimit  The smallest limit the adaptation can reach.
+     * @param queueSize     Number of requests that can wait to be admitted.
+     * @param maximumWait   Maximum time in nanoseconds a request waits to be admitted.
+     * @param targetLatency Latency in nanoseconds above which the limit is reduced, or 0 if the limit doesn't adapt.
+     */
+    private record Limits(int maximumLimit, int minimumLimit, int queueSize, long maximumWait, long targetLatency) {
+
+        /**
+         * Creates the limits of the admission, from their configured values.
+         *
+         * @param maximumLimit  The largest number of requests served simultaneously.
+         * @param minimumLimit  The smallest limit the adaptation can reach.
+         * @param queueSize     Number of requests that can wait to be admitted.
+         * @param maximumWait   Maximum time in milliseconds a request waits to be admitted.
+         * @param targetLatency Latency in milliseconds above which the limit is reduced, or 0 if the limit doesn't adapt.
+         * @return {@link Limits} - the limits, with the limits below 1 raised to 1, and the other negative values replaced by 0.
+         * A limit of 0 would refuse every request, and the adaptation couldn't grow it back, as no request would be served.
+         */
+        private static Limits of(int maximumLimit, int minimumLimit, int queueSize, int maximumWait, int targetLatency) {
+            int maximum = Math.max(1, maximumLimit);
+            return new Limits(maximum, Math.max(1, Math.min(minimumLimit, maximum)), Math.max(0, queueSize),
+                    TimeUnit.MILLISECONDS.toNanos(Math.max(0, maximumWait)), TimeUnit.MILLISECONDS.toNanos(Math.max(0, targetLatency)));
+        }
+
+    }
+
+    /**
+     * The current limits of the admission.
+     */
+    private volatile Limits limits;
+
+    /**
+     * Number of requests that can be served simultaneously.
+     */
+    private final AtomicInteger limit;
+    /**
+     * Number of requests being served.
+     */
+    private final AtomicInteger inFlight = new AtomicInteger();
+    /**
+     * Number of requests waiting to be admitted.
+     */
+    private final AtomicInteger waiting = new AtomicInteger();
+    /**
+     * Number of fast requests completed while the limit was reached, since the limit last grew.
+     */
+    private final AtomicInteger saturatedSuccesses = new AtomicInteger();
+    /**
+     * The value of {@link System#nanoTime()} when the limit was last reduced.
+     */
+    private final AtomicLong lastDecreaseTime = new AtomicLong(System.nanoTime());
+    /**
+     * Number of requests refused.
+     */
+    private final LongAdder rejectedRequests = new LongAdder();
+
+    /**
+     * The lock the waiting requests sleep on. Only taken when the limit is reached.
+     */
+    private final ReentrantLock waitLock = new ReentrantLock();
+    /**
+     * Signalled when a request is released while others are waiting.
+     */
+    private final Condition released = waitLock.newCondition();
+
+    /**
+     * Constructor for the admission controller.
+     *
+     * @param maximumLimit  The largest number of requests served simultaneously, and the initial limit.
+     * @param minimumLimit  The smallest limit the adaptation can reach.
+     * @param queueSize     Number of requests that can wait to be admitted.
+     * @param maximumWait   Maximum time in milliseconds a request waits to be admitted.
+     * @param targetLatency Latency in milliseconds above which the limit is reduced, or 0 if the limit doesn't adapt.
+     */
+    public AdmissionController(int maximumLimit, int minimumLimit, int queueSize, int maximumWait, int targetLatency) {
+        this.limits = Limits.of(maximumLimit, minimumLimit, queueSize, maximumWait, targetLatency);
+        this.limit = new AtomicInteger(this.limits.maximumLimit());
+    }
+
+    /**
+     * Constructor for the admission controller configured by the server's settings.
+     *
+     * @param serverSettings The server's settings, imported from the configuration file when the server started.
+     */
+    public AdmissionController(ServerSettings serverSettings) {
+        this(serverSettings.getMaximumRequests(), serverSettings.getAdmissionMinimumRequests(), serverSettings.getAdmissionQueueSize(),
+                serverSettings.getAdmissionMaximumWait(), serverSettings.getAdmissionTargetLatency());
+    }
+
+    /**
+     * Replaces the limits with the ones of the server's settings. The requests being served keep their admission,
+     * the limit starts again from the new maximum, and the waiting requests check it again.
+     *
+     * @param serverSettings The server's settings, reloaded from the configuration file.
+     */
+    public void reconfigure(ServerSettings serverSettings) {
+        Limits reconfiguredLimits = Limits.of(serverSettings.getMaximumRequests(), serverSettings.getAdmissionMinimumRequests(),
+                serverSettings.getAdmissionQueueSize(), serverSettings.getAdmissionMaximumWait(), serverSettings.getAdmissionTargetLatency());
+        limits = reconfiguredLimits;
+        limit.set(reconfiguredLimits.maximumLimit());
+        saturatedSuccesses.set(0);
+        waitLock.lock();
+        try {
+            released.signalAll();
+        } finally {
+            waitLock.unlock();
+        }
+    }
+
+    /**
+     * Admits a request, waiting for a request to be released if the limit is reached.
+     * Every admitted request must be released by {@link #release(long)}.
+     *
+     * @return <code>boolean</code>
+     * <ul>
+     *     <li> <strong>true -</strong> if the request is admitted.</li>
+     *     <li> <strong>false -</strong> if the request is refused, because the queue is full or it waited for the maximum time.</li>
+     * </ul>
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     */
+    public boolean acquire() throws InterruptedException {
+
+        if (tryAcquire()) {
+            return true;
+        }
+
+        Limits currentLimits = limits;
+        if (waiting.incrementAndGet() > currentLimits.queueSize()) {
+            waiting.decrementAndGet();
+            rejectedRequests.increment();
+            return false;
+        }
+
+        try {
+            long deadline = System.nanoTime() + currentLimits.maximumWait();
+            waitLock.lock();
+            try {
+                while (!tryAcquire()) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        rejectedRequests.increment();
+                        return false;
+                    }
+                    released.awaitNanos(remaining);
+                }
+                return true;
+            } finally {
+                waitLock.unlock();
+            }
+        } finally {
+            waiting.decrementAndGet();
+        }
+
+    }
+
+    /**
+     * Admits a request if the limit isn't reached, without waiting.
+     *
+     * @return <code>boolean</code> - whether the request is admitted.
+     */
+    public boolean tryAcquire() {
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= limit.get()) {
+                return false;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /**
+     * Releases an admitted request, adapting the limit to its latency, and wakes up a waiting request.
+     *
+     * @param latencyNanos The time the request took to be served, in nanoseconds.
+     */
+    public void release(long latencyNanos) {
+
+        int servedSimultaneously = inFlight.getAndDecrement();
+        Limits currentLimits = limits;
+        if (currentLimits.targetLatency() > 0) {
+            adaptLimit(currentLimits, latencyNanos, servedSimultaneously);
+        }
+
+        // Checked after releasing, so a request that started waiting meanwhile either sees the free slot or is signalled
+        if (waiting.get() > 0) {
+            waitLock.lock();
+            try {
+                released.signal();
+            } finally {
+                waitLock.unlock();
+            }
+        }
+
+    }
+
+    /**
+     * Reduces the limit if a request was slower than the target latency, at most once per target latency,
+     * or increases it by one after as many fast requests as the limit, while the limit is reached.
+     *
+     * @param currentLimits        The limits of the admission.
+     * @param latencyNanos         The time the request took to be served, in nanoseconds.
+     * @param servedSimultaneously Number of requests being served when the request was released, including it.
+     */
+    private void adaptLimit(Limits currentLimits, long latencyNanos, int servedSimultaneously) {
+
+        int currentLimit = limit.get();
+        if (latencyNanos > currentLimits.targetLatency()) {
+            long now = System.nanoTime();
+            long lastDecrease = lastDecreaseTime.get();
+            if (now - lastDecrease >= currentLimits.targetLatency() && lastDecreaseTime.compareAndSet(lastDecrease, now)) {
+                // The minimum is at least 1, so a request is still served and the limit can grow back
+                limit.set(Math.max(currentLimits.minimumLimit(), (int) (currentLimit * DECREASE_FACTOR)));
+                saturatedSuccesses.set(0);
+            }
+        } else if (servedSimultaneously >= currentLimit && currentLimit < currentLimits.maximumLimit()) {
+            if (saturatedSuccesses.incrementAndGet() >= currentLimit) {
+                saturatedSuccesses.set(0);
+                limit.compareAndSet(currentLimit, currentLimit + 1);
+            }
+        }
+
+    }
+
+    /**
+     * @return <code>int</code> - number of requests that can be served simultaneously.
+     */
+    public int getLimit() {
+        return limit.get();
+    }
+
+    /**
+     * @return <code>int</code> - number of requests being served.
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return <code>int</code> - number of requests waiting to be admitted.
+     */
+    public int getWaiting() {
+        return waiting.get();
+    }
+
+    /**
+     * @return <code>long</code> - number of requests refused.
+     */
+    public long getRejectedRequests() {
+        return rejectedRequests.sum();
+    }
+
+}
@@ -0,0 +1,342 @@
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * A pool of byte buffers reused by the connections, instead of allocating new buffers for each connection. <p>
+ * Buffers are pooled in size classes, powers of two from 1 KiB to 1 MiB, so a request is served by the smallest class that holds it.
+ * A platform thread, such as a reactor, keeps a few of the buffers it releases, and reuses them without contending with the other threads.
+ * The other released buffers are shared by every thread, up to a number of each class, and virtual threads, which only live for
+ * a connection, only use the shared ones. <p>
+ * In debug mode, every buffer acquired is tracked, and a buffer garbage collected without being released is reported
+ * with the place it was acquired.
+ */
+public class BufferPool {
+
+    /**
+     * A buffer acquired from the pool, which must be released once, when its owner no longer uses it.
+     */
+    public static final class PooledBuffer {
+
+        /**
+         * The pool the buffer is released to.
+         */
+        private final BufferPool pool;
+        /**
+         * The buffer's bytes.
+         */
+        private final ByteBuffer buffer;
+        /**
+         * The size class of the buffer, or -1 if it is too large to be pooled.
+         */
+        private final int sizeClass;
+        /**
+         * The check reporting the buffer if it is never released, or null if leaks aren't detected.
+         */
+        private final LeakCheck leakCheck;
+        /**
+         * The registration of the leak check, or null if leaks aren't detected.
+         */
+        private final Cleaner.Cleanable cleanable;
+        /**
+         * Whether the buffer was already released.
+         */
+        private boolean released;
+
+        /**
+         * Constructor for a buffer acquired from the pool.
+         *
+         * @param pool      The pool the buffer is released to.
+         * @param buffer    The buffer's bytes.
+         * @param sizeClass The size class of the buffer, or -1 if it is too large to be pooled.
+         * @param leakCheck The check reporting the buffer if it is never released, or null if leaks aren't detected.
+         */
+        private PooledBuffer(BufferPool pool, ByteBuffer buffer, int sizeClass, LeakCheck leakCheck) {
+            this.pool = pool;
+            this.buffer = buffer;
+            this.sizeClass = sizeClass;
+            this.leakCheck = leakCheck;
+            this.cleanable = leakCheck != null ? LEAK_CLEANER.register(this, leakCheck) : null;
+        }
+
+        /**
+         * @return {@link ByteBuffer} - the buffer's bytes, cleared when it was acquired.
+         */
+        public ByteBuffer buffer() {
+            return buffer;
+        }
+
+        /**
+         * Returns the buffer to the pool. The buffer must not be used afterwards, and releasing it again does nothing.
+         */
+        public void release() {
+            if (released) {
+                return;
+            }
+            released = true;
+            if (leakCheck != null) {
+                leakCheck.released = true;
+                cleanable.clean();
+            }
+            pool.release(buffer, sizeClass);
+        }
+
+    }
+
+    /**
+     * Reports a buffer that was garbage collected without being released. It doesn't reference the buffer's owner, so it doesn't keep it alive.
+     */
+    private static final class LeakCheck implements Runnable {
+
+        /**
+         * The name of the pool the buffer was acquired from.
+         */
+        private final String poolName;
+        /**
+         * The server's performance counters.
+         */
+        private final ServerMetrics serverMetrics;
+        /**
+         * The stack of the thread that acquired the buffer, when it was acquired.
+         */
+        private final Throwable acquisition;
+        /**
+         * Whether the buffer was released.
+         */
+        private volatile boolean released;
+
+        /**
+         * Constructor for the check of a buffer acquired from the pool.
+         *
+         * @param poolName      The name of the pool the buffer was acquired from.
+         * @param serverMetrics The server's performance counters.
+         * @param acquisition   The stack of the thread that acquired the buffer, when it was acquired.
+         */
+        private LeakCheck(String poolName, ServerMetrics serverMetrics, Throwable acquisition) {
+            this.poolName = poolName;
+            this.serverMetrics = serverMetrics;
+            this.acquisition = acquisition;
+        }
+
+        @Override
+        public void run() {
+            if (released) {
+                return;
+            }
+            serverMetrics.recordBufferLeaked();
+            StringBuilder message = new StringBuilder("A buffer of the " + poolName + " pool was never released, it was acquired at:");
+            for (StackTraceElement frame : acquisition.getStackTrace()) {
+                message.append("\n\tat ").append(frame);
+            }
+            DiagnosticLog.info(message.toString());
+        }
+
+    }
+
+    /**
+     * The released buffers of a size class shared by every thread. Held in an array by size class, as arrays of generic queues can't be created.
+     */
+    private static final class SharedBuffers {
+
+        /**
+         * The released buffers, up to the maximum number of shared buffers of the class.
+         */
+        private final ArrayBlockingQueue<ByteBuffer> buffers;
+
+        /**
+         * Constructor for the shared buffers of a size class.
+         *
+         * @param maximumBuffers Maximum number of released buffers kept.
+         */
+        private SharedBuffers(int maximumBuffers) {
+            this.buffers = new ArrayBlockingQueue<>(maximumBuffers);
+        }
+
+    }
+
+    /**
+     * The released buffers of a size class kept by a platform thread, the most recently released first.
+     */
+    private static final class ThreadBuffers {
+
+        /**
+         * The released buffers, up to {@link #THREAD_CACHE_SIZE}.
+         */
+        private final ArrayDeque<ByteBuffer> buffers = new ArrayDeque<>(THREAD_CACHE_SIZE);
+
+    }
+
+    /**
+     * The capacity of the smallest size class, as a power of two (1 KiB).
+     */
+    private static final int MINIMUM_CLASS_SHIFT = 10;
+    /**
+     * The capacity of the largest size class, as a power of two (1 MiB). Larger buffers are allocated for each request, and not pooled.
+     */
+    private static final int MAXIMUM_CLASS_SHIFT = 20;
+    /**
+     * Number of buffers of each size class kept by a platform thread.
+     */
+    private static final int THREAD_CACHE_SIZE = 8;
+    /**
+     * Runs the leak checks of the buffers garbage collected, in debug mode.
+     */
+    private static final Cleaner LEAK_CLEANER = Cleaner.create();
+
+    /**
+     * The name of the pool, in the reported leaks.
+     */
+    private final String name;
+    /**
+     * Whether the buffers are allocated outside the heap, to be read and written by channels without copies.
+     */
+    private final boolean direct;
+    /**
+     * The server's performance counters.
+     */
+    private final ServerMetrics serverMetrics;
+    /**
+     * The released buffers shared by every thread, by size class.
+     */
+    private final SharedBuffers[] sharedBuffers;
+    /**
+     * The released buffers kept by each platform thread, by size class.
+     */
+    private final ThreadLocal<ThreadBuffers[]> threadBuffers;
+    /**
+     * Whether the buffers never released are reported.
+     */
+    private final boolean leakDetection;
+
+    /**
+     * Constructor for a pool of buffers.
+     *
+     * @param name                 The name of the pool, in the reported leaks.
+     * @param direct               Whether the buffers are allocated outside the heap, or on the heap, backed by arrays.
+     * @param maximumSharedBuffers Maximum number of released buffers of each size class shared by every thread. Further buffers are garbage collected.
+     * @param leakDetection        Whether the buffers never released are reported, which costs a stack trace for each buffer acquired.
+     * @param serverMetrics        The server's performance counters.
+     */
+    public BufferPool(String name, boolean direct, int maximumSharedBuffers, boolean leakDetection, ServerMetrics serverMetrics) {
+        this.name = name;
+        this.direct = direct;
+        this.serverMetrics = serverMetrics;
+        this.leakDetection = leakDetection;
+        this.sharedBuffers = new SharedBuffers[MAXIMUM_CLASS_SHIFT - MINIMUM_CLASS_SHIFT + 1];
+        for (int sizeClass = 0; sizeClass < sharedBuffers.length; sizeClass++) {
+            sharedBuffers[sizeClass] = new SharedBuffers(Math.max(1, maximumSharedBuffers));
+        }
+        this.threadBuffers = ThreadLocal.withInitial(() -> {
+            ThreadBuffers[] cachedBuffers = new ThreadBuffers[sharedBuffers.length];
+            for (int sizeClass = 0; sizeClass < cachedBuffers.length; sizeClass++) {
+                cachedBuffers[sizeClass] = new ThreadBuffers();
+            }
+            return cachedBuffers;
+        });
+    }
+
+    /**
+     * Acquires a cleared buffer, reusing a released buffer of the same size class when there is one. <p>
+     * The capacity is rounded up to the size class, so the buffer is usually larger than requested: an 8 KiB and 1 byte request gets 16 KiB.
+     * Its limit is its whole capacity, so callers that must not use more than they requested set the limit themselves.
+     * The read buffers use the extra room for pipelined requests, the request head's size is enforced by the parser.
+     * Heap buffers are never slices, so their {@link ByteBuffer#array()} starts at the buffer's first byte,
+     * and its length is the buffer's capacity, as the blocking server relies on when it reads the socket into the array.
+     *
+     * @param capacity The minimum capacity of the buffer, in bytes.
+     * @return {@link PooledBuffer} - the buffer, with a capacity of at least the requested one, which must be released by its owner.
+     */
+    public PooledBuffer acquire(int capacity) {
+
+        int sizeClass = sizeClassOf(capacity);
+        ByteBuffer buffer = null;
+        if (sizeClass >= 0) {
+            ThreadBuffers[] cachedBuffers = threadCache();
+            if (cachedBuffers != null) {
+                buffer = cachedBuffers[sizeClass].buffers.pollLast();
+            }
+            if (buffer == null) {
+                buffer = sharedBuffers[sizeClass].buffers.poll();
+            }
+        }
+        boolean reused = buffer != null;
+        if (buffer == null) {
+            buffer = allocate(sizeClass >= 0 ? 1 << (sizeClass + MINIMUM_CLASS_SHIFT) : capacity);
+        }
+        buffer.clear();
+        serverMetrics.recordBufferAcquired(reused);
+
+        LeakCheck leakCheck = leakDetection ? new LeakCheck(name, serverMetrics, new Throwable()) : null;
+        return new PooledBuffer(this, buffer, sizeClass, leakCheck);
+    }
+
+    /**
+     * Returns a buffer to the releasing thread's buffers, or to the shared buffers if the thread keeps enough of its size class.
+     *
+     * @param buffer    The released buffer.
+     * @param sizeClass The size class of the buffer, or -1 if it is too large to be pooled.
+     */
+    private void release(ByteBuffer buffer, int sizeClass) {
+        serverMetrics.recordBufferReleased();
+        if (sizeClass < 0) {
+            return;
+        }
+        ThreadBuffers[] cachedBuffers = threadCache();
+        if (cachedBuffers != null && cachedBuffers[sizeClass].buffers.size() < THREAD_CACHE_SIZE) {
+            cachedBuffers[sizeClass].buffers.addLast(buffer);
+            return;
+        }
+        sharedBuffers[sizeClass].buffers.offer(buffer);
+    }
+
+    /**
+     * @return <code>ThreadBuffers[]</code> - the buffers kept by the current thread, by size class, or null if it is a virtual thread, which doesn't keep any.
+     */
+    private ThreadBuffers[] threadCache() {
+        return Thread.currentThread().isVirtual() ? null : threadBuffers.get();
+    }
+
+    /**
+     * Finds the smallest size class holding a capacity.
+     *
+     * @param capacity The capacity, in bytes.
+     * @return <code>int</code> - the index of the size class, or -1 if the capacity is larger than the largest class.
+     */
+    private static int sizeClassOf(int capacity) {
+        if (capacity > 1 << MAXIMUM_CLASS_SHIFT) {
+            return -1;
+        }
+        int shift = 32 - Integer.numberOfLeadingZeros(Math.max(1, capacity) - 1);
+        return Math.max(0, shift - MINIMUM_CLASS_SHIFT);
+    }
+
+    /**
+     * Allocates a new buffer.
+     *
+     * @param capacity The capacity of the buffer, in bytes.
+     * @return {@link ByteBuffer} - the buffer, outside the heap or on the heap, as configured for the pool.
+     */
+    private ByteBuffer allocate(int capacity) {
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    /**
+     * @return <code>int</code> - number of released buffers shared by every thread, of every size class.
+     */
+    public int getSharedBuffers() {
+        int buffers = 0;
+        for (SharedBuffers sizeClassBuffers : sharedBuffers) {
+            buffers += sizeClassBuffers.buffers.size();
+        }
+        return buffers;
+    }
+
+    /**
+     * @return <code>boolean</code> - whether the buffers are allocated outside the heap.
+     */
+    public boolean isDirect() {
+        return direct;
+    }
+
+}
@@ -0,0 +1,205 @@
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The byte ranges requested by the <code>Range</code> header, and the partial responses that send them. <p>
+ * A single range is sent as the response's body, several ranges as the parts of a <code>multipart/byteranges</code> body.
+ * Ranges of a streamed document are transferred from their position in the file, so a client seeking in a large file
+ * only receives the bytes it asked for, and the file is never read into memory.
+ */
+public final class ByteRanges {
+
+    /**
+     * A range of bytes of a document.
+     *
+     * @param first The position of the range's first byte.
+     * @param last  The position of the range's last byte, included in the range.
+     */
+    public record ByteRange(long first, long last) {
+
+        /**
+         * @return <code>long</code> - number of bytes of the range.
+         */
+        public long length() {
+            return last - first + 1;
+        }
+
+    }
+
+    /**
+     * The response code of the documents sent partially.
+     */
+    public static final String PARTIAL_CONTENT = "206 Partial Content";
+    /**
+     * The response code of the range requests that don't overlap the document.
+     */
+    public static final String RANGE_NOT_SATISFIABLE = "416 Range Not Satisfiable";
+
+    /**
+     * Maximum number of ranges answered, above which the whole document is sent, so many tiny ranges can't be used to amplify a request.
+     */
+    private static final int MAXIMUM_RANGES = 32;
+    /**
+     * The boundary between the parts of the multipart responses.
+     */
+    private static final String BOUNDARY = "byteranges-" + Long.toHexString(ThreadLocalRandom.current().nextLong());
+
+    /**
+     * The byte ranges are only parsed through the static methods.
+     */
+    private ByteRanges() {
+    }
+
+    /**
+     * Parses the ranges requested by a <code>Range</code> header, limited to the document's size.
+     *
+     * @param range        The header's value, such as <code>bytes=0-499</code>, <code>bytes=500-</code> or <code>bytes=-500</code>.
+     * @param documentSize The document's size, in bytes.
+     * @return {@link List} - the ranges that overlap the document, in the requested order, or an empty list if none does.
+     * Null if the header is invalid, isn't in bytes, or requests too many ranges, so the whole document is sent.
+     */
+    public static List<ByteRange> parse(String range, long documentSize) {
+
+        if (!range.regionMatches(true, 0, "bytes=", 0, 6)) {
+            return null;
+        }
+
+        List<ByteRange> ranges = new ArrayList<>();
+        int requestedRanges = 0;
+        for (String rangeSpecification : range.substring(6).split(",")) {
+
+            String specification = rangeSpecification.trim();
+            if (specification.isEmpty()) {
+                continue;
+            }
+            if (++requestedRanges > MAXIMUM_RANGES) {
+                return null;
+            }
+
+            int separator = specification.indexOf('-');
+            if (separator < 0) {
+                return null;
+            }
+            long first = parsePosition(specification.substring(0, separator).trim());
+            long last = parsePosition(specification.substring(separator + 1).trim());
+
+            if (separator == 0) {
+                //* A suffix range, the last bytes of the document
+                if (last < 0) {
+                    return null;
+                }
+                if (last > 0 && documentSize > 0) {
+                    ranges.add(new ByteRange(Math.max(0, documentSize - last), documentSize - 1));
+                }
+            } else {
+                //* A range from a position, to another or to the end of the document
+                boolean openEnded = specification.length() == separator + 1;
+                if (first < 0 || (!openEnded && (last < 0 || last < first))) {
+                    return null;
+                }
+                if (first < documentSize) {
+                    ranges.add(new ByteRange(first, openEnded ? documentSize - 1 : Math.min(last, documentSize - 1)));
+                }
+            }
+
+        }
+        return requestedRanges > 0 ? ranges : null;
+    }
+
+    /**
+     * Parses a position of a range.
+     *
+     * @param position The position, in decimal digits.
+     * @return <code>long</code> - the position, or -1 if it isn't a valid number.
+     */
+    private static long parsePosition(String position) {
+        if (position.isEmpty() || position.length() > 18) {
+            return -1;
+        }
+        long value = 0;
+        for (int index = 0; index < position.length(); index++) {
+            char digit = position.charAt(index);
+            if (digit < '0' || digit > '9') {
+                return -1;
+            }
+            value = value * 10 + (digit - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Builds the 206 Partial Content response that sends ranges of a document.
+     *
+     * @param document    The document's content, in memory or streamed from the filesystem.
+     * @param contentType The media type of the document.
+     * @param ranges      The ranges to send, at least one, all overlapping the document.
+     * @param keepAlive   Whether the connection stays open after the response.
+     * @return {@link HttpResponse} - the response, with a <code>Content-Range</code> header if it sends a single range.
+     */
+    public static HttpResponse toResponse(FileCache.CachedFile document, String contentType, List<ByteRange> ranges, boolean keepAlive) {
+
+        if (ranges.size() == 1) {
+            ByteRange range = ranges.get(0);
+            HttpResponse response;
+            if (document.isStreamed()) {
+                List<HttpResponse.FileRegion> fileRegions = List.of(new HttpResponse.FileRegion(range.first(), range.length(), ByteBuffer.allocate(0)));
+                response = new HttpResponse(PARTIAL_CONTENT, contentType, document.path(), ByteBuffer.allocate(0), fileRegions, range.length(), keepAlive);
+            } else {
+                ByteBuffer content = document.content().duplicate();
+                content.position(content.position() + (int) range.first()).limit(content.position() + (int) range.length());
+                response = new HttpResponse(PARTIAL_CONTENT, contentType, content, keepAlive);
+            }
+            return response.addHeader("Content-Range", contentRange(range, document.size()));
+        }
+
+        //* Several ranges are sent as the parts of a multipart body, each with its own headers
+        String multipartType = "multipart/byteranges; boundary=" + BOUNDARY;
+        byte[][] partHeads = new byte[ranges.size() + 1][];
+        long contentLength = 0;
+        for (int part = 0; part < ranges.size(); part++) {
+            partHeads[part] = ((part > 0 ? "\r\n" : "") + "--" + BOUNDARY + "\r\n"
+                    + "Content-Type: " + contentType + "\r\n"
+                    + "Content-Range: " + contentRange(ranges.get(part), document.size()) + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+            contentLength += partHeads[part].length + ranges.get(part).length();
+        }
+        partHeads[ranges.size()] = ("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        contentLength += partHeads[ranges.size()].length;
+
+        if (document.isStreamed()) {
+            // Each region is followed by the head of the next part, and the last one by the closing boundary
+            List<HttpResponse.FileRegion> fileRegions = new ArrayList<>(ranges.size());
+            for (int part = 0; part < ranges.size(); part++) {
+                fileRegions.add(new HttpResponse.FileRegion(ranges.get(part).first(), ranges.get(part).length(), ByteBuffer.wrap(partHeads[part + 1])));
+            }
+            return new HttpResponse(PARTIAL_CONTENT, multipartType, document.path(), ByteBuffer.wrap(partHeads[0]), fileRegions, contentLength, keepAlive);
+        }
+
+        // Documents in memory are smaller than the streaming threshold, so the parts are copied into a single body
+        ByteArrayOutputStream body = new ByteArrayOutputStream((int) contentLength);
+        for (int part = 0; part < ranges.size(); part++) {
+            body.writeBytes(partHeads[part]);
+            ByteBuffer content = document.content().duplicate();
+            byte[] rangeBytes = new byte[(int) ranges.get(part).length()];
+            content.position(content.position() + (int) ranges.get(part).first()).get(rangeBytes);
+            body.writeBytes(rangeBytes);
+        }
+        body.writeBytes(partHeads[ranges.size()]);
+        return new HttpResponse(PARTIAL_CONTENT, multipartType, body.toByteArray(), keepAlive);
+    }
+
+    /**
+     * Formats the value of a <code>Content-Range</code> header.
+     *
+     * @param range        The range sent.
+     * @param documentSize The document's size, in bytes.
+     * @return <code>String</code> - the header's value, such as <code>bytes 0-499/1234</code>.
+     */
+    private static String contentRange(ByteRange range, long documentSize) {
+        return "bytes " + range.first() + "-" + range.last() + "/" + documentSize;
+    }
+
+}
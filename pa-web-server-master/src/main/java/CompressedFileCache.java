@@ -0,0 +1,280 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The gzip encoded variants of the served documents, compressed once and shared by every request. <p>
+ * A variant is kept while the document's modification time and size don't change, so each file is only compressed again after it is modified.
+ * Documents that don't get smaller are remembered too, so they aren't compressed on every request. <p>
+ * The cache is bounded by a number of compressed bytes. Once it is full, the least recently used variants are evicted to make room for new ones.
+ * A variant larger than the whole cache isn't kept, and its document is remembered as not compressible, so it is served
+ * without encoding rather than compressed on every request.
+ */
+public class CompressedFileCache {
+
+    /**
+     * The gzip encoded variant of a document, as it was when it was compressed.
+     *
+     * @param sourceLastModified The document's modification time when it was compressed, in milliseconds since the epoch.
+     * @param sourceSize         The document's size when it was compressed, in bytes.
+     * @param compressed         The compressed document, or null if it doesn't get smaller when compressed, or is too large to be kept.
+     */
+    private record Variant(long sourceLastModified, long sourceSize, FileCache.CachedFile compressed) {
+
+        /**
+         * @return <code>long</code> - number of bytes the variant counts against the cache's size.
+         */
+        long cachedBytes() {
+            return compressed != null ? compressed.size() : 0;
+        }
+
+    }
+
+    /**
+     * Maximum number of bytes of compressed content kept in memory.
+     */
+    private final long maximumBytes;
+    /**
+     * Size in bytes below which documents aren't compressed, because the headers would outweigh the savings.
+     */
+    private final long minimumBytes;
+    /**
+     * The gzip compression level, from 1 (fastest) to 9 (smallest).
+     */
+    private final int level;
+
+    /**
+     * The compressed variants, by the path of the document. Read without locks, changed only while holding the eviction lock.
+     */
+    private final Map<Path, Variant> variants = new ConcurrentHashMap<>();
+    /**
+     * The lock responsible for the eviction order and the number of cached bytes.
+     */
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    /**
+     * The compressed variants, from the least to the most recently used.
+     */
+    private final LinkedHashMap<Path, Variant> evictionOrder = new LinkedHashMap<>(16, 0.75f, true);
+    /**
+     * Number of bytes of compressed content currently cached.
+     */
+    private long cachedBytes;
+
+    /**
+     * Constructor for the cache of the documents' compressed variants.
+     *
+     * @param maximumBytes Maximum number of bytes of compressed content kept in memory.
+     * @param minimumBytes Size in bytes below which documents aren't compressed.
+     * @param level        The gzip compression level, from 1 (fastest) to 9 (smallest).
+     */
+    public CompressedFileCache(long maximumBytes, long minimumBytes, int level) {
+        this.maximumBytes = maximumBytes;
+        this.minimumBytes = minimumBytes;
+        this.level = Math.max(1, Math.min(9, level));
+    }
+
+    /**
+     * Gets the gzip encoded variant of a document, compressing it if it changed since it was last compressed.
+     *
+     * @param document The document's current content, which must be in memory.
+     * @return {@link FileCache.CachedFile} - the compressed document, or null if it is too small, doesn't get smaller when compressed,
+     * or its variant is too large to be kept.
+     * @throws IOException if the document can't be compressed.
+     */
+    public FileCache.CachedFile get(FileCache.CachedFile document) throws IOException {
+
+        if (document.isStreamed() || document.size() < minimumBytes) {
+            return null;
+        }
+
+        Variant variant = variants.get(document.path());
+        if (variant != null && variant.sourceLastModified() == document.lastModified() && variant.sourceSize() == document.size()) {
+            recordAccess(document.path());
+            return variant.compressed();
+        }
+
+        byte[] compressedContent = compress(document.content().duplicate());
+        FileCache.CachedFile compressed = compressedContent.length < document.size()
+                ? new FileCache.CachedFile(document.path(), ByteBuffer.wrap(compressedContent).asReadOnlyBuffer(), document.lastModified(), compressedContent.length)
+                : null;
+        return admit(document.path(), new Variant(document.lastModified(), document.size(), compressed)).compressed();
+    }
+
+    /**
+     * Removes a document's variant from the cache, so its next lookup compresses it again.
+     *
+     * @param path The document's path.
+     */
+    public void invalidate(Path path) {
+        evictionLock.lock();
+        try {
+            Variant removedVariant = variants.remove(path);
+            if (removedVariant != null) {
+                evictionOrder.remove(path);
+                cachedBytes -= removedVariant.cachedBytes();
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Removes the variants of the documents of a folder and of its subfolders, such as when the folder is deleted or replaced.
+     *
+     * @param folder The folder's path.
+     */
+    public void invalidateFolder(Path folder) {
+        evictionLock.lock();
+        try {
+            Iterator<Map.Entry<Path, Variant>> variantsInOrder = evictionOrder.entrySet().iterator();
+            while (variantsInOrder.hasNext()) {
+                Map.Entry<Path, Variant> variant = variantsInOrder.next();
+                if (variant.getKey().startsWith(folder)) {
+                    variantsInOrder.remove();
+                    variants.remove(variant.getKey());
+                    cachedBytes -= variant.getValue().cachedBytes();
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * @return <code>long</code> - number of bytes of compressed content currently cached.
+     */
+    public long getCachedBytes() {
+        evictionLock.lock();
+        try {
+            return cachedBytes;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Records a cache hit in the eviction order. <p>
+     * Hits don't wait for the eviction lock: if another thread holds it, the access isn't recorded,
+     * which only makes the eviction order slightly less precise.
+     *
+     * @param path The accessed document's path.
+     */
+    private void recordAccess(Path path) {
+        if (evictionLock.tryLock()) {
+            try {
+                evictionOrder.get(path);
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Adds a variant that was just compressed to the cache, replacing the stale one and evicting the least recently used variants until it fits.
+     * A variant larger than the whole cache is replaced by one without content, so its document is served without encoding until it changes.
+     *
+     * @param path    The document's path.
+     * @param variant The variant.
+     * @return {@link Variant} - the variant kept in the cache.
+     */
+    private Variant admit(Path path, Variant variant) {
+
+        Variant admittedVariant = variant.cachedBytes() > maximumBytes
+                ? new Variant(variant.sourceLastModified(), variant.sourceSize(), null)
+                : variant;
+
+        evictionLock.lock();
+        try {
+            // The stale variant, or the one another thread compressed meanwhile
+            Variant replacedVariant = variants.remove(path);
+            if (replacedVariant != null) {
+                evictionOrder.remove(path);
+                cachedBytes -= replacedVariant.cachedBytes();
+            }
+            Iterator<Map.Entry<Path, Variant>> variantsInOrder = evictionOrder.entrySet().iterator();
+            while (cachedBytes + admittedVariant.cachedBytes() > maximumBytes && variantsInOrder.hasNext()) {
+                Map.Entry<Path, Variant> evictedVariant = variantsInOrder.next();
+                variantsInOrder.remove();
+                variants.remove(evictedVariant.getKey());
+                cachedBytes -= evictedVariant.getValue().cachedBytes();
+            }
+            variants.put(path, admittedVariant);
+            evictionOrder.put(path, admittedVariant);
+            cachedBytes += admittedVariant.cachedBytes();
+        } finally {
+            evictionLock.unlock();
+        }
+        return admittedVariant;
+    }
+
+    /**
+     * Compresses content in the gzip format.
+     *
+     * @param content The content, from its position to its limit.
+     * @return <code>byte[]</code> - the compressed content.
+     * @throws IOException if the content can't be compressed.
+     */
+    private byte[] compress(ByteBuffer content) throws IOException {
+        byte[] uncompressed = new byte[content.remaining()];
+        content.get(uncompressed);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(uncompressed.length / 4 + 64);
+        try (GZIPOutputStream gzipOutput = new GZIPOutputStream(compressed) {
+            {
+                def.setLevel(level);
+            }
+        }) {
+            gzipOutput.write(uncompressed);
+        }
+        return compressed.toByteArray();
+    }
+
+    /**
+     * Checks if a client accepts gzip encoded responses, as listed by its <code>Accept-Encoding</code> header.
+     *
+     * @param acceptEncoding The value of the request's <code>Accept-Encoding</code> header, or null if the request doesn't have it.
+     * @return <code>boolean</code>
+     * <ul>
+     *     <li> <strong>true -</strong> if gzip, or any encoding, is listed without a zero quality.</li>
+     *     <li> <strong>false -</strong> if the header is missing, or gzip isn't acceptable.</li>
+     * </ul>
+     */
+    public static boolean acceptsGzip(String acceptEncoding) {
+
+        if (acceptEncoding == null) {
+            return false;
+        }
+
+        boolean wildcardAccepted = false;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parameters = coding.split(";");
+            String name = parameters[0].trim().toLowerCase(Locale.ROOT);
+            boolean accepted = true;
+            for (int parameter = 1; parameter < parameters.length; parameter++) {
+                String qualityParameter = parameters[parameter].trim();
+                if (qualityParameter.startsWith("q=") || qualityParameter.startsWith("Q=")) {
+                    try {
+                        accepted = Double.parseDouble(qualityParameter.substring(2).trim()) > 0;
+                    } catch (NumberFormatException exception) {
+                        accepted = false;
+                    }
+                }
+            }
+            if (name.equals("gzip") || name.equals("x-gzip")) {
+                return accepted; // An explicit gzip entry overrides the wildcard
+            }
+            if (name.equals("*")) {
+                wildcardAccepted = accepted;
+            }
+        }
+        return wildcardAccepted;
+    }
+
+}
@@ -0,0 +1,137 @@
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+
+/**
+ * The validators of the served documents, and the evaluation of the conditional requests that revalidate them. <p>
+ * A document's entity tag is derived from its modification time and size, so it is computed without reading the file,
+ * and changes whenever the file is modified. Each encoding of a document has its own entity tag.
+ */
+public final class ConditionalRequests {
+
+    /**
+     * The format of the dates sent in the responses' headers (IMF-fixdate).
+     */
+    private static final DateTimeFormatter HTTP_DATE_FORMAT = DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US).withZone(ZoneOffset.UTC);
+
+    /**
+     * The validators are only computed through the static methods.
+     */
+    private ConditionalRequests() {
+    }
+
+    /**
+     * Builds the strong entity tag of a document.
+     *
+     * @param lastModified    The document's modification time, in milliseconds since the epoch.
+     * @param size            The document's size, in bytes.
+     * @param contentEncoding The encoding the document is sent with (gzip), or null if it is sent as is.
+     * @return <code>String</code> - the quoted entity tag.
+     */
+    public static String entityTag(long lastModified, long size, String contentEncoding) {
+        String entityTag = "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(size);
+        return contentEncoding != null ? entityTag + "-" + contentEncoding + "\"" : entityTag + "\"";
+    }
+
+    /**
+     * Formats a time as an HTTP date, with a precision of seconds.
+     *
+     * @param time The time, in milliseconds since the epoch.
+     * @return <code>String</code> - the date, such as <code>Sun, 06 Nov 1994 08:49:37 GMT</code>.
+     */
+    public static String formatHttpDate(long time) {
+        return HTTP_DATE_FORMAT.format(Instant.ofEpochMilli(time));
+    }
+
+    /**
+     * Parses an HTTP date.
+     *
+     * @param date The date, such as <code>Sun, 06 Nov 1994 08:49:37 GMT</code>.
+     * @return <code>long</code> - the time, in milliseconds since the epoch, or -1 if the date is invalid.
+     */
+    public static long parseHttpDate(String date) {
+        try {
+            return ZonedDateTime.parse(date.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException exception) {
+            return -1;
+        }
+    }
+
+    /**
+     * Checks if the client's copy of a document is still current, so the document is answered with a 304 Not Modified. <p>
+     * The entity tags are compared first, the modification date is only used when the client doesn't send entity tags.
+     *
+     * @param ifNoneMatch     The value of the request's <code>If-None-Match</code> header, or null if the request doesn't have it.
+     * @param ifModifiedSince The value of the request's <code>If-Modified-Since</code> header, or null if the request doesn't have it.
+     * @param entityTag       The document's current entity tag.
+     * @param lastModified    The document's modification time, in milliseconds since the epoch.
+     * @return <code>boolean</code>
+     * <ul>
+     *     <li> <strong>true -</strong> if the client's entity tag matches, or its copy isn't older than the document.</li>
+     *     <li> <strong>false -</strong> if the document changed, or the request isn't conditional.</li>
+     * </ul>
+     */
+    public static boolean isNotModified(String ifNoneMatch, String ifModifiedSince, String entityTag, long lastModified) {
+        if (ifNoneMatch != null) {
+            return matchesEntityTag(ifNoneMatch, entityTag);
+        }
+        if (ifModifiedSince != null) {
+            long modifiedSince = parseHttpDate(ifModifiedSince);
+            // Dates only have a precision of seconds
+            return modifiedSince >= 0 && lastModified / 1000 <= modifiedSince / 1000;
+        }
+        return false;
+    }
+
+    /**
+     * Checks if the ranges of a request can be sent, because the copy the client is completing is still current.
+     * Unlike the revalidation, the entity tags are compared strongly, and the dates must be equal.
+     *
+     * @param ifRange      The value of the request's <code>If-Range</code> header, or null if the request doesn't have it.
+     * @param entityTag    The document's current entity tag.
+     * @param lastModified The document's modification time, in milliseconds since the epoch.
+     * @return <code>boolean</code>
+     * <ul>
+     *     <li> <strong>true -</strong> if the request isn't conditional, or the client's entity tag or date is the document's.</li>
+     *     <li> <strong>false -</strong> if the document changed, so the whole document is sent instead of the ranges.</li>
+     * </ul>
+     */
+    public static boolean isRangeCurrent(String ifRange, String entityTag, long lastModified) {
+        if (ifRange == null) {
+            return true;
+        }
+        String validator = ifRange.trim();
+        if (validator.startsWith("\"") || validator.startsWith("W/")) {
+            return validator.equals(entityTag);
+        }
+        long date = parseHttpDate(validator);
+        return date >= 0 && lastModified / 1000 == date / 1000;
+    }
+
+    /**
+     * Checks if an entity tag is listed by an <code>If-None-Match</code> header, with the weak comparison.
+     *
+     * @param ifNoneMatch The header's value, a list of entity tags or <code>*</code>.
+     * @param entityTag   The entity tag.
+     * @return <code>boolean</code> - whether the header lists the entity tag, weak or strong, or is <code>*</code>.
+     */
+    public static boolean matchesEntityTag(String ifNoneMatch, String entityTag) {
+        for (String listedTag : ifNoneMatch.split(",")) {
+            String tag = listedTag.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(entityTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
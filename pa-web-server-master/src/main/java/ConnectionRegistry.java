@@ -0,0 +1,282 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The clients connected to the server, shared by the threads accepting and serving them. <p>
+ * Connections are indexed by an id given when they are accepted, so they are added and removed in constant time without a global lock,
+ * and can be iterated while clients connect and disconnect, to close the idle ones or to shut the server down.
+ */
+public class ConnectionRegistry {
+
+    /**
+     * The state of a client's connection. <p>
+     * It is updated only by the thread serving the connection, and read by any thread.
+     */
+    public static class Connection {
+
+        /**
+         * The connection's id, unique while the server runs.
+         */
+        private final long id;
+        /**
+         * The client's socket or channel, closed to end the connection.
+         */
+        private final Closeable channel;
+        /**
+         * The client's address.
+         */
+        private final SocketAddress remoteAddress;
+        /**
+         * The value of {@link System#nanoTime()} when the client was accepted.
+         */
+        private final long startTime;
+        /**
+         * Number of bytes received from the client.
+         */
+        private volatile long bytesIn;
+        /**
+         * Number of bytes sent to the client.
+         */
+        private volatile long bytesOut;
+        /**
+         * The value of {@link System#nanoTime()} the last time the connection was read or written.
+         */
+        private volatile long lastActivityTime;
+        /**
+         * Whether a request of the connection is being answered.
+         */
+        private volatile boolean busy;
+
+        /**
+         * Constructor for the state of a client's connection.
+         *
+         * @param id            The connection's id.
+         * @param channel       The client's socket or channel.
+         * @param remoteAddress The client's address.
+         * @param startTime     The value of {@link System#nanoTime()} when the client was accepted.
+         */
+        private Connection(long id, Closeable channel, SocketAddress remoteAddress, long startTime) {
+            this.id = id;
+            this.channel = channel;
+            this.remoteAddress = remoteAddress;
+            this.startTime = startTime;
+            this.lastActivityTime = startTime;
+        }
+
+        /**
+         * Records bytes received from the client. Must only be called by the thread serving the connection.
+         *
+         * @param bytes The number of bytes received.
+         */
+        public void recordBytesIn(long bytes) {
+            if (bytes > 0) {
+                //noinspection NonAtomicOperationOnVolatileField (single writer)
+                bytesIn += bytes;
+                lastActivityTime = System.nanoTime();
+            }
+        }
+
+        /**
+         * Records bytes sent to the client. Must only be called by the thread serving the connection.
+         *
+         * @param bytes The number of bytes sent.
+         */
+        public void recordBytesOut(long bytes) {
+            if (bytes > 0) {
+                //noinspection NonAtomicOperationOnVolatileField (single writer)
+                bytesOut += bytes;
+                lastActivityTime = System.nanoTime();
+            }
+        }
+
+        /**
+         * Marks the connection as answering a request, or as waiting for the client's next request.
+         *
+         * @param busy Whether a request of the connection is being answered.
+         */
+        public void setBusy(boolean busy) {
+            this.busy = busy;
+            this.lastActivityTime = System.nanoTime();
+        }
+
+        /**
+         * Checks if the connection has been waiting for the client since a given time.
+         *
+         * @param deadline A value of {@link System#nanoTime()}.
+         * @return <code>boolean</code>
+         * <ul>
+         *     <li> <strong>true -</strong> if no request is being answered, and the connection has been idle since before the deadline.</li>
+         *     <li> <strong>false -</strong> if a request is being answered, or the connection was read or written after the deadline.</li>
+         * </ul>
+         */
+        public boolean isIdleSince(long deadline) {
+            return !busy && lastActivityTime - deadline < 0;
+        }
+
+        /**
+         * Closes the client's socket or channel. The thread serving the connection fails on its next read or write, and removes it from the registry.
+         */
+        public void close() {
+            try {
+                channel.close();
+            } catch (IOException exception) {
+                DiagnosticLog.info(exception.getMessage());
+            }
+        }
+
+        /**
+         * @return <code>long</code> - the connection's id, unique while the server runs.
+         */
+        public long getId() {
+            return id;
+        }
+
+        /**
+         * @return {@link SocketAddress} - the client's address.
+         */
+        public SocketAddress getRemoteAddress() {
+            return remoteAddress;
+        }
+
+        /**
+         * @return <code>long</code> - the value of {@link System#nanoTime()} when the client was accepted.
+         */
+        public long getStartTime() {
+            return startTime;
+        }
+
+        /**
+         * @return <code>long</code> - number of bytes received from the client.
+         */
+        public long getBytesIn() {
+            return bytesIn;
+        }
+
+        /**
+         * @return <code>long</code> - number of bytes sent to the client.
+         */
+        public long getBytesOut() {
+            return bytesOut;
+        }
+
+        /**
+         * @return <code>long</code> - the value of {@link System#nanoTime()} the last time the connection was read or written.
+         */
+        public long getLastActivityTime() {
+            return lastActivityTime;
+        }
+
+        /**
+         * @return <code>boolean</code> - whether a request of the connection is being answered.
+         */
+        public boolean isBusy() {
+            return busy;
+        }
+
+        @Override
+        public String toString() {
+            return "Connection[id=" + id + ",remote=" + remoteAddress + "]";
+        }
+
+    }
+
+    /**
+     * The id given to the next connection.
+     */
+    private final AtomicLong nextId = new AtomicLong();
+    /**
+     * The open connections, by id.
+     */
+    private final Map<Long, Connection> connections = new ConcurrentHashMap<>();
+    /**
+     * Whether the server is shutting down, so the connections are closed after their current response.
+     */
+    private volatile boolean draining;
+
+    /**
+     * Adds an accepted client to the registry.
+     *
+     * @param channel       The client's socket or channel, closed to end the connection.
+     * @param remoteAddress The client's address.
+     * @param acceptedTime  The value of {@link System#nanoTime()} when the client was accepted.
+     * @return {@link Connection} - the state of the client's connection, to be removed when the connection ends.
+     */
+    public Connection register(Closeable channel, SocketAddress remoteAddress, long acceptedTime) {
+        Connection connection = new Connection(nextId.incrementAndGet(), channel, remoteAddress, acceptedTime);
+        connections.put(connection.getId(), connection);
+        return connection;
+    }
+
+    /**
+     * Removes a connection that ended from the registry.
+     *
+     * @param connection The connection.
+     */
+    public void unregister(Connection connection) {
+        connections.remove(connection.getId());
+    }
+
+    /**
+     * @return <code>int</code> - number of open connections.
+     */
+    public int size() {
+        return connections.size();
+    }
+
+    /**
+     * The open connections, which can be iterated while clients connect and disconnect.
+     * The iteration includes the connections open when it started, and may include the ones opened since.
+     *
+     * @return {@link Collection} - a live view of the open connections.
+     */
+    public Collection<Connection> connections() {
+        return connections.values();
+    }
+
+    /**
+     * Closes the connections waiting for their client since before a deadline. Connections answering a request are left open.
+     *
+     * @param deadline A value of {@link System#nanoTime()}.
+     * @return <code>int</code> - number of connections closed.
+     */
+    public int closeIdleSince(long deadline) {
+        int closed = 0;
+        for (Connection connection : connections.values()) {
+            if (connection.isIdleSince(deadline)) {
+                connection.close();
+                closed++;
+            }
+        }
+        return closed;
+    }
+
+    /**
+     * Marks the server as shutting down. The connections answer the request they are serving, without keeping the connection alive,
+     * and the idle ones are closed.
+     */
+    public void drain() {
+        draining = true;
+    }
+
+    /**
+     * @return <code>boolean</code> - whether the server is shutting down, so no connection is kept alive after its current response.
+     */
+    public boolean isDraining() {
+        return draining;
+    }
+
+    /**
+     * Closes every open connection.
+     */
+    public void closeAll() {
+        for (Connection connection : connections.values()) {
+            connection.close();
+        }
+    }
+
+}
@@ -0,0 +1,225 @@
+import java.io.PrintStream;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The server's diagnostic messages, written to the standard output by a background thread. <p>
+ * Messages are added to a lock-free bounded queue, so the threads serving the clients never wait for the console.
+ * The writer prints them in batches, and messages are dropped when the queue is full. <p>
+ * The level is configured by <code>server.diagnostics.level</code>. A disabled level costs a single read,
+ * messages that are expensive to build should be guarded by {@link #isDebugEnabled()}.
+ */
+public final class DiagnosticLog {
+
+    /**
+     * A message waiting to be written. It is formatted by the writer, not by the thread that logged it.
+     *
+     * @param timestamp  The time the message was logged, in milliseconds since the epoch.
+     * @param level      The message's level.
+     * @param threadName The name of the thread that logged the message.
+     * @param message    The message.
+     */
+    private record Entry(long timestamp, ServerSettings.DiagnosticLevel level, String threadName, String message) {
+    }
+
+    /**
+     * The format of the time each message was logged.
+     */
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss:SSS");
+    /**
+     * The number of messages that can wait to be written.
+     */
+    private static final int CAPACITY = 8192;
+    /**
+     * Maximum number of messages written at once.
+     */
+    private static final int BATCH_SIZE = 256;
+    /**
+     * Maximum time in nanoseconds the writer waits for messages before checking again.
+     */
+    private static final long WAIT_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * The messages waiting to be written.
+     */
+    private static final MpscRingBuffer<Entry> entries = new MpscRingBuffer<>(CAPACITY);
+    /**
+     * Number of messages that weren't written because the queue was full.
+     */
+    private static final LongAdder droppedMessages = new LongAdder();
+    /**
+     * The most detailed level of the messages written.
+     */
+    private static volatile ServerSettings.DiagnosticLevel level = ServerSettings.DiagnosticLevel.INFO;
+    /**
+     * The writer while it waits for messages, or null while it is writing.
+     */
+    private static volatile Thread waitingWriter;
+    /**
+     * Whether the writer stops once it has written the remaining messages.
+     */
+    private static volatile boolean stopping;
+    /**
+     * The thread that writes the messages.
+     */
+    private static final Thread writer = new Thread(DiagnosticLog::writeMessages, "diagnostic-log");
+    /**
+     * The shutdown hook that stops the writer when the JVM exits, unless the server stops it itself.
+     */
+    private static final Thread shutdownHook = new Thread(DiagnosticLog::stop, "diagnostic-log-shutdown");
+
+    static {
+        writer.setDaemon(true);
+        writer.start();
+        // The messages still waiting are written when the server exits
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * The diagnostic log is only used through its static methods.
+     */
+    private DiagnosticLog() {
+    }
+
+    /**
+     * Leaves stopping the writer to the caller, which calls {@link #stop()} once it logged its last messages.
+     * Shutdown hooks run concurrently, so the writer's own hook could stop it before the messages of the server's shutdown.
+     */
+    public static void detachShutdownHook() {
+        Runtime.getRuntime().removeShutdownHook(shutdownHook);
+    }
+
+    /**
+     * Sets the most detailed level of the messages written.
+     *
+     * @param newLevel The level, OFF disables every message.
+     */
+    public static void setLevel(ServerSettings.DiagnosticLevel newLevel) {
+        level = newLevel;
+    }
+
+    /**
+     * @return <code>boolean</code> - whether the information messages, such as errors and the server's state, are written.
+     */
+    public static boolean isInfoEnabled() {
+        return level.compareTo(ServerSettings.DiagnosticLevel.INFO) >= 0;
+    }
+
+    /**
+     * @return <code>boolean</code> - whether the debug messages, such as the requests being served, are written.
+     */
+    public static boolean isDebugEnabled() {
+        return level.compareTo(ServerSettings.DiagnosticLevel.DEBUG) >= 0;
+    }
+
+    /**
+     * Logs an information message, such as an error or a change of the server's state.
+     *
+     * @param message The message.
+     */
+    public static void info(String message) {
+        if (isInfoEnabled()) {
+            enqueue(ServerSettings.DiagnosticLevel.INFO, message);
+        }
+    }
+
+    /**
+     * Logs a debug message, such as the progress of a request.
+     *
+     * @param message The message.
+     */
+    public static void debug(String message) {
+        if (isDebugEnabled()) {
+            enqueue(ServerSettings.DiagnosticLevel.DEBUG, message);
+        }
+    }
+
+    /**
+     * @return <code>long</code> - number of messages that weren't written because the queue was full.
+     */
+    public static long getDroppedMessages() {
+        return droppedMessages.sum();
+    }
+
+    /**
+     * Adds a message to the queue, and wakes the writer up if it is waiting.
+     *
+     * @param messageLevel The message's level.
+     * @param message      The message.
+     */
+    private static void enqueue(ServerSettings.DiagnosticLevel messageLevel, String message) {
+        if (!entries.offer(new Entry(System.currentTimeMillis(), messageLevel, Thread.currentThread().getName(), message))) {
+            droppedMessages.increment();
+            return;
+        }
+        Thread waiting = waitingWriter;
+        if (waiting != null) {
+            LockSupport.unpark(waiting);
+        }
+    }
+
+    /**
+     * Main cycle of the writer, it prints the messages in batches as they arrive, until the server exits.
+     */
+    private static void writeMessages() {
+
+        PrintStream output = System.out;
+        StringBuilder batch = new StringBuilder();
+
+        while (!stopping) {
+            if (entries.drain(entry -> append(batch, entry), BATCH_SIZE) == 0) {
+                waitingWriter = Thread.currentThread();
+                // Checked after publishing the writer, so a message added in between still wakes it up
+                if (entries.isEmpty() && !stopping) {
+                    LockSupport.parkNanos(WAIT_INTERVAL);
+                }
+                waitingWriter = null;
+                continue;
+            }
+            output.print(batch);
+            output.flush();
+            batch.setLength(0);
+        }
+
+        //* Write the messages still waiting before stopping
+        while (entries.drain(entry -> append(batch, entry), BATCH_SIZE) > 0) {
+            output.print(batch);
+            batch.setLength(0);
+        }
+        output.flush();
+
+    }
+
+    /**
+     * Appends a message to the batch being written, as a line.
+     *
+     * @param batch The messages not yet written.
+     * @param entry The message.
+     */
+    private static void append(StringBuilder batch, Entry entry) {
+        TIMESTAMP_FORMAT.formatTo(LocalDateTime.ofInstant(Instant.ofEpochMilli(entry.timestamp()), ZoneId.systemDefault()), batch);
+        batch.append(' ').append(entry.level())
+                .append(" [").append(entry.threadName()).append("] ")
+                .append(entry.message())
+                .append('\n');
+    }
+
+    /**
+     * Stops the writer once it has written the messages still waiting.
+     */
+    public static void stop() {
+        try {
+            stopping = true;
+            LockSupport.unpark(writer);
+            writer.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,265 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An index of the documents under the server's root, built when the server starts. <p>
+ * The root is walked in parallel, one task per folder, and the attributes of every regular file are recorded,
+ * so a route is resolved with a hash lookup instead of a filesystem call, and missing documents are known without one.
+ * The smallest documents can also be read into memory before the first request, up to a number of bytes. <p>
+ * When the root is watched, the {@link WatchDocumentsThread} updates the documents that change, otherwise the index
+ * is a snapshot of the root, and documents added, changed or removed afterwards are only seen by a new index.
+ */
+public class DocumentIndex {
+
+    /**
+     * The attributes of an indexed document.
+     *
+     * @param path         The document's path.
+     * @param lastModified The document's modification time, in milliseconds since the epoch.
+     * @param size         The document's size, in bytes.
+     */
+    public record Entry(Path path, long lastModified, long size) {
+    }
+
+    /**
+     * The folder that was indexed.
+     */
+    private final Path root;
+    /**
+     * The indexed documents, by normalized path.
+     */
+    private final Map<Path, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor for an empty index of a folder's documents, filled by {@link #scan(int)}.
+     *
+     * @param root The folder to index.
+     */
+    public DocumentIndex(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+    }
+
+    /**
+     * Walks a folder and its subfolders in parallel, and indexes every regular file.
+     *
+     * @param root        The folder to index.
+     * @param parallelism Number of threads walking the folders.
+     * @return {@link DocumentIndex} - the index of the folder's documents.
+     * @throws IOException if the folder can't be read.
+     */
+    public static DocumentIndex build(Path root, int parallelism) throws IOException {
+        DocumentIndex documentIndex = new DocumentIndex(root);
+        documentIndex.scan(parallelism);
+        return documentIndex;
+    }
+
+    /**
+     * Walks the indexed folder and its subfolders in parallel, and indexes every regular file, replacing the documents indexed before.
+     *
+     * @param parallelism Number of threads walking the folders.
+     * @throws IOException if the folder can't be read.
+     */
+    public void scan(int parallelism) throws IOException {
+
+        Map<Path, Entry> scannedEntries = new ConcurrentHashMap<>();
+        ForkJoinPool walkers = new ForkJoinPool(Math.max(1, parallelism));
+        try {
+            walkers.submit(new IndexFolder(root, scannedEntries)).get();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while indexing " + root, exception);
+        } catch (ExecutionException exception) {
+            throw new IOException("Couldn't index " + root + ": " + exception.getCause().getMessage(), exception.getCause());
+        } finally {
+            walkers.shutdown();
+        }
+        // The scanned documents are added before the others are removed, so the documents that didn't change are never missing
+        entries.putAll(scannedEntries);
+        entries.keySet().retainAll(scannedEntries.keySet());
+    }
+
+    /**
+     * Indexes the current attributes of a document that changed, or of a folder's documents if it is a folder.
+     * Paths that no longer exist are removed from the index, with the documents under them.
+     *
+     * @param path The path that changed, under the indexed folder.
+     */
+    public void update(Path path) {
+
+        Path normalizedPath = path.toAbsolutePath().normalize();
+        if (!normalizedPath.startsWith(root)) {
+            return;
+        }
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(normalizedPath, BasicFileAttributes.class);
+            if (attributes.isRegularFile()) {
+                entries.put(normalizedPath, new Entry(normalizedPath, attributes.lastModifiedTime().toMillis(), attributes.size()));
+            } else if (attributes.isDirectory()) {
+                new IndexFolder(normalizedPath, entries).invoke();
+            } else {
+                entries.remove(normalizedPath);
+            }
+        } catch (IOException exception) {
+            // The path was removed, it was either a document or a folder of documents
+            if (entries.remove(normalizedPath) == null) {
+                entries.keySet().removeIf(indexedPath -> indexedPath.startsWith(normalizedPath));
+            }
+        }
+    }
+
+    /**
+     * The task that indexes the files of a folder, and forks a task for each of its subfolders.
+     */
+    private static class IndexFolder extends RecursiveAction {
+
+        /**
+         * The folder indexed by the task.
+         */
+        private final Path folder;
+        /**
+         * The indexed documents, shared by every task.
+         */
+        private final Map<Path, Entry> entries;
+
+        /**
+         * Constructor for the task that indexes a folder.
+         *
+         * @param folder  The folder indexed by the task.
+         * @param entries The indexed documents, shared by every task.
+         */
+        IndexFolder(Path folder, Map<Path, Entry> entries) {
+            this.folder = folder;
+            this.entries = entries;
+        }
+
+        @Override
+        protected void compute() {
+
+            List<IndexFolder> subfolders = new ArrayList<>();
+            try (DirectoryStream<Path> children = Files.newDirectoryStream(folder)) {
+                for (Path child : children) {
+                    // Links aren't followed into folders, so a link loop can't make the walk endless
+                    BasicFileAttributes attributes = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    if (attributes.isDirectory()) {
+                        subfolders.add(new IndexFolder(child, entries));
+                        continue;
+                    }
+                    if (attributes.isSymbolicLink()) {
+                        attributes = Files.readAttributes(child, BasicFileAttributes.class);
+                    }
+                    if (attributes.isRegularFile()) {
+                        entries.put(child, new Entry(child, attributes.lastModifiedTime().toMillis(), attributes.size()));
+                    }
+                }
+            } catch (IOException exception) {
+                DiagnosticLog.info("Couldn't index " + folder + ": " + exception.getMessage());
+            }
+            invokeAll(subfolders);
+
+        }
+
+    }
+
+    /**
+     * Reads the smallest documents into memory, in parallel, until a number of bytes is read.
+     * Memory-mapped documents are mapped and their pages loaded, so the first requests don't wait for page faults.
+     *
+     * @param fileCache       The cache the documents are read into.
+     * @param mappedFileStore The memory-mapped documents, used instead of the cache, or null if the memory-mapped mode is disabled.
+     * @param maximumBytes    Maximum number of bytes read.
+     * @param parallelism     Number of threads reading the documents.
+     * @return <code>long</code> - number of bytes read.
+     * @throws IOException if the reading is interrupted.
+     */
+    public long preload(FileCache fileCache, MappedFileStore mappedFileStore, long maximumBytes, int parallelism) throws IOException {
+
+        // The smallest documents first, so the budget covers as many routes as possible
+        List<Entry> documents = new ArrayList<>();
+        long selectedBytes = 0;
+        for (Entry entry : entries.values().stream().sorted(Comparator.comparingLong(Entry::size)).toList()) {
+            if (selectedBytes + entry.size() > maximumBytes) {
+                break;
+            }
+            documents.add(entry);
+            selectedBytes += entry.size();
+        }
+
+        AtomicLong preloadedBytes = new AtomicLong();
+        ForkJoinPool readers = new ForkJoinPool(Math.max(1, parallelism));
+        try {
+            readers.submit(() -> documents.parallelStream().forEach(entry -> {
+                try {
+                    FileCache.CachedFile document = mappedFileStore != null
+                            ? mappedFileStore.get(entry.path(), entry.lastModified(), entry.size())
+                            : fileCache.get(entry.path(), entry.lastModified(), entry.size());
+                    if (document != null && !document.isStreamed()) {
+                        if (document.content() instanceof MappedByteBuffer mappedContent) {
+                            mappedContent.load();
+                        }
+                        preloadedBytes.addAndGet(document.size());
+                    }
+                } catch (IOException exception) {
+                    DiagnosticLog.info("Couldn't preload " + entry.path() + ": " + exception.getMessage());
+                }
+            })).get();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while preloading " + root, exception);
+        } catch (ExecutionException exception) {
+            throw new IOException("Couldn't preload " + root + ": " + exception.getCause().getMessage(), exception.getCause());
+        } finally {
+            readers.shutdown();
+        }
+        return preloadedBytes.get();
+    }
+
+    /**
+     * Finds an indexed document.
+     *
+     * @param path The document's path, which may contain redundant or relative parts.
+     * @return {@link Entry} - the document's attributes, or null if it isn't a document under the indexed root.
+     */
+    public Entry get(Path path) {
+        return entries.get(path.toAbsolutePath().normalize());
+    }
+
+    /**
+     * @return <code>int</code> - number of indexed documents.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return <code>long</code> - total size of the indexed documents, in bytes.
+     */
+    public long getTotalBytes() {
+        long totalBytes = 0;
+        for (Entry entry : entries.values()) {
+            totalBytes += entry.size();
+        }
+        return totalBytes;
+    }
+
+    /**
+     * @return {@link Path} - the folder that was indexed.
+     */
+    public Path getRoot() {
+        return root;
+    }
+
+}
@@ -0,0 +1,127 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * The locks that coordinate the clients served the same document. <p>
+ * With shared locking, a document is served to every client in parallel, and nothing is locked.
+ * With exclusive locking, each document being served has its own lock, created when a client asks for it and removed
+ * once no client holds or waits for it, so clients served different documents never wait for each other.
+ * A client waiting for a document is woken up when the document is released, instead of polling. <p>
+ * A lock isn't owned by the thread that acquired it, so the non-blocking server releases it from the reactor that finished writing the document.
+ */
+public class DocumentLocks {
+
+    /**
+     * The right to serve a document, acquired before the document is sent and released once it is sent.
+     */
+    public interface Permit {
+
+        /**
+         * Releases the document, waking up the next client waiting for it. Must be called once per acquired permit, from any thread.
+         */
+        void release();
+
+    }
+
+    /**
+     * The permit of the documents served with shared locking, which doesn't lock anything.
+     */
+    private static final Permit SHARED_PERMIT = () -> {
+    };
+
+    /**
+     * The lock of a document served with exclusive locking.
+     */
+    private final class DocumentLock implements Permit {
+
+        /**
+         * The document's path.
+         */
+        private final String documentPath;
+        /**
+         * The single permit of the document, handed to the waiting clients in the order they asked for it.
+         */
+        private final Semaphore semaphore = new Semaphore(1, true);
+        /**
+         * Number of clients holding or waiting for the document. Only changed while the document's entry in the map is locked.
+         */
+        private int users;
+
+        /**
+         * Constructor for the lock of a document.
+         *
+         * @param documentPath The document's path.
+         */
+        private DocumentLock(String documentPath) {
+            this.documentPath = documentPath;
+        }
+
+        @Override
+        public void release() {
+            semaphore.release();
+            leave(this);
+        }
+
+    }
+
+    /**
+     * The locks of the documents held or waited for, by path, with exclusive locking.
+     */
+    private final Map<String, DocumentLock> documentLocks = new ConcurrentHashMap<>();
+    /**
+     * Whether a document can be served to several clients at the same time.
+     */
+    private final boolean shared;
+
+    /**
+     * Constructor for the locks of the served documents.
+     *
+     * @param documentLocking Whether a document can be served to several clients at the same time.
+     */
+    public DocumentLocks(ServerSettings.DocumentLocking documentLocking) {
+        shared = documentLocking == ServerSettings.DocumentLocking.SHARED;
+    }
+
+    /**
+     * Acquires the right to serve a document, waiting until no other client is served it, with exclusive locking.
+     *
+     * @param documentPath The document's path.
+     * @return {@link Permit} - the permit to release once the document is served.
+     * @throws InterruptedException if the thread is interrupted while waiting for the document.
+     */
+    public Permit acquire(String documentPath) throws InterruptedException {
+        if (shared) {
+            return SHARED_PERMIT;
+        }
+        DocumentLock documentLock = documentLocks.compute(documentPath, (path, existingLock) -> {
+            DocumentLock lock = existingLock != null ? existingLock : new DocumentLock(path);
+            lock.users++;
+            return lock;
+        });
+        try {
+            documentLock.semaphore.acquire();
+        } catch (InterruptedException exception) {
+            leave(documentLock);
+            throw exception;
+        }
+        return documentLock;
+    }
+
+    /**
+     * Removes a client from the users of a document's lock, and removes the lock once no client holds or waits for it.
+     *
+     * @param documentLock The document's lock.
+     */
+    private void leave(DocumentLock documentLock) {
+        documentLocks.computeIfPresent(documentLock.documentPath, (path, lock) -> --lock.users == 0 ? null : lock);
+    }
+
+    /**
+     * @return <code>int</code> - number of documents held or waited for by a client, always 0 with shared locking.
+     */
+    public int size() {
+        return documentLocks.size();
+    }
+
+}
@@ -0,0 +1,284 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An in-memory cache of the served files' content, bounded by a number of bytes. <p>
+ * Each lookup checks the file's modification time and size, in a single filesystem call,
+ * and reloads the content if the file changed since it was cached. <p>
+ * When the cache is full, the least recently used files are only evicted if the new file was accessed more often recently
+ * than each of them, as estimated by a {@link FrequencySketch}, so a burst of requests to cold files can't flush the hot pages. <p>
+ * Files larger than the streaming threshold are never read into memory, only their attributes are returned.
+ */
+public class FileCache {
+
+    /**
+     * The content of a file, as it was when it was read. <p>
+     * The content buffer is shared by every thread serving the file, so it must be duplicated before it is read or written.
+     *
+     * @param path         The file's path.
+     * @param content      The file's read-only content, or null if the file is larger than the streaming threshold.
+     * @param lastModified The file's modification time, in milliseconds since the epoch.
+     * @param size         The file's size, in bytes.
+     */
+    public record CachedFile(Path path, ByteBuffer content, long lastModified, long size) {
+
+        /**
+         * @return <code>boolean</code> - whether the file is too large to be read into memory, and is streamed from the filesystem instead.
+         */
+        public boolean isStreamed() {
+            return content == null;
+        }
+
+    }
+
+    /**
+     * Maximum number of bytes of file content kept in memory, or 0 if nothing is cached.
+     */
+    private final long maximumBytes;
+    /**
+     * Size in bytes above which files are streamed from the filesystem instead of read into memory.
+     */
+    private final long streamingThreshold;
+    /**
+     * The server's performance counters.
+     */
+    private final ServerMetrics serverMetrics;
+
+    /**
+     * The cached files, by path. Read without locks, changed only while holding the eviction lock.
+     */
+    private final Map<Path, CachedFile> cachedFiles = new ConcurrentHashMap<>();
+    /**
+     * The lock responsible for the eviction order, the frequency sketch and the number of cached bytes.
+     */
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    /**
+     * The cached files, from the least to the most recently used.
+     */
+    private final LinkedHashMap<Path, CachedFile> evictionOrder = new LinkedHashMap<>(16, 0.75f, true);
+    /**
+     * Estimates how often each file was requested recently.
+     */
+    private final FrequencySketch frequencySketch;
+    /**
+     * Number of bytes of file content currently cached.
+     */
+    private long cachedBytes;
+
+    /**
+     * Constructor for the cache of the served files' content.
+     *
+     * @param maximumBytes       Maximum number of bytes of file content kept in memory, or 0 if nothing is cached.
+     * @param streamingThreshold Size in bytes above which files are streamed from the filesystem instead of read into memory.
+     * @param serverMetrics      The server's performance counters.
+     */
+    public FileCache(long maximumBytes, long streamingThreshold, ServerMetrics serverMetrics) {
+        this.maximumBytes = maximumBytes;
+        this.streamingThreshold = streamingThreshold;
+        this.serverMetrics = serverMetrics;
+        this.frequencySketch = new FrequencySketch((int) Math.min(Integer.MAX_VALUE, maximumBytes / 4096));
+    }
+
+    /**
+     * Gets a file's current content, from memory if it didn't change since it was cached.
+     *
+     * @param path The file's path.
+     * @return {@link CachedFile} - the file's content, or null if the path isn't a regular file.
+     * Files larger than the streaming threshold are returned without their content.
+     * @throws IOException if the file can't be read.
+     */
+    public CachedFile get(Path path) throws IOException {
+
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException exception) {
+            // Most missing paths were never cached, and don't need the eviction lock
+            if (cachedFiles.containsKey(path)) {
+                invalidate(path);
+            }
+            return null;
+        }
+
+        if (!attributes.isRegularFile()) {
+            return null;
+        }
+
+        return get(path, attributes.lastModifiedTime().toMillis(), attributes.size());
+    }
+
+    /**
+     * Gets the content of a file whose attributes are already known, such as from the {@link DocumentIndex}, without checking the filesystem.
+     * The file is only read if it isn't cached with the same modification time and size.
+     *
+     * @param path         The path of a regular file.
+     * @param lastModified The file's modification time, in milliseconds since the epoch.
+     * @param size         The file's size, in bytes.
+     * @return {@link CachedFile} - the file's content, or null if the file no longer exists.
+     * Files larger than the streaming threshold are returned without their content.
+     * @throws IOException if the file can't be read.
+     */
+    public CachedFile get(Path path, long lastModified, long size) throws IOException {
+
+        if (size > streamingThreshold) {
+            return new CachedFile(path, null, lastModified, size);
+        }
+
+        CachedFile cachedFile = cachedFiles.get(path);
+        if (cachedFile != null && cachedFile.lastModified() == lastModified && cachedFile.size() == size) {
+            serverMetrics.recordCacheHit();
+            recordAccess(path);
+            return cachedFile;
+        }
+
+        serverMetrics.recordCacheMiss();
+        byte[] content;
+        try {
+            content = Files.readAllBytes(path);
+        } catch (NoSuchFileException exception) {
+            invalidate(path);
+            return null;
+        }
+        CachedFile loadedFile = new CachedFile(path, ByteBuffer.wrap(content).asReadOnlyBuffer(), lastModified, content.length);
+        admit(loadedFile);
+        return loadedFile;
+    }
+
+    /**
+     * Removes a file from the cache, so its next lookup reads it again.
+     *
+     * @param path The file's path.
+     */
+    public void invalidate(Path path) {
+        evictionLock.lock();
+        try {
+            CachedFile removedFile = cachedFiles.remove(path);
+            if (removedFile != null) {
+                evictionOrder.remove(path);
+                cachedBytes -= removedFile.size();
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Removes the files of a folder and of its subfolders from the cache, such as when the folder is deleted or replaced.
+     *
+     * @param folder The folder's path.
+     */
+    public void invalidateFolder(Path folder) {
+        evictionLock.lock();
+        try {
+            Iterator<CachedFile> cachedFilesInOrder = evictionOrder.values().iterator();
+            while (cachedFilesInOrder.hasNext()) {
+                CachedFile cachedFile = cachedFilesInOrder.next();
+                if (cachedFile.path().startsWith(folder)) {
+                    cachedFilesInOrder.remove();
+                    cachedFiles.remove(cachedFile.path());
+                    cachedBytes -= cachedFile.size();
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * @return <code>long</code> - number of bytes of file content currently cached.
+     */
+    public long getCachedBytes() {
+        evictionLock.lock();
+        try {
+            return cachedBytes;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Records a cache hit in the eviction order and in the frequency sketch. <p>
+     * Hits don't wait for the eviction lock: if another thread holds it, the access isn't recorded,
+     * which only makes the eviction order slightly less precise.
+     *
+     * @param path The accessed file's path.
+     */
+    private void recordAccess(Path path) {
+        if (evictionLock.tryLock()) {
+            try {
+                frequencySketch.increment(path.hashCode());
+                evictionOrder.get(path);
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Adds a file that was just read to the cache, evicting the least recently used files if it is worth it.
+     * The files that would make room are chosen first, and are only evicted if the new file is more frequent than every one of them.
+     * Files larger than an eighth of the cache aren't kept, so a single large file can't flush the hot pages.
+     *
+     * @param loadedFile The file that was just read.
+     */
+    private void admit(CachedFile loadedFile) {
+
+        if (loadedFile.size() > maximumBytes / 8) {
+            return;
+        }
+
+        Path path = loadedFile.path();
+        evictionLock.lock();
+        try {
+
+            frequencySketch.increment(path.hashCode());
+
+            // A stale version of the file is replaced without competing for space
+            CachedFile staleFile = cachedFiles.remove(path);
+            if (staleFile != null) {
+                evictionOrder.remove(path);
+                cachedBytes -= staleFile.size();
+            }
+
+            //* Choose the victims before evicting any of them, so a refused file leaves the cache as it was
+            int candidateFrequency = frequencySketch.frequency(path.hashCode());
+            List<CachedFile> victims = new ArrayList<>();
+            long freedBytes = 0;
+            Iterator<CachedFile> leastRecentlyUsed = evictionOrder.values().iterator();
+            while (cachedBytes - freedBytes + loadedFile.size() > maximumBytes) {
+                CachedFile victim = leastRecentlyUsed.next();
+                if (staleFile == null && frequencySketch.frequency(victim.path().hashCode()) >= candidateFrequency) {
+                    return;
+                }
+                victims.add(victim);
+                freedBytes += victim.size();
+            }
+
+            for (CachedFile victim : victims) {
+                evictionOrder.remove(victim.path());
+                cachedFiles.remove(victim.path());
+                cachedBytes -= victim.size();
+            }
+
+            evictionOrder.put(path, loadedFile);
+            cachedFiles.put(path, loadedFile);
+            cachedBytes += loadedFile.size();
+
+        } finally {
+            evictionLock.unlock();
+        }
+
+    }
+
+}
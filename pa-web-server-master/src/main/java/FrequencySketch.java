@@ -0,0 +1,106 @@
+/**
+ * A count-min sketch that estimates how often each key was accessed recently, in a fixed amount of memory. <p>
+ * Counters saturate at 15, and every counter is halved once enough accesses were recorded,
+ * so the estimates favour keys that are popular now over keys that were popular long ago.
+ * It isn't thread safe, callers must synchronize its use.
+ */
+public class FrequencySketch {
+
+    /**
+     * Maximum value of a counter.
+     */
+    private static final int MAXIMUM_FREQUENCY = 15;
+    /**
+     * Seeds of the hash functions, one per row of counters.
+     */
+    private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+    /**
+     * The counters, one row per hash function, all rows stored one after the other.
+     */
+    private final byte[] counters;
+    /**
+     * Mask that maps a hash to a counter of a row.
+     */
+    private final int rowMask;
+    /**
+     * Number of increments after which every counter is halved.
+     */
+    private final int sampleSize;
+    /**
+     * Number of increments since the counters were last halved.
+     */
+    private int increments;
+
+    /**
+     * Constructor for a sketch sized for a number of distinct keys.
+     *
+     * @param expectedKeys Estimate of the number of distinct keys that are accessed.
+     */
+    public FrequencySketch(int expectedKeys) {
+        int rowSize = Integer.highestOneBit(Math.max(64, Math.min(expectedKeys, 1 << 20)) - 1) << 1;
+        counters = new byte[rowSize * SEEDS.length];
+        rowMask = rowSize - 1;
+        sampleSize = rowSize * 10;
+    }
+
+    /**
+     * Records an access to a key.
+     *
+     * @param keyHash The hash code of the accessed key.
+     */
+    public void increment(int keyHash) {
+
+        boolean incremented = false;
+        for (int row = 0; row < SEEDS.length; row++) {
+            int index = counterIndex(keyHash, row);
+            if (counters[index] < MAXIMUM_FREQUENCY) {
+                counters[index]++;
+                incremented = true;
+            }
+        }
+
+        if (incremented && ++increments >= sampleSize) {
+            halveCounters();
+        }
+
+    }
+
+    /**
+     * Estimates how often a key was accessed recently.
+     *
+     * @param keyHash The hash code of the key.
+     * @return <code>int</code> - the estimated number of recent accesses, from 0 to 15.
+     */
+    public int frequency(int keyHash) {
+        int frequency = MAXIMUM_FREQUENCY;
+        for (int row = 0; row < SEEDS.length; row++) {
+            frequency = Math.min(frequency, counters[counterIndex(keyHash, row)]);
+        }
+        return frequency;
+    }
+
+    /**
+     * Finds the counter of a key in a row.
+     *
+     * @param keyHash The hash code of the key.
+     * @param row     The row of counters.
+     * @return <code>int</code> - the index of the counter in the counters array.
+     */
+    private int counterIndex(int keyHash, int row) {
+        int hash = (keyHash ^ (keyHash >>> 16)) * SEEDS[row];
+        hash ^= hash >>> 15;
+        return row * (rowMask + 1) + (hash & rowMask);
+    }
+
+    /**
+     * Halves every counter, so older accesses weigh less than the new ones.
+     */
+    private void halveCounters() {
+        for (int index = 0; index < counters.length; index++) {
+            counters[index] >>= 1;
+        }
+        increments /= 2;
+    }
+
+}
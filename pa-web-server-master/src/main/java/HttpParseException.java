@@ -0,0 +1,29 @@
+/**
+ * Thrown when a client's request can't be parsed, with the response code it is answered with.
+ */
+public class HttpParseException extends IllegalArgumentException {
+
+    /**
+     * The response's code and reason phrase (400 Bad Request, 431 Request Header Fields Too Large).
+     */
+    private final String responseCode;
+
+    /**
+     * Constructor for the exception.
+     *
+     * @param responseCode The response's code and reason phrase the request is answered with.
+     * @param message      The reason the request can't be parsed.
+     */
+    public HttpParseException(String responseCode, String message) {
+        super(message);
+        this.responseCode = responseCode;
+    }
+
+    /**
+     * @return <code>String</code> - the response's code and reason phrase the request is answered with.
+     */
+    public String getResponseCode() {
+        return responseCode;
+    }
+
+}
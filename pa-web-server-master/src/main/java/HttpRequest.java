@@ -0,0 +1,260 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A request received from a client, with its request line and headers already parsed by the {@link HttpRequestParser}. <p>
+ * The same object is reused by every request of a connection: the request's head is copied to its own buffer,
+ * and the headers' values are only turned into strings when they are asked for. <p>
+ * The head and the headers' positions are stored in a single buffer acquired from a {@link BufferPool} backed by arrays,
+ * so a new connection reuses the storage of a closed one. The connection releases it with {@link #release()} when it closes.
+ */
+public class HttpRequest {
+
+    /**
+     * The pooled buffer holding the head, followed by the headers' positions.
+     */
+    private final BufferPool.PooledBuffer storage;
+    /**
+     * The request's line and headers, as they were received: the array of the storage buffer, from its first byte.
+     */
+    private final byte[] head;
+    /**
+     * For each header, the positions in the head where its name starts and ends, and where its value starts and ends,
+     * stored as four ints in the storage buffer after the head.
+     */
+    private final ByteBuffer headerPositions;
+    /**
+     * The position in the storage buffer where the headers' positions start.
+     */
+    private final int headerPositionsStart;
+    /**
+     * Maximum number of headers of a request.
+     */
+    private final int maximumHeaders;
+
+    /**
+     * Number of bytes of the head buffer used by the request.
+     */
+    private int headLength;
+    /**
+     * Number of headers of the request.
+     */
+    private int headerCount;
+
+    /**
+     * The request's method (GET, POST).
+     */
+    private String method;
+    /**
+     * The request's route.
+     */
+    private String route;
+    /**
+     * The request's protocol version (HTTP/1.0, HTTP/1.1).
+     */
+    private String httpVersion;
+    /**
+     * The size, in bytes, of the request's body.
+     */
+    private long contentLength;
+    /**
+     * Whether the Connection header asks to close the connection.
+     */
+    private boolean connectionClose;
+    /**
+     * Whether the Connection header asks to keep the connection open.
+     */
+    private boolean connectionKeepAlive;
+
+    /**
+     * Constructor for a request that can be reused by every request of a connection.
+     *
+     * @param bufferPool      The pool the request's storage is acquired from, which must be backed by arrays.
+     * @param maximumHeadSize Maximum size, in bytes, of a request's line and headers.
+     * @param maximumHeaders  Maximum number of headers of a request.
+     */
+    public HttpRequest(BufferPool bufferPool, int maximumHeadSize, int maximumHeaders) {
+        this.storage = bufferPool.acquire(maximumHeadSize + maximumHeaders * 4 * Integer.BYTES);
+        this.head = storage.buffer().array();
+        this.headerPositions = storage.buffer();
+        this.headerPositionsStart = maximumHeadSize;
+        this.maximumHeaders = maximumHeaders;
+    }
+
+    /**
+     * Returns the request's storage to its pool, when the connection closes. The request must not be used afterwards.
+     */
+    public void release() {
+        storage.release();
+    }
+
+    /**
+     * Clears the previous request, and copies the head of the next one.
+     *
+     * @param bytes  The buffer that holds the request's head, on the heap or direct.
+     * @param offset The position of the head in the buffer.
+     * @param length The size of the head, in bytes.
+     */
+    void reset(ByteBuffer bytes, int offset, int length) {
+        bytes.get(offset, head, 0, length);
+        headLength = length;
+        headerCount = 0;
+        contentLength = 0;
+        connectionClose = false;
+        connectionKeepAlive = false;
+    }
+
+    /**
+     * Sets the parsed request line.
+     *
+     * @param method      The request's method (GET, POST).
+     * @param route       The request's route.
+     * @param httpVersion The request's protocol version (HTTP/1.0, HTTP/1.1).
+     */
+    void setRequestLine(String method, String route, String httpVersion) {
+        this.method = method;
+        this.route = route;
+        this.httpVersion = httpVersion;
+    }
+
+    /**
+     * Adds a header found by the parser.
+     *
+     * @param nameStart  The position in the head where the header's name starts.
+     * @param nameEnd    The position in the head where the header's name ends.
+     * @param valueStart The position in the head where the header's value starts.
+     * @param valueEnd   The position in the head where the header's value ends.
+     * @return <code>boolean</code>
+     * <ul>
+     *     <li> <strong>true -</strong> if the header was added.</li>
+     *     <li> <strong>false -</strong> if the request already has the maximum number of headers.</li>
+     * </ul>
+     */
+    boolean addHeader(int nameStart, int nameEnd, int valueStart, int valueEnd) {
+        if (headerCount == maximumHeaders) {
+            return false;
+        }
+        int position = headerPositionsStart + headerCount * 4 * Integer.BYTES;
+        headerPositions.putInt(position, nameStart);
+        headerPositions.putInt(position + Integer.BYTES, nameEnd);
+        headerPositions.putInt(position + 2 * Integer.BYTES, valueStart);
+        headerPositions.putInt(position + 3 * Integer.BYTES, valueEnd);
+        headerCount++;
+        return true;
+    }
+
+    /**
+     * @param contentLength The size, in bytes, of the request's body.
+     */
+    void setContentLength(long contentLength) {
+        this.contentLength = contentLength;
+    }
+
+    /**
+     * Records the options of the Connection header.
+     *
+     * @param close     Whether the header asks to close the connection.
+     * @param keepAlive Whether the header asks to keep the connection open.
+     */
+    void setConnectionOptions(boolean close, boolean keepAlive) {
+        this.connectionClose |= close;
+        this.connectionKeepAlive |= keepAlive;
+    }
+
+    /**
+     * @return <code>byte[]</code> - the buffer that holds the request's head.
+     */
+    byte[] getHead() {
+        return head;
+    }
+
+    /**
+     * @return <code>int</code> - number of bytes of the head buffer used by the request.
+     */
+    int getHeadLength() {
+        return headLength;
+    }
+
+    /**
+     * Gets the value of one of the request's headers.
+     *
+     * @param name The header's name, in any case.
+     * @return <code>String</code> - the header's value, or null if the request doesn't have it.
+     */
+    public String getHeader(String name) {
+        int positionsEnd = headerPositionsStart + headerCount * 4 * Integer.BYTES;
+        for (int position = headerPositionsStart; position < positionsEnd; position += 4 * Integer.BYTES) {
+            if (nameEquals(headerPositions.getInt(position), headerPositions.getInt(position + Integer.BYTES), name)) {
+                int valueStart = headerPositions.getInt(position + 2 * Integer.BYTES);
+                return new String(head, valueStart, headerPositions.getInt(position + 3 * Integer.BYTES) - valueStart, StandardCharsets.ISO_8859_1);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Compares a header's name in the head to a name, ignoring the case.
+     *
+     * @param start The position in the head where the header's name starts.
+     * @param end   The position in the head where the header's name ends.
+     * @param name  The name to compare to.
+     * @return <code>boolean</code> - whether the names are equal.
+     */
+    private boolean nameEquals(int start, int end, String name) {
+        if (end - start != name.length()) {
+            return false;
+        }
+        for (int index = 0; index < name.length(); index++) {
+            if (HttpRequestParser.toLowerCase(head[start + index]) != HttpRequestParser.toLowerCase((byte) name.charAt(index))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if the client wants the connection to stay open after the response. <p>
+     * HTTP/1.1 connections are persistent unless the client closes them, HTTP/1.0 ones only if the client asks.
+     *
+     * @return <code>boolean</code>
+     * <ul>
+     *     <li> <strong>true -</strong> if the connection stays open after the response.</li>
+     *     <li> <strong>false -</strong> if the connection is closed after the response.</li>
+     * </ul>
+     */
+    public boolean isKeepAlive() {
+        if (HttpRequestParser.HTTP_1_1.equals(httpVersion)) {
+            return !connectionClose;
+        }
+        return connectionKeepAlive;
+    }
+
+    /**
+     * @return <code>long</code> - the size, in bytes, of the request's body.
+     */
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    /**
+     * @return <code>String</code> - the request's method (GET, POST).
+     */
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * @return <code>String</code> - the request's route.
+     */
+    public String getRoute() {
+        return route;
+    }
+
+    /**
+     * @return <code>String</code> - the request's protocol version (HTTP/1.0, HTTP/1.1).
+     */
+    public String getHttpVersion() {
+        return httpVersion;
+    }
+
+}
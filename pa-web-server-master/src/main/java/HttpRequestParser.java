@@ -0,0 +1,373 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses the HTTP/1.1 requests a client sends, straight from the bytes received in the connection's read buffer. <p>
+ * The request's head is only parsed once it is complete, in a single pass, without creating a string per line:
+ * only the route, and the method when it isn't a common one, become new strings.
+ * Heads larger than the maximum size, or with too many headers, are refused. <p>
+ * The end of a request's body is only known from its <code>Content-Length</code>, so the requests whose body's length is ambiguous,
+ * chunked or with conflicting lengths, are refused: their body would otherwise be parsed as the next request of the connection. <p>
+ * A parser keeps track of how much of the buffer it already searched, so each connection must have its own.
+ */
+public class HttpRequestParser {
+
+    /**
+     * The HTTP/1.1 protocol version.
+     */
+    static final String HTTP_1_1 = "HTTP/1.1";
+    /**
+     * The HTTP/1.0 protocol version.
+     */
+    static final String HTTP_1_0 = "HTTP/1.0";
+    /**
+     * The methods whose names are shared by every request, instead of created for each one.
+     */
+    private static final String[] COMMON_METHODS = {"GET", "HEAD", "POST", "PUT", "DELETE", "OPTIONS", "PATCH", "TRACE", "CONNECT"};
+
+    /**
+     * Maximum size, in bytes, of a request's line and headers.
+     */
+    private final int maximumHeadSize;
+    /**
+     * Number of bytes at the start of the read buffer already searched for the end of the head.
+     */
+    private int scannedBytes;
+
+    /**
+     * Constructor for the parser of a connection's requests.
+     *
+     * @param maximumHeadSize Maximum size, in bytes, of a request's line and headers.
+     */
+    public HttpRequestParser(int maximumHeadSize) {
+        this.maximumHeadSize = maximumHeadSize;
+    }
+
+    /**
+     * Parses the request at the start of the read buffer, if its head was completely received.
+     * Empty lines before the request line are skipped.
+     *
+     * @param readBuffer The connection's read buffer, on the heap or direct, with the received bytes between 0 and its position.
+     * @param request    The request that receives the parsed line and headers.
+     * @return <code>int</code> - number of bytes of the buffer used by the request's head, or -1 if the head isn't complete yet.
+     * @throws HttpParseException if the request is malformed, or its head is too large.
+     */
+    public int parse(ByteBuffer readBuffer, HttpRequest request) {
+
+        int available = readBuffer.position();
+
+        int headStart = 0;
+        while (headStart < available && (readBuffer.get(headStart) == '\r' || readBuffer.get(headStart) == '\n')) {
+            headStart++;
+        }
+
+        int headEnd = findHeadEnd(readBuffer, headStart, available);
+        if (headEnd < 0) {
+            if (available - headStart >= maximumHeadSize || !readBuffer.hasRemaining()) {
+                throw new HttpParseException("431 Request Header Fields Too Large", "Request head larger than " + maximumHeadSize + " bytes.");
+            }
+            return -1;
+        }
+        if (headEnd - headStart > maximumHeadSize) {
+            throw new HttpParseException("431 Request Header Fields Too Large", "Request head larger than " + maximumHeadSize + " bytes.");
+        }
+
+        request.reset(readBuffer, headStart, headEnd - headStart);
+        parseHead(request);
+        return headEnd;
+    }
+
+    /**
+     * Finds the blank line that ends the request's head, continuing from where the last search stopped.
+     *
+     * @param bytes     The received bytes.
+     * @param headStart The position where the request's head starts.
+     * @param available The number of received bytes.
+     * @return <code>int</code> - the position after the blank line, or -1 if it wasn't received yet.
+     */
+    private int findHeadEnd(ByteBuffer bytes, int headStart, int available) {
+        for (int index = Math.max(headStart + 3, scannedBytes); index < available; index++) {
+            if (bytes.get(index) == '\n' && bytes.get(index - 1) == '\r' && bytes.get(index - 2) == '\n' && bytes.get(index - 3) == '\r') {
+                scannedBytes = 0;
+                return index + 1;
+            }
+        }
+        scannedBytes = available;
+        return -1;
+    }
+
+    /**
+     * Parses the request line and the headers of a complete head.
+     *
+     * @param request The request whose head is parsed.
+     * @throws HttpParseException if the request is malformed, has too many headers, or its body's length is ambiguous.
+     */
+    private void parseHead(HttpRequest request) {
+
+        byte[] head = request.getHead();
+        int headLength = request.getHeadLength();
+
+        //* Request line: method, route and protocol version, separated by single spaces
+        int lineEnd = indexOfLineEnd(head, 0, headLength);
+        int methodEnd = indexOf(head, (byte) ' ', 0, lineEnd);
+        if (methodEnd <= 0 || !isToken(head, 0, methodEnd)) {
+            throw new HttpParseException("400 Bad Request", "Malformed request method.");
+        }
+        int routeStart = methodEnd + 1;
+        int routeEnd = indexOf(head, (byte) ' ', routeStart, lineEnd);
+        if (routeEnd <= routeStart || !isVisible(head, routeStart, routeEnd)) {
+            throw new HttpParseException("400 Bad Request", "Malformed request target.");
+        }
+        request.setRequestLine(method(head, methodEnd), new String(head, routeStart, routeEnd - routeStart, StandardCharsets.ISO_8859_1), httpVersion(head, routeEnd + 1, lineEnd));
+
+        //* Header lines, until the blank line that ends the head
+        int lineStart = lineEnd + 2;
+        long contentLength = -1;
+        while ((lineEnd = indexOfLineEnd(head, lineStart, headLength)) > lineStart) {
+
+            int colon = indexOf(head, (byte) ':', lineStart, lineEnd);
+            if (colon <= lineStart || !isToken(head, lineStart, colon)) {
+                throw new HttpParseException("400 Bad Request", "Malformed header line.");
+            }
+
+            int valueStart = colon + 1;
+            while (valueStart < lineEnd && (head[valueStart] == ' ' || head[valueStart] == '\t')) {
+                valueStart++;
+            }
+            int valueEnd = lineEnd;
+            while (valueEnd > valueStart && (head[valueEnd - 1] == ' ' || head[valueEnd - 1] == '\t')) {
+                valueEnd--;
+            }
+
+            if (!request.addHeader(lineStart, colon, valueStart, valueEnd)) {
+                throw new HttpParseException("431 Request Header Fields Too Large", "Too many headers.");
+            }
+            if (equalsIgnoreCase(head, lineStart, colon, "content-length")) {
+                long headerContentLength = parseContentLength(head, valueStart, valueEnd);
+                if (contentLength >= 0 && contentLength != headerContentLength) {
+                    throw new HttpParseException("400 Bad Request", "Conflicting Content-Length headers.");
+                }
+                contentLength = headerContentLength;
+                request.setContentLength(contentLength);
+            } else if (equalsIgnoreCase(head, lineStart, colon, "transfer-encoding")) {
+                // Chunked bodies aren't decoded, so where the body ends, and the next request starts, is unknown
+                throw new HttpParseException("501 Not Implemented", "Transfer-Encoding isn't supported.");
+            } else if (equalsIgnoreCase(head, lineStart, colon, "connection")) {
+                parseConnectionOptions(head, valueStart, valueEnd, request);
+            }
+
+            lineStart = lineEnd + 2;
+        }
+
+    }
+
+    /**
+     * Gets the request's method, sharing the string of the common methods.
+     *
+     * @param head      The request's head.
+     * @param methodEnd The position where the method ends.
+     * @return <code>String</code> - the request's method.
+     */
+    private static String method(byte[] head, int methodEnd) {
+        for (String commonMethod : COMMON_METHODS) {
+            if (regionEquals(head, 0, methodEnd, commonMethod)) {
+                return commonMethod;
+            }
+        }
+        return new String(head, 0, methodEnd, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Gets the request's protocol version.
+     *
+     * @param head  The request's head.
+     * @param start The position where the version starts.
+     * @param end   The position where the version ends.
+     * @return <code>String</code> - the request's protocol version.
+     * @throws HttpParseException if the version isn't HTTP/1.1 or HTTP/1.0.
+     */
+    private static String httpVersion(byte[] head, int start, int end) {
+        if (regionEquals(head, start, end, HTTP_1_1)) {
+            return HTTP_1_1;
+        }
+        if (regionEquals(head, start, end, HTTP_1_0)) {
+            return HTTP_1_0;
+        }
+        if (end - start > 5 && regionEquals(head, start, start + 5, "HTTP/")) {
+            throw new HttpParseException("505 HTTP Version Not Supported", "Unsupported protocol version.");
+        }
+        throw new HttpParseException("400 Bad Request", "Malformed protocol version.");
+    }
+
+    /**
+     * Parses the value of the Content-Length header.
+     *
+     * @param head  The request's head.
+     * @param start The position where the value starts.
+     * @param end   The position where the value ends.
+     * @return <code>long</code> - the size, in bytes, of the request's body.
+     * @throws HttpParseException if the value isn't a number.
+     */
+    private static long parseContentLength(byte[] head, int start, int end) {
+        if (start == end || end - start > 18) {
+            throw new HttpParseException("400 Bad Request", "Malformed Content-Length header.");
+        }
+        long contentLength = 0;
+        for (int index = start; index < end; index++) {
+            if (head[index] < '0' || head[index] > '9') {
+                throw new HttpParseException("400 Bad Request", "Malformed Content-Length header.");
+            }
+            contentLength = contentLength * 10 + (head[index] - '0');
+        }
+        return contentLength;
+    }
+
+    /**
+     * Finds the close and keep-alive options in the comma separated value of the Connection header.
+     *
+     * @param head    The request's head.
+     * @param start   The position where the value starts.
+     * @param end     The position where the value ends.
+     * @param request The request that receives the options.
+     */
+    private static void parseConnectionOptions(byte[] head, int start, int end, HttpRequest request) {
+        int optionStart = start;
+        while (optionStart < end) {
+            int optionEnd = indexOf(head, (byte) ',', optionStart, end);
+            if (optionEnd < 0) {
+                optionEnd = end;
+            }
+            int trimmedStart = optionStart;
+            int trimmedEnd = optionEnd;
+            while (trimmedStart < trimmedEnd && (head[trimmedStart] == ' ' || head[trimmedStart] == '\t')) {
+                trimmedStart++;
+            }
+            while (trimmedEnd > trimmedStart && (head[trimmedEnd - 1] == ' ' || head[trimmedEnd - 1] == '\t')) {
+                trimmedEnd--;
+            }
+            request.setConnectionOptions(equalsIgnoreCase(head, trimmedStart, trimmedEnd, "close"), equalsIgnoreCase(head, trimmedStart, trimmedEnd, "keep-alive"));
+            optionStart = optionEnd + 1;
+        }
+    }
+
+    /**
+     * Finds the CRLF that ends a line. The head always ends with a blank line, so the search can't fail.
+     *
+     * @param head  The request's head.
+     * @param start The position where the line starts.
+     * @param end   The position where the head ends.
+     * @return <code>int</code> - the position of the line's CR.
+     */
+    private static int indexOfLineEnd(byte[] head, int start, int end) {
+        int index = start;
+        while (index < end - 1 && !(head[index] == '\r' && head[index + 1] == '\n')) {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Finds a byte in a region of the head.
+     *
+     * @param head  The request's head.
+     * @param value The byte to find.
+     * @param start The position where the search starts.
+     * @param end   The position where the search ends, exclusive.
+     * @return <code>int</code> - the position of the byte, or -1 if the region doesn't have it.
+     */
+    private static int indexOf(byte[] head, byte value, int start, int end) {
+        for (int index = start; index < end; index++) {
+            if (head[index] == value) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Checks if a region of the head is a token, as the method and the header names must be.
+     *
+     * @param head  The request's head.
+     * @param start The position where the region starts.
+     * @param end   The position where the region ends, exclusive.
+     * @return <code>boolean</code> - whether every byte of the region is a token character.
+     */
+    private static boolean isToken(byte[] head, int start, int end) {
+        for (int index = start; index < end; index++) {
+            byte character = head[index];
+            boolean isAlphanumeric = (character >= '0' && character <= '9') || (character >= 'A' && character <= 'Z') || (character >= 'a' && character <= 'z');
+            if (!isAlphanumeric && "!#$%&'*+-.^_`|~".indexOf(character) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if a region of the head only has visible characters, as the route must.
+     *
+     * @param head  The request's head.
+     * @param start The position where the region starts.
+     * @param end   The position where the region ends, exclusive.
+     * @return <code>boolean</code> - whether the region has no spaces or control characters.
+     */
+    private static boolean isVisible(byte[] head, int start, int end) {
+        for (int index = start; index < end; index++) {
+            if ((head[index] & 0xFF) <= ' ' || head[index] == 0x7F) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compares a region of the head to a string.
+     *
+     * @param head  The request's head.
+     * @param start The position where the region starts.
+     * @param end   The position where the region ends, exclusive.
+     * @param value The string to compare to.
+     * @return <code>boolean</code> - whether the region has the same characters as the string.
+     */
+    private static boolean regionEquals(byte[] head, int start, int end, String value) {
+        if (end - start != value.length()) {
+            return false;
+        }
+        for (int index = 0; index < value.length(); index++) {
+            if (head[start + index] != value.charAt(index)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compares a region of the head to a lower case string, ignoring the case.
+     *
+     * @param head           The request's head.
+     * @param start          The position where the region starts.
+     * @param end            The position where the region ends, exclusive.
+     * @param lowerCaseValue The lower case string to compare to.
+     * @return <code>boolean</code> - whether the region has the same characters as the string, in any case.
+     */
+    private static boolean equalsIgnoreCase(byte[] head, int start, int end, String lowerCaseValue) {
+        if (end - start != lowerCaseValue.length()) {
+            return false;
+        }
+        for (int index = 0; index < lowerCaseValue.length(); index++) {
+            if (toLowerCase(head[start + index]) != lowerCaseValue.charAt(index)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param character An ASCII character.
+     * @return <code>byte</code> - the character in lower case.
+     */
+    static byte toLowerCase(byte character) {
+        return character >= 'A' && character <= 'Z' ? (byte) (character + ('a' - 'A')) : character;
+    }
+
+}
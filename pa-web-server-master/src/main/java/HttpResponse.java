@@ -0,0 +1,267 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * A complete HTTP/1.1 response, with its headers and its body. <p>
+ * The body is either a buffer, on the heap or mapped from a file, or is a file streamed from the filesystem straight to the client's socket.
+ * A streamed body can be made of several regions of the file, each followed by bytes from memory, such as the parts of a multipart response.
+ */
+public class HttpResponse {
+
+    /**
+     * A region of the streamed file sent as part of the response's body.
+     *
+     * @param offset  The position of the region's first byte in the file.
+     * @param length  The number of bytes of the region.
+     * @param trailer The bytes sent after the region, which may be empty. The buffer is consumed when the response is written.
+     */
+    public record FileRegion(long offset, long length, ByteBuffer trailer) {
+    }
+
+    /**
+     * The response's code and reason phrase (200 OK, 404 Not found).
+     */
+    private final String responseCode;
+    /**
+     * The media type of the response's body.
+     */
+    private final String contentType;
+    /**
+     * The response's body, or the bytes sent before the file's regions if the body is streamed from a file.
+     */
+    private final ByteBuffer content;
+    /**
+     * The file streamed as the response's body, or null if the body is in memory.
+     */
+    private final Path file;
+    /**
+     * The regions of the file sent, in order, or null if the body is in memory.
+     */
+    private final List<FileRegion> fileRegions;
+    /**
+     * The size of the response's body, in bytes.
+     */
+    private final long contentLength;
+    /**
+     * Whether the connection stays open after the response is sent.
+     */
+    private final boolean keepAlive;
+    /**
+     * The encoded headers added to the response, each ending with a line break, or null if there are none.
+     */
+    private StringBuilder extraHeaders;
+    /**
+     * The status line and headers encoded before the response was built, or null if they are encoded when the response is written.
+     */
+    private byte[] encodedHead;
+    /**
+     * Whether the body is left out when the response is written, such as for a HEAD request, while the head still describes it.
+     */
+    private boolean bodyOmitted;
+
+    /**
+     * Constructor for an HTML response whose body is an array of bytes.
+     *
+     * @param responseCode The response's code and reason phrase (200 OK, 404 Not found).
+     * @param content      The response's body.
+     * @param keepAlive    Whether the connection stays open after the response is sent.
+     */
+    public HttpResponse(String responseCode, byte[] content, boolean keepAlive) {
+        this(responseCode, "text/html", ByteBuffer.wrap(content), keepAlive);
+    }
+
+    /**
+     * Constructor for a response whose body is an array of bytes, of a media type other than HTML.
+     *
+     * @param responseCode The response's code and reason phrase (200 OK, 404 Not found).
+     * @param contentType  The media type of the response's body.
+     * @param content      The response's body.
+     * @param keepAlive    Whether the connection stays open after the response is sent.
+     */
+    public HttpResponse(String responseCode, String contentType, byte[] content, boolean keepAlive) {
+        this(responseCode, contentType, ByteBuffer.wrap(content), keepAlive);
+    }
+
+    /**
+     * Constructor for a response whose body is in a buffer, on the heap or mapped from a file.
+     *
+     * @param responseCode The response's code and reason phrase (200 OK, 404 Not found).
+     * @param contentType  The media type of the response's body.
+     * @param content      The response's body, from its position to its limit. The buffer is consumed when the response is written.
+     * @param keepAlive    Whether the connection stays open after the response is sent.
+     */
+    public HttpResponse(String responseCode, String contentType, ByteBuffer content, boolean keepAlive) {
+        this.responseCode = responseCode;
+        this.contentType = contentType;
+        this.content = content;
+        this.file = null;
+        this.fileRegions = null;
+        this.contentLength = content.remaining();
+        this.keepAlive = keepAlive;
+    }
+
+    /**
+     * Constructor for a response whose body is streamed from a file.
+     *
+     * @param responseCode The response's code and reason phrase (200 OK, 404 Not found).
+     * @param contentType  The media type of the response's body.
+     * @param file         The file streamed as the response's body.
+     * @param fileSize     The size of the file, in bytes.
+     * @param keepAlive    Whether the connection stays open after the response is sent.
+     */
+    public HttpResponse(String responseCode, String contentType, Path file, long fileSize, boolean keepAlive) {
+        this(responseCode, contentType, file, ByteBuffer.allocate(0), List.of(new FileRegion(0, fileSize, ByteBuffer.allocate(0))), fileSize, keepAlive);
+    }
+
+    /**
+     * Constructor for a response whose body is made of regions of a file, streamed from the filesystem.
+     *
+     * @param responseCode  The response's code and reason phrase (206 Partial Content).
+     * @param contentType   The media type of the response's body.
+     * @param file          The file the regions are streamed from.
+     * @param prefix        The bytes sent before the first region, which may be empty.
+     * @param fileRegions   The regions of the file sent, in order, each followed by its trailer.
+     * @param contentLength The size of the response's body, in bytes, including the prefix and the trailers.
+     * @param keepAlive     Whether the connection stays open after the response is sent.
+     */
+    public HttpResponse(String responseCode, String contentType, Path file, ByteBuffer prefix, List<FileRegion> fileRegions, long contentLength, boolean keepAlive) {
+        this.responseCode = responseCode;
+        this.contentType = contentType;
+        this.content = prefix;
+        this.file = file;
+        this.fileRegions = fileRegions;
+        this.contentLength = contentLength;
+        this.keepAlive = keepAlive;
+    }
+
+    /**
+     * Constructor for a response without a body, such as a 304 Not Modified, that describes the body a 200 response would have.
+     *
+     * @param responseCode  The response's code and reason phrase (304 Not Modified).
+     * @param contentType   The media type of the body the response describes.
+     * @param contentLength The size, in bytes, of the body the response describes.
+     * @param keepAlive     Whether the connection stays open after the response is sent.
+     */
+    public HttpResponse(String responseCode, String contentType, long contentLength, boolean keepAlive) {
+        this.responseCode = responseCode;
+        this.contentType = contentType;
+        this.content = ByteBuffer.allocate(0);
+        this.file = null;
+        this.fileRegions = null;
+        this.contentLength = contentLength;
+        this.keepAlive = keepAlive;
+    }
+
+    /**
+     * Adds a header to the response, written after the standard ones.
+     *
+     * @param name  The header's name.
+     * @param value The header's value.
+     * @return {@link HttpResponse} - this response.
+     */
+    public HttpResponse addHeader(String name, String value) {
+        if (extraHeaders == null) {
+            extraHeaders = new StringBuilder();
+        }
+        extraHeaders.append(name).append(": ").append(value).append("\r\n");
+        return this;
+    }
+
+    /**
+     * Sets the response's status line and headers, already encoded, so they aren't encoded again when the response is written.
+     * The head must describe this response, and headers added afterwards aren't sent.
+     *
+     * @param encodedHead The encoded head, including the blank line that ends it. The array is only read, so it can be shared by many responses.
+     * @return {@link HttpResponse} - this response.
+     */
+    public HttpResponse withEncodedHead(byte[] encodedHead) {
+        this.encodedHead = encodedHead;
+        return this;
+    }
+
+    /**
+     * Leaves the body out when the response is written, such as for a HEAD request. The head is unchanged, so it still describes
+     * the body a GET request would receive, <code>Content-Length</code> included, and the client knows no body follows.
+     *
+     * @param omitted Whether the body is left out.
+     * @return {@link HttpResponse} - this response.
+     */
+    public HttpResponse withBodyOmitted(boolean omitted) {
+        this.bodyOmitted = omitted;
+        return this;
+    }
+
+    /**
+     * Encodes the response's status line and headers.
+     *
+     * @return <code>byte[]</code> - the encoded head of the response, including the blank line that ends it.
+     */
+    public byte[] encodeHead() {
+        if (encodedHead != null) {
+            return encodedHead;
+        }
+        String head = "HTTP/1.1 " + responseCode + "\r\n"
+                + "Content-Type: " + contentType + "\r\n"
+                + "Content-Length: " + contentLength + "\r\n"
+                + "Connection: " + (keepAlive ? "keep-alive" : "close") + "\r\n"
+                + (extraHeaders != null ? extraHeaders : "")
+                + "\r\n";
+        return head.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Wraps the encoded response in buffers that can be written to a channel in a single gathering write.
+     * The regions of a streamed response aren't included, they have to be transferred from the file after the buffers are written.
+     *
+     * @return <code>ByteBuffer[]</code> - the response's head followed by its body, or by the bytes sent before the file's regions,
+     * or by an empty buffer if the body is omitted.
+     */
+    public ByteBuffer[] toByteBuffers() {
+        return new ByteBuffer[]{ByteBuffer.wrap(encodeHead()), bodyOmitted ? ByteBuffer.allocate(0) : content};
+    }
+
+    /**
+     * @return <code>String</code> - the response's code and reason phrase.
+     */
+    public String getResponseCode() {
+        return responseCode;
+    }
+
+    /**
+     * @return <code>boolean</code> - whether the response's body is streamed from a file, which isn't the case if the body is omitted.
+     */
+    public boolean isFileStreamed() {
+        return file != null && !bodyOmitted;
+    }
+
+    /**
+     * @return {@link Path} - the file streamed as the response's body, or null if the body is in memory.
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return {@link List} - the regions of the streamed file sent, in order, or null if the body is in memory.
+     */
+    public List<FileRegion> getFileRegions() {
+        return fileRegions;
+    }
+
+    /**
+     * @return <code>long</code> - the size of the response's body, in bytes, or of the body it describes if it has none.
+     */
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    /**
+     * @return <code>boolean</code> - whether the connection stays open after the response is sent.
+     */
+    public boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+}
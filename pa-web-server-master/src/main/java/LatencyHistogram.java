@@ -0,0 +1,186 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies, in nanoseconds, with a bounded relative error. <p>
+ * Values below 128 have their own bucket. Larger values share buckets that split each power of two in 64,
+ * so the percentiles are reported within about 1.6% of the recorded values, whatever their magnitude.
+ * Values are recorded without locks, so the histogram can be shared by every thread serving clients.
+ */
+public class LatencyHistogram {
+
+    /**
+     * Number of bits of a value kept by its bucket.
+     */
+    private static final int SUB_BUCKET_BITS = 7;
+    /**
+     * Number of values below which each value has its own bucket.
+     */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /**
+     * Number of buckets each power of two is split into.
+     */
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+    /**
+     * Number of buckets needed for every positive long.
+     */
+    private static final int BUCKETS = SUB_BUCKETS + (Long.SIZE - SUB_BUCKET_BITS) * HALF_SUB_BUCKETS;
+
+    /**
+     * Number of values recorded in each bucket.
+     */
+    private final AtomicLongArray bucketCounts = new AtomicLongArray(BUCKETS);
+    /**
+     * Number of values recorded.
+     */
+    private final LongAdder count = new LongAdder();
+    /**
+     * Sum of the values recorded.
+     */
+    private final LongAdder sum = new LongAdder();
+    /**
+     * Largest value recorded.
+     */
+    private final LongAccumulator maximum = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records a value. Negative values are recorded as 0.
+     *
+     * @param value The value, usually a latency in nanoseconds.
+     */
+    public void record(long value) {
+        long recordedValue = Math.max(0, value);
+        bucketCounts.incrementAndGet(bucketIndex(recordedValue));
+        count.increment();
+        sum.add(recordedValue);
+        maximum.accumulate(recordedValue);
+    }
+
+    /**
+     * Adds the values recorded by another histogram to this one.
+     *
+     * @param other The histogram whose values are added.
+     */
+    public void add(LatencyHistogram other) {
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            long bucketCount = other.bucketCounts.get(bucket);
+            if (bucketCount > 0) {
+                bucketCounts.addAndGet(bucket, bucketCount);
+            }
+        }
+        count.add(other.count.sum());
+        sum.add(other.sum.sum());
+        maximum.accumulate(other.maximum.get());
+    }
+
+    /**
+     * Gets the value below which a percentage of the recorded values are.
+     *
+     * @param percentile The percentage, between 0 and 100.
+     * @return <code>long</code> - the percentile's value, or 0 if nothing was recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long totalCount = count.sum();
+        if (totalCount == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+        long countBelow = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            countBelow += bucketCounts.get(bucket);
+            if (countBelow >= rank) {
+                return Math.min(bucketMiddle(bucket), maximum.get());
+            }
+        }
+        return maximum.get();
+    }
+
+    /**
+     * Counts the recorded values at or below a limit, within the histogram's precision.
+     * Values in the bucket that contains the limit are counted as if they were below it.
+     *
+     * @param limit The limit, in the unit of the recorded values.
+     * @return <code>long</code> - number of recorded values at or below the limit.
+     */
+    public long getCountAtOrBelow(long limit) {
+        if (limit < 0) {
+            return 0;
+        }
+        long countBelow = 0;
+        int lastBucket = bucketIndex(limit);
+        for (int bucket = 0; bucket <= lastBucket; bucket++) {
+            countBelow += bucketCounts.get(bucket);
+        }
+        return countBelow;
+    }
+
+    /**
+     * @return <code>long</code> - number of values recorded.
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return <code>long</code> - sum of the values recorded.
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * @return <code>long</code> - average of the values recorded, or 0 if nothing was recorded.
+     */
+    public long getMean() {
+        long totalCount = count.sum();
+        return totalCount == 0 ? 0 : sum.sum() / totalCount;
+    }
+
+    /**
+     * @return <code>long</code> - largest value recorded.
+     */
+    public long getMaximum() {
+        return maximum.get();
+    }
+
+    /**
+     * Finds the bucket of a value.
+     *
+     * @param value A value, 0 or positive.
+     * @return <code>int</code> - the index of the value's bucket.
+     */
+    private static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = Long.SIZE - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return SUB_BUCKETS + (shift - 1) * HALF_SUB_BUCKETS + (int) (value >>> shift) - HALF_SUB_BUCKETS;
+    }
+
+    /**
+     * @param bucket The index of a bucket.
+     * @return <code>long</code> - the lowest value of the bucket.
+     */
+    private static long bucketLowest(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        long mantissa = (bucket - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+        return mantissa << shift;
+    }
+
+    /**
+     * @param bucket The index of a bucket.
+     * @return <code>long</code> - the value in the middle of the bucket, used to report the values in it.
+     */
+    private static long bucketMiddle(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        return bucketLowest(bucket) + (1L << (shift - 1));
+    }
+
+}
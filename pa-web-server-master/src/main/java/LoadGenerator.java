@@ -0,0 +1,418 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A command line tool that puts load on a running {@link WebServer} and reports its throughput and latency percentiles. <p>
+ * Each connection is driven by its own thread, which sends one request at a time:
+ * <ul>
+ *     <li> <strong>closed -</strong> loop mode sends the next request as soon as the response arrives, so the load adapts to the server.</li>
+ *     <li> <strong>open -</strong> loop mode sends the requests at a fixed rate, whether the server keeps up or not.
+ *     Latencies are measured from the time each request should have been sent, so a stalled server isn't hidden by the requests it delayed.</li>
+ * </ul>
+ * Options are passed as <code>--name=value</code>:
+ * <pre>
+ * java -cp target/classes LoadGenerator --port=4444 --connections=16 --duration=10 --warmup=2
+ *      --mode=closed|open --rate=1000 --keepalive=true --urls=/:8,/missing.html:1 --timeout=10000
+ * </pre>
+ * The URL mix is a comma separated list of routes, each with an optional weight after a colon.
+ */
+public class LoadGenerator {
+
+    /**
+     * The ways the requests are paced.
+     */
+    public enum Mode {
+        /**
+         * Each connection sends its next request when the previous response arrives.
+         */
+        CLOSED,
+        /**
+         * The requests are sent at a fixed rate, shared by the connections.
+         */
+        OPEN
+    }
+
+    /**
+     * The server's host.
+     */
+    private final String host;
+    /**
+     * The server's port.
+     */
+    private final int port;
+    /**
+     * Number of connections opened to the server at the same time.
+     */
+    private final int connections;
+    /**
+     * Time the measured requests are sent for, in nanoseconds.
+     */
+    private final long duration;
+    /**
+     * Time the requests are sent for before they are measured, in nanoseconds.
+     */
+    private final long warmup;
+    /**
+     * How the requests are paced.
+     */
+    private final Mode mode;
+    /**
+     * Number of requests sent per second by all the connections, in open loop mode.
+     */
+    private final int rate;
+    /**
+     * Whether each connection is kept open between requests, or a new one is opened for each request.
+     */
+    private final boolean keepAlive;
+    /**
+     * Time in milliseconds a connection waits for a response before failing.
+     */
+    private final int timeout;
+    /**
+     * The encoded requests, each repeated as many times as its route's weight.
+     */
+    private final byte[][] requests;
+
+    /**
+     * Constructor for the load generator.
+     *
+     * @param options The load generator's options, by name.
+     * @throws IllegalArgumentException if an option has an invalid value.
+     */
+    public LoadGenerator(Properties options) {
+        host = options.getProperty("host", "localhost");
+        port = ServerSettings.getIntProperty(options, "port", 4444);
+        connections = Math.max(1, ServerSettings.getIntProperty(options, "connections", 16));
+        duration = TimeUnit.SECONDS.toNanos(ServerSettings.getIntProperty(options, "duration", 10));
+        warmup = TimeUnit.SECONDS.toNanos(ServerSettings.getIntProperty(options, "warmup", 2));
+        mode = Mode.valueOf(options.getProperty("mode", "closed").trim().toUpperCase(Locale.ROOT));
+        rate = Math.max(1, ServerSettings.getIntProperty(options, "rate", 1000));
+        keepAlive = Boolean.parseBoolean(options.getProperty("keepalive", "true").trim());
+        timeout = ServerSettings.getIntProperty(options, "timeout", 10000);
+        requests = encodeRequests(options.getProperty("urls", "/"));
+    }
+
+    /**
+     * Encodes the request of each route of the URL mix.
+     *
+     * @param urls The comma separated routes, each with an optional weight after a colon.
+     * @return <code>byte[][]</code> - the encoded requests, each repeated as many times as its route's weight.
+     * @throws IllegalArgumentException if the URL mix is empty or a weight isn't a number.
+     */
+    private byte[][] encodeRequests(String urls) {
+        List<byte[]> encodedRequests = new ArrayList<>();
+        for (String url : urls.split(",")) {
+            if (url.isBlank()) {
+                continue;
+            }
+            int weightSeparator = url.lastIndexOf(':');
+            String route = (weightSeparator > 0 ? url.substring(0, weightSeparator) : url).trim();
+            int weight = weightSeparator > 0 ? Integer.parseInt(url.substring(weightSeparator + 1).trim()) : 1;
+            byte[] request = ("GET " + route + " HTTP/1.1\r\n"
+                    + "Host: " + host + ":" + port + "\r\n"
+                    + (keepAlive ? "" : "Connection: close\r\n")
+                    + "\r\n").getBytes(StandardCharsets.ISO_8859_1);
+            for (int copy = 0; copy < weight; copy++) {
+                encodedRequests.add(request);
+            }
+        }
+        if (encodedRequests.isEmpty()) {
+            throw new IllegalArgumentException("The URL mix has no routes.");
+        }
+        return encodedRequests.toArray(new byte[0][]);
+    }
+
+    /**
+     * Sends the load to the server and waits until it ends.
+     *
+     * @return {@link ConnectionWorker} - the results of every connection, added together.
+     * @throws InterruptedException if the thread is interrupted while waiting for the connections.
+     */
+    public ConnectionWorker run() throws InterruptedException {
+
+        long startTime = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        long requestInterval = TimeUnit.SECONDS.toNanos(connections) / rate; // Interval of each connection, in open loop mode
+
+        List<ConnectionWorker> workers = new ArrayList<>();
+        List<Thread> workerThreads = new ArrayList<>();
+        for (int connection = 0; connection < connections; connection++) {
+            // The connections' schedules are staggered, so the open loop requests are evenly spread
+            ConnectionWorker worker = new ConnectionWorker(startTime + requestInterval * connection / connections, requestInterval, connection);
+            Thread workerThread = new Thread(worker, "load-connection-" + connection);
+            workers.add(worker);
+            workerThreads.add(workerThread);
+            workerThread.start();
+        }
+
+        ConnectionWorker total = new ConnectionWorker(startTime, requestInterval, -1);
+        for (int connection = 0; connection < connections; connection++) {
+            workerThreads.get(connection).join();
+            total.add(workers.get(connection));
+        }
+        return total;
+    }
+
+    /**
+     * Prints the results of the load.
+     *
+     * @param total The results of every connection, added together.
+     */
+    public void printReport(ConnectionWorker total) {
+
+        double seconds = duration / 1e9;
+        System.out.printf(Locale.ROOT, "Mode: %s loop, %d connections, keep-alive %s%s%n",
+                mode.name().toLowerCase(Locale.ROOT), connections, keepAlive ? "on" : "off", mode == Mode.OPEN ? ", " + rate + " requests/s" : "");
+        System.out.printf(Locale.ROOT, "Requests: %d in %.1f s (%.1f requests/s), %d errors%n",
+                total.histogram.getCount(), seconds, total.histogram.getCount() / seconds, total.errors);
+
+        StringBuilder statusCodes = new StringBuilder("Status codes:");
+        for (int statusCode = 0; statusCode < total.statusCodes.length; statusCode++) {
+            if (total.statusCodes[statusCode] > 0) {
+                statusCodes.append(' ').append(statusCode).append('=').append(total.statusCodes[statusCode]);
+            }
+        }
+        System.out.println(statusCodes);
+
+        LatencyHistogram histogram = total.histogram;
+        System.out.printf(Locale.ROOT, "Latency (ms): p50=%.3f p90=%.3f p99=%.3f p99.9=%.3f max=%.3f mean=%.3f%n",
+                histogram.getValueAtPercentile(50) / 1e6, histogram.getValueAtPercentile(90) / 1e6,
+                histogram.getValueAtPercentile(99) / 1e6, histogram.getValueAtPercentile(99.9) / 1e6,
+                histogram.getMaximum() / 1e6, histogram.getMean() / 1e6);
+    }
+
+    /**
+     * The task that drives one connection, and its results.
+     */
+    public class ConnectionWorker implements Runnable {
+
+        /**
+         * The latencies of the measured requests.
+         */
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        /**
+         * Number of measured responses received with each status code.
+         */
+        private final long[] statusCodes = new long[600];
+        /**
+         * Number of requests that failed, because the connection broke or timed out.
+         */
+        private long errors;
+
+        /**
+         * The value of {@link System#nanoTime()} when the connection sends its first request.
+         */
+        private final long startTime;
+        /**
+         * Time between two requests of the connection, in open loop mode, in nanoseconds.
+         */
+        private final long requestInterval;
+        /**
+         * Chooses the routes requested, from the URL mix.
+         */
+        private final SplittableRandom random;
+        /**
+         * The buffer the responses are read into.
+         */
+        private final byte[] buffer = new byte[64 * 1024];
+
+        /**
+         * The connection to the server, or null if it isn't open.
+         */
+        private Socket socket;
+
+        /**
+         * Constructor for the task that drives a connection.
+         *
+         * @param startTime       The value of {@link System#nanoTime()} when the connection sends its first request.
+         * @param requestInterval Time between two requests of the connection, in open loop mode, in nanoseconds.
+         * @param connection      The connection's number, used to choose its routes.
+         */
+        public ConnectionWorker(long startTime, long requestInterval, int connection) {
+            this.startTime = startTime;
+            this.requestInterval = requestInterval;
+            this.random = new SplittableRandom(connection);
+        }
+
+        /**
+         * Adds the results of another connection to this one's.
+         *
+         * @param other The other connection.
+         */
+        private void add(ConnectionWorker other) {
+            histogram.add(other.histogram);
+            for (int statusCode = 0; statusCode < statusCodes.length; statusCode++) {
+                statusCodes[statusCode] += other.statusCodes[statusCode];
+            }
+            errors += other.errors;
+        }
+
+        @Override
+        public void run() {
+
+            long measureStart = startTime + warmup;
+            long endTime = measureStart + duration;
+            long intendedTime = startTime;
+
+            while (true) {
+
+                if (mode == Mode.OPEN) {
+                    long wait = intendedTime - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                } else {
+                    intendedTime = System.nanoTime();
+                }
+                if (intendedTime - endTime >= 0) {
+                    break;
+                }
+
+                boolean measured = intendedTime - measureStart >= 0;
+                try {
+                    int statusCode = sendRequest(requests[random.nextInt(requests.length)]);
+                    long completionTime = System.nanoTime();
+                    if (measured && completionTime - endTime < 0) {
+                        histogram.record(completionTime - intendedTime);
+                        statusCodes[statusCode < statusCodes.length ? statusCode : 0]++;
+                    }
+                } catch (IOException | RuntimeException exception) {
+                    if (measured) {
+                        errors++;
+                    }
+                    closeSocket();
+                }
+
+                intendedTime += requestInterval;
+            }
+
+            closeSocket();
+        }
+
+        /**
+         * Sends a request and reads its whole response, opening the connection if needed.
+         *
+         * @param request The encoded request.
+         * @return <code>int</code> - the response's status code.
+         * @throws IOException if the connection breaks or times out.
+         */
+        private int sendRequest(byte[] request) throws IOException {
+
+            if (socket == null) {
+                socket = new Socket();
+                socket.setTcpNoDelay(true);
+                socket.setSoTimeout(timeout);
+                socket.connect(new InetSocketAddress(host, port), timeout);
+            }
+
+            OutputStream output = socket.getOutputStream();
+            output.write(request);
+            output.flush();
+
+            InputStream input = socket.getInputStream();
+            int received = 0;
+            int headEnd = -1;
+            while (headEnd < 0) {
+                if (received == buffer.length) {
+                    throw new IOException("Response head larger than " + buffer.length + " bytes.");
+                }
+                int read = input.read(buffer, received, buffer.length - received);
+                if (read == -1) {
+                    throw new IOException("Connection closed before the response's head.");
+                }
+                for (int index = Math.max(3, received); index < received + read; index++) {
+                    if (buffer[index] == '\n' && buffer[index - 1] == '\r' && buffer[index - 2] == '\n' && buffer[index - 3] == '\r') {
+                        headEnd = index + 1;
+                        break;
+                    }
+                }
+                received += read;
+            }
+
+            String head = new String(buffer, 0, headEnd, StandardCharsets.ISO_8859_1);
+            int statusCode = Integer.parseInt(head.substring(9, 12));
+            String lowerCaseHead = head.toLowerCase(Locale.ROOT);
+
+            int lengthStart = lowerCaseHead.indexOf("\r\ncontent-length:");
+            if (lengthStart < 0) {
+                while (input.read(buffer) != -1) {
+                    // The body ends when the server closes the connection
+                }
+                closeSocket();
+                return statusCode;
+            }
+            lengthStart += "\r\ncontent-length:".length();
+            long bodyToRead = Long.parseLong(head.substring(lengthStart, head.indexOf('\r', lengthStart)).trim()) - (received - headEnd);
+            while (bodyToRead > 0) {
+                int read = input.read(buffer, 0, (int) Math.min(buffer.length, bodyToRead));
+                if (read == -1) {
+                    throw new IOException("Connection closed before the response's body.");
+                }
+                bodyToRead -= read;
+            }
+
+            if (!keepAlive || lowerCaseHead.contains("\r\nconnection: close")) {
+                closeSocket();
+            }
+            return statusCode;
+        }
+
+        /**
+         * Closes the connection to the server, if it is open.
+         */
+        private void closeSocket() {
+            if (socket != null) {
+                try {
+                    socket.close();
+                } catch (IOException exception) {
+                    System.out.println(exception.getMessage());
+                }
+                socket = null;
+            }
+        }
+
+    }
+
+    /**
+     * Parses the options, sends the load and prints the report.
+     *
+     * @param args Options in the form <code>--name=value</code>.
+     */
+    public static void main(String[] args) {
+
+        Properties options = new Properties();
+        for (String argument : args) {
+            int separator = argument.indexOf('=');
+            if (!argument.startsWith("--") || separator < 0) {
+                System.out.println("Options must be passed as --name=value: " + argument);
+                return;
+            }
+            options.setProperty(argument.substring(2, separator), argument.substring(separator + 1));
+        }
+
+        LoadGenerator loadGenerator;
+        try {
+            loadGenerator = new LoadGenerator(options);
+        } catch (IllegalArgumentException exception) {
+            System.out.println("Options are not properly configured: " + exception.getMessage());
+            return;
+        }
+
+        try {
+            loadGenerator.printReport(loadGenerator.run());
+        } catch (InterruptedException exception) {
+            System.out.println(exception.getMessage());
+        }
+    }
+
+}
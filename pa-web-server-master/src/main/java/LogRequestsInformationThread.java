@@ -1,94 +1,260 @@
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.util.Queue;
-import java.util.concurrent.locks.ReentrantLock;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 /**
- * The class of the thread responsible logging the requests' information to a file.
+ * The class of the thread responsible for logging the requests' information to a file. <p>
+ * Requests are taken from the {@link RequestLogger} in batches, and written through a channel that stays open.
+ * The log is flushed whenever the thread catches up with the clients, so a burst of requests is written at once,
+ * and at least every flush interval or flush size while the requests keep coming. <p>
+ * When the log file grows past the rotation size, it is renamed with a numbered suffix and a new file is started.
+ * A log file moved or deleted by another program is noticed at the first flush after the thread waited for requests,
+ * or at most one flush interval later while the requests keep coming, and a new file is started. <p>
+ * The thread is stopped with {@link #shutdown()}, not interrupted: the log's channel is interruptible, and an interrupted thread
+ * couldn't write the requests still waiting.
  */
 public class LogRequestsInformationThread extends Thread {
 
     /**
-     * The path of the file to save the requests' information to.
+     * The format of the time each request was received.
+     */
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss:SSS");
+    /**
+     * Maximum number of requests taken from the queue at once.
      */
-    private final String logFilePath;
+    private static final int BATCH_SIZE = 1024;
 
     /**
-     * The lock responsible for the requests' information array,
-     * which contains a list of requests information to save to the log.
+     * The requests waiting to be logged.
+     */
+    private final RequestLogger requestLogger;
+    /**
+     * The path of the file to save the requests' information to.
+     */
+    private final Path logFilePath;
+    /**
+     * Maximum time in nanoseconds a logged request waits in the buffer before it is flushed to the file.
+     */
+    private final long flushInterval;
+    /**
+     * Number of buffered characters above which the buffer is flushed to the file.
      */
-    private final ReentrantLock requestsInformationLock;
+    private final int flushBytes;
     /**
-     * Contains a list of the requests' information not yet saved to the log.
+     * Size in bytes above which the log file is rotated, or 0 to never rotate it.
      */
-    private final Queue<String> requestsInformation;
+    private final long rotateBytes;
     /**
-     * The lock responsible for the log document, which contains a list of requests information.
+     * Number of rotated log files kept.
      */
-    private final ReentrantLock logLock;
+    private final int rotateFiles;
 
-    private final int timeToWaitBetweenLogs;
+    /**
+     * Whether the thread was stopped, so it writes the requests still waiting and ends.
+     */
+    private volatile boolean stopped;
+    /**
+     * The requests' information not yet written to the file.
+     */
+    private final StringBuilder batch = new StringBuilder();
+    /**
+     * The channel of the log file, or null if it isn't open.
+     */
+    private FileChannel logChannel;
+    /**
+     * The current size of the log file, in bytes.
+     */
+    private long logFileSize;
+    /**
+     * The time the log file is next checked for having been moved or deleted, as a {@link System#nanoTime()}.
+     */
+    private long nextMoveCheckTime;
+    /**
+     * Whether the thread waited for requests since the last flush, so the next flush checks the log file whatever the time.
+     */
+    private boolean waitedForEntries;
 
     /**
      * The constructor of the thread that logs the requests' information.
      *
-     * @param logFilePath             The path of the file to save the requests' information to.
-     * @param requestsInformationLock The lock responsible for the requests' information array.
-     * @param requestsInformation     Contains a list of the requests' information not yet saved to the log.
-     * @param logLock                 * The lock responsible for the log document.
-     */
-    public LogRequestsInformationThread(String logFilePath, ReentrantLock requestsInformationLock, Queue<String> requestsInformation, ReentrantLock logLock, int timeToWaitBetweenLogs) {
-        this.logFilePath = logFilePath;
-        this.requestsInformationLock = requestsInformationLock;
-        this.requestsInformation = requestsInformation;
-        this.logLock = logLock;
-        this.timeToWaitBetweenLogs = timeToWaitBetweenLogs;
+     * @param requestLogger  The requests waiting to be logged.
+     * @param serverSettings The server's settings, imported from the configuration file when the server started.
+     */
+    public LogRequestsInformationThread(RequestLogger requestLogger, ServerSettings serverSettings) {
+        super("log-requests");
+        this.requestLogger = requestLogger;
+        this.logFilePath = Path.of(serverSettings.getLogPath());
+        this.flushInterval = TimeUnit.MILLISECONDS.toNanos(Math.max(1, serverSettings.getLogFlushInterval()));
+        this.flushBytes = serverSettings.getLogFlushBytes();
+        this.rotateBytes = serverSettings.getLogRotateBytes();
+        this.rotateFiles = serverSettings.getLogRotateFiles();
+    }
+
+    /**
+     * Appends a request's information to the buffer, as a line of the log.
+     *
+     * @param entry The request to log.
+     */
+    private void append(RequestLogger.Entry entry) {
+        TIMESTAMP_FORMAT.formatTo(LocalDateTime.ofInstant(Instant.ofEpochMilli(entry.timestamp()), ZoneId.systemDefault()), batch);
+        batch.append("-Method:").append(entry.method())
+                .append("-Route:").append(entry.route())
+                .append('-').append(entry.clientAddress())
+                .append('\n');
     }
 
     /**
-     * Logs the first request in the requests' information queue.
+     * Writes the buffered requests' information to the log file, rotating it first if it would grow past the rotation size.
      *
-     * @param noRequestsToLogTimeout Time to wait in milliseconds if there are no requests to log.
-     * @throws IOException Upon failed or interrupted I/O operations.
-     * @throws InterruptedException Thread is occupied, and is interrupted.
+     * @throws IOException if the log file can't be opened, rotated or written.
      */
-    private void logFirstRequestsInformation(int noRequestsToLogTimeout) throws IOException, InterruptedException {
+    private void flush() throws IOException {
+
+        ByteBuffer bytes = ByteBuffer.wrap(batch.toString().getBytes(StandardCharsets.UTF_8));
+        batch.setLength(0);
+
+        // The log is reopened if it was moved or deleted by another program, so the requests aren't written to an unlinked file.
+        // While the requests keep coming, it is only checked once per flush interval, as the thread then flushes far more often
+        long now = System.nanoTime();
+        if (logChannel != null && (waitedForEntries || now - nextMoveCheckTime >= 0)) {
+            waitedForEntries = false;
+            nextMoveCheckTime = now + flushInterval;
+            if (!Files.exists(logFilePath)) {
+                closeLogFile();
+            }
+        }
+        if (logChannel == null) {
+            openLogFile();
+        }
+        if (rotateBytes > 0 && logFileSize > 0 && logFileSize + bytes.remaining() > rotateBytes) {
+            rotateLogFile();
+        }
+
+        while (bytes.hasRemaining()) {
+            logFileSize += logChannel.write(bytes);
+        }
+
+    }
 
-        String firstRequestInformation;
+    /**
+     * Opens the log file, appending to it if it already exists.
+     *
+     * @throws IOException if the log file can't be opened.
+     */
+    private void openLogFile() throws IOException {
+        logChannel = FileChannel.open(logFilePath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        logFileSize = logChannel.size();
+        nextMoveCheckTime = System.nanoTime() + flushInterval;
+    }
 
-        if (requestsInformation.size() != 0) {
+    /**
+     * Renames the log file with the suffix .1, shifting the older rotated files, and opens a new log file.
+     * The oldest rotated file is deleted when there are more than the number of files kept.
+     *
+     * @throws IOException if the log files can't be renamed or opened.
+     */
+    private void rotateLogFile() throws IOException {
 
-            requestsInformationLock.lock();
-            firstRequestInformation = requestsInformation.poll();
-            requestsInformationLock.unlock();
+        logChannel.close();
+        logChannel = null;
 
-            logLock.lock();
-            FileWriter logFileWriter = new FileWriter(logFilePath, true);
-            BufferedWriter logBufferedWriter = new BufferedWriter(logFileWriter);
-            logBufferedWriter.append(firstRequestInformation).append("\n");
-            logBufferedWriter.flush();
-            System.out.println("First response in queue logged.");
-            System.out.println("Requests waiting in queue to be logged: " + requestsInformation + "\n");
-            logLock.unlock();
+        String fileName = logFilePath.getFileName().toString();
+        Files.deleteIfExists(logFilePath.resolveSibling(fileName + "." + rotateFiles));
+        for (int file = rotateFiles - 1; file >= 1; file--) {
+            Path rotatedFile = logFilePath.resolveSibling(fileName + "." + file);
+            if (Files.exists(rotatedFile)) {
+                Files.move(rotatedFile, logFilePath.resolveSibling(fileName + "." + (file + 1)), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        if (rotateFiles > 0) {
+            Files.move(logFilePath, logFilePath.resolveSibling(fileName + ".1"), StandardCopyOption.REPLACE_EXISTING);
         } else {
-            Thread.sleep(noRequestsToLogTimeout);
+            Files.deleteIfExists(logFilePath);
         }
+
+        openLogFile();
+    }
+
+    /**
+     * Flushes the buffered requests' information. Failures are reported, and the requests that couldn't be written are lost.
+     */
+    private void tryFlush() {
+        try {
+            flush();
+        } catch (IOException exception) {
+            DiagnosticLog.info(exception.getMessage());
+            closeLogFile(); // Reopened by the next flush
+        }
+    }
+
+    /**
+     * Closes the log file, if it is open.
+     */
+    private void closeLogFile() {
+        if (logChannel != null) {
+            try {
+                logChannel.close();
+            } catch (IOException exception) {
+                DiagnosticLog.info(exception.getMessage());
+            }
+            logChannel = null;
+        }
+    }
+
+    /**
+     * Stops the thread. It writes the requests still waiting to be logged, closes the log file, and ends.
+     */
+    public void shutdown() {
+        stopped = true;
+        LockSupport.unpark(this);
     }
 
     @Override
     public void run() {
 
-        //noinspection InfiniteLoopStatement
-        while (true) {
+        try {
+            openLogFile();
+        } catch (IOException exception) {
+            DiagnosticLog.info(exception.getMessage()); // Opened again by the first flush
+        }
+
+        long lastFlushTime = System.nanoTime();
 
-            try {
-                Thread.sleep(1000);
-                logFirstRequestsInformation(1000);
-            } catch (IOException | InterruptedException exception) {
-                System.out.println(exception.getMessage());
+        while (!stopped) {
+
+            int drained = requestLogger.drain(this::append, BATCH_SIZE);
+            long now = System.nanoTime();
+
+            // Flush when the queue is empty (group commit), or when the buffer is full or old, while the requests keep coming
+            boolean caughtUp = drained < BATCH_SIZE;
+            if (!batch.isEmpty() && (caughtUp || batch.length() >= flushBytes || now - lastFlushTime >= flushInterval)) {
+                tryFlush();
+                lastFlushTime = now;
             }
+
+            if (drained == 0 && !stopped) {
+                requestLogger.awaitEntries(flushInterval);
+                waitedForEntries = true;
+            }
+
+        }
+
+        //* Write the requests still waiting before stopping
+        while (requestLogger.drain(this::append, BATCH_SIZE) > 0) {
+            tryFlush();
         }
+        closeLogFile();
 
     }
 
@@ -0,0 +1,170 @@
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The documents of a mostly static server root, each memory-mapped once and shared by every serving thread. <p>
+ * Responses are written straight from the page cache, without opening the file or copying it to the heap on each request.
+ * Each lookup checks the file's modification time and size, and maps the file again if it changed. <p>
+ * Files larger than the streaming threshold are still sent with sendfile, which doesn't need a mapping. <p>
+ * The mapped bytes are bounded by <code>server.mmap.maxBytes</code>, and the files that don't fit are streamed too.
+ * Mappings aren't evicted to make room, as a mapping is only unmapped once it is garbage collected, so dropping it wouldn't free its address space. <p>
+ * Files should be replaced by moving a new version over them: a mapped file truncated in place fails the requests reading it.
+ */
+public class MappedFileStore {
+
+    /**
+     * The mapped files, by path.
+     */
+    private final Map<Path, FileCache.CachedFile> mappedFiles = new ConcurrentHashMap<>();
+    /**
+     * Number of bytes of the mapped files, including the ones being mapped.
+     */
+    private final AtomicLong mappedBytes = new AtomicLong();
+    /**
+     * Size in bytes above which files are streamed from the filesystem instead of mapped.
+     */
+    private final long streamingThreshold;
+    /**
+     * Maximum number of bytes of the mapped files, above which the other files are streamed.
+     */
+    private final long maximumBytes;
+    /**
+     * The server's performance counters.
+     */
+    private final ServerMetrics serverMetrics;
+
+    /**
+     * Constructor for the store of memory-mapped documents.
+     *
+     * @param streamingThreshold Size in bytes above which files are streamed from the filesystem instead of mapped.
+     * @param maximumBytes       Maximum number of bytes of the mapped files, above which the other files are streamed.
+     * @param serverMetrics      The server's performance counters.
+     */
+    public MappedFileStore(long streamingThreshold, long maximumBytes, ServerMetrics serverMetrics) {
+        this.streamingThreshold = Math.min(streamingThreshold, Integer.MAX_VALUE);
+        this.maximumBytes = maximumBytes;
+        this.serverMetrics = serverMetrics;
+    }
+
+    /**
+     * Gets a file's current content, mapping it if it wasn't mapped yet or if it changed since it was mapped.
+     *
+     * @param path The file's path.
+     * @return {@link FileCache.CachedFile} - the file's mapped content, or null if the path isn't a regular file.
+     * Files larger than the streaming threshold are returned without their content, to be streamed.
+     * @throws IOException if the file can't be mapped.
+     */
+    public FileCache.CachedFile get(Path path) throws IOException {
+
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException exception) {
+            invalidate(path);
+            return null;
+        }
+
+        if (!attributes.isRegularFile()) {
+            return null;
+        }
+
+        return get(path, attributes.lastModifiedTime().toMillis(), attributes.size());
+    }
+
+    /**
+     * Gets the content of a file whose attributes are already known, such as from the {@link DocumentIndex}, without checking the filesystem.
+     * The file is only mapped if it isn't mapped with the same modification time and size.
+     *
+     * @param path         The path of a regular file.
+     * @param lastModified The file's modification time, in milliseconds since the epoch.
+     * @param size         The file's size, in bytes.
+     * @return {@link FileCache.CachedFile} - the file's mapped content, or null if the file no longer exists.
+     * Files larger than the streaming threshold, or that don't fit in the mapped bytes, are returned without their content, to be streamed.
+     * @throws IOException if the file can't be mapped.
+     */
+    public FileCache.CachedFile get(Path path, long lastModified, long size) throws IOException {
+
+        if (size > streamingThreshold) {
+            return new FileCache.CachedFile(path, null, lastModified, size);
+        }
+
+        FileCache.CachedFile mappedFile = mappedFiles.get(path);
+        if (mappedFile != null && mappedFile.lastModified() == lastModified && mappedFile.size() == size) {
+            serverMetrics.recordCacheHit();
+            return mappedFile;
+        }
+
+        serverMetrics.recordCacheMiss();
+        // The stale mapping doesn't count against the new one
+        if (mappedFile != null && mappedFiles.remove(path, mappedFile)) {
+            mappedBytes.addAndGet(-mappedFile.size());
+        }
+
+        //* Reserve the file's bytes before mapping it, so concurrent lookups can't map more than the maximum
+        if (mappedBytes.addAndGet(size) > maximumBytes) {
+            mappedBytes.addAndGet(-size);
+            return new FileCache.CachedFile(path, null, lastModified, size);
+        }
+        try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            long mappedSize = fileChannel.size();
+            mappedFile = new FileCache.CachedFile(path, fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, mappedSize), lastModified, mappedSize);
+        } catch (IOException exception) {
+            mappedBytes.addAndGet(-size);
+            if (exception instanceof NoSuchFileException) {
+                invalidate(path);
+                return null;
+            }
+            throw exception;
+        }
+
+        // The file may have changed size since its attributes were read, and another lookup may have mapped it meanwhile
+        mappedBytes.addAndGet(mappedFile.size() - size);
+        FileCache.CachedFile replacedFile = mappedFiles.put(path, mappedFile);
+        if (replacedFile != null) {
+            mappedBytes.addAndGet(-replacedFile.size());
+        }
+        return mappedFile;
+    }
+
+    /**
+     * Forgets a file's mapping, so its next lookup maps it again.
+     *
+     * @param path The file's path.
+     */
+    public void invalidate(Path path) {
+        FileCache.CachedFile removedFile = mappedFiles.remove(path);
+        if (removedFile != null) {
+            mappedBytes.addAndGet(-removedFile.size());
+        }
+    }
+
+    /**
+     * Forgets the mappings of the files of a folder and of its subfolders, such as when the folder is deleted or replaced.
+     *
+     * @param folder The folder's path.
+     */
+    public void invalidateFolder(Path folder) {
+        for (Path path : mappedFiles.keySet()) {
+            if (path.startsWith(folder)) {
+                invalidate(path);
+            }
+        }
+    }
+
+    /**
+     * @return <code>long</code> - number of bytes of the mapped files.
+     */
+    public long getMappedBytes() {
+        return mappedBytes.get();
+    }
+
+}
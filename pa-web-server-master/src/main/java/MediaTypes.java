@@ -0,0 +1,95 @@
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The media types of the served documents, chosen by their file extension. <p>
+ * Text formats are also marked as compressible, so they can be served gzip encoded to the clients that accept it.
+ */
+public final class MediaTypes {
+
+    /**
+     * The media type of the documents whose extension isn't known.
+     */
+    public static final String DEFAULT_TYPE = "application/octet-stream";
+
+    /**
+     * The media types, by lower case file extension.
+     */
+    private static final Map<String, String> typesByExtension = Map.ofEntries(
+            Map.entry("html", "text/html"),
+            Map.entry("htm", "text/html"),
+            Map.entry("css", "text/css"),
+            Map.entry("js", "text/javascript"),
+            Map.entry("mjs", "text/javascript"),
+            Map.entry("json", "application/json"),
+            Map.entry("xml", "application/xml"),
+            Map.entry("txt", "text/plain"),
+            Map.entry("csv", "text/csv"),
+            Map.entry("md", "text/markdown"),
+            Map.entry("svg", "image/svg+xml"),
+            Map.entry("png", "image/png"),
+            Map.entry("jpg", "image/jpeg"),
+            Map.entry("jpeg", "image/jpeg"),
+            Map.entry("gif", "image/gif"),
+            Map.entry("webp", "image/webp"),
+            Map.entry("ico", "image/x-icon"),
+            Map.entry("pdf", "application/pdf"),
+            Map.entry("wasm", "application/wasm"),
+            Map.entry("woff", "font/woff"),
+            Map.entry("woff2", "font/woff2"),
+            Map.entry("zip", "application/zip"),
+            Map.entry("gz", "application/gzip"),
+            Map.entry("mp4", "video/mp4"),
+            Map.entry("mp3", "audio/mpeg")
+    );
+
+    /**
+     * The media types, other than <code>text/*</code>, whose content is worth compressing.
+     */
+    private static final Set<String> compressibleTypes = Set.of("application/json", "application/xml", "image/svg+xml", "application/wasm");
+
+    /**
+     * The media types are only looked up through the static methods.
+     */
+    private MediaTypes() {
+    }
+
+    /**
+     * Finds the media type of a document, by its file extension.
+     *
+     * @param path The document's path.
+     * @return <code>String</code> - the document's media type, or {@link #DEFAULT_TYPE} if its extension isn't known.
+     */
+    public static String typeOf(Path path) {
+        return typesByExtension.getOrDefault(extensionOf(path), DEFAULT_TYPE);
+    }
+
+    /**
+     * Gets the extension of a document's file name.
+     *
+     * @param path The document's path.
+     * @return <code>String</code> - the lower case extension, without the dot, or an empty string if the file name doesn't have one.
+     */
+    public static String extensionOf(Path path) {
+        String fileName = path.getFileName() != null ? path.getFileName().toString() : "";
+        int extensionStart = fileName.lastIndexOf('.');
+        return extensionStart < 0 ? "" : fileName.substring(extensionStart + 1).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Checks if a document of a media type gets noticeably smaller when compressed.
+     *
+     * @param mediaType The media type.
+     * @return <code>boolean</code>
+     * <ul>
+     *     <li> <strong>true -</strong> if the media type is a text format.</li>
+     *     <li> <strong>false -</strong> if the media type is already compressed, such as images, fonts and archives.</li>
+     * </ul>
+     */
+    public static boolean isCompressible(String mediaType) {
+        return mediaType.startsWith("text/") || compressibleTypes.contains(mediaType);
+    }
+
+}
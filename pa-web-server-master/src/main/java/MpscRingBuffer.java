@@ -0,0 +1,135 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * A bounded queue that many threads can add to, and a single thread takes from, without locks. <p>
+ * Each slot has a sequence number telling whether it is free for the producer of a given round,
+ * or holds the element of a given round for the consumer. Producers claim slots with a compare-and-set on the producer index.
+ *
+ * @param <E> The type of the queue's elements.
+ */
+public class MpscRingBuffer<E> {
+
+    /**
+     * The queue's elements.
+     */
+    private final AtomicReferenceArray<E> slots;
+    /**
+     * The sequence number of each slot.
+     */
+    private final AtomicLongArray sequences;
+    /**
+     * Mask that maps an index to a slot.
+     */
+    private final int mask;
+    /**
+     * Index of the next slot a producer claims.
+     */
+    private final AtomicLong producerIndex = new AtomicLong();
+    /**
+     * Index of the next slot the consumer takes. Only the consumer thread uses it.
+     */
+    private long consumerIndex;
+
+    /**
+     * Constructor for the queue.
+     *
+     * @param capacity The minimum number of elements the queue holds, rounded up to a power of two.
+     */
+    public MpscRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        slots = new AtomicReferenceArray<>(size);
+        sequences = new AtomicLongArray(size);
+        for (int slot = 0; slot < size; slot++) {
+            sequences.set(slot, slot);
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * Adds an element to the queue, if it isn't full. Can be called by any thread.
+     *
+     * @param element The element to add.
+     * @return <code>boolean</code>
+     * <ul>
+     *     <li> <strong>true -</strong> if the element was added.</li>
+     *     <li> <strong>false -</strong> if the queue is full.</li>
+     * </ul>
+     */
+    public boolean offer(E element) {
+
+        long index = producerIndex.get();
+        while (true) {
+
+            int slot = (int) (index & mask);
+            long difference = sequences.get(slot) - index;
+
+            if (difference == 0) {
+                if (producerIndex.compareAndSet(index, index + 1)) {
+                    slots.lazySet(slot, element);
+                    sequences.set(slot, index + 1); // Publishes the element to the consumer
+                    return true;
+                }
+                index = producerIndex.get();
+            } else if (difference < 0) {
+                return false; // The consumer hasn't taken this slot's element from the previous round
+            } else {
+                index = producerIndex.get(); // Another producer claimed the slot first
+            }
+
+        }
+
+    }
+
+    /**
+     * Takes the oldest element of the queue. Must only be called by the consumer thread.
+     *
+     * @return <code>E</code> - the oldest element, or null if the queue is empty.
+     */
+    public E poll() {
+
+        int slot = (int) (consumerIndex & mask);
+        if (sequences.get(slot) != consumerIndex + 1) {
+            return null;
+        }
+
+        E element = slots.get(slot);
+        slots.lazySet(slot, null);
+        sequences.set(slot, consumerIndex + mask + 1); // Frees the slot for the producers of the next round
+        consumerIndex++;
+        return element;
+    }
+
+    /**
+     * Takes up to a number of elements from the queue, oldest first. Must only be called by the consumer thread.
+     *
+     * @param elementConsumer Receives each element taken.
+     * @param limit           The maximum number of elements to take.
+     * @return <code>int</code> - the number of elements taken.
+     */
+    public int drain(Consumer<E> elementConsumer, int limit) {
+        int drained = 0;
+        E element;
+        while (drained < limit && (element = poll()) != null) {
+            elementConsumer.accept(element);
+            drained++;
+        }
+        return drained;
+    }
+
+    /**
+     * Checks if the queue is empty. Only exact when called by the consumer thread.
+     *
+     * @return <code>boolean</code>
+     * <ul>
+     *     <li> <strong>true -</strong> if no element is waiting to be taken.</li>
+     *     <li> <strong>false -</strong> if there are elements waiting to be taken.</li>
+     * </ul>
+     */
+    public boolean isEmpty() {
+        return sequences.get((int) (consumerIndex & mask)) != consumerIndex + 1;
+    }
+
+}
@@ -0,0 +1,84 @@
+import java.io.IOException;
+import java.net.SocketException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * The class of the thread responsible for accepting the clients of the non-blocking server.
+ * After accepting a client, it is handed to one of the reactors, in turns, which serves it from then on.
+ * Several acceptors can share the server's channel, or each accept from its own channel when SO_REUSEPORT is enabled.
+ */
+public class NioAcceptClientsThread extends Thread {
+
+    /**
+     * The HTTP server's channel.
+     */
+    private final ServerSocketChannel serverChannel;
+    /**
+     * The reactors that serve the accepted clients.
+     */
+    private final ReactorThread[] reactors;
+    /**
+     * The server's settings, imported from the configuration file when the server started.
+     */
+    private final ServerSettings serverSettings;
+    /**
+     * The server's performance counters.
+     */
+    private final ServerMetrics serverMetrics;
+
+    /**
+     * Constructor for the thread responsible for accepting the clients of the non-blocking server.
+     *
+     * @param name           The thread's name.
+     * @param serverChannel  The HTTP server's channel, in blocking mode.
+     * @param reactors       The reactors that serve the accepted clients.
+     * @param serverSettings The server's settings, imported from the configuration file when the server started.
+     * @param serverMetrics  The server's performance counters.
+     */
+    public NioAcceptClientsThread(String name, ServerSocketChannel serverChannel, ReactorThread[] reactors, ServerSettings serverSettings, ServerMetrics serverMetrics) {
+        super(name);
+        this.serverChannel = serverChannel;
+        this.reactors = reactors;
+        this.serverSettings = serverSettings;
+        this.serverMetrics = serverMetrics;
+    }
+
+    /**
+     * Main cycle of the non-blocking server, it continuously accepts clients and hands them to the reactors.
+     */
+    @Override
+    public void run() {
+
+        int nextReactor = 0;
+
+        try {
+
+            //noinspection InfiniteLoopStatement
+            while (true) {
+
+                SocketChannel clientChannel = serverChannel.accept(); // Accept a client and create a channel
+                long acceptedTime = System.nanoTime();
+                serverMetrics.recordAcceptedConnection();
+                try {
+                    ServerListeners.configureClient(clientChannel.socket(), serverSettings);
+                } catch (SocketException exception) {
+                    DiagnosticLog.info(exception.getMessage());
+                }
+                clientChannel.configureBlocking(false);
+
+                reactors[nextReactor].register(clientChannel, acceptedTime);
+                nextReactor = (nextReactor + 1) % reactors.length;
+
+            }
+
+        } catch (IOException exception) {
+            // The channel is closed when the server shuts down, which ends the thread
+            if (serverChannel.isOpen()) {
+                DiagnosticLog.info(exception.getMessage());
+            }
+        }
+
+    }
+
+}
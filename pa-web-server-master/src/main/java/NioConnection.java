@@ -0,0 +1,558 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * The state of a client connected to the non-blocking server. <p>
+ * The requests are parsed incrementally as their bytes arrive, and the responses are written as the socket accepts them,
+ * so no thread is dedicated to the connection while it waits for the client.
+ * Pipelined requests are answered one at a time, in the order they arrived. <p>
+ * The requests are answered by the client executor, off the reactor's thread, as resolving a document can read, stat or compress files:
+ * a worker waits for the request to be admitted, resolves the document and acquires its permit, and hands the response back to the reactor,
+ * which writes it. The connection isn't read meanwhile, and the permit and the admission are released once the response is written.
+ */
+public class NioConnection {
+
+    /**
+     * The client's channel.
+     */
+    private final SocketChannel clientChannel;
+    /**
+     * The key of the client's channel in the reactor's selector.
+     */
+    private final SelectionKey selectionKey;
+    /**
+     * The reactor serving the connection, resumed when a request is answered.
+     */
+    private final ReactorThread reactor;
+    /**
+     * The executor that answers the requests, off the reactor's thread.
+     */
+    private final ExecutorService clientExecutor;
+    /**
+     * Decides which requests are served, and which are refused because the server is overloaded.
+     */
+    private final AdmissionController admissionController;
+    /**
+     * The locks that coordinate the clients served the same document.
+     */
+    private final DocumentLocks documentLocks;
+    /**
+     * The server's settings, imported from the configuration file when the server started.
+     */
+    private final ServerSettings serverSettings;
+    /**
+     * Resolves the routes requested by the client to the documents served to it.
+     */
+    private final RequestHandler requestHandler;
+    /**
+     * The server's performance counters.
+     */
+    private final ServerMetrics serverMetrics;
+    /**
+     * The clients connected to the server.
+     */
+    private final ConnectionRegistry connectionRegistry;
+    /**
+     * The state of the connection, in the registry.
+     */
+    private final ConnectionRegistry.Connection connection;
+
+    /**
+     * Collects the requests to be written to the log.
+     */
+    private final RequestLogger requestLogger;
+
+    /**
+     * The connection's read buffer, acquired from the buffer pool and released when the connection is closed.
+     */
+    private final BufferPool.PooledBuffer pooledReadBuffer;
+    /**
+     * The bytes received from the client that weren't parsed yet.
+     */
+    private final ByteBuffer readBuffer;
+    /**
+     * The parser of the connection's requests.
+     */
+    private final HttpRequestParser requestParser;
+    /**
+     * The last request parsed, reused by every request of the connection, whose storage is released when the connection is closed.
+     */
+    private final HttpRequest request;
+    /**
+     * Number of bytes of the last request's body still to be skipped.
+     */
+    private long bodyBytesToDiscard;
+    /**
+     * The response being written to the client, or null if there is none.
+     */
+    private ByteBuffer[] pendingResponse;
+    /**
+     * The file streamed as the pending response's body, or null if the body is in memory.
+     */
+    private FileChannel pendingFile;
+    /**
+     * The regions of the pending file that are part of the response, in order.
+     */
+    private List<HttpResponse.FileRegion> pendingFileRegions;
+    /**
+     * Index of the region of the pending file being transferred.
+     */
+    private int pendingFileRegion;
+    /**
+     * Number of bytes of the region being transferred that were already sent.
+     */
+    private long pendingFilePosition;
+    /**
+     * Whether the connection is closed after the pending response is written.
+     */
+    private boolean closeAfterResponse;
+    /**
+     * The route answered by the pending response, or null if the request couldn't be parsed.
+     */
+    private String pendingRoute;
+    /**
+     * The pending response's code and reason phrase.
+     */
+    private String pendingResponseCode;
+    /**
+     * Number of bytes of the pending response written so far.
+     */
+    private long pendingBytesWritten;
+    /**
+     * The value of {@link System#nanoTime()} when the pending response's request was parsed.
+     */
+    private long pendingRequestTime;
+    /**
+     * Number of requests answered through the connection.
+     */
+    private int servedRequests;
+    /**
+     * Whether a request is being answered or its response written, from the time it is parsed.
+     */
+    private boolean requestInProgress;
+    /**
+     * Whether the last request is being answered by a worker, so the next requests wait in the read buffer.
+     */
+    private boolean answering;
+    /**
+     * The response built by the worker, or null if the request couldn't be answered.
+     * Written by the worker, and read by the reactor once the worker resumed it.
+     */
+    private HttpResponse answeredResponse;
+    /**
+     * Whether the request being answered was admitted, so the admission is released once its response is written.
+     */
+    private boolean admitted;
+    /**
+     * The value of {@link System#nanoTime()} when the request being answered was admitted.
+     */
+    private long admittedTime;
+    /**
+     * The permit of the document being sent, or null if the response isn't a document.
+     */
+    private DocumentLocks.Permit documentPermit;
+
+    /**
+     * Constructor for the state of a client connected to the non-blocking server.
+     *
+     * @param clientChannel           The client's channel.
+     * @param selectionKey            The key of the client's channel in the reactor's selector.
+     * @param reactor                 The reactor serving the connection, resumed when a request is answered.
+     * @param clientExecutor          The executor that answers the requests, off the reactor's thread.
+     * @param admissionController     Decides which requests are served, and which are refused because the server is overloaded.
+     * @param documentLocks           The locks that coordinate the clients served the same document.
+     * @param serverSettings          The server's settings, imported from the configuration file when the server started.
+     * @param requestHandler          Resolves the routes requested by the client to the documents served to it.
+     * @param serverMetrics           The server's performance counters.
+     * @param connectionRegistry      The clients connected to the server.
+     * @param connection              The state of the connection, in the registry.
+     * @param requestLogger           Collects the requests to be written to the log.
+     * @param bufferPool              The pool the connection's read buffer is acquired from.
+     * @param headPool                The pool the storage of the connection's requests is acquired from, backed by arrays.
+     */
+    public NioConnection(SocketChannel clientChannel, SelectionKey selectionKey, ReactorThread reactor, ExecutorService clientExecutor, AdmissionController admissionController, DocumentLocks documentLocks,
+                         ServerSettings serverSettings, RequestHandler requestHandler, ServerMetrics serverMetrics, ConnectionRegistry connectionRegistry, ConnectionRegistry.Connection connection, RequestLogger requestLogger, BufferPool bufferPool, BufferPool headPool) {
+        this.clientChannel = clientChannel;
+        this.selectionKey = selectionKey;
+        this.reactor = reactor;
+        this.clientExecutor = clientExecutor;
+        this.admissionController = admissionController;
+        this.documentLocks = documentLocks;
+        this.serverSettings = serverSettings;
+        this.requestHandler = requestHandler;
+        this.serverMetrics = serverMetrics;
+        this.connectionRegistry = connectionRegistry;
+        this.connection = connection;
+        this.requestLogger = requestLogger;
+        this.pooledReadBuffer = bufferPool.acquire(serverSettings.getRequestMaximumHeadSize());
+        this.readBuffer = pooledReadBuffer.buffer();
+        this.requestParser = new HttpRequestParser(serverSettings.getRequestMaximumHeadSize());
+        this.request = new HttpRequest(headPool, serverSettings.getRequestMaximumHeadSize(), serverSettings.getRequestMaximumHeaders());
+    }
+
+    /**
+     * Reads the bytes available in the client's channel and answers every complete request.
+     *
+     * @throws IOException if an I/O error occurs while reading or writing the channel.
+     */
+    public void onReadable() throws IOException {
+        int read = clientChannel.read(readBuffer);
+        if (read == -1) {
+            close();
+            return;
+        }
+        connection.recordBytesIn(read);
+        answerRequests();
+    }
+
+    /**
+     * Continues writing the pending response, and answers the requests that arrived meanwhile once it is written.
+     *
+     * @throws IOException if an I/O error occurs while reading or writing the channel.
+     */
+    public void onWritable() throws IOException {
+        if (writePendingResponse()) {
+            answerRequests();
+        }
+    }
+
+    /**
+     * Writes the response a worker built, or closes the connection if the request couldn't be answered,
+     * and answers the requests that arrived meanwhile once it is written. Called by the reactor's thread once the worker resumed it.
+     *
+     * @throws IOException if an I/O error occurs while reading or writing the channel.
+     */
+    public void onAnswered() throws IOException {
+        answering = false;
+        HttpResponse response = answeredResponse;
+        answeredResponse = null;
+        if (!clientChannel.isOpen()) {
+            finishRequest(); // Closed while the worker answered, the request is only released now
+            request.release();
+            return;
+        }
+        if (response == null) {
+            close();
+            return;
+        }
+        if (sendResponse(response)) {
+            answerRequests();
+        }
+    }
+
+    /**
+     * Checks if the connection hasn't been read or written since a given time.
+     * A response that the client stopped reading counts as idle, so slow clients can't hold the connection forever,
+     * but a request still being answered by a worker doesn't.
+     *
+     * @param deadline A value of {@link System#nanoTime()}.
+     * @return <code>boolean</code>
+     * <ul>
+     *     <li> <strong>true -</strong> if the connection has been idle since before the deadline.</li>
+     *     <li> <strong>false -</strong> if the connection was read or written after the deadline, or a worker is answering its request.</li>
+     * </ul>
+     */
+    public boolean isIdleSince(long deadline) {
+        return !answering && connection.getLastActivityTime() - deadline < 0;
+    }
+
+    /**
+     * @return <code>boolean</code>
+     * <ul>
+     *     <li> <strong>true -</strong> if a response is being written to the client.</li>
+     *     <li> <strong>false -</strong> if the connection is waiting for the client's next request.</li>
+     * </ul>
+     */
+    public boolean isBusy() {
+        return connection.isBusy();
+    }
+
+    /**
+     * Closes the client's channel and removes it from the reactor's selector, and returns the read buffer and the request's storage to their pools.
+     * A response still being written is abandoned. A request still being answered by a worker is released when the worker resumes the reactor.
+     */
+    public void close() {
+        if (requestInProgress && !answering) {
+            pendingResponse = null;
+            finishRequest();
+        }
+        connectionRegistry.unregister(connection);
+        selectionKey.cancel();
+        try {
+            clientChannel.close();
+            closePendingFile();
+        } catch (IOException exception) {
+            DiagnosticLog.info(exception.getMessage());
+        }
+        pooledReadBuffer.release();
+        // A worker still answering reads the request's head, so its storage is only released once the worker resumes the reactor
+        if (!answering) {
+            request.release();
+        }
+    }
+
+    /**
+     * Closes the file streamed as the pending response's body, if there is one.
+     *
+     * @throws IOException if an I/O error occurs while closing the file.
+     */
+    private void closePendingFile() throws IOException {
+        if (pendingFile != null) {
+            pendingFile.close();
+            pendingFile = null;
+        }
+    }
+
+    /**
+     * Answers, in order, the complete requests in the read buffer, until one of them is handed to a worker, or its response can't be written at once.
+     *
+     * @throws IOException if an I/O error occurs while writing the channel.
+     */
+    private void answerRequests() throws IOException {
+
+        while (clientChannel.isOpen() && !requestInProgress) {
+
+            discardBody();
+            if (bodyBytesToDiscard > 0) {
+                return;
+            }
+
+            int requestHeadSize;
+            try {
+                requestHeadSize = requestParser.parse(readBuffer, request);
+            } catch (HttpParseException exception) {
+                startRequest(null, System.nanoTime());
+                sendResponse(new HttpResponse(exception.getResponseCode(), new byte[0], false));
+                return;
+            }
+            if (requestHeadSize < 0) {
+                return; // The head isn't complete yet
+            }
+
+            long requestTime = System.nanoTime();
+            removeFromReadBuffer(requestHeadSize);
+            bodyBytesToDiscard = request.getContentLength();
+            answerRequest(requestTime);
+        }
+
+    }
+
+    /**
+     * Hands the request that was just parsed to a worker. The connection isn't read until the worker resumes the reactor with the response.
+     *
+     * @param requestTime The value of {@link System#nanoTime()} when the request was parsed.
+     */
+    private void answerRequest(long requestTime) {
+
+        servedRequests++;
+        // A server shutting down answers the request, and closes the connection instead of waiting for the next one
+        boolean keepAlive = request.isKeepAlive() && servedRequests < serverSettings.getKeepAliveMaximumRequests() && !connectionRegistry.isDraining();
+
+        writeToLog(request.getMethod(), request.getRoute());
+        startRequest(request.getRoute(), requestTime);
+        selectionKey.interestOps(0);
+        clientExecutor.execute(() -> {
+            HttpResponse response = null;
+            try {
+                response = buildResponse(keepAlive, requestTime);
+            } catch (IOException | InterruptedException exception) {
+                DiagnosticLog.info(exception.getMessage());
+            } finally {
+                // Whatever failed, the reactor is resumed: without a response, it closes the connection and releases the request
+                answeredResponse = response;
+                reactor.resume(this);
+            }
+        });
+        // Only set once the worker was started, so a request the executor refused is released when the connection is closed
+        answering = true;
+    }
+
+    /**
+     * Builds the response to the request being answered, on a worker's thread. The request waits to be admitted,
+     * and the document's permit is acquired before the response is built, as the blocking server's clients do.
+     *
+     * @param keepAlive   Whether the connection stays open after the response.
+     * @param requestTime The value of {@link System#nanoTime()} when the request was parsed.
+     * @return {@link HttpResponse} - the response to the request, or a 503 if the server is overloaded.
+     * @throws IOException if the document that answers the request can't be read.
+     * @throws InterruptedException if the worker is interrupted while the request waits to be admitted, or for the document.
+     */
+    private HttpResponse buildResponse(boolean keepAlive, long requestTime) throws IOException, InterruptedException {
+
+        admitted = admissionController.acquire();
+        admittedTime = System.nanoTime();
+        serverMetrics.recordAdmission(admittedTime - requestTime, admitted);
+        if (!admitted) {
+            // The server is overloaded, the client is asked to come back later
+            return new HttpResponse("503 Service Unavailable", new byte[0], false)
+                    .addHeader("Retry-After", String.valueOf(serverSettings.getAdmissionRetryAfter()));
+        }
+
+        // HEAD requests get the head of the GET response, and no body, so the next response of the connection isn't mistaken for it
+        boolean headRequest = "HEAD".equals(request.getMethod());
+        if (requestHandler.isMetricsRoute(request.getRoute())) {
+            return requestHandler.handleMetrics(keepAlive).withBodyOmitted(headRequest);
+        }
+        RequestHandler.ResolvedDocument document = requestHandler.resolve(request);
+        documentPermit = documentLocks.acquire(document.filePath());
+        return requestHandler.toResponse(document, keepAlive).withBodyOmitted(headRequest);
+    }
+
+    /**
+     * Marks a request as in progress, until its response is written or the connection is closed.
+     *
+     * @param route       The route the request asks for, or null if the request couldn't be parsed.
+     * @param requestTime The value of {@link System#nanoTime()} when the request was parsed.
+     */
+    private void startRequest(String route, long requestTime) {
+        requestInProgress = true;
+        connection.setBusy(true);
+        serverMetrics.recordRequestStarted();
+        pendingRoute = route;
+        pendingRequestTime = requestTime;
+    }
+
+    /**
+     * Releases the request in progress: the document's permit, the admission, and the connection, which can be closed when idle.
+     */
+    private void finishRequest() {
+        if (documentPermit != null) {
+            documentPermit.release();
+            documentPermit = null;
+        }
+        if (admitted) {
+            admitted = false;
+            admissionController.release(System.nanoTime() - admittedTime);
+        }
+        requestInProgress = false;
+        serverMetrics.recordRequestFinished();
+        connection.setBusy(false);
+    }
+
+    /**
+     * Starts writing the response to the request in progress.
+     *
+     * @param response The response to write.
+     * @return <code>boolean</code>
+     * <ul>
+     *     <li> <strong>true -</strong> if the response was completely written and the connection is still open.</li>
+     *     <li> <strong>false -</strong> if part of the response is still to be written, or the connection was closed.</li>
+     * </ul>
+     * @throws IOException if an I/O error occurs while writing the channel, or if a streamed file can't be opened.
+     */
+    private boolean sendResponse(HttpResponse response) throws IOException {
+        pendingResponseCode = response.getResponseCode();
+        pendingBytesWritten = 0;
+        pendingResponse = response.toByteBuffers();
+        if (response.isFileStreamed()) {
+            pendingFile = FileChannel.open(response.getFile(), StandardOpenOption.READ);
+            pendingFileRegions = response.getFileRegions();
+            pendingFileRegion = 0;
+            pendingFilePosition = 0;
+        }
+        closeAfterResponse = !response.isKeepAlive();
+        return writePendingResponse();
+    }
+
+    /**
+     * Writes as much of the pending response as the channel accepts.
+     * The regions of a streamed response are transferred from the file to the socket by the kernel, without being copied to the heap.
+     *
+     * @return <code>boolean</code>
+     * <ul>
+     *     <li> <strong>true -</strong> if the response was completely written and the connection is still open.</li>
+     *     <li> <strong>false -</strong> if part of the response is still to be written, or the connection was closed.</li>
+     * </ul>
+     * @throws IOException if an I/O error occurs while writing the channel, or if the streamed file is truncated while it is sent.
+     */
+    private boolean writePendingResponse() throws IOException {
+
+        long written = clientChannel.write(pendingResponse);
+        pendingBytesWritten += written;
+        connection.recordBytesOut(written);
+        if (pendingResponse[0].hasRemaining() || pendingResponse[pendingResponse.length - 1].hasRemaining()) {
+            selectionKey.interestOps(SelectionKey.OP_WRITE);
+            return false;
+        }
+
+        //* Transfer the regions of the streamed file, each followed by its trailer, resuming where the last write stopped
+        while (pendingFile != null) {
+            HttpResponse.FileRegion fileRegion = pendingFileRegions.get(pendingFileRegion);
+            if (pendingFilePosition < fileRegion.length()) {
+                long transferred = pendingFile.transferTo(fileRegion.offset() + pendingFilePosition, fileRegion.length() - pendingFilePosition, clientChannel);
+                pendingFilePosition += transferred;
+                pendingBytesWritten += transferred;
+                connection.recordBytesOut(transferred);
+                if (pendingFilePosition < fileRegion.length()) {
+                    if (transferred == 0 && fileRegion.offset() + pendingFilePosition >= pendingFile.size()) {
+                        throw new EOFException("File truncated while being served.");
+                    }
+                    selectionKey.interestOps(SelectionKey.OP_WRITE);
+                    return false;
+                }
+            }
+            if (fileRegion.trailer().hasRemaining()) {
+                long trailerWritten = clientChannel.write(fileRegion.trailer());
+                pendingBytesWritten += trailerWritten;
+                connection.recordBytesOut(trailerWritten);
+                if (fileRegion.trailer().hasRemaining()) {
+                    selectionKey.interestOps(SelectionKey.OP_WRITE);
+                    return false;
+                }
+            }
+            pendingFileRegion++;
+            pendingFilePosition = 0;
+            if (pendingFileRegion == pendingFileRegions.size()) {
+                closePendingFile();
+            }
+        }
+
+        pendingResponse = null;
+        serverMetrics.recordResponse(pendingRoute, pendingResponseCode, pendingBytesWritten, System.nanoTime() - pendingRequestTime);
+        finishRequest();
+        if (closeAfterResponse) {
+            close();
+            return false;
+        }
+        selectionKey.interestOps(SelectionKey.OP_READ);
+        return true;
+    }
+
+    /**
+     * Skips the bytes of the last request's body that are already in the read buffer.
+     */
+    private void discardBody() {
+        int discarded = (int) Math.min(bodyBytesToDiscard, readBuffer.position());
+        removeFromReadBuffer(discarded);
+        bodyBytesToDiscard -= discarded;
+    }
+
+    /**
+     * Removes bytes from the start of the read buffer.
+     *
+     * @param numberOfBytes The number of bytes to remove.
+     */
+    private void removeFromReadBuffer(int numberOfBytes) {
+        readBuffer.flip();
+        readBuffer.position(numberOfBytes);
+        readBuffer.compact();
+    }
+
+    /**
+     * Adds the request to the log's queue. The request is written to the log file by the log's writer, without delaying the reactor.
+     *
+     * @param requestMethod The request's method (GET, POST).
+     * @param requestRoute  The request's route.
+     */
+    private void writeToLog(String requestMethod, String requestRoute) {
+        requestLogger.log(requestMethod, requestRoute, clientChannel.socket().getInetAddress());
+    }
+
+}
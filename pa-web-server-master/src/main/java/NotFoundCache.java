@@ -0,0 +1,191 @@
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * What the server answers to the routes that aren't documents, kept in memory so a flood of requests for missing documents,
+ * such as a scanner probing for known paths, costs a lookup instead of the filesystem's work. <p>
+ * The paths found missing, including the <code>.gz</code> files of the documents that don't have one, are remembered for a time,
+ * up to a number of paths, and the error page is kept resolved, for the clients
+ * that accept gzip and for those that don't. A document created, or the error page changed, is served when its entry expires,
+ * or as soon as the {@link WatchDocumentsThread} reports it.
+ */
+public class NotFoundCache {
+
+    /**
+     * The error page resolved for a kind of client, until it expires.
+     *
+     * @param document  The resolved error page.
+     * @param expiresAt The time the page is resolved again, as a {@link System#nanoTime()}.
+     */
+    private record CachedPage(RequestHandler.ResolvedDocument document, long expiresAt) {
+    }
+
+    /**
+     * The paths found missing, with the time they are checked again, as a {@link System#nanoTime()}.
+     */
+    private final Map<Path, Long> missingPaths = new ConcurrentHashMap<>();
+    /**
+     * The resolved error page, for the clients that don't accept gzip (0) and those that do (1).
+     */
+    private final AtomicReferenceArray<CachedPage> pages = new AtomicReferenceArray<>(2);
+    /**
+     * The error page's path, absolute and normalized.
+     */
+    private final Path pageNotFoundPath;
+    /**
+     * The path of the error page's <code>.gz</code> file, absolute and normalized.
+     */
+    private final Path compressedPageNotFoundPath;
+    /**
+     * Maximum number of missing paths remembered, above which the other missing paths are checked on every request.
+     */
+    private final int maximumEntries;
+    /**
+     * Time in nanoseconds a missing path and the error page are remembered.
+     */
+    private final long timeToLive;
+    /**
+     * The time the expired paths can be removed again, when the cache is full, as a {@link System#nanoTime()}.
+     */
+    private volatile long nextSweep;
+
+    /**
+     * Constructor for the cache of the answers to missing documents.
+     *
+     * @param pageNotFoundPath The error page's path.
+     * @param maximumEntries   Maximum number of missing paths remembered (0 checks every route on the filesystem).
+     * @param timeToLive       Time in milliseconds a missing path and the error page are remembered (0 disables the cache).
+     */
+    public NotFoundCache(Path pageNotFoundPath, int maximumEntries, long timeToLive) {
+        this.pageNotFoundPath = pageNotFoundPath.toAbsolutePath().normalize();
+        this.compressedPageNotFoundPath = this.pageNotFoundPath.resolveSibling(this.pageNotFoundPath.getFileName() + ".gz");
+        this.maximumEntries = timeToLive > 0 ? maximumEntries : 0;
+        this.timeToLive = TimeUnit.MILLISECONDS.toNanos(timeToLive);
+        this.nextSweep = System.nanoTime();
+    }
+
+    /**
+     * Checks if a path was found missing recently.
+     *
+     * @param path The path of a document, absolute and normalized.
+     * @return <code>boolean</code>
+     * <ul>
+     *     <li> <strong>true -</strong> if the path was found missing, and is answered with the error page without checking the filesystem.</li>
+     *     <li> <strong>false -</strong> if the path isn't known to be missing, or was found missing too long ago.</li>
+     * </ul>
+     */
+    public boolean isMissing(Path path) {
+        Long expiresAt = missingPaths.get(path);
+        if (expiresAt == null) {
+            return false;
+        }
+        if (System.nanoTime() - expiresAt >= 0) {
+            missingPaths.remove(path, expiresAt);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Remembers a path found missing, unless the cache is full of paths that didn't expire.
+     *
+     * @param path The path of a document, absolute and normalized.
+     */
+    public void addMissing(Path path) {
+        if (maximumEntries <= 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (missingPaths.size() >= maximumEntries) {
+            // The expired paths are only removed once in a while, so a cache full of recent paths isn't scanned on every request
+            if (now - nextSweep < 0) {
+                return;
+            }
+            nextSweep = now + timeToLive / 4;
+            missingPaths.values().removeIf(expiresAt -> now - expiresAt >= 0);
+            if (missingPaths.size() >= maximumEntries) {
+                return;
+            }
+        }
+        missingPaths.put(path, now + timeToLive);
+    }
+
+    /**
+     * Gets the error page resolved for a previous request of the same kind of client.
+     *
+     * @param acceptsGzip Whether the client accepts gzip encoded content.
+     * @return {@link RequestHandler.ResolvedDocument} - the resolved error page, or null if it must be resolved again.
+     */
+    public RequestHandler.ResolvedDocument getPage(boolean acceptsGzip) {
+        CachedPage page = pages.get(acceptsGzip ? 1 : 0);
+        if (page == null || System.nanoTime() - page.expiresAt() >= 0) {
+            return null;
+        }
+        return page.document();
+    }
+
+    /**
+     * Keeps the error page resolved for a kind of client, for the next requests of missing documents.
+     *
+     * @param acceptsGzip Whether the client accepts gzip encoded content.
+     * @param document    The resolved error page.
+     */
+    public void putPage(boolean acceptsGzip, RequestHandler.ResolvedDocument document) {
+        if (timeToLive > 0) {
+            pages.set(acceptsGzip ? 1 : 0, new CachedPage(document, System.nanoTime() + timeToLive));
+        }
+    }
+
+    /**
+     * Forgets a path that was created, modified or deleted, and the error page if the path is the error page's.
+     *
+     * @param path The changed path, absolute and normalized.
+     */
+    public void invalidate(Path path) {
+        missingPaths.remove(path);
+        if (path.equals(pageNotFoundPath) || path.equals(compressedPageNotFoundPath)) {
+            invalidatePages();
+        }
+    }
+
+    /**
+     * Forgets the paths of a folder and of its subfolders, such as when the folder is created or replaced,
+     * and the error page if it is in the folder.
+     *
+     * @param folder The folder's path, absolute and normalized.
+     */
+    public void invalidateFolder(Path folder) {
+        missingPaths.keySet().removeIf(path -> path.startsWith(folder));
+        if (pageNotFoundPath.startsWith(folder)) {
+            invalidatePages();
+        }
+    }
+
+    /**
+     * Forgets every missing path and the error page, such as when the roots change.
+     */
+    public void invalidateAll() {
+        missingPaths.clear();
+        invalidatePages();
+    }
+
+    /**
+     * Forgets the resolved error page, so the next request resolves it again.
+     */
+    private void invalidatePages() {
+        for (int page = 0; page < pages.length(); page++) {
+            pages.set(page, null);
+        }
+    }
+
+    /**
+     * @return <code>int</code> - number of missing paths remembered, including those that expired and weren't removed yet.
+     */
+    public int size() {
+        return missingPaths.size();
+    }
+
+}
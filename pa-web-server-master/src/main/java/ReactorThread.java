@@ -0,0 +1,310 @@
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * The class of the thread responsible for an event loop of the non-blocking server. <p>
+ * Each reactor owns a {@link Selector} and serves every connection registered to it,
+ * reading and writing only when the client's channel is ready, so one thread can hold many idle connections.
+ * The requests are answered by the client executor, which can block on files and admission, and resumes the reactor with the response. <p>
+ * The connections are only closed by the reactor's own thread, which releases their buffers: while the server shuts down,
+ * the reactor closes its idle connections, and closes the remaining ones when it is stopped.
+ */
+public class ReactorThread extends Thread {
+
+    /**
+     * A channel accepted by the acceptor, waiting to be registered in the reactor's selector.
+     *
+     * @param clientChannel The client's channel.
+     * @param acceptedTime  The value of {@link System#nanoTime()} when the client was accepted.
+     */
+    private record AcceptedChannel(SocketChannel clientChannel, long acceptedTime) {
+    }
+
+    /**
+     * The selector that waits for the reactor's connections to be ready.
+     */
+    private final Selector selector;
+    /**
+     * The channels accepted by the acceptor, not yet registered in the selector.
+     */
+    private final Queue<AcceptedChannel> acceptedChannels = new ConcurrentLinkedQueue<>();
+    /**
+     * The connections whose request was answered by a worker, waiting for the reactor to write the response.
+     */
+    private final Queue<NioConnection> answeredConnections = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Time in milliseconds between checks for connections idle for longer than the keep-alive timeout.
+     */
+    private static final long IDLE_CONNECTIONS_CHECK_INTERVAL = 1000;
+
+    /**
+     * Resolves the routes requested by the clients to the documents served to them, with the server's current settings.
+     */
+    private final RequestHandler requestHandler;
+    /**
+     * The server's performance counters.
+     */
+    private final ServerMetrics serverMetrics;
+    /**
+     * The clients connected to the server.
+     */
+    private final ConnectionRegistry connectionRegistry;
+    /**
+     * The executor that answers the requests, off the reactor's thread.
+     */
+    private final ExecutorService clientExecutor;
+    /**
+     * Decides which requests are served, and which are refused because the server is overloaded.
+     */
+    private final AdmissionController admissionController;
+    /**
+     * The locks that coordinate the clients served the same document.
+     */
+    private final DocumentLocks documentLocks;
+
+    /**
+     * Collects the requests to be written to the log.
+     */
+    private final RequestLogger requestLogger;
+
+    /**
+     * The pool the connections' read buffers are acquired from.
+     */
+    private final BufferPool bufferPool;
+    /**
+     * The pool the storage of the connections' requests is acquired from.
+     */
+    private final BufferPool headPool;
+
+    /**
+     * Whether the reactor was stopped, so it closes its connections and ends.
+     */
+    private volatile boolean stopped;
+
+    /**
+     * Constructor for the thread responsible for an event loop of the non-blocking server.
+     *
+     * @param name                    The name of the thread.
+     * @param requestHandler          Resolves the routes requested by the clients to the documents served to them, with the server's current settings.
+     * @param serverMetrics           The server's performance counters.
+     * @param connectionRegistry      The clients connected to the server.
+     * @param clientExecutor          The executor that answers the requests, off the reactor's thread.
+     * @param admissionController     Decides which requests are served, and which are refused because the server is overloaded.
+     * @param documentLocks           The locks that coordinate the clients served the same document.
+     * @param requestLogger           Collects the requests to be written to the log.
+     * @param bufferPool              The pool the connections' read buffers are acquired from.
+     * @param headPool                The pool the storage of the connections' requests is acquired from, backed by arrays.
+     * @throws IOException if the selector can't be opened.
+     */
+    public ReactorThread(String name, RequestHandler requestHandler, ServerMetrics serverMetrics, ConnectionRegistry connectionRegistry, ExecutorService clientExecutor,
+                         AdmissionController admissionController, DocumentLocks documentLocks, RequestLogger requestLogger, BufferPool bufferPool, BufferPool headPool) throws IOException {
+        super(name);
+        this.selector = Selector.open();
+        this.requestHandler = requestHandler;
+        this.serverMetrics = serverMetrics;
+        this.connectionRegistry = connectionRegistry;
+        this.clientExecutor = clientExecutor;
+        this.admissionController = admissionController;
+        this.documentLocks = documentLocks;
+        this.requestLogger = requestLogger;
+        this.bufferPool = bufferPool;
+        this.headPool = headPool;
+    }
+
+    /**
+     * Hands an accepted client to the reactor. It is registered in the selector by the reactor's own thread.
+     *
+     * @param clientChannel The client's channel, already in non-blocking mode.
+     * @param acceptedTime  The value of {@link System#nanoTime()} when the client was accepted.
+     */
+    public void register(SocketChannel clientChannel, long acceptedTime) {
+        acceptedChannels.add(new AcceptedChannel(clientChannel, acceptedTime));
+        selector.wakeup();
+    }
+
+    /**
+     * Hands back a connection whose request was answered by a worker. Its response is written by the reactor's own thread.
+     *
+     * @param connection The connection whose request was answered.
+     */
+    public void resume(NioConnection connection) {
+        answeredConnections.add(connection);
+        selector.wakeup();
+    }
+
+    /**
+     * Writes the responses built by the workers since the last time the selector woke up.
+     */
+    private void resumeAnsweredConnections() {
+
+        NioConnection connection;
+        while ((connection = answeredConnections.poll()) != null) {
+            try {
+                connection.onAnswered();
+            } catch (IOException | RuntimeException | Error exception) {
+                // A failing client only loses its own connection, even if a mapped file it was sent was truncated
+                connection.close();
+            }
+        }
+
+    }
+
+    /**
+     * Registers the channels handed to the reactor since the last time the selector woke up.
+     */
+    private void registerAcceptedChannels() {
+
+        AcceptedChannel acceptedChannel;
+        while ((acceptedChannel = acceptedChannels.poll()) != null) {
+
+            SocketChannel clientChannel = acceptedChannel.clientChannel();
+            serverMetrics.recordDispatchLatency(System.nanoTime() - acceptedChannel.acceptedTime());
+            try {
+                SocketAddress remoteAddress = clientChannel.getRemoteAddress();
+                SelectionKey selectionKey = clientChannel.register(selector, SelectionKey.OP_READ);
+                ConnectionRegistry.Connection connection = connectionRegistry.register(clientChannel, remoteAddress, acceptedChannel.acceptedTime());
+                selectionKey.attach(new NioConnection(clientChannel, selectionKey, this, clientExecutor, admissionController, documentLocks, requestHandler.getServerSettings(), requestHandler, serverMetrics, connectionRegistry, connection, requestLogger, bufferPool, headPool));
+            } catch (IOException exception) {
+                DiagnosticLog.info(exception.getMessage());
+            }
+
+        }
+
+    }
+
+    /**
+     * Closes the connections waiting for their client since before a deadline.
+     *
+     * @param deadline A value of {@link System#nanoTime()}.
+     */
+    private void closeIdleConnections(long deadline) {
+
+        for (SelectionKey selectionKey : selector.keys()) {
+            NioConnection connection = (NioConnection) selectionKey.attachment();
+            if (connection != null && connection.isIdleSince(deadline)) {
+                connection.close();
+            }
+        }
+
+    }
+
+    /**
+     * Closes the connections waiting for their client's next request. Connections writing a response are left open to finish it.
+     */
+    private void closeWaitingConnections() {
+
+        for (SelectionKey selectionKey : selector.keys()) {
+            NioConnection connection = (NioConnection) selectionKey.attachment();
+            if (connection != null && !connection.isBusy()) {
+                connection.close();
+            }
+        }
+
+    }
+
+    /**
+     * Closes every connection of the reactor, and the channels accepted but not yet registered, and the selector.
+     */
+    private void closeConnections() {
+
+        for (SelectionKey selectionKey : selector.keys()) {
+            NioConnection connection = (NioConnection) selectionKey.attachment();
+            if (connection != null) {
+                connection.close();
+            }
+        }
+        AcceptedChannel acceptedChannel;
+        while ((acceptedChannel = acceptedChannels.poll()) != null) {
+            try {
+                acceptedChannel.clientChannel().close();
+            } catch (IOException exception) {
+                DiagnosticLog.info(exception.getMessage());
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException exception) {
+            DiagnosticLog.info(exception.getMessage());
+        }
+
+    }
+
+    /**
+     * Wakes the reactor up, so it checks its connections immediately, such as when the server starts shutting down.
+     */
+    public void wakeup() {
+        selector.wakeup();
+    }
+
+    /**
+     * Stops the reactor. It closes its remaining connections, from its own thread, and ends.
+     */
+    public void shutdown() {
+        stopped = true;
+        selector.wakeup();
+    }
+
+    /**
+     * Main cycle of the reactor, it waits for its connections to be ready and lets each one read or write.
+     */
+    @Override
+    public void run() {
+
+        long nextIdleConnectionsCheck = System.nanoTime();
+
+        while (!stopped) {
+
+            try {
+                selector.select(IDLE_CONNECTIONS_CHECK_INTERVAL);
+            } catch (IOException exception) {
+                DiagnosticLog.info(exception.getMessage());
+                continue;
+            }
+
+            registerAcceptedChannels();
+            resumeAnsweredConnections();
+
+            int keepAliveTimeout = requestHandler.getServerSettings().getKeepAliveTimeout();
+            if (connectionRegistry.isDraining()) {
+                // The server is shutting down, the connections are closed as soon as they finished their response
+                closeWaitingConnections();
+            } else if (keepAliveTimeout > 0 && System.nanoTime() - nextIdleConnectionsCheck >= 0) {
+                closeIdleConnections(System.nanoTime() - keepAliveTimeout * 1_000_000L);
+                nextIdleConnectionsCheck = System.nanoTime() + IDLE_CONNECTIONS_CHECK_INTERVAL * 1_000_000L;
+            }
+
+            Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+            while (selectedKeys.hasNext()) {
+
+                SelectionKey selectionKey = selectedKeys.next();
+                selectedKeys.remove();
+                NioConnection connection = (NioConnection) selectionKey.attachment();
+
+                try {
+                    if (selectionKey.isReadable()) {
+                        connection.onReadable();
+                    } else if (selectionKey.isWritable()) {
+                        connection.onWritable();
+                    }
+                } catch (IOException | RuntimeException | Error exception) {
+                    // A failing client only loses its own connection, even if a mapped file it was sent was truncated
+                    connection.close();
+                }
+
+            }
+
+        }
+
+        closeConnections();
+
+    }
+
+}
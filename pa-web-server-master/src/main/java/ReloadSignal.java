@@ -0,0 +1,65 @@
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * The SIGHUP handler that reloads the server's settings. <p>
+ * Java has no supported API for signals, and the handler can only be installed through <code>sun.misc.Signal</code>, from the <code>jdk.unsupported</code> module.
+ * javac warns about every reference to it, and the warning can't be suppressed, so this class looks it up at runtime instead,
+ * and the rest of the server doesn't depend on it. The settings simply can't be reloaded by signal on the systems without SIGHUP,
+ * or on the runtimes built without the module.
+ */
+public final class ReloadSignal {
+
+    /**
+     * The reload signal is only installed through its static method.
+     */
+    private ReloadSignal() {
+    }
+
+    /**
+     * Runs an action each time the process receives SIGHUP, on the thread the JVM dispatches signals to.
+     *
+     * @param reload The action that reloads the settings.
+     * @return <code>boolean</code>
+     * <ul>
+     *     <li> <strong>true -</strong> if the handler is installed.</li>
+     *     <li> <strong>false -</strong> if the system or the runtime doesn't support SIGHUP, so the settings can't be reloaded by signal.</li>
+     * </ul>
+     */
+    public static boolean install(Runnable reload) {
+        try {
+            Class<?> signalClass = Class.forName("sun.misc.Signal");
+            Class<?> handlerClass = Class.forName("sun.misc.SignalHandler");
+            Object signal = signalClass.getConstructor(String.class).newInstance("HUP");
+            Object handler = Proxy.newProxyInstance(handlerClass.getClassLoader(), new Class<?>[]{handlerClass},
+                    (proxy, method, arguments) -> handle(proxy, method, arguments, reload));
+            signalClass.getMethod("handle", signalClass, handlerClass).invoke(null, signal, handler);
+            return true;
+        } catch (ReflectiveOperationException | LinkageError exception) {
+            // SIGHUP doesn't exist on this system, or is already used by the JVM, or jdk.unsupported isn't in the runtime
+            return false;
+        }
+    }
+
+    /**
+     * Answers the calls to the signal handler: the signal runs the action, and the methods of {@link Object} are answered by identity.
+     *
+     * @param proxy     The signal handler.
+     * @param method    The method called.
+     * @param arguments The method's arguments.
+     * @param reload    The action that reloads the settings.
+     * @return {@link Object} - the method's result.
+     */
+    private static Object handle(Object proxy, Method method, Object[] arguments, Runnable reload) {
+        return switch (method.getName()) {
+            case "equals" -> proxy == arguments[0];
+            case "hashCode" -> System.identityHashCode(proxy);
+            case "toString" -> "SIGHUP reload handler";
+            default -> {
+                reload.run();
+                yield null;
+            }
+        };
+    }
+
+}
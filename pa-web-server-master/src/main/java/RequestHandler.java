@@ -0,0 +1,402 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Resolves the routes requested by the clients to the documents that are served to them. <p>
+ * It is shared by every connection engine, so the blocking and the non-blocking servers answer the same routes the same way.
+ * It also holds the server's current settings, which are replaced as a whole when they are reloaded, so each request
+ * and each new connection sees either the previous or the reloaded settings.
+ */
+public class RequestHandler {
+
+    /**
+     * The response code of the documents that didn't change since the client's copy.
+     */
+    public static final String NOT_MODIFIED = "304 Not Modified";
+    /**
+     * The response code of the routes that aren't documents, answered with the error page.
+     */
+    public static final String NOT_FOUND = "404 Not found";
+
+    /**
+     * A document chosen to answer a route, and how it is sent.
+     *
+     * @param filePath        The path of the file that is going to be served to the client.
+     * @param responseCode    The response's code and reason phrase (200 OK, 206 Partial Content, 304 Not Modified, 404 Not found).
+     * @param file            The content sent to the client, which is the file's or its compressed variant's, or null if even the error page is missing.
+     * @param contentType     The media type of the file.
+     * @param contentEncoding The encoding of the content sent (gzip), or null if it is the file's own content.
+     * @param varyByEncoding  Whether the response depends on the encodings the client accepts, so caches keep a copy per encoding.
+     * @param entityTag       The entity tag of the content sent, or null if the response can't be revalidated, such as the error page.
+     * @param lastModified    The file's modification time, in milliseconds since the epoch.
+     * @param maxAge          Number of seconds the client may reuse the content without revalidating it, or -1 to send no <code>Cache-Control</code>.
+     * @param ranges          The ranges of the content sent, or null if the whole content is sent.
+     */
+    public record ResolvedDocument(String filePath, String responseCode, FileCache.CachedFile file, String contentType, String contentEncoding,
+                                   boolean varyByEncoding, String entityTag, long lastModified, int maxAge, List<ByteRanges.ByteRange> ranges) {
+
+        /**
+         * Builds the response that serves the document.
+         * Documents too large to be read into memory are streamed from the filesystem, documents not modified aren't sent,
+         * and only the requested ranges are sent of partial documents.
+         *
+         * @param keepAlive Whether the connection stays open after the response.
+         * @return {@link HttpResponse} - the response to send to the client, with an empty body if the document is missing.
+         */
+        public HttpResponse toResponse(boolean keepAlive) {
+            if (file == null) {
+                return new HttpResponse(responseCode, new byte[0], keepAlive);
+            }
+            HttpResponse response;
+            if (NOT_MODIFIED.equals(responseCode)) {
+                response = new HttpResponse(responseCode, contentType, file.size(), keepAlive);
+            } else if (ByteRanges.RANGE_NOT_SATISFIABLE.equals(responseCode)) {
+                response = new HttpResponse(responseCode, new byte[0], keepAlive).addHeader("Content-Range", "bytes */" + file.size());
+            } else if (ranges != null) {
+                response = ByteRanges.toResponse(file, contentType, ranges, keepAlive);
+            } else {
+                response = toCompleteResponse(keepAlive);
+            }
+            if (contentEncoding != null) {
+                response.addHeader("Content-Encoding", contentEncoding);
+            }
+            if (varyByEncoding) {
+                response.addHeader("Vary", "Accept-Encoding");
+            }
+            if (entityTag != null) {
+                response.addHeader("Accept-Ranges", "bytes");
+                response.addHeader("ETag", entityTag);
+                response.addHeader("Last-Modified", ConditionalRequests.formatHttpDate(lastModified));
+            }
+            if (maxAge >= 0) {
+                response.addHeader("Cache-Control", "max-age=" + maxAge);
+            }
+            return response;
+        }
+
+        /**
+         * Builds the response that serves the whole document with its head already encoded, so its headers aren't built again.
+         *
+         * @param keepAlive   Whether the connection stays open after the response.
+         * @param encodedHead The response's status line and headers, encoded by {@link #toResponse(boolean)} for the same document and connection.
+         * @return {@link HttpResponse} - the response to send to the client.
+         */
+        public HttpResponse toResponse(boolean keepAlive, byte[] encodedHead) {
+            return toCompleteResponse(keepAlive).withEncodedHead(encodedHead);
+        }
+
+        /**
+         * Builds the response that serves the whole document, without the headers that describe it.
+         *
+         * @param keepAlive Whether the connection stays open after the response.
+         * @return {@link HttpResponse} - the response, streamed from the filesystem if the document isn't in memory.
+         */
+        private HttpResponse toCompleteResponse(boolean keepAlive) {
+            if (file.isStreamed()) {
+                return new HttpResponse(responseCode, contentType, file.path(), file.size(), keepAlive);
+            }
+            return new HttpResponse(responseCode, contentType, file.content().duplicate(), keepAlive);
+        }
+
+        /**
+         * @return {@link ResolvedDocument} - the same document, answered with a 304 Not Modified.
+         */
+        public ResolvedDocument notModified() {
+            return new ResolvedDocument(filePath, NOT_MODIFIED, file, contentType, contentEncoding, varyByEncoding, entityTag, lastModified, maxAge, null);
+        }
+
+        /**
+         * @param requestedRanges The ranges of the content requested, that overlap it, which may be none.
+         * @return {@link ResolvedDocument} - the same document, answered with a 206 Partial Content, or a 416 Range Not Satisfiable if there are no ranges.
+         */
+        public ResolvedDocument partial(List<ByteRanges.ByteRange> requestedRanges) {
+            String partialResponseCode = requestedRanges.isEmpty() ? ByteRanges.RANGE_NOT_SATISFIABLE : ByteRanges.PARTIAL_CONTENT;
+            return new ResolvedDocument(filePath, partialResponseCode, file, contentType, contentEncoding, varyByEncoding, entityTag, lastModified, maxAge, requestedRanges);
+        }
+
+    }
+
+    /**
+     * The server's settings, imported from the configuration file when the server started, or when they were last reloaded.
+     */
+    private volatile ServerSettings serverSettings;
+    /**
+     * The cache of the served files' content.
+     */
+    private final FileCache fileCache;
+    /**
+     * The memory-mapped documents of the server's root, or null if the memory-mapped mode is disabled.
+     */
+    private final MappedFileStore mappedFileStore;
+    /**
+     * The gzip encoded variants of the documents, or null if compression is disabled.
+     */
+    private final CompressedFileCache compressedFileCache;
+    /**
+     * The documents of the server's root indexed when the server started, or null if routes are resolved on the filesystem.
+     */
+    private final DocumentIndex documentIndex;
+    /**
+     * The encoded heads of the documents' responses, reused while the documents don't change.
+     */
+    private final ResponseHeads responseHeads;
+    /**
+     * The paths found missing, and the resolved error page, so missing documents are answered without the filesystem.
+     */
+    private final NotFoundCache notFoundCache;
+    /**
+     * The server's performance counters, exposed on the metrics route.
+     */
+    private final ServerMetrics serverMetrics;
+
+    /**
+     * Constructor for the handler of the clients' requests.
+     *
+     * @param serverSettings      The server's settings, imported from the configuration file when the server started.
+     * @param fileCache           The cache of the served files' content.
+     * @param mappedFileStore     The memory-mapped documents of the server's root, or null if the memory-mapped mode is disabled.
+     * @param compressedFileCache The gzip encoded variants of the documents, or null if compression is disabled.
+     * @param documentIndex       The documents of the server's root indexed when the server started, or null if routes are resolved on the filesystem.
+     * @param notFoundCache       The paths found missing, and the resolved error page.
+     * @param serverMetrics       The server's performance counters, exposed on the metrics route.
+     */
+    public RequestHandler(ServerSettings serverSettings, FileCache fileCache, MappedFileStore mappedFileStore, CompressedFileCache compressedFileCache,
+                          DocumentIndex documentIndex, NotFoundCache notFoundCache, ServerMetrics serverMetrics) {
+        this.serverSettings = serverSettings;
+        this.fileCache = fileCache;
+        this.mappedFileStore = mappedFileStore;
+        this.compressedFileCache = compressedFileCache;
+        this.documentIndex = documentIndex;
+        this.responseHeads = new ResponseHeads(serverSettings.getResponseHeadsMaximumEntries());
+        this.notFoundCache = notFoundCache;
+        this.serverMetrics = serverMetrics;
+    }
+
+    /**
+     * Replaces the server's settings, for the next requests and connections. The requests being answered finish with the previous settings.
+     *
+     * @param serverSettings The server's settings, reloaded from the configuration file.
+     */
+    public void reload(ServerSettings serverSettings) {
+        this.serverSettings = serverSettings;
+        // The roots and the error page may have moved
+        notFoundCache.invalidateAll();
+    }
+
+    /**
+     * @return {@link ServerSettings} - the server's current settings, which the new connections are served with.
+     */
+    public ServerSettings getServerSettings() {
+        return serverSettings;
+    }
+
+    /**
+     * Checks if a route is the one the server's metrics are exposed on.
+     *
+     * @param route The route the client is requesting.
+     * @return <code>boolean</code>
+     * <ul>
+     *     <li> <strong>true -</strong> if the route is answered with the server's metrics, instead of a document.</li>
+     *     <li> <strong>false -</strong> if the route is answered with a document.</li>
+     * </ul>
+     */
+    public boolean isMetricsRoute(String route) {
+        return route.equals(serverSettings.getMetricsPath());
+    }
+
+    /**
+     * Builds the response that exposes the server's metrics, in the Prometheus text format.
+     *
+     * @param keepAlive Whether the connection stays open after the response.
+     * @return {@link HttpResponse} - the response to send to the client.
+     */
+    public HttpResponse handleMetrics(boolean keepAlive) {
+        byte[] metrics = serverMetrics.toPrometheusText().getBytes(StandardCharsets.UTF_8);
+        return new HttpResponse("200 OK", "text/plain; version=0.0.4; charset=utf-8", metrics, keepAlive);
+    }
+
+    /**
+     * Finds the document that answers a request, in the best encoding the client accepts.
+     * The root route is answered with the default page, and missing documents with the error page.
+     * Documents that didn't change since the copy a conditional request revalidates are answered with a 304 Not Modified,
+     * and range requests with the requested parts of the document.
+     * When the server's root is indexed, routes are looked up in the index, and only the documents' content is read from the filesystem.
+     * Otherwise, the routes found missing recently are answered without checking the filesystem again.
+     *
+     * @param request The client's request.
+     * @return {@link ResolvedDocument} - the document to serve, its content and its response code.
+     * @throws IOException if the document exists but can't be read.
+     */
+    public ResolvedDocument resolve(HttpRequest request) throws IOException {
+
+        //* Serve default page when client requests the root route
+        ServerSettings currentSettings = serverSettings;
+        String route = request.getRoute();
+        String documentPath = Objects.equals(route, "/") ? currentSettings.getDefaultPagePath() : currentSettings.getServerRootPath() + route;
+        FileCache.CachedFile document;
+        try {
+            // Paths are normalized, so each document is cached once, under the path its changes are reported for
+            document = getDocument(Path.of(documentPath).toAbsolutePath().normalize());
+        } catch (InvalidPathException exception) {
+            document = null; // Routes that can't be a path are answered as missing documents
+        }
+
+        if (document != null) {
+            ResolvedDocument resolvedDocument = encode(documentPath, "200 OK", document, request.getHeader("Accept-Encoding"), true);
+            boolean safeMethod = "GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod());
+            if (safeMethod && ConditionalRequests.isNotModified(request.getHeader("If-None-Match"), request.getHeader("If-Modified-Since"),
+                    resolvedDocument.entityTag(), resolvedDocument.lastModified())) {
+                return resolvedDocument.notModified();
+            }
+            String range = request.getHeader("Range");
+            if (range != null && "GET".equals(request.getMethod())
+                    && ConditionalRequests.isRangeCurrent(request.getHeader("If-Range"), resolvedDocument.entityTag(), resolvedDocument.lastModified())) {
+                List<ByteRanges.ByteRange> ranges = ByteRanges.parse(range, resolvedDocument.file().size());
+                if (ranges != null) {
+                    return resolvedDocument.partial(ranges);
+                }
+            }
+            return resolvedDocument;
+        }
+
+        //* Serve the error page resolved for a previous missing document, while it is cached
+        boolean acceptsGzip = CompressedFileCache.acceptsGzip(request.getHeader("Accept-Encoding"));
+        ResolvedDocument pageNotFound = notFoundCache.getPage(acceptsGzip);
+        if (pageNotFound == null) {
+            pageNotFound = resolvePageNotFound(currentSettings.getPageNotFoundPath(), request.getHeader("Accept-Encoding"));
+            notFoundCache.putPage(acceptsGzip, pageNotFound);
+        }
+        return pageNotFound;
+    }
+
+    /**
+     * Reads the error page, in the best encoding the client accepts.
+     *
+     * @param pageNotFoundPath The error page's path.
+     * @param acceptEncoding   The value of the request's <code>Accept-Encoding</code> header, or null if the request doesn't have it.
+     * @return {@link ResolvedDocument} - the error page, with an empty content if it is missing.
+     * @throws IOException if the error page exists but can't be read.
+     */
+    private ResolvedDocument resolvePageNotFound(String pageNotFoundPath, String acceptEncoding) throws IOException {
+        FileCache.CachedFile pageNotFound = fileCache.get(Path.of(pageNotFoundPath).toAbsolutePath().normalize());
+        if (pageNotFound == null) {
+            return new ResolvedDocument(pageNotFoundPath, NOT_FOUND, null, "text/html", null, false, null, 0, -1, null);
+        }
+        return encode(pageNotFoundPath, NOT_FOUND, pageNotFound, acceptEncoding, false);
+    }
+
+    /**
+     * Gets the content of a document of the server's root, from the index when there is one, otherwise from the filesystem,
+     * unless the document was found missing recently.
+     *
+     * @param path The document's path.
+     * @return {@link FileCache.CachedFile} - the document's content, or null if it isn't a document of the server's root.
+     * @throws IOException if the document exists but can't be read.
+     */
+    private FileCache.CachedFile getDocument(Path path) throws IOException {
+        if (documentIndex == null) {
+            if (notFoundCache.isMissing(path)) {
+                return null;
+            }
+            FileCache.CachedFile document = mappedFileStore != null ? mappedFileStore.get(path) : fileCache.get(path);
+            if (document == null) {
+                notFoundCache.addMissing(path);
+            }
+            return document;
+        }
+        DocumentIndex.Entry entry = documentIndex.get(path);
+        if (entry == null) {
+            return null;
+        }
+        return mappedFileStore != null
+                ? mappedFileStore.get(entry.path(), entry.lastModified(), entry.size())
+                : fileCache.get(entry.path(), entry.lastModified(), entry.size());
+    }
+
+    /**
+     * Chooses the content a document is sent with, and its validators. <p>
+     * Compressible documents are sent gzip encoded to the clients that accept it, from a <code>.gz</code> file next to the document
+     * when it is at least as recent, otherwise from the cached compressed variant. Documents streamed from the filesystem are only
+     * sent compressed from a <code>.gz</code> file, as they aren't read into memory.
+     *
+     * @param filePath       The path of the document.
+     * @param responseCode   The response's code and reason phrase (200 OK, 404 Not found).
+     * @param document       The document's content.
+     * @param acceptEncoding The value of the request's <code>Accept-Encoding</code> header, or null if the request doesn't have it.
+     * @param cacheable      Whether the client can keep and revalidate the document, which isn't the case of the error page.
+     * @return {@link ResolvedDocument} - the document to serve, with its media type and encoding.
+     * @throws IOException if the document's compressed variant can't be read or created.
+     */
+    private ResolvedDocument encode(String filePath, String responseCode, FileCache.CachedFile document, String acceptEncoding, boolean cacheable) throws IOException {
+
+        String contentType = MediaTypes.typeOf(document.path());
+        boolean varyByEncoding = compressedFileCache != null && MediaTypes.isCompressible(contentType);
+        FileCache.CachedFile content = document;
+        String contentEncoding = null;
+
+        if (varyByEncoding && CompressedFileCache.acceptsGzip(acceptEncoding)) {
+            Path compressedPath = document.path().resolveSibling(document.path().getFileName() + ".gz");
+            FileCache.CachedFile compressed;
+            if (documentIndex != null && compressedPath.startsWith(documentIndex.getRoot())) {
+                // The documents of an indexed root only have a .gz file if it was indexed too
+                DocumentIndex.Entry compressedEntry = documentIndex.get(compressedPath);
+                compressed = compressedEntry != null ? fileCache.get(compressedPath, compressedEntry.lastModified(), compressedEntry.size()) : null;
+            } else if (notFoundCache.isMissing(compressedPath)) {
+                compressed = null;
+            } else {
+                // Most documents don't have a .gz file, so its absence is remembered like a missing document's
+                compressed = fileCache.get(compressedPath);
+                if (compressed == null) {
+                    notFoundCache.addMissing(compressedPath);
+                }
+            }
+            if (compressed == null || compressed.lastModified() < document.lastModified()) {
+                compressed = compressedFileCache.get(document);
+            }
+            if (compressed != null) {
+                content = compressed;
+                contentEncoding = "gzip";
+            }
+        }
+
+        if (!cacheable) {
+            return new ResolvedDocument(filePath, responseCode, content, contentType, contentEncoding, varyByEncoding, null, 0, -1, null);
+        }
+        // The validators are the document's own, so they don't change when its .gz file is regenerated
+        String entityTag = ConditionalRequests.entityTag(document.lastModified(), document.size(), contentEncoding);
+        int maxAge = serverSettings.getCacheControlMaxAge(MediaTypes.extensionOf(document.path()));
+        return new ResolvedDocument(filePath, responseCode, content, contentType, contentEncoding, varyByEncoding, entityTag, document.lastModified(), maxAge, null);
+    }
+
+    /**
+     * Builds the response that serves a resolved document, with the head encoded for a previous request when the document didn't change.
+     *
+     * @param document  The document that answers the request.
+     * @param keepAlive Whether the connection stays open after the response.
+     * @return {@link HttpResponse} - the response to send to the client.
+     */
+    public HttpResponse toResponse(ResolvedDocument document, boolean keepAlive) {
+        return responseHeads.toResponse(document, keepAlive);
+    }
+
+    /**
+     * Builds the complete response to a request. The response to a HEAD request has the head of the GET response, without its body.
+     *
+     * @param request   The client's request.
+     * @param keepAlive Whether the connection stays open after the response.
+     * @return {@link HttpResponse} - the response to send to the client.
+     * @throws IOException if the resolved document can't be read.
+     */
+    public HttpResponse handle(HttpRequest request, boolean keepAlive) throws IOException {
+        boolean headRequest = "HEAD".equals(request.getMethod());
+        if (isMetricsRoute(request.getRoute())) {
+            return handleMetrics(keepAlive).withBodyOmitted(headRequest);
+        }
+        return toResponse(resolve(request), keepAlive).withBodyOmitted(headRequest);
+    }
+
+}
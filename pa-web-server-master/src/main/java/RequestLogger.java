@@ -0,0 +1,121 @@
+import java.net.InetAddress;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Collects the clients' requests to be written to the log by the {@link LogRequestsInformationThread}. <p>
+ * Requests are added to a lock-free bounded queue, so the threads serving the clients never wait for the log file.
+ * When the queue is full, the request is dropped or the client waits, depending on the configured backpressure.
+ */
+public class RequestLogger {
+
+    /**
+     * A request waiting to be written to the log. It is formatted by the log's writer, not by the thread serving the client.
+     *
+     * @param timestamp     The time the request was received, in milliseconds since the epoch.
+     * @param method        The request's method (GET, POST).
+     * @param route         The request's route.
+     * @param clientAddress The address of the client that made the request.
+     */
+    public record Entry(long timestamp, String method, String route, InetAddress clientAddress) {
+    }
+
+    /**
+     * Time in nanoseconds a client waits before trying again to add its request to a full queue.
+     */
+    private static final long FULL_QUEUE_PAUSE = 100_000;
+
+    /**
+     * The requests waiting to be written to the log.
+     */
+    private final MpscRingBuffer<Entry> entries;
+    /**
+     * What a client does when the queue is full.
+     */
+    private final ServerSettings.LogBackpressure backpressure;
+    /**
+     * Number of requests that weren't logged because the queue was full.
+     */
+    private final LongAdder droppedEntries = new LongAdder();
+    /**
+     * The log's writer while it waits for requests, or null while it is writing.
+     */
+    private volatile Thread waitingWriter;
+
+    /**
+     * Constructor for the collector of the logged requests.
+     *
+     * @param capacity     The number of requests that can wait to be written to the log.
+     * @param backpressure What a client does when the queue is full.
+     */
+    public RequestLogger(int capacity, ServerSettings.LogBackpressure backpressure) {
+        this.entries = new MpscRingBuffer<>(capacity);
+        this.backpressure = backpressure;
+    }
+
+    /**
+     * Adds a request to the log's queue. Can be called by any thread.
+     *
+     * @param method        The request's method (GET, POST).
+     * @param route         The request's route.
+     * @param clientAddress The address of the client that made the request.
+     */
+    public void log(String method, String route, InetAddress clientAddress) {
+
+        Entry entry = new Entry(System.currentTimeMillis(), method, route, clientAddress);
+        while (!entries.offer(entry)) {
+            if (backpressure == ServerSettings.LogBackpressure.DROP) {
+                droppedEntries.increment();
+                return;
+            }
+            wakeWriter();
+            LockSupport.parkNanos(FULL_QUEUE_PAUSE);
+        }
+        wakeWriter();
+
+    }
+
+    /**
+     * Takes up to a number of requests from the queue, oldest first. Must only be called by the log's writer.
+     *
+     * @param entryConsumer Receives each request taken.
+     * @param limit         The maximum number of requests to take.
+     * @return <code>int</code> - the number of requests taken.
+     */
+    public int drain(Consumer<Entry> entryConsumer, int limit) {
+        return entries.drain(entryConsumer, limit);
+    }
+
+    /**
+     * Waits until a request is added to the queue, or the timeout expires. Must only be called by the log's writer.
+     *
+     * @param timeoutNanos Maximum time to wait, in nanoseconds.
+     */
+    public void awaitEntries(long timeoutNanos) {
+        waitingWriter = Thread.currentThread();
+        // Checked after publishing the writer, so a request added in between still wakes it up
+        if (entries.isEmpty()) {
+            LockSupport.parkNanos(this, timeoutNanos);
+        }
+        waitingWriter = null;
+    }
+
+    /**
+     * @return <code>long</code> - number of requests that weren't logged because the queue was full.
+     */
+    public long getDroppedEntries() {
+        return droppedEntries.sum();
+    }
+
+    /**
+     * Wakes the log's writer up, if it is waiting for requests.
+     */
+    private void wakeWriter() {
+        Thread writer = waitingWriter;
+        if (writer != null) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+}
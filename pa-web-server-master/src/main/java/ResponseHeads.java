@@ -0,0 +1,162 @@
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The encoded heads of the responses that serve whole documents. <p>
+ * The status line and headers of a document's response only change with the document, its encoding and the connection's
+ * keep-alive, so they are encoded once and shared by the following responses, which are written with the document's body
+ * in a single gathering write. A head is encoded again when the document's entity tag, size or caching changes.
+ * The error page's head, which has no validators, is reused while its size doesn't change.
+ * Partial, not modified and other error responses aren't reused, and are encoded on every request. <p>
+ * The heads of the least recently used documents are dropped above <code>server.response.heads.maxEntries</code>,
+ * so documents deleted or rarely requested don't keep their heads forever.
+ */
+public class ResponseHeads {
+
+    /**
+     * The heads of a document's response, for both kinds of connections.
+     *
+     * @param entityTag      The entity tag of the content the heads describe, or null for the error page.
+     * @param contentLength  The size of the content the heads describe, in bytes.
+     * @param maxAge         The <code>Cache-Control</code> max-age the heads send.
+     * @param keepAliveHead  The head of the response on a connection that stays open.
+     * @param closeHead      The head of the response on a connection closed after it.
+     */
+    private record EncodedHeads(String entityTag, long contentLength, int maxAge, byte[] keepAliveHead, byte[] closeHead) {
+    }
+
+    /**
+     * A document, the encoding it is sent with, and whether it answers its own route or a missing document.
+     *
+     * @param filePath        The document's path, absolute and normalized.
+     * @param responseCode    The response's code and reason phrase (200 OK, 404 Not found).
+     * @param contentEncoding The encoding the document is sent with (gzip), or null if it is sent as is.
+     */
+    private record HeadKey(Path filePath, String responseCode, String contentEncoding) {
+    }
+
+    /**
+     * The encoded heads, by document and encoding. Read without locks, changed only while holding the eviction lock.
+     */
+    private final Map<HeadKey, EncodedHeads> encodedHeads = new ConcurrentHashMap<>();
+    /**
+     * The lock responsible for the eviction order.
+     */
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    /**
+     * The encoded heads, from the least to the most recently used.
+     */
+    private final LinkedHashMap<HeadKey, EncodedHeads> evictionOrder = new LinkedHashMap<>(16, 0.75f, true);
+    /**
+     * Maximum number of documents whose heads are kept, above which the least recently used heads are dropped.
+     */
+    private final int maximumEntries;
+
+    /**
+     * Constructor for the encoded heads of the documents' responses.
+     *
+     * @param maximumEntries Maximum number of documents whose heads are kept (0 encodes every head).
+     */
+    public ResponseHeads(int maximumEntries) {
+        this.maximumEntries = maximumEntries;
+    }
+
+    /**
+     * Builds the response that serves a document, with the head encoded for a previous response when the document didn't change.
+     *
+     * @param document  The document that answers the request.
+     * @param keepAlive Whether the connection stays open after the response.
+     * @return {@link HttpResponse} - the response to send to the client.
+     */
+    public HttpResponse toResponse(RequestHandler.ResolvedDocument document, boolean keepAlive) {
+
+        if (!isReusable(document)) {
+            return document.toResponse(keepAlive);
+        }
+
+        // The cached file's path is already absolute and normalized, so each document has a single key whatever its route
+        HeadKey key = new HeadKey(document.file().path(), document.responseCode(), document.contentEncoding());
+        EncodedHeads heads = encodedHeads.get(key);
+        if (heads == null || !Objects.equals(heads.entityTag(), document.entityTag()) || heads.contentLength() != document.file().size() || heads.maxAge() != document.maxAge()) {
+            HttpResponse response = document.toResponse(keepAlive);
+            heads = new EncodedHeads(document.entityTag(), document.file().size(), document.maxAge(),
+                    keepAlive ? response.encodeHead() : document.toResponse(true).encodeHead(),
+                    keepAlive ? document.toResponse(false).encodeHead() : response.encodeHead());
+            store(key, heads);
+            return response;
+        }
+        recordAccess(key);
+        return document.toResponse(keepAlive, keepAlive ? heads.keepAliveHead() : heads.closeHead());
+    }
+
+    /**
+     * Keeps the heads encoded for a document, dropping the least recently used heads above the maximum number of entries.
+     *
+     * @param key   The document and its encoding.
+     * @param heads The heads encoded for the document.
+     */
+    private void store(HeadKey key, EncodedHeads heads) {
+        if (maximumEntries <= 0) {
+            return;
+        }
+        evictionLock.lock();
+        try {
+            evictionOrder.put(key, heads);
+            encodedHeads.put(key, heads);
+            Iterator<HeadKey> leastRecentlyUsed = evictionOrder.keySet().iterator();
+            while (evictionOrder.size() > maximumEntries) {
+                encodedHeads.remove(leastRecentlyUsed.next());
+                leastRecentlyUsed.remove();
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Records a reused head in the eviction order. <p>
+     * Reused heads don't wait for the eviction lock: if another thread holds it, the access isn't recorded,
+     * which only makes the eviction order slightly less precise.
+     *
+     * @param key The document and its encoding.
+     */
+    private void recordAccess(HeadKey key) {
+        if (evictionLock.tryLock()) {
+            try {
+                evictionOrder.get(key);
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Checks if the head of a document's response can be reused for the next responses.
+     *
+     * @param document The document that answers the request.
+     * @return <code>boolean</code>
+     * <ul>
+     *     <li> <strong>true -</strong> if the whole document is sent, with its validators, or the error page is sent.</li>
+     *     <li> <strong>false -</strong> if the response is partial, not modified, or the error page is missing.</li>
+     * </ul>
+     */
+    private static boolean isReusable(RequestHandler.ResolvedDocument document) {
+        if (document.file() == null || document.ranges() != null) {
+            return false;
+        }
+        return (document.entityTag() != null && "200 OK".equals(document.responseCode())) || RequestHandler.NOT_FOUND.equals(document.responseCode());
+    }
+
+    /**
+     * @return <code>int</code> - number of documents whose heads are kept.
+     */
+    public int size() {
+        return encodedHeads.size();
+    }
+
+}
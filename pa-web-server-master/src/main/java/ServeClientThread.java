@@ -1,362 +1,376 @@
 import java.io.*;
 import java.net.Socket;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.*;
-import java.util.concurrent.Semaphore;
-import java.util.concurrent.locks.ReentrantLock;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.StandardOpenOption;
 
 /**
- * The class of the thread responsible for serving each client accepted by the server.
+ * The class of the task responsible for serving each client accepted by the server.
+ * The task is submitted to the server's client executor, which decides the thread that runs it.
  */
-public class ServeClientThread extends Thread {
+public class ServeClientThread implements Runnable {
 
     /**
-     * The server's configuration, imported from the configuration file when the server started.
+     * The server's settings, imported from the configuration file when the server started.
      */
-    private final Properties serverConfig;
+    private final ServerSettings serverSettings;
     /**
-     * The semaphore responsible for the number of requests that can be served simultaneously.
+     * The server's performance counters.
      */
-    private final Semaphore numberOfConcurrentRequests;
-
+    private final ServerMetrics serverMetrics;
     /**
-     * The client's socket, created when the client requested some route.
+     * Resolves the routes requested by the client to the documents served to it.
      */
-    private final Socket clientSocket;
-
+    private final RequestHandler requestHandler;
     /**
-     * The lock responsible for the client sockets array,
-     * which contains all the clients that are making requests at a given point in time.
+     * Decides which requests are served, and which are refused because the server is overloaded.
      */
-    private final ReentrantLock clientSocketsLock;
+    private final AdmissionController admissionController;
+
     /**
-     * The server's array that contains the sockets of each request being made at a given point in time.
+     * The client's socket, created when the client requested some route.
      */
-    private final ArrayList<Socket> clientSockets;
+    private final Socket clientSocket;
 
     /**
-     * The lock responsible for the opened documents array,
-     * which contains a list of the documents the clients are requesting at a given point in time.
+     * The clients connected to the server.
      */
-    private final ReentrantLock currentlyOpenedDocumentsLock;
+    private final ConnectionRegistry connectionRegistry;
     /**
-     * Contains a list of the documents being requested at a given point in time.
+     * The state of the client's connection, in the registry.
      */
-    private final Set<String> currentlyOpenedDocuments;
+    private final ConnectionRegistry.Connection connection;
 
     /**
-     * The lock responsible for the requests' information array,
-     * which contains a list of requests information to save to the log.
+     * The locks that coordinate the threads serving the same document.
      */
-    private final ReentrantLock requestsInformationLock;
+    private final DocumentLocks documentLocks;
+
     /**
-     * Contains a list of the requests' information not yet saved to the log.
+     * Collects the requests to be written to the log.
      */
-    private final Queue<String> requestsInformation;
+    private final RequestLogger requestLogger;
 
     /**
-     * Timeout in milliseconds if the file is already being served before trying to serve again.
+     * The pool the connection's read buffer and request storage are acquired from.
      */
-    private final int fileBeingServedTimeout;
+    private final BufferPool bufferPool;
 
     /**
-     * Timeout in milliseconds to serve the file.
+     * Delay in milliseconds added before each file is served, so tests can hold a document, or 0 to serve it at once.
      */
     private final int serveFileTimeout;
 
     /**
-     * Constructor for the various threads that serve a single accepted request.
+     * Constructor for the various tasks that serve a single accepted request.
      *
-     * @param serverConfig                 The server's configuration, imported from the configuration file when the server started.
-     * @param numberOfConcurrentRequests   The semaphore responsible for the number of requests that can be served simultaneously
+     * @param serverSettings               The server's settings, imported from the configuration file when the server started.
+     * @param serverMetrics                The server's performance counters.
+     * @param requestHandler               Resolves the routes requested by the client to the documents served to it.
+     * @param admissionController          Decides which requests are served, and which are refused because the server is overloaded.
      * @param clientSocket                 The client's socket, created when the client requested some route.
-     * @param clientSocketsLock            The lock responsible for the client sockets array.
-     * @param clientSockets                Array that contains the sockets of each request being made at a given point in time.
-     * @param currentlyOpenedDocumentsLock The lock responsible for the opened documents array.
-     * @param currentlyOpenedDocuments     Contains a list of the documents being requested at a given point in time.
-     * @param requestsInformationLock      The lock responsible for the requests' information array.
-     * @param requestsInformation          Contains a list of the requests' information not yet saved to the log.
-     * @param fileBeingServedTimeout       Timeout in milliseconds if the file is already being served before trying to serve again.
-     * @param serveFileTimeout             Timeout in milliseconds to serve the file.
+     * @param connectionRegistry           The clients connected to the server.
+     * @param connection                   The state of the client's connection, in the registry.
+     * @param documentLocks                The locks that coordinate the threads serving the same document.
+     * @param requestLogger                Collects the requests to be written to the log.
+     * @param bufferPool                   The pool the connection's read buffer and request storage are acquired from, backed by arrays.
+     * @param serveFileTimeout             Delay in milliseconds added before each file is served, so tests can hold a document, or 0 to serve it at once.
      **/
-    public ServeClientThread(Properties serverConfig, Semaphore numberOfConcurrentRequests, Socket clientSocket, ReentrantLock clientSocketsLock, ArrayList<Socket> clientSockets, ReentrantLock currentlyOpenedDocumentsLock, Set<String> currentlyOpenedDocuments, ReentrantLock requestsInformationLock, Queue<String> requestsInformation, int fileBeingServedTimeout, int serveFileTimeout) {
-        this.serverConfig = serverConfig;
-        this.numberOfConcurrentRequests = numberOfConcurrentRequests;
+    public ServeClientThread(ServerSettings serverSettings, ServerMetrics serverMetrics, RequestHandler requestHandler, AdmissionController admissionController, Socket clientSocket, ConnectionRegistry connectionRegistry, ConnectionRegistry.Connection connection, DocumentLocks documentLocks, RequestLogger requestLogger, BufferPool bufferPool, int serveFileTimeout) {
+        this.serverSettings = serverSettings;
+        this.serverMetrics = serverMetrics;
+        this.requestHandler = requestHandler;
+        this.admissionController = admissionController;
 
         this.clientSocket = clientSocket;
 
-        this.clientSocketsLock = clientSocketsLock;
-        this.clientSockets = clientSockets;
+        this.connectionRegistry = connectionRegistry;
+        this.connection = connection;
+
+        this.documentLocks = documentLocks;
 
-        this.currentlyOpenedDocumentsLock = currentlyOpenedDocumentsLock;
-        this.currentlyOpenedDocuments = currentlyOpenedDocuments;
+        this.requestLogger = requestLogger;
 
-        this.requestsInformationLock = requestsInformationLock;
-        this.requestsInformation = requestsInformation;
+        this.bufferPool = bufferPool;
 
-        this.fileBeingServedTimeout = fileBeingServedTimeout;
         this.serveFileTimeout = serveFileTimeout;
     }
 
 
     /**
-     * Writes the request information to the server requests information array.
+     * Adds the request to the log's queue. The request is written to the log file by the log's writer, without delaying the client.
      *
      * @param requestMethod The request's method (GET, POST).
      * @param requestRoute  The request's route.
      */
     private void writeToLog(String requestMethod, String requestRoute) {
-
-        requestsInformationLock.lock();
-        DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss:SSS");
-        LocalDateTime now = LocalDateTime.now();
-        String requestInformation = dtf.format(now) + "-Method:" + requestMethod + "-Route:" + requestRoute + "-" + clientSocket.getRemoteSocketAddress().toString().split(":")[0];
-        requestsInformation.add(requestInformation);
-        requestsInformationLock.unlock();
-
+        requestLogger.log(requestMethod, requestRoute, clientSocket.getInetAddress());
     }
 
     /**
-     * Parses the route the client is requesting from the socket of the request.
+     * Reads and parses the next request the client sent through the connection.
+     * Bytes received after the request's head stay in the read buffer, so pipelined requests are parsed in the order they were sent.
      *
-     * @return <code>String</code> - the route the client is requesting.
-     * @throws IOException if an I/O error occurs when creating the output stream or if the socket is not connected.
+     * @param clientInput   The input stream of the client's socket.
+     * @param readBuffer    The bytes received from the client that weren't parsed yet, shared by every request of the connection.
+     * @param requestParser The parser of the connection's requests.
+     * @param request       The request that receives the parsed line and headers.
+     * @return <code>boolean</code>
+     * <ul>
+     *     <li> <strong>true -</strong> if a request was parsed.</li>
+     *     <li> <strong>false -</strong> if the client closed the connection.</li>
+     * </ul>
+     * @throws IOException if an I/O error occurs when reading the socket, or if the connection was idle for longer than the keep-alive timeout.
+     * @throws HttpParseException if the request is malformed, or its head is too large.
      */
-    private String parseRequest() throws IOException {
-
-        //! Get and parse the client request
-        BufferedReader clientBufferedRead = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-
-        StringBuilder requestBuilder = new StringBuilder();
-        String line;
-        int lineNumber = 0;
-
-        while (true) {
-
-            line = clientBufferedRead.readLine();
-
-            if (Objects.isNull(line)) {
-                break;
-            }
+    private boolean readRequest(InputStream clientInput, ByteBuffer readBuffer, HttpRequestParser requestParser, HttpRequest request) throws IOException {
 
-            // If the line isn't null, check if is blank, and append it if it isn't
-            boolean lineIsBlank = line.isBlank();
-            if (!lineIsBlank) {
-                requestBuilder.append(line).append("\r\n");
+        int requestHeadSize;
+        while ((requestHeadSize = requestParser.parse(readBuffer, request)) < 0) {
+            int read = clientInput.read(readBuffer.array(), readBuffer.position(), readBuffer.remaining());
+            if (read == -1) {
+                return false;
             }
-            else {
-                break;
-            }
-
-            if (lineNumber == 0) {
-                writeToLog(line.split(" ")[0], line.split(" ")[1]);
-                lineNumber++;
-            }
-
+            readBuffer.position(readBuffer.position() + read);
+            connection.recordBytesIn(read);
         }
 
-        /*
-        Quite simple parsing, to be expanded by each group
-         */
-
-        String request = requestBuilder.toString();
-        String[] tokens = request.split(" ");
-//        System.out.println("Request:");
-//        System.out.println(request + "\n");
-
-        return tokens[1];
+        removeFromReadBuffer(readBuffer, requestHeadSize);
+        writeToLog(request.getMethod(), request.getRoute());
+        return true;
     }
 
-
     /**
-     * Checks if another thread is already serving a document.
+     * Skips the body of a request, so the next request of the connection can be parsed.
      *
-     * @param documentPath The document's path to check.
-     * @return <code>boolean</code>
-     * <ul>
-     * <li> <strong>true - </strong>the document is already being served by another thread. </li>
-     * <li> <strong>false - </strong>the document isn't already being served by another thread. </li>
-     * </ul>
+     * @param clientInput   The input stream of the client's socket.
+     * @param readBuffer    The bytes received from the client that weren't parsed yet.
+     * @param contentLength The size, in bytes, of the request's body.
+     * @throws IOException if an I/O error occurs when reading the socket.
      */
-    private boolean documentAlreadyBeingServed(String documentPath) {
-
-        if (currentlyOpenedDocumentsLock.isLocked()) {
-            System.out.println("Another thread is currently accessing the opened documents lock.");
-        }
-
-        currentlyOpenedDocumentsLock.lock();
-        System.out.println("Acquired opened documents lock.");
-        System.out.println("Opened documents: " + currentlyOpenedDocuments.toString());
-
-        if (currentlyOpenedDocuments.contains(documentPath)) {
-
-            System.out.println("Another thread has the document currently opened.");
-            currentlyOpenedDocumentsLock.unlock();
-            System.out.println("Unlocked documents opened lock.\n");
-            return true;
-
-        } else {
-
-            System.out.println("No thread has the document currently opened.");
-            currentlyOpenedDocumentsLock.unlock();
-            System.out.println("Unlocked documents opened lock.\n");
-            return false;
-
+    private void skipRequestBody(InputStream clientInput, ByteBuffer readBuffer, long contentLength) throws IOException {
+        int bufferedBytes = (int) Math.min(contentLength, readBuffer.position());
+        removeFromReadBuffer(readBuffer, bufferedBytes);
+        long bytesToSkip = contentLength - bufferedBytes;
+        while (bytesToSkip > 0) {
+            long skipped = clientInput.skip(bytesToSkip);
+            if (skipped <= 0) {
+                return;
+            }
+            connection.recordBytesIn(skipped);
+            bytesToSkip -= skipped;
         }
-
     }
 
-
     /**
-     * Reads a document and returns it as an array of bytes.
+     * Removes bytes from the start of the read buffer.
      *
-     * @param filePath Path of the file to return as an array of bytes.
-     * @return <code>byte[]</code> - Array of bytes that constitute a given file.
+     * @param readBuffer    The bytes received from the client that weren't parsed yet.
+     * @param numberOfBytes The number of bytes to remove.
      */
-    private byte[] readBinaryFile(String filePath) {
-        byte[] content = new byte[0];
-        File f = new File(filePath);
-        try {
-            FileInputStream fileInputStream = new FileInputStream(f);
-            content = fileInputStream.readAllBytes();
-            return content;
-        } catch (Exception e) {
-            e.printStackTrace();
-            return content;
-        }
+    private static void removeFromReadBuffer(ByteBuffer readBuffer, int numberOfBytes) {
+        readBuffer.flip();
+        readBuffer.position(numberOfBytes);
+        readBuffer.compact();
     }
 
     /**
-     * Serves a file's content to the client, if that file is not already being served by another thread.
+     * Writes a complete response to the client.
+     * The regions of a streamed response are transferred from the file to the socket by the kernel, without being copied to the heap.
      *
-     * @param filePath               The path of the file that is going to be served to the client.
-     * @param fileBeingServedTimeout Timeout in milliseconds if the file is already being served before trying to serve again.
-     * @param serveFileTimeout       Timeout in milliseconds to serve the file.
-     * @throws IOException if an I/O error occurs when creating the output stream or if the socket is not connected.
+     * @param response The response to write.
+     * @return <code>long</code> - the number of bytes written, head and body.
+     * @throws IOException if an I/O error occurs when writing the socket, or if the streamed file is truncated while it is sent.
      */
-    private void serveFileContent(String filePath, String responseCode, int fileBeingServedTimeout, int serveFileTimeout) throws IOException {
-
-        boolean servedDocument = false;
-
-        // Continuously check if the document is already being served, and serve it if it isn't
-        while (!servedDocument) {
+    private long writeResponse(HttpResponse response) throws IOException {
+
+        SocketChannel clientChannel = clientSocket.getChannel();
+        ByteBuffer[] responseBuffers = response.toByteBuffers();
+        long bytesWritten = 0;
+        // The head is checked too, so responses with an empty body are also written
+        while (responseBuffers[0].hasRemaining() || responseBuffers[responseBuffers.length - 1].hasRemaining()) {
+            bytesWritten += clientChannel.write(responseBuffers);
+        }
 
-            // If document is already being served, wait till it isn't
-            if (documentAlreadyBeingServed(filePath)) {
-                try {
-                    Thread.sleep(fileBeingServedTimeout);
-                } catch (Exception exception) {
-                    System.out.println(exception.getMessage());
+        if (response.isFileStreamed()) {
+            try (FileChannel fileChannel = FileChannel.open(response.getFile(), StandardOpenOption.READ)) {
+                for (HttpResponse.FileRegion fileRegion : response.getFileRegions()) {
+                    long position = 0;
+                    while (position < fileRegion.length()) {
+                        long transferred = fileChannel.transferTo(fileRegion.offset() + position, fileRegion.length() - position, clientChannel);
+                        if (transferred == 0 && fileRegion.offset() + position >= fileChannel.size()) {
+                            throw new EOFException("File truncated while being served: " + response.getFile());
+                        }
+                        position += transferred;
+                    }
+                    bytesWritten += position;
+                    while (fileRegion.trailer().hasRemaining()) {
+                        bytesWritten += clientChannel.write(fileRegion.trailer());
+                    }
                 }
             }
+        }
 
-            // If the document isn't being served, serve it
-            else {
+        connection.recordBytesOut(bytesWritten);
+        return bytesWritten;
+    }
 
-                currentlyOpenedDocumentsLock.lock();
-                System.out.println("Currently serving: " + filePath);
-                currentlyOpenedDocuments.add(filePath);
-                currentlyOpenedDocumentsLock.unlock();
 
-                try {
-                    Thread.sleep(serveFileTimeout);
-                } catch (Exception exception) {
-                    System.out.println(exception.getMessage());
-                }
+    /**
+     * Serves a file's content to the client, holding the document's permit while it is served.
+     * Depending on the server's document locking, other clients are served the same document in parallel, or wait until it is released.
+     *
+     * @param document         The document that is going to be served to the client.
+     * @param keepAlive        Whether the connection stays open after the response.
+     * @param headRequest      Whether the request is a HEAD request, answered without the document's content.
+     * @param serveFileTimeout Delay in milliseconds added before the file is served, or 0 to serve it at once.
+     * @return <code>long</code> - the number of bytes written, head and body.
+     * @throws IOException if an I/O error occurs when creating the output stream or if the socket is not connected.
+     * @throws InterruptedException if the thread is interrupted while waiting for the document.
+     */
+    private long serveFileContent(RequestHandler.ResolvedDocument document, boolean keepAlive, boolean headRequest, int serveFileTimeout) throws IOException, InterruptedException {
 
-                byte[] fileContent = readBinaryFile(filePath);
-                OutputStream clientOutput = clientSocket.getOutputStream();
-                String responseCodeMessage = "HTTP/1.1 " + responseCode + "\r\n";
-                clientOutput.write(responseCodeMessage.getBytes());
-                clientOutput.write(("ContentType: text/html\r\n").getBytes());
-                clientOutput.write("\r\n".getBytes());
-                clientOutput.write(fileContent);
-                clientOutput.write("\r\n\r\n".getBytes());
-                clientOutput.flush();
-                clientSocket.close();
-                servedDocument = true;
+        String filePath = document.filePath();
+        DocumentLocks.Permit documentPermit = documentLocks.acquire(filePath);
 
-                currentlyOpenedDocumentsLock.lock();
-                System.out.println("Stopped serving: " + filePath + "\n");
-                currentlyOpenedDocuments.remove(filePath);
-                currentlyOpenedDocumentsLock.unlock();
+        try {
 
+            if (DiagnosticLog.isDebugEnabled()) {
+                DiagnosticLog.debug("Currently serving: " + filePath);
             }
 
+            // Only delayed on purpose, the server always serves the files at once
+            if (serveFileTimeout > 0) {
+                Thread.sleep(serveFileTimeout);
+            }
+
+            return writeResponse(requestHandler.toResponse(document, keepAlive).withBodyOmitted(headRequest));
+
+        } finally {
+            documentPermit.release();
+            if (DiagnosticLog.isDebugEnabled()) {
+                DiagnosticLog.debug("Stopped serving: " + filePath);
+            }
         }
 
     }
 
     /**
-     * Parses the request, and serves the corresponding file to the client.
+     * Parses the requests of the connection, and serves the corresponding files to the client. <p>
+     * The connection stays open between requests, until the client closes it, the keep-alive timeout expires
+     * or the maximum number of requests per connection is served.
      */
     @Override
     public void run() {
 
-        try {
-
-            numberOfConcurrentRequests.acquire();
-
-            String route = parseRequest(); // Gets the route the client is requesting
-            System.out.println("Route to serve: " + route);
-            //! Send the appropriate response to the client
+        serverMetrics.recordDispatchLatency(System.nanoTime() - connection.getStartTime());
+        // The socket's input stream reads into arrays, and enforces the keep-alive timeout, so the buffer is on the heap
+        BufferPool.PooledBuffer pooledReadBuffer = bufferPool.acquire(serverSettings.getRequestMaximumHeadSize());
+        // The request's head is copied to storage from the same pool, reused by every request of the connection
+        HttpRequest request = new HttpRequest(bufferPool, serverSettings.getRequestMaximumHeadSize(), serverSettings.getRequestMaximumHeaders());
 
-            String serverRootPath = serverConfig.getProperty("server.root");
-            String pageNotFoundRootPath = serverConfig.getProperty("server.404.root");
-            String pageNotFoundFilename = serverConfig.getProperty("server.404.page");
-            String pageNotFoundFileExtension = serverConfig.getProperty("server.404.page.extension");
-            String pageNotFoundFile = pageNotFoundFilename + "." + pageNotFoundFileExtension;
-
-            //* Serve default page when client requests the root route
-            if (Objects.equals(route, "/")) {
-
-                String defaultFilename = serverConfig.getProperty("server.default.page");
-                String defaultFileExtension = serverConfig.getProperty("server.default.page.extension");
-                String defaultFile = defaultFilename + "." + defaultFileExtension;
-                File defaultPage = new File(serverRootPath + "/" + defaultFile);
-
-                if (defaultPage.exists() && defaultPage.isFile()) {
+        try {
 
-                    System.out.println("Started trying to serve default route.");
-                    serveFileContent(serverRootPath + "/" + defaultFile, "200 OK", fileBeingServedTimeout, serveFileTimeout);
+            // The connection holds its thread while it waits, so a pooled thread is only held for a short time
+            clientSocket.setSoTimeout(serverSettings.getBlockingKeepAliveTimeout());
+            InputStream clientInput = clientSocket.getInputStream();
+            ByteBuffer readBuffer = pooledReadBuffer.buffer();
+            HttpRequestParser requestParser = new HttpRequestParser(serverSettings.getRequestMaximumHeadSize());
 
-                } else {
+            int servedRequests = 0;
+            boolean keepAlive = true;
 
-                    System.out.println("Started serving error route. (default route)");
-                    serveFileContent(pageNotFoundRootPath + "/" + pageNotFoundFile, "404 Not found", fileBeingServedTimeout, serveFileTimeout);
+            //* Serve the requests of the connection in the order they arrive, until one of them closes it
+            while (keepAlive) {
 
+                try {
+                    if (!readRequest(clientInput, readBuffer, requestParser, request)) { // Gets the request the client is making
+                        break; // The client closed the connection
+                    }
+                } catch (HttpParseException exception) {
+                    long refusedTime = System.nanoTime();
+                    long bytesWritten = writeResponse(new HttpResponse(exception.getResponseCode(), new byte[0], false));
+                    serverMetrics.recordResponse(null, exception.getResponseCode(), bytesWritten, System.nanoTime() - refusedTime);
+                    break;
                 }
 
-            }
-
-            //* Serve non default page when client requests the root route
-            else {
+                long requestStartTime = System.nanoTime();
+                servedRequests++;
+                // A server shutting down answers the request, and closes the connection instead of waiting for the next one
+                keepAlive = request.isKeepAlive() && servedRequests < serverSettings.getKeepAliveMaximumRequests() && !connectionRegistry.isDraining();
+                if (DiagnosticLog.isDebugEnabled()) {
+                    DiagnosticLog.debug("Route to serve: " + request.getRoute());
+                }
 
-                File nonDefaultPage = new File(serverRootPath + route);
+                //! Send the appropriate response to the client
+                connection.setBusy(true);
+                serverMetrics.recordRequestStarted();
+                try {
+                    boolean admitted = admissionController.acquire();
+                    long admittedTime = System.nanoTime();
+                    serverMetrics.recordAdmission(admittedTime - requestStartTime, admitted);
+                    if (!admitted) {
+                        // The server is overloaded, the client is asked to come back later instead of holding a thread
+                        HttpResponse response = new HttpResponse("503 Service Unavailable", new byte[0], false)
+                                .addHeader("Retry-After", String.valueOf(serverSettings.getAdmissionRetryAfter()));
+                        long bytesWritten = writeResponse(response);
+                        serverMetrics.recordResponse(request.getRoute(), response.getResponseCode(), bytesWritten, System.nanoTime() - requestStartTime);
+                        break;
+                    }
+                    try {
+                        String responseCode;
+                        long bytesWritten;
+                        // HEAD requests get the head of the GET response, and no body, so the next response of the connection isn't mistaken for it
+                        boolean headRequest = "HEAD".equals(request.getMethod());
+                        if (requestHandler.isMetricsRoute(request.getRoute())) {
+                            HttpResponse response = requestHandler.handleMetrics(keepAlive).withBodyOmitted(headRequest);
+                            responseCode = response.getResponseCode();
+                            bytesWritten = writeResponse(response);
+                        } else {
+                            RequestHandler.ResolvedDocument document = requestHandler.resolve(request);
+                            if (DiagnosticLog.isDebugEnabled()) {
+                                DiagnosticLog.debug("Started trying to serve: " + document.filePath());
+                            }
+                            responseCode = document.responseCode();
+                            bytesWritten = serveFileContent(document, keepAlive, headRequest, serveFileTimeout);
+                        }
+                        serverMetrics.recordResponse(request.getRoute(), responseCode, bytesWritten, System.nanoTime() - requestStartTime);
+                    } finally {
+                        admissionController.release(System.nanoTime() - admittedTime);
+                    }
+                } finally {
+                    serverMetrics.recordRequestFinished();
+                    connection.setBusy(false);
+                }
 
-                if (nonDefaultPage.exists() && nonDefaultPage.isFile()) {
-                    System.out.println("Started trying to serve non default route.");
-                    serveFileContent(serverRootPath + route, "200 OK", fileBeingServedTimeout, serveFileTimeout);
-                } else {
+                skipRequestBody(clientInput, readBuffer, request.getContentLength());
 
-                    System.out.println("Serving error route. (non default route)");
-                    serveFileContent(pageNotFoundRootPath + "/" + pageNotFoundFile, "404 Not found", fileBeingServedTimeout, serveFileTimeout);
-                }
             }
 
+        } catch (SocketTimeoutException exception) {
+
+            // The connection was idle for longer than the keep-alive timeout
 
         } catch (IOException | InterruptedException exception) {
 
-            System.out.println(exception.getMessage());
+            // The idle connections closed by the server's shutdown aren't failures
+            if (!connectionRegistry.isDraining()) {
+                DiagnosticLog.info(exception.getMessage());
+            }
 
         } finally {
 
-            clientSocketsLock.lock();
-            clientSockets.remove(clientSocket);
-            clientSocketsLock.unlock();
+            pooledReadBuffer.release();
+            request.release();
+            connectionRegistry.unregister(connection);
 
-            numberOfConcurrentRequests.release();
+            try {
+                clientSocket.close();
+            } catch (IOException exception) {
+                DiagnosticLog.info(exception.getMessage());
+            }
 
         }
 
@@ -0,0 +1,325 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Stops the running server gracefully, and reloads its settings without stopping it. <p>
+ * The server shuts down when the JVM is asked to stop, such as by SIGTERM or Ctrl+C: it stops accepting clients,
+ * lets the connections finish the request they are answering, closing them once idle, and closes the remaining ones
+ * when the shutdown timeout expires. The requests still waiting to be logged are written before the server stops. <p>
+ * The settings are reloaded from the configuration file on SIGHUP. The reloaded settings replace the previous ones as a whole,
+ * for the next requests and connections, and the open connections aren't closed. The settings bound to the listening sockets,
+ * the caches, the buffers and the log keep their values until the server restarts, as do the roots when they are indexed or watched.
+ */
+public class ServerLifecycle {
+
+    /**
+     * The settings, and the families of settings, that are only applied when the server starts.
+     */
+    private static final List<String> RESTART_SETTINGS = List.of(
+            "server.port", "server.engine", "server.executor", "server.nio", "server.acceptors", "server.reuseport", "server.backlog",
+            "server.tcp", "server.socket", "server.cache.maxBytes", "server.streaming", "server.mmap", "server.warmup", "server.watch",
+            "server.compression", "server.response.heads", "server.notfound.cache", "server.buffer.pool", "server.log", "server.document");
+    /**
+     * The settings of the roots, only applied when the server starts if the documents are indexed or watched.
+     */
+    private static final List<String> ROOT_SETTINGS = List.of("server.root", "server.404");
+    /**
+     * Time in milliseconds between checks of the connections, while the server shuts down.
+     */
+    private static final long DRAIN_CHECK_INTERVAL = 50;
+
+    /**
+     * The path of the configuration file the settings are reloaded from.
+     */
+    private final Path configPath;
+    /**
+     * The server's configuration, imported from the configuration file when the server started, or when it was last reloaded.
+     */
+    private Properties serverConfig;
+    /**
+     * The settings only applied when the server starts.
+     */
+    private final List<String> restartSettings;
+
+    /**
+     * The server's listening sockets, closed to stop accepting clients.
+     */
+    private final ServerSocketChannel[] serverChannels;
+    /**
+     * The threads accepting the clients.
+     */
+    private final List<Thread> acceptClientsThreads;
+    /**
+     * The executor serving the clients of the blocking server, or answering the requests of the non-blocking server.
+     */
+    private final ExecutorService clientExecutor;
+    /**
+     * The reactors serving the clients of the non-blocking server, or null if the server is blocking.
+     */
+    private final ReactorThread[] reactors;
+    /**
+     * The clients connected to the server.
+     */
+    private final ConnectionRegistry connectionRegistry;
+    /**
+     * Decides which requests are served, and which are refused because the server is overloaded.
+     */
+    private final AdmissionController admissionController;
+    /**
+     * Resolves the routes requested by the clients, with the server's current settings.
+     */
+    private final RequestHandler requestHandler;
+    /**
+     * The thread writing the requests to the log.
+     */
+    private final LogRequestsInformationThread logRequestsInformationThread;
+    /**
+     * The thread watching the documents' folders, or null if they aren't watched.
+     */
+    private final WatchDocumentsThread watchDocumentsThread;
+    /**
+     * Whether the server started shutting down.
+     */
+    private final AtomicBoolean shuttingDown = new AtomicBoolean();
+
+    /**
+     * Constructor for the lifecycle of a started server.
+     *
+     * @param configPath                   The path of the configuration file the settings are reloaded from.
+     * @param serverConfig                 The server's configuration, imported from the configuration file when the server started.
+     * @param serverChannels               The server's listening sockets.
+     * @param acceptClientsThreads         The threads accepting the clients.
+     * @param clientExecutor               The executor serving the clients of the blocking server, or answering the requests of the non-blocking server.
+     * @param reactors                     The reactors serving the clients of the non-blocking server, or null if the server is blocking.
+     * @param connectionRegistry           The clients connected to the server.
+     * @param admissionController          Decides which requests are served, and which are refused because the server is overloaded.
+     * @param requestHandler               Resolves the routes requested by the clients, with the server's current settings.
+     * @param logRequestsInformationThread The thread writing the requests to the log.
+     * @param watchDocumentsThread         The thread watching the documents' folders, or null if they aren't watched.
+     */
+    public ServerLifecycle(Path configPath, Properties serverConfig, ServerSocketChannel[] serverChannels, List<Thread> acceptClientsThreads,
+                           ExecutorService clientExecutor, ReactorThread[] reactors, ConnectionRegistry connectionRegistry, AdmissionController admissionController,
+                           RequestHandler requestHandler, LogRequestsInformationThread logRequestsInformationThread, WatchDocumentsThread watchDocumentsThread) {
+        this.configPath = configPath;
+        this.serverConfig = serverConfig;
+        this.serverChannels = serverChannels;
+        this.acceptClientsThreads = acceptClientsThreads;
+        this.clientExecutor = clientExecutor;
+        this.reactors = reactors;
+        this.connectionRegistry = connectionRegistry;
+        this.admissionController = admissionController;
+        this.requestHandler = requestHandler;
+        this.logRequestsInformationThread = logRequestsInformationThread;
+        this.watchDocumentsThread = watchDocumentsThread;
+
+        ServerSettings serverSettings = requestHandler.getServerSettings();
+        this.restartSettings = new ArrayList<>(RESTART_SETTINGS);
+        // The index and the watcher only know the roots they were started with
+        if (serverSettings.isWarmupIndex() || serverSettings.isWatchEnabled()) {
+            this.restartSettings.addAll(ROOT_SETTINGS);
+        }
+    }
+
+    /**
+     * Shuts the server down gracefully when the JVM stops, and reloads the settings on SIGHUP, on the systems that have it.
+     * A single shutdown hook stops, in order, the connections, the request log and the diagnostic log, so none of them loses the others' last messages.
+     */
+    public void installHandlers() {
+        // The diagnostic log is stopped last, so the messages of the shutdown are written
+        DiagnosticLog.detachShutdownHook();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                shutdown();
+            } catch (InterruptedException exception) {
+                DiagnosticLog.info(exception.getMessage());
+            } finally {
+                DiagnosticLog.stop();
+            }
+        }, "shutdown"));
+        if (!ReloadSignal.install(this::reload)) {
+            DiagnosticLog.info("Settings can't be reloaded with SIGHUP on this system.");
+        }
+    }
+
+    /**
+     * Stops the server: it stops accepting clients, waits for the connections to finish their requests, up to the shutdown timeout,
+     * closes the remaining connections, and writes the requests still waiting to be logged. Only the first call stops the server.
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting for the server's threads to end.
+     */
+    public void shutdown() throws InterruptedException {
+
+        if (!shuttingDown.compareAndSet(false, true)) {
+            return;
+        }
+        long startTime = System.nanoTime();
+        long deadline = startTime + TimeUnit.MILLISECONDS.toNanos(requestHandler.getServerSettings().getShutdownTimeout());
+        DiagnosticLog.info("Shutting down the server, with " + connectionRegistry.size() + " open connections.");
+
+        //* Stop accepting clients
+        for (ServerSocketChannel serverChannel : serverChannels) {
+            try {
+                serverChannel.close();
+            } catch (IOException exception) {
+                DiagnosticLog.info(exception.getMessage());
+            }
+        }
+        for (Thread acceptClientsThread : acceptClientsThreads) {
+            acceptClientsThread.join();
+        }
+
+        //* Let the connections answer their current request, and close them once they are idle
+        connectionRegistry.drain();
+        if (reactors != null) {
+            for (ReactorThread reactor : reactors) {
+                reactor.wakeup();
+            }
+        }
+        while (connectionRegistry.size() > 0 && System.nanoTime() - deadline < 0) {
+            // The reactors close their own connections, the blocking server's connections are closed from here
+            if (reactors == null) {
+                connectionRegistry.closeIdleSince(System.nanoTime());
+            }
+            Thread.sleep(DRAIN_CHECK_INTERVAL);
+        }
+
+        //* Close the connections still answering requests when the timeout expires
+        if (connectionRegistry.size() > 0) {
+            DiagnosticLog.info("Closing " + connectionRegistry.size() + " connections still answering requests after the shutdown timeout.");
+        }
+        if (reactors != null) {
+            for (ReactorThread reactor : reactors) {
+                reactor.shutdown();
+            }
+            for (ReactorThread reactor : reactors) {
+                reactor.join();
+            }
+        } else {
+            connectionRegistry.closeAll();
+        }
+        clientExecutor.shutdown();
+        if (!clientExecutor.awaitTermination(1, TimeUnit.SECONDS)) {
+            DiagnosticLog.info("Some clients were still being served when the server stopped.");
+        }
+
+        if (watchDocumentsThread != null) {
+            try {
+                watchDocumentsThread.close();
+            } catch (IOException exception) {
+                DiagnosticLog.info(exception.getMessage());
+            }
+        }
+
+        //* Write the requests still waiting to be logged
+        logRequestsInformationThread.shutdown();
+        logRequestsInformationThread.join();
+
+        DiagnosticLog.info("Server stopped in " + (System.nanoTime() - startTime) / 1_000_000 + " ms.");
+    }
+
+    /**
+     * Reloads the settings from the configuration file, and applies them to the next requests and connections.
+     * The settings only applied when the server starts keep their current values. Invalid settings are reported, and not applied.
+     *
+     * @return <code>boolean</code>
+     * <ul>
+     *     <li> <strong>true -</strong> if the reloaded settings are applied.</li>
+     *     <li> <strong>false -</strong> if the configuration file can't be read or is invalid, so the current settings are kept.</li>
+     * </ul>
+     */
+    public synchronized boolean reload() {
+
+        if (shuttingDown.get()) {
+            return false;
+        }
+
+        Properties reloadedConfig = new Properties();
+        ServerSettings reloadedSettings;
+        Set<String> keptSettings;
+        try (InputStream configInputStream = Files.newInputStream(configPath)) {
+            reloadedConfig.load(configInputStream);
+            keptSettings = keepRestartSettings(reloadedConfig);
+            reloadedSettings = new ServerSettings(reloadedConfig);
+        } catch (IOException | IllegalArgumentException exception) {
+            DiagnosticLog.info("Settings not reloaded: " + exception.getMessage());
+            return false;
+        }
+
+        if (!Files.isDirectory(Path.of(reloadedSettings.getServerRootPath())) || !Files.isRegularFile(Path.of(reloadedSettings.getPageNotFoundPath()))) {
+            DiagnosticLog.info("Settings not reloaded: the server root path or the error page path is not properly configured.");
+            return false;
+        }
+
+        //* Replace the settings, which the next requests and connections are served with
+        DiagnosticLog.setLevel(reloadedSettings.getDiagnosticLevel());
+        admissionController.reconfigure(reloadedSettings);
+        requestHandler.reload(reloadedSettings);
+        serverConfig = reloadedConfig;
+
+        DiagnosticLog.info("Settings reloaded from " + configPath + ".");
+        if (!keptSettings.isEmpty()) {
+            DiagnosticLog.info("Settings applied when the server restarts: " + String.join(", ", keptSettings));
+        }
+        return true;
+    }
+
+    /**
+     * Replaces the reloaded settings that are only applied when the server starts with their current values.
+     *
+     * @param reloadedConfig The configuration reloaded from the configuration file.
+     * @return {@link Set} - the names of the settings that changed, but keep their current values.
+     */
+    private Set<String> keepRestartSettings(Properties reloadedConfig) {
+        Set<String> names = new HashSet<>(serverConfig.stringPropertyNames());
+        names.addAll(reloadedConfig.stringPropertyNames());
+        Set<String> keptSettings = new TreeSet<>();
+        for (String name : names) {
+            if (!isRestartSetting(name)) {
+                continue;
+            }
+            String currentValue = serverConfig.getProperty(name);
+            if (!Objects.equals(currentValue, reloadedConfig.getProperty(name))) {
+                keptSettings.add(name);
+                if (currentValue != null) {
+                    reloadedConfig.setProperty(name, currentValue);
+                } else {
+                    reloadedConfig.remove(name);
+                }
+            }
+        }
+        return keptSettings;
+    }
+
+    /**
+     * Checks if a setting is only applied when the server starts.
+     *
+     * @param name The setting's name.
+     * @return <code>boolean</code>
+     * <ul>
+     *     <li> <strong>true -</strong> if the setting, or its family of settings, is only applied when the server starts.</li>
+     *     <li> <strong>false -</strong> if the setting is applied when the settings are reloaded.</li>
+     * </ul>
+     */
+    private boolean isRestartSetting(String name) {
+        for (String restartSetting : restartSettings) {
+            if (name.equals(restartSetting) || name.startsWith(restartSetting + ".")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,89 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+
+/**
+ * Opens the server's listening sockets, and applies the configured TCP options to them and to the accepted clients. <p>
+ * By default every acceptor thread accepts from the same socket. With <code>server.reuseport</code>, each acceptor listens on its own socket
+ * bound to the same port with SO_REUSEPORT, so the kernel spreads the new connections between them instead of the acceptors contending for one queue.
+ */
+public final class ServerListeners {
+
+    /**
+     * The listeners are only opened through the static methods.
+     */
+    private ServerListeners() {
+    }
+
+    /**
+     * Opens and binds the server's listening sockets, in blocking mode.
+     *
+     * @param serverSettings The server's settings, imported from the configuration file when the server started.
+     * @return {@link ServerSocketChannel}[] - one socket per acceptor when SO_REUSEPORT is enabled and supported, otherwise a single socket shared by the acceptors.
+     * @throws IOException if a socket can't be opened or bound.
+     */
+    public static ServerSocketChannel[] open(ServerSettings serverSettings) throws IOException {
+
+        boolean reusePort = serverSettings.isReusePort();
+        if (reusePort && !isReusePortSupported()) {
+            DiagnosticLog.info("SO_REUSEPORT is not supported, the acceptors share a single socket.");
+            reusePort = false;
+        }
+
+        ServerSocketChannel[] serverChannels = new ServerSocketChannel[reusePort ? Math.max(1, serverSettings.getAcceptors()) : 1];
+        int port = serverSettings.getPort();
+        try {
+            for (int listener = 0; listener < serverChannels.length; listener++) {
+                serverChannels[listener] = ServerSocketChannel.open();
+                if (reusePort) {
+                    serverChannels[listener].setOption(StandardSocketOptions.SO_REUSEPORT, true);
+                }
+                // Set before binding, so the accepted sockets inherit it and can negotiate a large TCP window
+                if (serverSettings.getSocketReceiveBuffer() > 0) {
+                    serverChannels[listener].setOption(StandardSocketOptions.SO_RCVBUF, serverSettings.getSocketReceiveBuffer());
+                }
+                serverChannels[listener].bind(new InetSocketAddress(port), serverSettings.getBacklog());
+                // The other sockets join the port the first one got, even if it was chosen by the system
+                port = serverChannels[listener].socket().getLocalPort();
+            }
+        } catch (IOException exception) {
+            for (ServerSocketChannel serverChannel : serverChannels) {
+                if (serverChannel != null) {
+                    serverChannel.close();
+                }
+            }
+            throw exception;
+        }
+
+        return serverChannels;
+    }
+
+    /**
+     * Applies the configured TCP options to an accepted client's socket.
+     *
+     * @param clientSocket   The client's socket.
+     * @param serverSettings The server's settings, imported from the configuration file when the server started.
+     * @throws SocketException if an option can't be set.
+     */
+    public static void configureClient(Socket clientSocket, ServerSettings serverSettings) throws SocketException {
+        clientSocket.setTcpNoDelay(serverSettings.isTcpNoDelay());
+        if (serverSettings.getSocketSendBuffer() > 0) {
+            clientSocket.setSendBufferSize(serverSettings.getSocketSendBuffer());
+        }
+    }
+
+    /**
+     * @return <code>boolean</code> - whether the platform lets several sockets be bound to the same port with SO_REUSEPORT.
+     */
+    public static boolean isReusePortSupported() {
+        try (ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+            return serverChannel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT);
+        } catch (IOException exception) {
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,435 @@
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The server's performance counters, shared by every thread serving clients. <p>
+ * The counters are updated without locks, so recording them doesn't make the serving threads contend.
+ * They are exposed in the Prometheus text format, on the route configured by <code>server.metrics.path</code>.
+ */
+public class ServerMetrics {
+
+    /**
+     * Maximum number of routes whose latencies are recorded separately. Later routes share the {@link #OTHER_ROUTES} histogram,
+     * so clients requesting random routes can't grow the metrics without bounds.
+     */
+    private static final int MAXIMUM_ROUTES = 256;
+    /**
+     * The route label of the requests that weren't answered with a document, or whose route isn't recorded separately.
+     */
+    private static final String OTHER_ROUTES = "other";
+    /**
+     * The upper bounds, in seconds, of the request duration buckets exposed to Prometheus.
+     */
+    private static final double[] LATENCY_BUCKETS = {0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+
+    /**
+     * Number of clients accepted by the server.
+     */
+    private final LongAdder acceptedConnections = new LongAdder();
+    /**
+     * Number of requests being answered.
+     */
+    private final LongAdder activeRequests = new LongAdder();
+    /**
+     * Number of response bytes written to the clients.
+     */
+    private final LongAdder bytesSent = new LongAdder();
+    /**
+     * Number of responses sent with each status code, indexed by the code.
+     */
+    private final LongAdder[] responseCodes = new LongAdder[600];
+    /**
+     * The latencies of the answered requests, in nanoseconds, by route.
+     */
+    private final Map<String, LatencyHistogram> routeLatencies = new ConcurrentHashMap<>();
+
+    /**
+     * Number of requests admitted by the admission controller.
+     */
+    private final LongAdder admittedRequests = new LongAdder();
+    /**
+     * Number of requests refused by the admission controller.
+     */
+    private final LongAdder rejectedRequests = new LongAdder();
+    /**
+     * Sum of the time, in nanoseconds, the requests waited to be admitted or refused.
+     */
+    private final LongAdder admissionWaitTime = new LongAdder();
+
+    /**
+     * Number of accepted clients that started being served.
+     */
+    private final LongAdder dispatchedClients = new LongAdder();
+    /**
+     * Sum of the time, in nanoseconds, between accepting each client and starting to serve it.
+     */
+    private final LongAdder totalDispatchLatency = new LongAdder();
+    /**
+     * Longest time, in nanoseconds, between accepting a client and starting to serve it.
+     */
+    private final LongAccumulator maximumDispatchLatency = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Number of files served from the file cache.
+     */
+    private final LongAdder cacheHits = new LongAdder();
+    /**
+     * Number of files that had to be read from the filesystem.
+     */
+    private final LongAdder cacheMisses = new LongAdder();
+
+    /**
+     * Number of buffers acquired from the buffer pools.
+     */
+    private final LongAdder bufferAcquisitions = new LongAdder();
+    /**
+     * Number of buffers acquired from the buffer pools that had to be allocated, because no released buffer could be reused.
+     */
+    private final LongAdder bufferAllocations = new LongAdder();
+    /**
+     * Number of buffers released to the buffer pools.
+     */
+    private final LongAdder bufferReleases = new LongAdder();
+    /**
+     * Number of buffers garbage collected without being released, only counted in debug mode.
+     */
+    private final LongAdder bufferLeaks = new LongAdder();
+
+    /**
+     * Constructor for the server's performance counters.
+     */
+    public ServerMetrics() {
+        for (int responseCode = 0; responseCode < responseCodes.length; responseCode++) {
+            responseCodes[responseCode] = new LongAdder();
+        }
+        routeLatencies.put(OTHER_ROUTES, new LatencyHistogram());
+    }
+
+    /**
+     * Records a client accepted by the server.
+     */
+    public void recordAcceptedConnection() {
+        acceptedConnections.increment();
+    }
+
+    /**
+     * Records the start of a request. Every started request must be finished by {@link #recordRequestFinished()}.
+     */
+    public void recordRequestStarted() {
+        activeRequests.increment();
+    }
+
+    /**
+     * Records the end of a request, whether its response was sent or not.
+     */
+    public void recordRequestFinished() {
+        activeRequests.decrement();
+    }
+
+    /**
+     * Records the decision of the admission controller on a request, and the time the request waited for it.
+     *
+     * @param waitNanos The time waited, in nanoseconds.
+     * @param admitted  Whether the request was admitted or refused.
+     */
+    public void recordAdmission(long waitNanos, boolean admitted) {
+        (admitted ? admittedRequests : rejectedRequests).increment();
+        admissionWaitTime.add(waitNanos);
+    }
+
+    /**
+     * Records a response completely written to a client.
+     *
+     * @param route        The route requested, or null if the request couldn't be parsed.
+     * @param responseCode The response's code and reason phrase (200 OK, 404 Not found).
+     * @param bytes        The number of bytes of the response, head and body.
+     * @param latencyNanos The time, in nanoseconds, between parsing the request and writing the whole response.
+     */
+    public void recordResponse(String route, String responseCode, long bytes, long latencyNanos) {
+
+        int statusCode = parseStatusCode(responseCode);
+        responseCodes[statusCode].increment();
+        bytesSent.add(bytes);
+
+        // Only the routes answered with a document get their own histogram, so missing documents don't add routes
+        LatencyHistogram latencies = null;
+        if (route != null && statusCode >= 200 && statusCode < 400) {
+            latencies = routeLatencies.get(route);
+            if (latencies == null && routeLatencies.size() < MAXIMUM_ROUTES) {
+                latencies = routeLatencies.computeIfAbsent(route, newRoute -> new LatencyHistogram());
+            }
+        }
+        if (latencies == null) {
+            latencies = routeLatencies.get(OTHER_ROUTES);
+        }
+        latencies.record(latencyNanos);
+    }
+
+    /**
+     * Reads the status code at the start of a response code.
+     *
+     * @param responseCode The response's code and reason phrase (200 OK, 404 Not found).
+     * @return <code>int</code> - the status code, or 0 if it isn't a valid one.
+     */
+    private int parseStatusCode(String responseCode) {
+        if (responseCode.length() < 3) {
+            return 0;
+        }
+        int statusCode = 0;
+        for (int index = 0; index < 3; index++) {
+            char digit = responseCode.charAt(index);
+            if (digit < '0' || digit > '9') {
+                return 0;
+            }
+            statusCode = statusCode * 10 + digit - '0';
+        }
+        return statusCode < responseCodes.length ? statusCode : 0;
+    }
+
+    /**
+     * Records the time a client waited between being accepted and starting to be served.
+     *
+     * @param latencyNanos The time waited, in nanoseconds.
+     */
+    public void recordDispatchLatency(long latencyNanos) {
+        dispatchedClients.increment();
+        totalDispatchLatency.add(latencyNanos);
+        maximumDispatchLatency.accumulate(latencyNanos);
+    }
+
+    /**
+     * Records a file served from the file cache.
+     */
+    public void recordCacheHit() {
+        cacheHits.increment();
+    }
+
+    /**
+     * Records a file that had to be read from the filesystem.
+     */
+    public void recordCacheMiss() {
+        cacheMisses.increment();
+    }
+
+    /**
+     * Records a buffer acquired from a buffer pool.
+     *
+     * @param reused Whether a released buffer was reused, or a new one had to be allocated.
+     */
+    public void recordBufferAcquired(boolean reused) {
+        bufferAcquisitions.increment();
+        if (!reused) {
+            bufferAllocations.increment();
+        }
+    }
+
+    /**
+     * Records a buffer released to a buffer pool.
+     */
+    public void recordBufferReleased() {
+        bufferReleases.increment();
+    }
+
+    /**
+     * Records a buffer garbage collected without being released to its pool.
+     */
+    public void recordBufferLeaked() {
+        bufferLeaks.increment();
+    }
+
+    /**
+     * @return <code>long</code> - number of accepted clients that started being served.
+     */
+    public long getDispatchedClients() {
+        return dispatchedClients.sum();
+    }
+
+    /**
+     * @return <code>long</code> - average time, in nanoseconds, between accepting a client and starting to serve it.
+     */
+    public long getAverageDispatchLatency() {
+        long dispatched = dispatchedClients.sum();
+        return dispatched == 0 ? 0 : totalDispatchLatency.sum() / dispatched;
+    }
+
+    /**
+     * @return <code>long</code> - longest time, in nanoseconds, between accepting a client and starting to serve it.
+     */
+    public long getMaximumDispatchLatency() {
+        return maximumDispatchLatency.get();
+    }
+
+    /**
+     * @return <code>long</code> - number of files served from the file cache.
+     */
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    /**
+     * @return <code>long</code> - number of files that had to be read from the filesystem.
+     */
+    public long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    /**
+     * @return <code>long</code> - number of buffers acquired from the buffer pools.
+     */
+    public long getBufferAcquisitions() {
+        return bufferAcquisitions.sum();
+    }
+
+    /**
+     * @return <code>long</code> - number of buffers acquired from the buffer pools that had to be allocated.
+     */
+    public long getBufferAllocations() {
+        return bufferAllocations.sum();
+    }
+
+    /**
+     * @return <code>long</code> - number of buffers acquired and not yet released or garbage collected.
+     */
+    public long getBuffersInUse() {
+        return bufferAcquisitions.sum() - bufferReleases.sum() - bufferLeaks.sum();
+    }
+
+    /**
+     * @return <code>long</code> - number of buffers garbage collected without being released.
+     */
+    public long getBufferLeaks() {
+        return bufferLeaks.sum();
+    }
+
+    /**
+     * @return <code>long</code> - number of clients accepted by the server.
+     */
+    public long getAcceptedConnections() {
+        return acceptedConnections.sum();
+    }
+
+    /**
+     * @return <code>long</code> - number of requests being answered.
+     */
+    public long getActiveRequests() {
+        return activeRequests.sum();
+    }
+
+    /**
+     * @return <code>long</code> - number of response bytes written to the clients.
+     */
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    /**
+     * @param statusCode A status code, such as 200 or 404.
+     * @return <code>long</code> - number of responses sent with the status code.
+     */
+    public long getResponses(int statusCode) {
+        return statusCode >= 0 && statusCode < responseCodes.length ? responseCodes[statusCode].sum() : 0;
+    }
+
+    /**
+     * @param route A route, or "other" for the requests not recorded separately.
+     * @return {@link LatencyHistogram} - the latencies of the route's requests, in nanoseconds, or null if none was recorded.
+     */
+    public LatencyHistogram getRouteLatencies(String route) {
+        return routeLatencies.get(route);
+    }
+
+    /**
+     * Writes every counter in the Prometheus text exposition format.
+     * The counters are read without stopping the serving threads, so requests answered meanwhile may be partially included.
+     *
+     * @return <code>String</code> - the counters, one sample per line.
+     */
+    public String toPrometheusText() {
+
+        StringBuilder text = new StringBuilder(4096);
+
+        appendMetric(text, "webserver_connections_accepted_total", "counter", "Clients accepted by the server.", getAcceptedConnections());
+        appendMetric(text, "webserver_requests_active", "gauge", "Requests being answered.", getActiveRequests());
+        appendMetric(text, "webserver_sent_bytes_total", "counter", "Response bytes written to the clients.", getBytesSent());
+
+        text.append("# HELP webserver_responses_total Responses sent, by status code.\n");
+        text.append("# TYPE webserver_responses_total counter\n");
+        for (int statusCode = 0; statusCode < responseCodes.length; statusCode++) {
+            long responses = responseCodes[statusCode].sum();
+            if (responses > 0) {
+                text.append("webserver_responses_total{code=\"").append(statusCode).append("\"} ").append(responses).append('\n');
+            }
+        }
+
+        appendMetric(text, "webserver_cache_hits_total", "counter", "Files served from the file cache.", getCacheHits());
+        appendMetric(text, "webserver_cache_misses_total", "counter", "Files read from the filesystem.", getCacheMisses());
+        appendMetric(text, "webserver_buffers_acquired_total", "counter", "Buffers acquired from the buffer pools.", getBufferAcquisitions());
+        appendMetric(text, "webserver_buffers_allocated_total", "counter", "Buffers acquired that had to be allocated, instead of reused.", getBufferAllocations());
+        appendMetric(text, "webserver_buffers_in_use", "gauge", "Buffers acquired and not yet released.", getBuffersInUse());
+        appendMetric(text, "webserver_buffers_leaked_total", "counter", "Buffers garbage collected without being released, counted in debug mode.", getBufferLeaks());
+        appendMetric(text, "webserver_admission_admitted_total", "counter", "Requests admitted by the admission controller.", admittedRequests.sum());
+        appendMetric(text, "webserver_admission_rejected_total", "counter", "Requests refused by the admission controller, with a 503.", rejectedRequests.sum());
+        appendMetric(text, "webserver_admission_wait_seconds_total", "counter", "Time the requests waited to be admitted or refused.", seconds(admissionWaitTime.sum()));
+        appendMetric(text, "webserver_dispatched_clients_total", "counter", "Accepted clients that started being served.", getDispatchedClients());
+        appendMetric(text, "webserver_dispatch_seconds_total", "counter", "Time the clients waited between being accepted and starting to be served.", seconds(totalDispatchLatency.sum()));
+        appendMetric(text, "webserver_dispatch_seconds_max", "gauge", "Longest time a client waited between being accepted and starting to be served.", seconds(getMaximumDispatchLatency()));
+
+        text.append("# HELP webserver_request_duration_seconds Time between parsing a request and writing its whole response, by route.\n");
+        text.append("# TYPE webserver_request_duration_seconds histogram\n");
+        for (Map.Entry<String, LatencyHistogram> route : new TreeMap<>(routeLatencies).entrySet()) {
+            LatencyHistogram latencies = route.getValue();
+            long count = latencies.getCount();
+            if (count == 0) {
+                continue;
+            }
+            String label = escapeLabel(route.getKey());
+            for (double bucket : LATENCY_BUCKETS) {
+                text.append("webserver_request_duration_seconds_bucket{route=\"").append(label).append("\",le=\"").append(bucket).append("\"} ")
+                        .append(latencies.getCountAtOrBelow((long) (bucket * 1e9))).append('\n');
+            }
+            text.append("webserver_request_duration_seconds_bucket{route=\"").append(label).append("\",le=\"+Inf\"} ").append(count).append('\n');
+            text.append("webserver_request_duration_seconds_sum{route=\"").append(label).append("\"} ").append(seconds(latencies.getSum())).append('\n');
+            text.append("webserver_request_duration_seconds_count{route=\"").append(label).append("\"} ").append(count).append('\n');
+        }
+
+        return text.toString();
+    }
+
+    /**
+     * Appends a metric with a single sample.
+     *
+     * @param text  The exposition being written.
+     * @param name  The metric's name.
+     * @param type  The metric's type (counter or gauge).
+     * @param help  The metric's description.
+     * @param value The metric's value.
+     */
+    private static void appendMetric(StringBuilder text, String name, String type, String help, Object value) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        text.append(name).append(' ').append(value).append('\n');
+    }
+
+    /**
+     * @param nanos A time, in nanoseconds.
+     * @return <code>String</code> - the time in seconds, as written in the exposition.
+     */
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+
+    /**
+     * Escapes a label's value, as required by the exposition format.
+     *
+     * @param value The label's value.
+     * @return <code>String</code> - the value, with its backslashes, double quotes and line feeds escaped.
+     */
+    private static String escapeLabel(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+}
@@ -0,0 +1,813 @@
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+import static java.lang.Integer.parseInt;
+
+/**
+ * The server's settings, parsed once from the configuration file when the server starts. <p>
+ * Every optional setting has a default, so older configuration files keep working.
+ */
+public class ServerSettings {
+
+    /**
+     * The engines that can handle the clients' connections.
+     */
+    public enum Engine {
+        /**
+         * Each connection is served by a task that blocks while reading and writing its socket.
+         */
+        BLOCKING,
+        /**
+         * Connections are served by non-blocking event loops, without a thread per connection.
+         */
+        NIO
+    }
+
+    /**
+     * The ways the accepted clients can be served.
+     */
+    public enum ExecutorMode {
+        /**
+         * Each client is served by a new virtual thread.
+         */
+        VIRTUAL,
+        /**
+         * Clients are served by a fixed pool of platform threads.
+         */
+        FIXED,
+        /**
+         * Clients are served by a work stealing fork join pool.
+         */
+        FORKJOIN
+    }
+
+    /**
+     * The ways a document can be served to several clients at the same time.
+     */
+    public enum DocumentLocking {
+        /**
+         * A document is served to every client that requests it in parallel.
+         */
+        SHARED,
+        /**
+         * A document is served to one client at a time, the other clients wait until it is released.
+         */
+        EXCLUSIVE
+    }
+
+    /**
+     * What a client does when the requests' log queue is full.
+     */
+    public enum LogBackpressure {
+        /**
+         * The request isn't logged, so serving the client is never delayed by the log.
+         */
+        DROP,
+        /**
+         * The client waits until the log writer frees space in the queue, so no request is lost.
+         */
+        BLOCK
+    }
+
+    /**
+     * The levels of the server's diagnostic messages, from the least to the most detailed.
+     */
+    public enum DiagnosticLevel {
+        /**
+         * No diagnostic message is written.
+         */
+        OFF,
+        /**
+         * Errors and changes of the server's state are written.
+         */
+        INFO,
+        /**
+         * The progress of every connection and request is also written.
+         */
+        DEBUG
+    }
+
+    /**
+     * The port the HTTP server is going to run in.
+     */
+    private final int port;
+    /**
+     * The number of requests that can be served simultaneously.
+     */
+    private final int maximumRequests;
+    /**
+     * Number of requests that can wait to be admitted when the maximum number of requests is being served.
+     */
+    private final int admissionQueueSize;
+    /**
+     * Maximum time in milliseconds a request waits to be admitted before it is refused.
+     */
+    private final int admissionMaximumWait;
+    /**
+     * Number of seconds refused clients are asked to wait before trying again.
+     */
+    private final int admissionRetryAfter;
+    /**
+     * Latency in milliseconds above which the number of requests served simultaneously is reduced, or 0 to keep it at the maximum.
+     */
+    private final int admissionTargetLatency;
+    /**
+     * The number of requests served simultaneously is never reduced below this, when it adapts to the latency.
+     */
+    private final int admissionMinimumRequests;
+
+    /**
+     * Number of threads accepting the clients.
+     */
+    private final int acceptors;
+    /**
+     * Whether each acceptor listens on its own socket bound with SO_REUSEPORT, instead of sharing one socket.
+     */
+    private final boolean reusePort;
+    /**
+     * Maximum number of connections waiting to be accepted by each listening socket.
+     */
+    private final int backlog;
+    /**
+     * Whether Nagle's algorithm is disabled on the clients' sockets (TCP_NODELAY).
+     */
+    private final boolean tcpNoDelay;
+    /**
+     * Size in bytes of the clients' sockets receive buffer, or 0 to use the system's default.
+     */
+    private final int socketReceiveBuffer;
+    /**
+     * Size in bytes of the clients' sockets send buffer, or 0 to use the system's default.
+     */
+    private final int socketSendBuffer;
+
+    /**
+     * The path of the folder the documents are served from.
+     */
+    private final String serverRootPath;
+    /**
+     * The path of the page served when the client requests the root route.
+     */
+    private final String defaultPagePath;
+    /**
+     * The path of the page served when the requested document doesn't exist.
+     */
+    private final String pageNotFoundPath;
+
+    /**
+     * Whether a document can be served to several clients at the same time.
+     */
+    private final DocumentLocking documentLocking;
+
+    /**
+     * Maximum number of bytes of file content kept in memory, or 0 if nothing is cached.
+     */
+    private final long cacheMaximumBytes;
+    /**
+     * Size in bytes above which files are streamed from the filesystem to the socket instead of read into memory.
+     */
+    private final long streamingThreshold;
+
+    /**
+     * Whether the documents of the server's root are memory-mapped instead of cached on the heap.
+     */
+    private final boolean memoryMapped;
+    /**
+     * Maximum number of bytes of documents memory-mapped at the same time.
+     */
+    private final long memoryMappedMaximumBytes;
+
+    /**
+     * Whether the server's root is indexed when the server starts, so routes are resolved without checking the filesystem.
+     */
+    private final boolean warmupIndex;
+    /**
+     * Maximum number of bytes of the indexed documents read into memory when the server starts.
+     */
+    private final long warmupPreloadBytes;
+    /**
+     * Whether the documents' folders are watched, so the documents that change are invalidated in memory.
+     */
+    private final boolean watchEnabled;
+
+    /**
+     * Whether compressible documents are served gzip encoded to the clients that accept it.
+     */
+    private final boolean compressionEnabled;
+    /**
+     * Size in bytes below which documents aren't compressed.
+     */
+    private final long compressionMinimumBytes;
+    /**
+     * Maximum number of bytes of compressed documents kept in memory.
+     */
+    private final long compressionCacheMaximumBytes;
+    /**
+     * The gzip compression level, from 1 (fastest) to 9 (smallest).
+     */
+    private final int compressionLevel;
+
+    /**
+     * Maximum number of documents whose encoded response heads are kept, to be reused while the documents don't change.
+     */
+    private final int responseHeadsMaximumEntries;
+
+    /**
+     * Maximum number of paths found missing that are remembered, to answer them without checking the filesystem.
+     */
+    private final int notFoundCacheMaximumEntries;
+    /**
+     * Time in milliseconds a missing path and the resolved error page are remembered.
+     */
+    private final long notFoundCacheTimeToLive;
+
+    /**
+     * Maximum time in milliseconds the server waits for the connections to finish their requests when it shuts down.
+     */
+    private final long shutdownTimeout;
+
+    /**
+     * Maximum number of released buffers of each size shared by the threads of a buffer pool.
+     */
+    private final int bufferPoolMaximumBuffers;
+
+    /**
+     * Number of seconds the clients may reuse a document without revalidating it, or -1 to send no <code>Cache-Control</code>.
+     */
+    private final int cacheControlMaxAge;
+    /**
+     * The number of seconds the clients may reuse the documents with each extension, overriding the default.
+     */
+    private final Map<String, Integer> cacheControlMaxAgeByExtension;
+
+    /**
+     * Maximum size, in bytes, of a request's line and headers.
+     */
+    private final int requestMaximumHeadSize;
+    /**
+     * Maximum number of headers of a request.
+     */
+    private final int requestMaximumHeaders;
+
+    /**
+     * Time in milliseconds a connection can stay idle between requests before it is closed, or 0 to never close it.
+     */
+    private final int keepAliveTimeout;
+    /**
+     * Maximum number of requests served through the same connection.
+     */
+    private final int keepAliveMaximumRequests;
+
+    /**
+     * The engine that handles the clients' connections.
+     */
+    private final Engine engine;
+    /**
+     * The number of event loops of the non-blocking engine.
+     */
+    private final int nioReactors;
+
+    /**
+     * How the accepted clients are going to be served.
+     */
+    private final ExecutorMode executorMode;
+    /**
+     * The number of threads used to serve clients, when the executor mode uses a pool.
+     */
+    private final int executorPoolSize;
+    /**
+     * Maximum time in milliseconds an idle connection of the blocking engine holds a thread of a pool between requests.
+     */
+    private final int executorIdleTimeout;
+
+    /**
+     * The path of the file the requests are logged to.
+     */
+    private final String logPath;
+    /**
+     * The number of requests that can wait in memory to be written to the log.
+     */
+    private final int logQueueCapacity;
+    /**
+     * What a client does when the requests' log queue is full.
+     */
+    private final LogBackpressure logBackpressure;
+    /**
+     * Maximum time in milliseconds a logged request waits in the writer's buffer before it is flushed to the file.
+     */
+    private final int logFlushInterval;
+    /**
+     * Number of buffered bytes above which the log writer flushes to the file.
+     */
+    private final int logFlushBytes;
+    /**
+     * Size in bytes above which the log file is rotated, or 0 to never rotate it.
+     */
+    private final long logRotateBytes;
+    /**
+     * Number of rotated log files kept.
+     */
+    private final int logRotateFiles;
+
+    /**
+     * The route the server's metrics are exposed on, or null if they aren't exposed.
+     */
+    private final String metricsPath;
+
+    /**
+     * The most detailed level of the diagnostic messages written to the console.
+     */
+    private final DiagnosticLevel diagnosticLevel;
+
+    /**
+     * Parses the server's settings from the properties of the configuration file.
+     *
+     * @param serverConfig The server's configuration, imported from the configuration file.
+     * @throws IllegalArgumentException if a setting has an invalid value.
+     */
+    public ServerSettings(Properties serverConfig) {
+        port = parseInt(serverConfig.getProperty("server.port"), 10);
+        maximumRequests = parseInt(serverConfig.getProperty("server.maximum.requests"), 10);
+        admissionQueueSize = getIntProperty(serverConfig, "server.admission.queue.size", 100);
+        admissionMaximumWait = getIntProperty(serverConfig, "server.admission.max.wait", 1000);
+        admissionRetryAfter = getIntProperty(serverConfig, "server.admission.retry.after", 1);
+        admissionTargetLatency = getIntProperty(serverConfig, "server.admission.target.latency", 0);
+        admissionMinimumRequests = getIntProperty(serverConfig, "server.admission.min.requests", 1);
+
+        acceptors = getIntProperty(serverConfig, "server.acceptors", 1);
+        reusePort = Boolean.parseBoolean(serverConfig.getProperty("server.reuseport", "false").trim());
+        backlog = getIntProperty(serverConfig, "server.backlog", 1024);
+        tcpNoDelay = Boolean.parseBoolean(serverConfig.getProperty("server.tcp.nodelay", "true").trim());
+        socketReceiveBuffer = getIntProperty(serverConfig, "server.socket.receive.buffer", 0);
+        socketSendBuffer = getIntProperty(serverConfig, "server.socket.send.buffer", 0);
+
+        serverRootPath = serverConfig.getProperty("server.root");
+        defaultPagePath = serverRootPath + "/" + serverConfig.getProperty("server.default.page") + "." + serverConfig.getProperty("server.default.page.extension");
+        pageNotFoundPath = serverConfig.getProperty("server.404.root") + "/" + serverConfig.getProperty("server.404.page") + "." + serverConfig.getProperty("server.404.page.extension");
+
+        documentLocking = DocumentLocking.valueOf(serverConfig.getProperty("server.document.locking", "shared").trim().toUpperCase(Locale.ROOT));
+
+        cacheMaximumBytes = getLongProperty(serverConfig, "server.cache.maxBytes", 64L * 1024 * 1024);
+        streamingThreshold = getLongProperty(serverConfig, "server.streaming.threshold", 256L * 1024);
+
+        memoryMapped = Boolean.parseBoolean(serverConfig.getProperty("server.mmap.enabled", "false").trim());
+        memoryMappedMaximumBytes = getLongProperty(serverConfig, "server.mmap.maxBytes", 1024L * 1024 * 1024);
+
+        warmupIndex = Boolean.parseBoolean(serverConfig.getProperty("server.warmup.index", "false").trim());
+        warmupPreloadBytes = getLongProperty(serverConfig, "server.warmup.preload.bytes", 0);
+        watchEnabled = Boolean.parseBoolean(serverConfig.getProperty("server.watch.enabled", "false").trim());
+
+        compressionEnabled = Boolean.parseBoolean(serverConfig.getProperty("server.compression.enabled", "true").trim());
+        compressionMinimumBytes = getLongProperty(serverConfig, "server.compression.min.bytes", 1024);
+        compressionCacheMaximumBytes = getLongProperty(serverConfig, "server.compression.cache.maxBytes", 16L * 1024 * 1024);
+        compressionLevel = getIntProperty(serverConfig, "server.compression.level", 6);
+
+        responseHeadsMaximumEntries = getIntProperty(serverConfig, "server.response.heads.maxEntries", 16384);
+
+        notFoundCacheMaximumEntries = getIntProperty(serverConfig, "server.notfound.cache.maxEntries", 16384);
+        notFoundCacheTimeToLive = getLongProperty(serverConfig, "server.notfound.cache.ttl", 5000);
+
+        shutdownTimeout = getLongProperty(serverConfig, "server.shutdown.timeout", 10000);
+
+        bufferPoolMaximumBuffers = getIntProperty(serverConfig, "server.buffer.pool.maxBuffers", 1024);
+
+        cacheControlMaxAge = getIntProperty(serverConfig, "server.cache.control.max.age", -1);
+        Map<String, Integer> maxAgeByExtension = new HashMap<>();
+        for (String key : serverConfig.stringPropertyNames()) {
+            if (key.startsWith("server.cache.control.max.age.")) {
+                String extension = key.substring("server.cache.control.max.age.".length()).toLowerCase(Locale.ROOT);
+                maxAgeByExtension.put(extension, getIntProperty(serverConfig, key, cacheControlMaxAge));
+            }
+        }
+        cacheControlMaxAgeByExtension = Map.copyOf(maxAgeByExtension);
+
+        requestMaximumHeadSize = getIntProperty(serverConfig, "server.request.max.header.bytes", 8192);
+        requestMaximumHeaders = getIntProperty(serverConfig, "server.request.max.headers", 100);
+
+        keepAliveTimeout = getIntProperty(serverConfig, "server.keepalive.timeout", 5000);
+        keepAliveMaximumRequests = getIntProperty(serverConfig, "server.keepalive.max.requests", 100);
+
+        engine = Engine.valueOf(serverConfig.getProperty("server.engine", "blocking").trim().toUpperCase(Locale.ROOT));
+        nioReactors = getIntProperty(serverConfig, "server.nio.reactors", Runtime.getRuntime().availableProcessors());
+
+        executorMode = ExecutorMode.valueOf(serverConfig.getProperty("server.executor", "virtual").trim().toUpperCase(Locale.ROOT));
+        executorPoolSize = getIntProperty(serverConfig, "server.executor.pool.size", Math.max(1, maximumRequests));
+        executorIdleTimeout = Math.max(1, getIntProperty(serverConfig, "server.executor.idle.timeout", 1000));
+
+        logPath = serverConfig.getProperty("server.log.path", "./logFile.txt").trim();
+        logQueueCapacity = getIntProperty(serverConfig, "server.log.queue.capacity", 8192);
+        logBackpressure = LogBackpressure.valueOf(serverConfig.getProperty("server.log.backpressure", "drop").trim().toUpperCase(Locale.ROOT));
+        logFlushInterval = getIntProperty(serverConfig, "server.log.flush.interval", 1000);
+        logFlushBytes = getIntProperty(serverConfig, "server.log.flush.bytes", 64 * 1024);
+        logRotateBytes = getLongProperty(serverConfig, "server.log.rotate.bytes", 10L * 1024 * 1024);
+        logRotateFiles = getIntProperty(serverConfig, "server.log.rotate.files", 5);
+
+        String metricsRoute = serverConfig.getProperty("server.metrics.path", "/metrics").trim();
+        metricsPath = metricsRoute.isEmpty() ? null : metricsRoute;
+
+        diagnosticLevel = DiagnosticLevel.valueOf(serverConfig.getProperty("server.diagnostics.level", "info").trim().toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * Reads an optional integer setting.
+     *
+     * @param serverConfig The server's configuration.
+     * @param key          The setting's key.
+     * @param defaultValue The value used when the setting isn't present.
+     * @return <code>int</code> - the setting's value.
+     */
+    static int getIntProperty(Properties serverConfig, String key, int defaultValue) {
+        String value = serverConfig.getProperty(key);
+        return value == null || value.isBlank() ? defaultValue : parseInt(value.trim(), 10);
+    }
+
+    /**
+     * Reads an optional long integer setting.
+     *
+     * @param serverConfig The server's configuration.
+     * @param key          The setting's key.
+     * @param defaultValue The value used when the setting isn't present.
+     * @return <code>long</code> - the setting's value.
+     */
+    static long getLongProperty(Properties serverConfig, String key, long defaultValue) {
+        String value = serverConfig.getProperty(key);
+        return value == null || value.isBlank() ? defaultValue : Long.parseLong(value.trim());
+    }
+
+    /**
+     * @return <code>int</code> - the port the HTTP server is going to run in.
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * @return <code>int</code> - the number of requests that can be served simultaneously.
+     */
+    public int getMaximumRequests() {
+        return maximumRequests;
+    }
+
+    /**
+     * @return <code>int</code> - number of requests that can wait to be admitted when the maximum number of requests is being served.
+     */
+    public int getAdmissionQueueSize() {
+        return admissionQueueSize;
+    }
+
+    /**
+     * @return <code>int</code> - maximum time in milliseconds a request waits to be admitted before it is refused.
+     */
+    public int getAdmissionMaximumWait() {
+        return admissionMaximumWait;
+    }
+
+    /**
+     * @return <code>int</code> - number of seconds refused clients are asked to wait before trying again.
+     */
+    public int getAdmissionRetryAfter() {
+        return admissionRetryAfter;
+    }
+
+    /**
+     * @return <code>int</code> - latency in milliseconds above which the number of requests served simultaneously is reduced, or 0 to keep it at the maximum.
+     */
+    public int getAdmissionTargetLatency() {
+        return admissionTargetLatency;
+    }
+
+    /**
+     * @return <code>int</code> - the number of requests served simultaneously is never reduced below this, when it adapts to the latency.
+     */
+    public int getAdmissionMinimumRequests() {
+        return admissionMinimumRequests;
+    }
+
+    /**
+     * @return <code>int</code> - number of threads accepting the clients.
+     */
+    public int getAcceptors() {
+        return acceptors;
+    }
+
+    /**
+     * @return <code>boolean</code> - whether each acceptor listens on its own socket bound with SO_REUSEPORT, instead of sharing one socket.
+     */
+    public boolean isReusePort() {
+        return reusePort;
+    }
+
+    /**
+     * @return <code>int</code> - maximum number of connections waiting to be accepted by each listening socket.
+     */
+    public int getBacklog() {
+        return backlog;
+    }
+
+    /**
+     * @return <code>boolean</code> - whether Nagle's algorithm is disabled on the clients' sockets (TCP_NODELAY).
+     */
+    public boolean isTcpNoDelay() {
+        return tcpNoDelay;
+    }
+
+    /**
+     * @return <code>int</code> - size in bytes of the clients' sockets receive buffer, or 0 to use the system's default.
+     */
+    public int getSocketReceiveBuffer() {
+        return socketReceiveBuffer;
+    }
+
+    /**
+     * @return <code>int</code> - size in bytes of the clients' sockets send buffer, or 0 to use the system's default.
+     */
+    public int getSocketSendBuffer() {
+        return socketSendBuffer;
+    }
+
+    /**
+     * @return <code>String</code> - the path of the folder the documents are served from.
+     */
+    public String getServerRootPath() {
+        return serverRootPath;
+    }
+
+    /**
+     * @return <code>String</code> - the path of the page served when the client requests the root route.
+     */
+    public String getDefaultPagePath() {
+        return defaultPagePath;
+    }
+
+    /**
+     * @return <code>String</code> - the path of the page served when the requested document doesn't exist.
+     */
+    public String getPageNotFoundPath() {
+        return pageNotFoundPath;
+    }
+
+    /**
+     * @return {@link DocumentLocking} - whether a document can be served to several clients at the same time.
+     */
+    public DocumentLocking getDocumentLocking() {
+        return documentLocking;
+    }
+
+    /**
+     * @return <code>long</code> - maximum number of bytes of file content kept in memory, or 0 if nothing is cached.
+     */
+    public long getCacheMaximumBytes() {
+        return cacheMaximumBytes;
+    }
+
+    /**
+     * @return <code>long</code> - size in bytes above which files are streamed from the filesystem to the socket instead of read into memory.
+     */
+    public long getStreamingThreshold() {
+        return streamingThreshold;
+    }
+
+    /**
+     * @return <code>boolean</code> - whether the documents of the server's root are memory-mapped instead of cached on the heap.
+     */
+    public boolean isMemoryMapped() {
+        return memoryMapped;
+    }
+
+    /**
+     * @return <code>long</code> - maximum number of bytes of documents memory-mapped at the same time, above which the documents are streamed.
+     */
+    public long getMemoryMappedMaximumBytes() {
+        return memoryMappedMaximumBytes;
+    }
+
+    /**
+     * @return <code>boolean</code> - whether the server's root is indexed when the server starts.
+     */
+    public boolean isWarmupIndex() {
+        return warmupIndex;
+    }
+
+    /**
+     * @return <code>long</code> - maximum number of bytes of the indexed documents read into memory when the server starts.
+     */
+    public long getWarmupPreloadBytes() {
+        return warmupPreloadBytes;
+    }
+
+    /**
+     * @return <code>boolean</code> - whether the documents' folders are watched, so the documents that change are invalidated in memory.
+     */
+    public boolean isWatchEnabled() {
+        return watchEnabled;
+    }
+
+    /**
+     * @return <code>boolean</code> - whether compressible documents are served gzip encoded to the clients that accept it.
+     */
+    public boolean isCompressionEnabled() {
+        return compressionEnabled;
+    }
+
+    /**
+     * @return <code>long</code> - size in bytes below which documents aren't compressed.
+     */
+    public long getCompressionMinimumBytes() {
+        return compressionMinimumBytes;
+    }
+
+    /**
+     * @return <code>long</code> - maximum number of bytes of compressed documents kept in memory.
+     */
+    public long getCompressionCacheMaximumBytes() {
+        return compressionCacheMaximumBytes;
+    }
+
+    /**
+     * @return <code>int</code> - the gzip compression level, from 1 (fastest) to 9 (smallest).
+     */
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * @return <code>int</code> - maximum number of documents whose encoded response heads are kept.
+     */
+    public int getResponseHeadsMaximumEntries() {
+        return responseHeadsMaximumEntries;
+    }
+
+    /**
+     * @return <code>int</code> - maximum number of paths found missing that are remembered.
+     */
+    public int getNotFoundCacheMaximumEntries() {
+        return notFoundCacheMaximumEntries;
+    }
+
+    /**
+     * @return <code>long</code> - time in milliseconds a missing path and the resolved error page are remembered, or 0 to check them on every request.
+     */
+    public long getNotFoundCacheTimeToLive() {
+        return notFoundCacheTimeToLive;
+    }
+
+    /**
+     * @return <code>long</code> - maximum time in milliseconds the server waits for the connections to finish their requests when it shuts down.
+     */
+    public long getShutdownTimeout() {
+        return shutdownTimeout;
+    }
+
+    /**
+     * @return <code>int</code> - maximum number of released buffers of each size shared by the threads of a buffer pool.
+     */
+    public int getBufferPoolMaximumBuffers() {
+        return bufferPoolMaximumBuffers;
+    }
+
+    /**
+     * Gets the number of seconds the clients may reuse a document without revalidating it.
+     *
+     * @param extension The lower case extension of the document's file name.
+     * @return <code>int</code> - the number of seconds configured for the extension, or by default, or -1 to send no <code>Cache-Control</code>.
+     */
+    public int getCacheControlMaxAge(String extension) {
+        return cacheControlMaxAgeByExtension.getOrDefault(extension, cacheControlMaxAge);
+    }
+
+    /**
+     * @return <code>int</code> - maximum size, in bytes, of a request's line and headers.
+     */
+    public int getRequestMaximumHeadSize() {
+        return requestMaximumHeadSize;
+    }
+
+    /**
+     * @return <code>int</code> - maximum number of headers of a request.
+     */
+    public int getRequestMaximumHeaders() {
+        return requestMaximumHeaders;
+    }
+
+    /**
+     * @return <code>int</code> - time in milliseconds a connection can stay idle between requests before it is closed, or 0 to never close it.
+     */
+    public int getKeepAliveTimeout() {
+        return keepAliveTimeout;
+    }
+
+    /**
+     * @return <code>int</code> - maximum number of requests served through the same connection.
+     */
+    public int getKeepAliveMaximumRequests() {
+        return keepAliveMaximumRequests;
+    }
+
+    /**
+     * @return {@link Engine} - the engine that handles the clients' connections.
+     */
+    public Engine getEngine() {
+        return engine;
+    }
+
+    /**
+     * @return <code>int</code> - the number of event loops of the non-blocking engine.
+     */
+    public int getNioReactors() {
+        return nioReactors;
+    }
+
+    /**
+     * @return {@link ExecutorMode} - how the accepted clients are going to be served.
+     */
+    public ExecutorMode getExecutorMode() {
+        return executorMode;
+    }
+
+    /**
+     * @return <code>int</code> - the number of threads used to serve clients, when the executor mode uses a pool.
+     */
+    public int getExecutorPoolSize() {
+        return executorPoolSize;
+    }
+
+    /**
+     * The blocking engine holds a thread for each open connection, even while it waits for the client's next request.
+     * A virtual thread costs nothing while it waits, but a few idle clients could hold every thread of a pool,
+     * so the connections served by a pool are only kept open between requests up to <code>server.executor.idle.timeout</code>.
+     *
+     * @return <code>int</code> - time in milliseconds a connection of the blocking engine can stay idle between requests before it is closed, or 0 to never close it.
+     */
+    public int getBlockingKeepAliveTimeout() {
+        if (executorMode == ExecutorMode.VIRTUAL) {
+            return keepAliveTimeout;
+        }
+        return keepAliveTimeout == 0 ? executorIdleTimeout : Math.min(keepAliveTimeout, executorIdleTimeout);
+    }
+
+    /**
+     * @return <code>String</code> - the path of the file the requests are logged to.
+     */
+    public String getLogPath() {
+        return logPath;
+    }
+
+    /**
+     * @return <code>int</code> - the number of requests that can wait in memory to be written to the log.
+     */
+    public int getLogQueueCapacity() {
+        return logQueueCapacity;
+    }
+
+    /**
+     * @return {@link LogBackpressure} - what a client does when the requests' log queue is full.
+     */
+    public LogBackpressure getLogBackpressure() {
+        return logBackpressure;
+    }
+
+    /**
+     * @return <code>int</code> - maximum time in milliseconds a logged request waits in the writer's buffer before it is flushed to the file.
+     */
+    public int getLogFlushInterval() {
+        return logFlushInterval;
+    }
+
+    /**
+     * @return <code>int</code> - number of buffered bytes above which the log writer flushes to the file.
+     */
+    public int getLogFlushBytes() {
+        return logFlushBytes;
+    }
+
+    /**
+     * @return <code>long</code> - size in bytes above which the log file is rotated, or 0 to never rotate it.
+     */
+    public long getLogRotateBytes() {
+        return logRotateBytes;
+    }
+
+    /**
+     * @return <code>int</code> - number of rotated log files kept.
+     */
+    public int getLogRotateFiles() {
+        return logRotateFiles;
+    }
+
+    /**
+     * @return <code>String</code> - the route the server's metrics are exposed on, or null if they aren't exposed.
+     */
+    public String getMetricsPath() {
+        return metricsPath;
+    }
+
+    /**
+     * @return {@link DiagnosticLevel} - the most detailed level of the diagnostic messages written to the console.
+     */
+    public DiagnosticLevel getDiagnosticLevel() {
+        return diagnosticLevel;
+    }
+
+}
@@ -0,0 +1,295 @@
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The class of the thread responsible for watching the documents' folders, and invalidating what the server keeps in memory about them. <p>
+ * Every folder under the server's root and the error page's root is registered in a {@link WatchService}, and each file created,
+ * modified or deleted is removed from the file cache, the memory-mapped files, the compressed variants and the paths known missing,
+ * and updated in the {@link DocumentIndex}, so the documents are served without checking the filesystem on each request, and a deploy is seen as soon as
+ * the filesystem reports it. <p>
+ * When the filesystem loses events, or a root folder is replaced, everything under the roots is invalidated and the index is scanned again.
+ */
+public class WatchDocumentsThread extends Thread {
+
+    /**
+     * Time in milliseconds between attempts to watch again a root folder that was removed or replaced.
+     */
+    private static final long MISSING_ROOTS_CHECK_INTERVAL = 1000;
+
+    /**
+     * The service notified of the changes in the watched folders.
+     */
+    private final WatchService watchService;
+    /**
+     * The folders watched recursively, absolute and normalized.
+     */
+    private final List<Path> roots;
+    /**
+     * The watched folders, by the key of their registration.
+     */
+    private final Map<WatchKey, Path> watchedFolders = new HashMap<>();
+    /**
+     * The watched folders, to recognize the deleted paths that were folders.
+     */
+    private final Set<Path> folders = new HashSet<>();
+    /**
+     * The root folders that are no longer watched, because they were removed or replaced.
+     */
+    private final Set<Path> missingRoots = new HashSet<>();
+
+    /**
+     * The cache of the served files' content.
+     */
+    private final FileCache fileCache;
+    /**
+     * The memory-mapped documents, or null if the memory-mapped mode is disabled.
+     */
+    private final MappedFileStore mappedFileStore;
+    /**
+     * The gzip encoded variants of the documents, or null if compression is disabled.
+     */
+    private final CompressedFileCache compressedFileCache;
+    /**
+     * The index of the server's root, or null if routes are resolved on the filesystem.
+     */
+    private final DocumentIndex documentIndex;
+    /**
+     * The paths found missing, and the resolved error page.
+     */
+    private final NotFoundCache notFoundCache;
+
+    /**
+     * Constructor for the thread that watches the documents' folders. The folders are registered immediately,
+     * so the changes made before the thread starts are reported when it does.
+     *
+     * @param roots               The folders to watch recursively, such as the server's root and the error page's root.
+     * @param fileCache           The cache of the served files' content.
+     * @param mappedFileStore     The memory-mapped documents, or null if the memory-mapped mode is disabled.
+     * @param compressedFileCache The gzip encoded variants of the documents, or null if compression is disabled.
+     * @param documentIndex       The index of the server's root, or null if routes are resolved on the filesystem.
+     * @param notFoundCache       The paths found missing, and the resolved error page.
+     * @throws IOException if the watch service can't be created, or a root folder can't be watched.
+     */
+    public WatchDocumentsThread(List<Path> roots, FileCache fileCache, MappedFileStore mappedFileStore, CompressedFileCache compressedFileCache, DocumentIndex documentIndex,
+                                NotFoundCache notFoundCache) throws IOException {
+        super("watch-documents");
+        setDaemon(true);
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.roots = new ArrayList<>();
+        this.fileCache = fileCache;
+        this.mappedFileStore = mappedFileStore;
+        this.compressedFileCache = compressedFileCache;
+        this.documentIndex = documentIndex;
+        this.notFoundCache = notFoundCache;
+
+        for (Path root : roots) {
+            Path normalizedRoot = root.toAbsolutePath().normalize();
+            // A root inside another root is already watched with it
+            if (this.roots.stream().noneMatch(normalizedRoot::startsWith)) {
+                this.roots.removeIf(watchedRoot -> watchedRoot.startsWith(normalizedRoot));
+                this.roots.add(normalizedRoot);
+            }
+        }
+        try {
+            for (Path root : this.roots) {
+                watchTree(root);
+            }
+        } catch (IOException exception) {
+            watchService.close();
+            throw exception;
+        }
+    }
+
+    /**
+     * Registers a folder and its subfolders in the watch service.
+     *
+     * @param folder The folder to watch.
+     * @throws IOException if the folder can't be read or watched.
+     */
+    private void watchTree(Path folder) throws IOException {
+        WatchKey watchKey = folder.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        watchedFolders.put(watchKey, folder);
+        folders.add(folder);
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(folder)) {
+            for (Path child : children) {
+                // Links aren't followed into folders, so a link loop can't register folders endlessly
+                if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                    watchTree(child);
+                }
+            }
+        }
+    }
+
+    /**
+     * Main cycle of the watcher, it waits for the watched folders to change and invalidates the changed documents.
+     */
+    @Override
+    public void run() {
+
+        try {
+            //noinspection InfiniteLoopStatement
+            while (true) {
+
+                WatchKey watchKey = missingRoots.isEmpty() ? watchService.take() : watchService.poll(MISSING_ROOTS_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+                if (watchKey == null) {
+                    watchMissingRoots();
+                    continue;
+                }
+
+                Path folder = watchedFolders.get(watchKey);
+                for (WatchEvent<?> event : watchKey.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        DiagnosticLog.info("Documents changed faster than they were watched, invalidating every document.");
+                        invalidateRoots();
+                    } else if (folder != null) {
+                        onChange(folder.resolve((Path) event.context()));
+                    }
+                }
+
+                if (!watchKey.reset()) {
+                    // The folder was deleted or replaced, other folders' documents were invalidated by the event of their parent
+                    watchedFolders.remove(watchKey);
+                    folders.remove(folder);
+                    if (roots.contains(folder)) {
+                        DiagnosticLog.info("Root folder is no longer watched: " + folder);
+                        missingRoots.add(folder);
+                        invalidateFolder(folder);
+                        if (documentIndex != null) {
+                            documentIndex.update(folder);
+                        }
+                        watchMissingRoots();
+                    }
+                }
+
+            }
+        } catch (InterruptedException | ClosedWatchServiceException exception) {
+            // The server is stopping
+        } finally {
+            try {
+                watchService.close();
+            } catch (IOException exception) {
+                DiagnosticLog.info(exception.getMessage());
+            }
+        }
+
+    }
+
+    /**
+     * Invalidates a path that was created, modified or deleted, and watches it if it is a new folder.
+     *
+     * @param path The changed path.
+     */
+    private void onChange(Path path) {
+
+        if (DiagnosticLog.isDebugEnabled()) {
+            DiagnosticLog.debug("Document changed: " + path);
+        }
+
+        if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+            //* A folder was created or moved into a watched folder, possibly replacing another one
+            invalidateFolder(path);
+            try {
+                watchTree(path);
+            } catch (IOException exception) {
+                DiagnosticLog.info("Couldn't watch " + path + ": " + exception.getMessage());
+            }
+        } else if (folders.remove(path)) {
+            //* A watched folder was deleted or moved away, with every document under it
+            invalidateFolder(path);
+            folders.removeIf(watchedFolder -> watchedFolder.startsWith(path));
+        } else {
+            fileCache.invalidate(path);
+            if (mappedFileStore != null) {
+                mappedFileStore.invalidate(path);
+            }
+            if (compressedFileCache != null) {
+                compressedFileCache.invalidate(path);
+            }
+            notFoundCache.invalidate(path);
+        }
+
+        if (documentIndex != null) {
+            documentIndex.update(path);
+        }
+    }
+
+    /**
+     * Invalidates every document of a folder and of its subfolders, in every cache.
+     *
+     * @param folder The folder's path.
+     */
+    private void invalidateFolder(Path folder) {
+        fileCache.invalidateFolder(folder);
+        if (mappedFileStore != null) {
+            mappedFileStore.invalidateFolder(folder);
+        }
+        if (compressedFileCache != null) {
+            compressedFileCache.invalidateFolder(folder);
+        }
+        notFoundCache.invalidateFolder(folder);
+    }
+
+    /**
+     * Invalidates every document under the roots, and scans the index again, when the changes can't be known.
+     */
+    private void invalidateRoots() {
+        for (Path root : roots) {
+            invalidateFolder(root);
+        }
+        if (documentIndex != null) {
+            try {
+                documentIndex.scan(Runtime.getRuntime().availableProcessors());
+            } catch (IOException exception) {
+                DiagnosticLog.info(exception.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Watches again the root folders that were removed or replaced, once they exist, and invalidates everything under them.
+     */
+    private void watchMissingRoots() {
+        boolean watchedAgain = false;
+        for (Path root : List.copyOf(missingRoots)) {
+            if (Files.isDirectory(root)) {
+                try {
+                    watchTree(root);
+                    missingRoots.remove(root);
+                    watchedAgain = true;
+                    DiagnosticLog.info("Root folder is watched again: " + root);
+                } catch (IOException exception) {
+                    DiagnosticLog.info("Couldn't watch " + root + ": " + exception.getMessage());
+                }
+            }
+        }
+        if (watchedAgain) {
+            invalidateRoots();
+        }
+    }
+
+    /**
+     * Stops watching the folders, which ends the thread.
+     *
+     * @throws IOException if the watch service can't be closed.
+     */
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+}
@@ -3,12 +3,11 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.ServerSocket;
-import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.Path;
 import java.util.*;
-import java.util.concurrent.Semaphore;
-import java.util.concurrent.locks.ReentrantLock;
-
-import static java.lang.Integer.parseInt;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * The main class of the HTTP server.
@@ -24,44 +23,45 @@ public class WebServer {
      */
     private static Properties serverConfig;
     /**
-     * The semaphore responsible for the number of requests that can be served simultaneously.
+     * The server's settings, parsed from the configuration file when the server started.
      */
-    private static Semaphore numberOfConcurrentRequests;
-
+    private static ServerSettings serverSettings;
     /**
-     * The lock responsible for the client sockets array,
-     * which contains all the clients that are making requests at a given point in time.
+     * The server's performance counters.
      */
-    private static final ReentrantLock clientSocketsLock = new ReentrantLock();
+    private static final ServerMetrics serverMetrics = new ServerMetrics();
     /**
-     * The server's array that contains the sockets of each request being made at a given point in time.
+     * Decides which requests are served, and which are refused because the server is overloaded.
      */
-    private static final ArrayList<Socket> clientSockets = new ArrayList<>();
+    private static AdmissionController admissionController;
 
     /**
-     * The lock responsible for the opened documents array,
-     * which contains a list of the documents the clients are requesting at a given point in time.
+     * The clients connected to the server.
      */
-    private static final ReentrantLock currentlyOpenedDocumentsLock = new ReentrantLock();
+    private static final ConnectionRegistry connectionRegistry = new ConnectionRegistry();
+
     /**
-     * Contains a list of the documents being requested at a given point in time.
+     * The locks that coordinate the threads serving the same document.
      */
-    private static final Set<String> currentlyOpenedDocuments = new HashSet<>();
+    private static DocumentLocks documentLocks;
 
     /**
-     * The lock responsible for the requests' information array,
-     * which contains a list of requests information to save to the log.
+     * Collects the requests to be written to the log.
      */
-    private static final ReentrantLock requestsInformationLock = new ReentrantLock();
+    private static RequestLogger requestLogger;
+
     /**
-     * Contains a list of the requests' information not yet saved to the log.
+     * The server's listening sockets, closed when the server shuts down.
      */
-    private static final Queue<String> requestsInformation = new PriorityQueue<>();
+    private static ServerSocketChannel[] serverChannels;
     /**
-     * The lock responsible for the log document, which contains a list of requests information.
+     * The executor serving the clients of the blocking server, or null if the server is non-blocking.
      */
-    private static final ReentrantLock logLock = new ReentrantLock();
-
+    private static ExecutorService clientExecutor;
+    /**
+     * The reactors serving the clients of the non-blocking server, or null if the server is blocking.
+     */
+    private static ReactorThread[] reactors;
 
     /**
      * Constructor for the thread responsible for accepting the clients.
@@ -73,8 +73,139 @@ public class WebServer {
         serverConfig = new Properties();
         InputStream configPathInputStream = new FileInputStream(configPath);
         serverConfig.load(configPathInputStream);
-        port = parseInt(serverConfig.getProperty("server.port"), 10);
-        numberOfConcurrentRequests = new Semaphore( parseInt(serverConfig.getProperty("server.maximum.requests"), 10));
+        serverSettings = new ServerSettings(serverConfig);
+        DiagnosticLog.setLevel(serverSettings.getDiagnosticLevel());
+        port = serverSettings.getPort();
+        admissionController = new AdmissionController(serverSettings);
+        documentLocks = new DocumentLocks(serverSettings.getDocumentLocking());
+        requestLogger = new RequestLogger(serverSettings.getLogQueueCapacity(), serverSettings.getLogBackpressure());
+    }
+
+    /**
+     * Creates the blocking server, where each accepted client is served by a task of the client executor.
+     *
+     * @param requestHandler Resolves the routes requested by the clients to the documents served to them.
+     * @return {@link List} - the threads responsible for accepting the clients, as configured by <code>server.acceptors</code>, not yet started.
+     * @throws IOException if the server's sockets can't be opened.
+     */
+    private static List<Thread> createBlockingServer(RequestHandler requestHandler) throws IOException {
+
+        // The sockets are opened through channels, so the accepted sockets have channels that files can be transferred to
+        serverChannels = openServerChannels();
+
+        //* Create the executor responsible for serving the accepted clients
+        clientExecutor = createClientExecutor(serverSettings);
+        DiagnosticLog.info("Serving clients with executor: " + serverSettings.getExecutorMode());
+
+        // The socket's input stream reads into arrays, so the blocking server's read buffers are on the heap
+        BufferPool bufferPool = new BufferPool("read", false, serverSettings.getBufferPoolMaximumBuffers(), DiagnosticLog.isDebugEnabled(), serverMetrics);
+
+        List<Thread> acceptors = new ArrayList<>();
+        for (int acceptor = 0; acceptor < Math.max(1, serverSettings.getAcceptors()); acceptor++) {
+            ServerSocket serverSocket = serverChannels[acceptor % serverChannels.length].socket();
+            acceptors.add(new AcceptClientsThread("accept-clients-" + acceptor, serverSocket, serverSettings, clientExecutor, serverMetrics, requestHandler, admissionController, connectionRegistry, documentLocks, requestLogger, bufferPool));
+        }
+        return acceptors;
+    }
+
+    /**
+     * Creates the non-blocking server, where the accepted clients are served by event loops, as configured by <code>server.nio.reactors</code>,
+     * and their requests are answered by the client executor.
+     *
+     * @param requestHandler Resolves the routes requested by the clients to the documents served to them.
+     * @return {@link List} - the threads responsible for accepting the clients, as configured by <code>server.acceptors</code>, not yet started.
+     * @throws IOException if the server's channels or the reactors' selectors can't be opened.
+     */
+    private static List<Thread> createNioServer(RequestHandler requestHandler) throws IOException {
+
+        serverChannels = openServerChannels();
+
+        // The reactors only read and write the sockets, the requests are answered by the executor, which can block on files and admission
+        clientExecutor = createClientExecutor(serverSettings);
+        DiagnosticLog.info("Answering requests with executor: " + serverSettings.getExecutorMode());
+
+        // The channels read straight into direct buffers, without copying the bytes through a temporary buffer
+        BufferPool bufferPool = new BufferPool("nio-read", true, serverSettings.getBufferPoolMaximumBuffers(), DiagnosticLog.isDebugEnabled(), serverMetrics);
+        // The requests' heads are parsed as arrays, so they are copied to heap buffers
+        BufferPool headPool = new BufferPool("nio-head", false, serverSettings.getBufferPoolMaximumBuffers(), DiagnosticLog.isDebugEnabled(), serverMetrics);
+
+        //* Create and start the reactors responsible for serving the accepted clients
+        reactors = new ReactorThread[Math.max(1, serverSettings.getNioReactors())];
+        for (int reactor = 0; reactor < reactors.length; reactor++) {
+            reactors[reactor] = new ReactorThread("nio-reactor-" + reactor, requestHandler, serverMetrics, connectionRegistry, clientExecutor, admissionController, documentLocks, requestLogger, bufferPool, headPool);
+            reactors[reactor].start();
+        }
+        DiagnosticLog.info("Serving clients with " + reactors.length + " non-blocking reactors.");
+
+        List<Thread> acceptors = new ArrayList<>();
+        for (int acceptor = 0; acceptor < Math.max(1, serverSettings.getAcceptors()); acceptor++) {
+            ServerSocketChannel serverChannel = serverChannels[acceptor % serverChannels.length];
+            acceptors.add(new NioAcceptClientsThread("nio-accept-clients-" + acceptor, serverChannel, reactors, serverSettings, serverMetrics));
+        }
+        return acceptors;
+    }
+
+    /**
+     * Opens the server's listening sockets, as configured by <code>server.reuseport</code>, <code>server.backlog</code> and the socket buffers.
+     *
+     * @return {@link ServerSocketChannel}[] - the sockets the acceptors take turns to accept from.
+     * @throws IOException if a socket can't be opened or bound.
+     */
+    private static ServerSocketChannel[] openServerChannels() throws IOException {
+        ServerSocketChannel[] serverChannels = ServerListeners.open(serverSettings);
+        DiagnosticLog.info("Accepting clients with " + Math.max(1, serverSettings.getAcceptors()) + " acceptors on " + serverChannels.length + " listening sockets.");
+        return serverChannels;
+    }
+
+    /**
+     * Indexes the server's root, and reads its smallest documents into memory, as configured by <code>server.warmup.preload.bytes</code>.
+     *
+     * @param documentIndex   The index of the server's root, empty.
+     * @param fileCache       The cache the documents are read into.
+     * @param mappedFileStore The memory-mapped documents, used instead of the cache, or null if the memory-mapped mode is disabled.
+     * @throws IOException if the server's root can't be indexed.
+     */
+    private static void warmUp(DocumentIndex documentIndex, FileCache fileCache, MappedFileStore mappedFileStore) throws IOException {
+        long startTime = System.nanoTime();
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        documentIndex.scan(parallelism);
+        long preloadedBytes = serverSettings.getWarmupPreloadBytes() > 0
+                ? documentIndex.preload(fileCache, mappedFileStore, serverSettings.getWarmupPreloadBytes(), parallelism) : 0;
+        DiagnosticLog.info("Indexed " + documentIndex.size() + " documents (" + documentIndex.getTotalBytes() + " bytes), preloaded "
+                + preloadedBytes + " bytes in " + (System.nanoTime() - startTime) / 1_000_000 + " ms.");
+    }
+
+    /**
+     * Creates the thread that watches the server's root and the error page's root, as configured by <code>server.watch.enabled</code>.
+     *
+     * @param fileCache           The cache of the served files' content.
+     * @param mappedFileStore     The memory-mapped documents, or null if the memory-mapped mode is disabled.
+     * @param compressedFileCache The gzip encoded variants of the documents, or null if compression is disabled.
+     * @param documentIndex       The index of the server's root, or null if routes are resolved on the filesystem.
+     * @param notFoundCache       The paths found missing, and the resolved error page.
+     * @return {@link WatchDocumentsThread} - the thread, with the folders already watched, not yet started.
+     * @throws IOException if the folders can't be watched.
+     */
+    private static WatchDocumentsThread createDocumentsWatcher(FileCache fileCache, MappedFileStore mappedFileStore, CompressedFileCache compressedFileCache,
+                                                               DocumentIndex documentIndex, NotFoundCache notFoundCache) throws IOException {
+        List<Path> roots = List.of(Path.of(serverSettings.getServerRootPath()), Path.of(serverSettings.getPageNotFoundPath()).toAbsolutePath().getParent());
+        WatchDocumentsThread watchDocumentsThread = new WatchDocumentsThread(roots, fileCache, mappedFileStore, compressedFileCache, documentIndex, notFoundCache);
+        DiagnosticLog.info("Watching the documents' folders for changes.");
+        return watchDocumentsThread;
+    }
+
+    /**
+     * Creates the executor that runs the tasks serving each accepted client, or answering each request of the non-blocking server, as configured by <code>server.executor</code>.
+     *
+     * @param serverSettings The server's settings.
+     * @return {@link ExecutorService} - the executor that serves the clients.
+     */
+    static ExecutorService createClientExecutor(ServerSettings serverSettings) {
+        return switch (serverSettings.getExecutorMode()) {
+            case VIRTUAL -> Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("serve-client-", 0).factory());
+            case FIXED -> Executors.newFixedThreadPool(serverSettings.getExecutorPoolSize());
+            case FORKJOIN -> Executors.newWorkStealingPool(serverSettings.getExecutorPoolSize());
+        };
     }
 
     /**
@@ -126,67 +257,81 @@ public class WebServer {
     public static void main(String[] args) {
 
         if (args.length == 0) {
-            System.out.println("Settings config path not passed as argument.");
+            DiagnosticLog.info("Settings config path not passed as argument.");
         } else {
 
             // Initialize serverSocket settings
             try {
                 initializeSettings(args[0]);
-            } catch (Exception exception) {
-                System.out.println("Settings config path not found.");
+            } catch (IOException exception) {
+                DiagnosticLog.info("Settings config path not found.");
+                return;
+            } catch (IllegalArgumentException exception) {
+                DiagnosticLog.info("Settings are not properly configured: " + exception.getMessage());
+                return;
             }
 
             if (!htmlErrorPageExists()) {
-                System.out.println("Error page path is not properly configured.");
+                DiagnosticLog.info("Error page path is not properly configured.");
                 return;
             }
 
             if (!rootFolderExists()) {
-                System.out.println("Server root path is not properly configured.");
+                DiagnosticLog.info("Server root path is not properly configured.");
                 return;
             }
 
             // Start the server
-            ServerSocket serverSocket;
+            FileCache fileCache = new FileCache(serverSettings.getCacheMaximumBytes(), serverSettings.getStreamingThreshold(), serverMetrics);
+            MappedFileStore mappedFileStore = serverSettings.isMemoryMapped() ? new MappedFileStore(serverSettings.getStreamingThreshold(), serverSettings.getMemoryMappedMaximumBytes(), serverMetrics) : null;
+            CompressedFileCache compressedFileCache = serverSettings.isCompressionEnabled()
+                    ? new CompressedFileCache(serverSettings.getCompressionCacheMaximumBytes(), serverSettings.getCompressionMinimumBytes(), serverSettings.getCompressionLevel()) : null;
+            NotFoundCache notFoundCache = new NotFoundCache(Path.of(serverSettings.getPageNotFoundPath()),
+                    serverSettings.getNotFoundCacheMaximumEntries(), serverSettings.getNotFoundCacheTimeToLive());
+            List<Thread> acceptClientsThreads;
+            RequestHandler requestHandler;
+            WatchDocumentsThread watchDocumentsThread;
             try {
-                serverSocket = new ServerSocket(port);
-                System.out.println("Started server on port: " + port);
-                System.out.println("Working directory: " + System.getProperty("user.dir") + "\n");
+                DocumentIndex documentIndex = serverSettings.isWarmupIndex() ? new DocumentIndex(Path.of(serverSettings.getServerRootPath())) : null;
+                // The folders are watched before they are indexed, so no change is missed in between
+                watchDocumentsThread = serverSettings.isWatchEnabled() ? createDocumentsWatcher(fileCache, mappedFileStore, compressedFileCache, documentIndex, notFoundCache) : null;
+                if (documentIndex != null) {
+                    warmUp(documentIndex, fileCache, mappedFileStore);
+                }
+                if (watchDocumentsThread != null) {
+                    watchDocumentsThread.start();
+                }
+                requestHandler = new RequestHandler(serverSettings, fileCache, mappedFileStore, compressedFileCache, documentIndex, notFoundCache, serverMetrics);
+                acceptClientsThreads = serverSettings.getEngine() == ServerSettings.Engine.NIO ? createNioServer(requestHandler) : createBlockingServer(requestHandler);
+                DiagnosticLog.info("Started server on port: " + port);
+                DiagnosticLog.info("Working directory: " + System.getProperty("user.dir"));
             } catch (IOException exception) {
-                System.out.println(exception.getMessage());
+                DiagnosticLog.info(exception.getMessage());
                 return;
             }
 
-            //* Create and start one accept clients thread, responsible for accepting the clients
-            AcceptClientsThread acceptClientsThread = new AcceptClientsThread(serverSocket, serverConfig, numberOfConcurrentRequests, clientSocketsLock, clientSockets, currentlyOpenedDocumentsLock, currentlyOpenedDocuments, requestsInformationLock, requestsInformation);
-            acceptClientsThread.start();
-//            AcceptClientsThread acceptClientsThread1 = new AcceptClientsThread(serverSocket, serverConfig, clientSocketsLock, clientSockets, currentlyOpenedDocumentsLock, currentlyOpenedDocuments, requestsInformationLock, requestsInformation);
-//            acceptClientsThread1.start();
-//            AcceptClientsThread acceptClientsThread2 = new AcceptClientsThread(serverSocket, serverConfig, clientSocketsLock, clientSockets, currentlyOpenedDocumentsLock, currentlyOpenedDocuments, requestsInformationLock, requestsInformation);
-//            acceptClientsThread2.start();
-//            AcceptClientsThread acceptClientsThread3 = new AcceptClientsThread(serverSocket, serverConfig, clientSocketsLock, clientSockets, currentlyOpenedDocumentsLock, currentlyOpenedDocuments, requestsInformationLock, requestsInformation);
-//            acceptClientsThread3.start();
-//            AcceptClientsThread acceptClientsThread4 = new AcceptClientsThread(serverSocket, serverConfig, clientSocketsLock, clientSockets, currentlyOpenedDocumentsLock, currentlyOpenedDocuments, requestsInformationLock, requestsInformation);
-//            acceptClientsThread4.start();
-
-            //* Create and start one log requests thread, responsible for logging the clients' requests
-            LogRequestsInformationThread logRequestsInformationThread = new LogRequestsInformationThread("./logFile.txt", requestsInformationLock, requestsInformation, logLock, 0);
-            //logRequestsInformationThread.start();
-//            LogRequestsInformationThread logRequestsInformationThread1 = new LogRequestsInformationThread("./logFile.txt", requestsInformationLock, requestsInformation, logLock, 0);
-//            logRequestsInformationThread1.start();
-//            LogRequestsInformationThread logRequestsInformationThread2 = new LogRequestsInformationThread("./logFile.txt", requestsInformationLock, requestsInformation, logLock, 0);
-//            logRequestsInformationThread2.start();
-//            LogRequestsInformationThread logRequestsInformationThread3 = new LogRequestsInformationThread("./logFile.txt", requestsInformationLock, requestsInformation, logLock, 0);
-//            logRequestsInformationThread3.start();
-//            LogRequestsInformationThread logRequestsInformationThread4 = new LogRequestsInformationThread("./logFile.txt", requestsInformationLock, requestsInformation, logLock, 0);
-//            logRequestsInformationThread4.start();
+            //* Start the threads responsible for accepting the clients
+            for (Thread acceptClientsThread : acceptClientsThreads) {
+                acceptClientsThread.start();
+            }
+
+            //* Start the log requests thread, responsible for writing the clients' requests to the log file
+            LogRequestsInformationThread logRequestsInformationThread = new LogRequestsInformationThread(requestLogger, serverSettings);
+            logRequestsInformationThread.start();
+
+            //* Shut the server down gracefully when the JVM stops, and reload the settings on SIGHUP
+            ServerLifecycle serverLifecycle = new ServerLifecycle(Path.of(args[0]), serverConfig, serverChannels, acceptClientsThreads, clientExecutor, reactors,
+                    connectionRegistry, admissionController, requestHandler, logRequestsInformationThread, watchDocumentsThread);
+            serverLifecycle.installHandlers();
 
             //* Join the started threads
             try {
-                acceptClientsThread.join();
+                for (Thread acceptClientsThread : acceptClientsThreads) {
+                    acceptClientsThread.join();
+                }
                 logRequestsInformationThread.join();
             } catch (InterruptedException exception) {
-                System.out.println(exception.getMessage());
+                DiagnosticLog.info(exception.getMessage());
             }
         }
     }
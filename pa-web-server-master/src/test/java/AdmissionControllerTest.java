@@ -0,0 +1,105 @@
+import org.junit.jupiter.api.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionControllerTest {
+
+    @DisplayName("Controller refuses requests when the queue is full, and after the maximum wait.")
+    @Test
+    void controllerRefusesExcessRequests() throws InterruptedException {
+        AdmissionController withoutQueue = new AdmissionController(1, 1, 0, 1000, 0);
+        AdmissionController withQueue = new AdmissionController(1, 1, 1, 50, 0);
+
+        boolean firstAdmitted = withoutQueue.acquire();
+        boolean secondAdmitted = withoutQueue.acquire();
+        withQueue.acquire();
+        long waitStart = System.nanoTime();
+        boolean queuedAdmitted = withQueue.acquire();
+        long waited = System.nanoTime() - waitStart;
+
+        assertAll(
+                () -> assertTrue(firstAdmitted),
+                () -> assertFalse(secondAdmitted),
+                () -> assertFalse(queuedAdmitted),
+                () -> assertTrue(waited >= 50_000_000L),
+                () -> assertEquals(2, withoutQueue.getRejectedRequests() + withQueue.getRejectedRequests())
+        );
+    }
+
+    @DisplayName("Controller admits a waiting request when another is released.")
+    @Test
+    void controllerAdmitsWaitingRequest() throws InterruptedException {
+        AdmissionController admissionController = new AdmissionController(1, 1, 1, 10_000, 0);
+        admissionController.acquire();
+
+        AtomicBoolean admitted = new AtomicBoolean();
+        CountDownLatch finished = new CountDownLatch(1);
+        Thread waitingRequest = new Thread(() -> {
+            try {
+                admitted.set(admissionController.acquire());
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+            finished.countDown();
+        });
+        waitingRequest.start();
+        while (admissionController.getWaiting() == 0) {
+            Thread.yield();
+        }
+        admissionController.release(0);
+        finished.await();
+
+        assertAll(
+                () -> assertTrue(admitted.get()),
+                () -> assertEquals(1, admissionController.getInFlight())
+        );
+    }
+
+    @DisplayName("Controller reduces the limit when requests are slow, and increases it when they are fast.")
+    @Test
+    void controllerAdaptsLimit() throws InterruptedException {
+        AdmissionController admissionController = new AdmissionController(10, 2, 0, 0, 1);
+        Thread.sleep(2);
+
+        admissionController.acquire();
+        admissionController.release(5_000_000);
+        int reducedLimit = admissionController.getLimit();
+
+        for (int round = 0; round < reducedLimit; round++) {
+            while (admissionController.tryAcquire()) {
+                // Fill the limit, so the fast requests show the limit is too low
+            }
+            admissionController.release(0);
+        }
+
+        assertAll(
+                () -> assertEquals(9, reducedLimit),
+                () -> assertEquals(10, admissionController.getLimit())
+        );
+    }
+
+    @DisplayName("Controller keeps at least one request admitted when slow requests reduce the limit to its floor, and grows it back.")
+    @Test
+    void controllerRecoversFromFloor() throws InterruptedException {
+        AdmissionController admissionController = new AdmissionController(2, 0, 0, 0, 1);
+
+        for (int slowRequest = 0; slowRequest < 3; slowRequest++) {
+            Thread.sleep(2);
+            admissionController.acquire();
+            admissionController.release(5_000_000);
+        }
+        int flooredLimit = admissionController.getLimit();
+        boolean admittedAtFloor = admissionController.tryAcquire();
+        admissionController.release(0);
+
+        assertAll(
+                () -> assertEquals(1, flooredLimit),
+                () -> assertTrue(admittedAtFloor),
+                () -> assertEquals(2, admissionController.getLimit())
+        );
+    }
+
+}
@@ -0,0 +1,62 @@
+import org.junit.jupiter.api.*;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BufferPoolTest {
+
+    @DisplayName("Released buffers are reused by the next acquisitions of the same size class.")
+    @Test
+    void releasedBuffersAreReused() {
+        ServerMetrics serverMetrics = new ServerMetrics();
+        BufferPool bufferPool = new BufferPool("test", true, 4, false, serverMetrics);
+
+        BufferPool.PooledBuffer firstBuffer = bufferPool.acquire(1500);
+        ByteBuffer firstBytes = firstBuffer.buffer();
+        firstBytes.put((byte) 1);
+        firstBuffer.release();
+        firstBuffer.release();
+        BufferPool.PooledBuffer secondBuffer = bufferPool.acquire(2000);
+        BufferPool.PooledBuffer otherClassBuffer = bufferPool.acquire(4000);
+
+        assertAll(
+                () -> assertTrue(firstBytes.isDirect()),
+                () -> assertEquals(2048, firstBytes.capacity()),
+                () -> assertSame(firstBytes, secondBuffer.buffer()),
+                () -> assertEquals(0, secondBuffer.buffer().position()),
+                () -> assertEquals(4096, otherClassBuffer.buffer().capacity()),
+                () -> assertEquals(3, serverMetrics.getBufferAcquisitions()),
+                () -> assertEquals(2, serverMetrics.getBufferAllocations()),
+                () -> assertEquals(2, serverMetrics.getBuffersInUse())
+        );
+    }
+
+    @DisplayName("Buffers released by virtual threads are shared, and buffers too large aren't pooled.")
+    @Test
+    void virtualThreadsShareBuffers() throws InterruptedException {
+        ServerMetrics serverMetrics = new ServerMetrics();
+        BufferPool bufferPool = new BufferPool("test", false, 4, false, serverMetrics);
+        ByteBuffer[] virtualThreadBuffer = new ByteBuffer[1];
+
+        Thread.ofVirtual().start(() -> {
+            BufferPool.PooledBuffer pooledBuffer = bufferPool.acquire(8192);
+            virtualThreadBuffer[0] = pooledBuffer.buffer();
+            pooledBuffer.release();
+        }).join();
+        BufferPool.PooledBuffer largeBuffer = bufferPool.acquire(4 * 1024 * 1024);
+        largeBuffer.release();
+
+        assertAll(
+                () -> assertTrue(virtualThreadBuffer[0].hasArray()),
+                () -> assertEquals(0, virtualThreadBuffer[0].arrayOffset()),
+                () -> assertEquals(virtualThreadBuffer[0].capacity(), virtualThreadBuffer[0].array().length),
+                () -> assertEquals(16384, bufferPool.acquire(8193).buffer().array().length),
+                () -> assertEquals(1, bufferPool.getSharedBuffers()),
+                () -> assertSame(virtualThreadBuffer[0], bufferPool.acquire(8192).buffer()),
+                () -> assertEquals(4 * 1024 * 1024, largeBuffer.buffer().capacity()),
+                () -> assertEquals(0, bufferPool.getSharedBuffers())
+        );
+    }
+
+}
@@ -0,0 +1,66 @@
+import org.junit.jupiter.api.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ByteRangesTest {
+
+    @DisplayName("Ranges are limited to the document, and invalid headers are ignored.")
+    @Test
+    void rangesParse() {
+        assertAll(
+                () -> assertEquals(List.of(new ByteRanges.ByteRange(0, 499)), ByteRanges.parse("bytes=0-499", 1000)),
+                () -> assertEquals(List.of(new ByteRanges.ByteRange(500, 999)), ByteRanges.parse("bytes=500-", 1000)),
+                () -> assertEquals(List.of(new ByteRanges.ByteRange(900, 999)), ByteRanges.parse("bytes=-100", 1000)),
+                () -> assertEquals(List.of(new ByteRanges.ByteRange(0, 999)), ByteRanges.parse("bytes=-5000", 1000)),
+                () -> assertEquals(List.of(new ByteRanges.ByteRange(990, 999)), ByteRanges.parse("bytes=990-5000", 1000)),
+                () -> assertEquals(List.of(new ByteRanges.ByteRange(0, 0), new ByteRanges.ByteRange(999, 999)), ByteRanges.parse("bytes=0-0, -1", 1000)),
+                // Ranges past the end of the document can't be satisfied
+                () -> assertEquals(List.of(), ByteRanges.parse("bytes=1000-", 1000)),
+                () -> assertEquals(List.of(), ByteRanges.parse("bytes=-0", 1000)),
+                // Invalid headers are ignored, so the whole document is sent
+                () -> assertNull(ByteRanges.parse("bytes=500-100", 1000)),
+                () -> assertNull(ByteRanges.parse("bytes=a-b", 1000)),
+                () -> assertNull(ByteRanges.parse("bytes=", 1000)),
+                () -> assertNull(ByteRanges.parse("items=0-1", 1000)),
+                () -> assertNull(ByteRanges.parse("bytes=" + "0-0,".repeat(33), 1000))
+        );
+    }
+
+    @DisplayName("A single range is sent as the body, several ranges as the parts of a multipart body.")
+    @Test
+    void rangesAreSent() {
+        byte[] content = "0123456789".getBytes(StandardCharsets.US_ASCII);
+        FileCache.CachedFile document = new FileCache.CachedFile(Path.of("digits.txt"), ByteBuffer.wrap(content).asReadOnlyBuffer(), 0, content.length);
+
+        HttpResponse singleRange = ByteRanges.toResponse(document, "text/plain", List.of(new ByteRanges.ByteRange(2, 4)), true);
+        String singleRangeResponse = toString(singleRange.toByteBuffers());
+        HttpResponse multipleRanges = ByteRanges.toResponse(document, "text/plain", List.of(new ByteRanges.ByteRange(0, 1), new ByteRanges.ByteRange(8, 9)), true);
+        String multipleRangesResponse = toString(multipleRanges.toByteBuffers());
+        String multipleRangesBody = multipleRangesResponse.substring(multipleRangesResponse.indexOf("\r\n\r\n") + 4);
+
+        assertAll(
+                () -> assertTrue(singleRangeResponse.startsWith("HTTP/1.1 206 Partial Content\r\n")),
+                () -> assertTrue(singleRangeResponse.contains("Content-Range: bytes 2-4/10\r\n")),
+                () -> assertTrue(singleRangeResponse.endsWith("\r\n\r\n234")),
+                () -> assertTrue(multipleRangesResponse.contains("Content-Type: multipart/byteranges; boundary=")),
+                () -> assertEquals(multipleRanges.getContentLength(), multipleRangesBody.length()),
+                () -> assertTrue(multipleRangesBody.contains("Content-Range: bytes 0-1/10\r\n\r\n01\r\n--")),
+                () -> assertTrue(multipleRangesBody.contains("Content-Range: bytes 8-9/10\r\n\r\n89\r\n--")),
+                () -> assertTrue(multipleRangesBody.endsWith("--\r\n"))
+        );
+    }
+
+    private static String toString(ByteBuffer[] buffers) {
+        StringBuilder text = new StringBuilder();
+        for (ByteBuffer buffer : buffers) {
+            text.append(StandardCharsets.ISO_8859_1.decode(buffer.duplicate()));
+        }
+        return text.toString();
+    }
+
+}
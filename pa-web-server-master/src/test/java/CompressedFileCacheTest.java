@@ -0,0 +1,83 @@
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressedFileCacheTest {
+
+    @TempDir
+    Path documentRoot;
+
+    @DisplayName("Cache compresses a document once, and skips the documents too small to compress.")
+    @Test
+    void cacheCompressesDocumentOnce() throws IOException {
+        FileCache fileCache = new FileCache(1024 * 1024, 1024 * 1024, new ServerMetrics());
+        CompressedFileCache compressedFileCache = new CompressedFileCache(1024 * 1024, 1024, 6);
+        String text = "<p>compressible page</p>\n".repeat(200);
+        Path page = Files.writeString(documentRoot.resolve("page.html"), text);
+        Path smallPage = Files.writeString(documentRoot.resolve("small.html"), "<p>small</p>");
+
+        FileCache.CachedFile firstRead = compressedFileCache.get(fileCache.get(page));
+        FileCache.CachedFile secondRead = compressedFileCache.get(fileCache.get(page));
+        byte[] compressed = new byte[firstRead.content().remaining()];
+        firstRead.content().duplicate().get(compressed);
+        String decompressed = new String(new GZIPInputStream(new ByteArrayInputStream(compressed)).readAllBytes(), StandardCharsets.UTF_8);
+
+        assertAll(
+                () -> assertSame(firstRead, secondRead),
+                () -> assertTrue(firstRead.size() < text.length()),
+                () -> assertEquals(text, decompressed),
+                () -> assertEquals(firstRead.size(), compressedFileCache.getCachedBytes()),
+                () -> assertNull(compressedFileCache.get(fileCache.get(smallPage)))
+        );
+    }
+
+    @DisplayName("Full cache evicts the least recently used variant for a new one, and serves a variant larger than the cache without encoding.")
+    @Test
+    void cacheEvictsLeastRecentlyUsedVariant() throws IOException {
+        FileCache fileCache = new FileCache(1024 * 1024, 1024 * 1024, new ServerMetrics());
+        String text = "<p>compressible page</p>\n".repeat(200);
+        Path first = Files.writeString(documentRoot.resolve("first.html"), text);
+        Path second = Files.writeString(documentRoot.resolve("second.html"), text);
+        long variantSize = new CompressedFileCache(1024 * 1024, 1024, 6).get(fileCache.get(first)).size();
+        CompressedFileCache compressedFileCache = new CompressedFileCache(variantSize, 1024, 6);
+        CompressedFileCache smallCompressedFileCache = new CompressedFileCache(variantSize - 1, 1024, 6);
+
+        FileCache.CachedFile firstRead = compressedFileCache.get(fileCache.get(first));
+        FileCache.CachedFile secondRead = compressedFileCache.get(fileCache.get(second));
+        FileCache.CachedFile secondReadAgain = compressedFileCache.get(fileCache.get(second));
+        FileCache.CachedFile firstReadAgain = compressedFileCache.get(fileCache.get(first));
+
+        assertAll(
+                () -> assertNotNull(firstRead),
+                () -> assertSame(secondRead, secondReadAgain),
+                () -> assertNotSame(firstRead, firstReadAgain),
+                () -> assertEquals(variantSize, compressedFileCache.getCachedBytes()),
+                () -> assertNull(smallCompressedFileCache.get(fileCache.get(first))),
+                () -> assertNull(smallCompressedFileCache.get(fileCache.get(first))),
+                () -> assertEquals(0, smallCompressedFileCache.getCachedBytes())
+        );
+    }
+
+    @DisplayName("Gzip is only accepted when the client lists it, or any encoding, without a zero quality.")
+    @Test
+    void clientAcceptsGzip() {
+        assertAll(
+                () -> assertTrue(CompressedFileCache.acceptsGzip("gzip, deflate, br")),
+                () -> assertTrue(CompressedFileCache.acceptsGzip("br;q=1.0, GZIP;q=0.5")),
+                () -> assertTrue(CompressedFileCache.acceptsGzip("*")),
+                () -> assertFalse(CompressedFileCache.acceptsGzip(null)),
+                () -> assertFalse(CompressedFileCache.acceptsGzip("identity")),
+                () -> assertFalse(CompressedFileCache.acceptsGzip("gzip;q=0")),
+                () -> assertFalse(CompressedFileCache.acceptsGzip("*, gzip;q=0"))
+        );
+    }
+
+}
@@ -0,0 +1,41 @@
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConditionalRequestsTest {
+
+    private static final long lastModified = 784111777_000L; // Sun, 06 Nov 1994 08:49:37 GMT
+
+    @DisplayName("Entity tags change with the document and its encoding, and are matched weakly.")
+    @Test
+    void entityTagsMatch() {
+        String entityTag = ConditionalRequests.entityTag(lastModified, 1024, null);
+        String gzipEntityTag = ConditionalRequests.entityTag(lastModified, 1024, "gzip");
+
+        assertAll(
+                () -> assertNotEquals(entityTag, gzipEntityTag),
+                () -> assertNotEquals(entityTag, ConditionalRequests.entityTag(lastModified + 1000, 1024, null)),
+                () -> assertTrue(ConditionalRequests.isNotModified(entityTag, null, entityTag, lastModified)),
+                () -> assertTrue(ConditionalRequests.isNotModified("\"other\", W/" + entityTag, null, entityTag, lastModified)),
+                () -> assertTrue(ConditionalRequests.isNotModified("*", null, entityTag, lastModified)),
+                () -> assertFalse(ConditionalRequests.isNotModified(gzipEntityTag, null, entityTag, lastModified)),
+                // The modification date is ignored when the client sends entity tags
+                () -> assertFalse(ConditionalRequests.isNotModified("\"other\"", "Sun, 06 Nov 1994 08:49:37 GMT", entityTag, lastModified))
+        );
+    }
+
+    @DisplayName("Modification dates are formatted as HTTP dates, and compared with a precision of seconds.")
+    @Test
+    void modificationDatesCompare() {
+        assertAll(
+                () -> assertEquals("Sun, 06 Nov 1994 08:49:37 GMT", ConditionalRequests.formatHttpDate(lastModified + 500)),
+                () -> assertEquals(lastModified, ConditionalRequests.parseHttpDate("Sun, 06 Nov 1994 08:49:37 GMT")),
+                () -> assertEquals(-1, ConditionalRequests.parseHttpDate("yesterday")),
+                () -> assertTrue(ConditionalRequests.isNotModified(null, "Sun, 06 Nov 1994 08:49:37 GMT", "\"tag\"", lastModified + 500)),
+                () -> assertFalse(ConditionalRequests.isNotModified(null, "Sun, 06 Nov 1994 08:49:36 GMT", "\"tag\"", lastModified)),
+                () -> assertFalse(ConditionalRequests.isNotModified(null, "yesterday", "\"tag\"", lastModified)),
+                () -> assertFalse(ConditionalRequests.isNotModified(null, null, "\"tag\"", lastModified))
+        );
+    }
+
+}
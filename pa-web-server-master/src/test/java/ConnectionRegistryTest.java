@@ -0,0 +1,54 @@
+import org.junit.jupiter.api.*;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConnectionRegistryTest {
+
+    private final ConnectionRegistry connectionRegistry = new ConnectionRegistry();
+    private final AtomicInteger closedChannels = new AtomicInteger();
+
+    private ConnectionRegistry.Connection register(long acceptedTime) {
+        return connectionRegistry.register(closedChannels::incrementAndGet, new InetSocketAddress("127.0.0.1", 4444), acceptedTime);
+    }
+
+    @DisplayName("Registry adds and removes connections by id, and tracks their traffic.")
+    @Test
+    void registryTracksConnections() {
+        ConnectionRegistry.Connection first = register(System.nanoTime());
+        ConnectionRegistry.Connection second = register(System.nanoTime());
+        first.recordBytesIn(100);
+        first.recordBytesOut(2000);
+
+        connectionRegistry.unregister(second);
+
+        assertAll(
+                () -> assertNotEquals(first.getId(), second.getId()),
+                () -> assertEquals(1, connectionRegistry.size()),
+                () -> assertSame(first, connectionRegistry.connections().iterator().next()),
+                () -> assertEquals(100, first.getBytesIn()),
+                () -> assertEquals(2000, first.getBytesOut())
+        );
+    }
+
+    @DisplayName("Registry closes the idle connections, but not the busy ones.")
+    @Test
+    void registryClosesIdleConnections() {
+        long longAgo = System.nanoTime() - 60_000_000_000L;
+        register(longAgo);
+        ConnectionRegistry.Connection busy = register(longAgo);
+        busy.setBusy(true);
+        register(System.nanoTime());
+
+        int closed = connectionRegistry.closeIdleSince(System.nanoTime() - 1_000_000_000L);
+        connectionRegistry.closeAll();
+
+        assertAll(
+                () -> assertEquals(1, closed),
+                () -> assertEquals(4, closedChannels.get())
+        );
+    }
+
+}
@@ -0,0 +1,44 @@
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiagnosticLogTest {
+
+    @AfterEach
+    void restoreLevel() {
+        DiagnosticLog.setLevel(ServerSettings.DiagnosticLevel.INFO);
+    }
+
+    @DisplayName("Diagnostic log only enables the configured levels.")
+    @Test
+    void diagnosticLogEnablesConfiguredLevels() {
+        DiagnosticLog.setLevel(ServerSettings.DiagnosticLevel.OFF);
+        boolean infoWhenOff = DiagnosticLog.isInfoEnabled();
+        DiagnosticLog.setLevel(ServerSettings.DiagnosticLevel.INFO);
+        boolean infoWhenInfo = DiagnosticLog.isInfoEnabled();
+        boolean debugWhenInfo = DiagnosticLog.isDebugEnabled();
+        DiagnosticLog.setLevel(ServerSettings.DiagnosticLevel.DEBUG);
+        boolean debugWhenDebug = DiagnosticLog.isDebugEnabled();
+
+        assertAll(
+                () -> assertFalse(infoWhenOff),
+                () -> assertTrue(infoWhenInfo),
+                () -> assertFalse(debugWhenInfo),
+                () -> assertTrue(debugWhenDebug)
+        );
+    }
+
+    @DisplayName("Disabled messages aren't queued.")
+    @Test
+    void disabledMessagesAreNotQueued() {
+        DiagnosticLog.setLevel(ServerSettings.DiagnosticLevel.OFF);
+        long droppedBefore = DiagnosticLog.getDroppedMessages();
+
+        for (int message = 0; message < 100_000; message++) {
+            DiagnosticLog.info("Not written");
+        }
+
+        assertEquals(droppedBefore, DiagnosticLog.getDroppedMessages());
+    }
+
+}
@@ -0,0 +1,56 @@
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DocumentIndexTest {
+
+    @TempDir
+    Path documentRoot;
+
+    @DisplayName("Index finds the documents of every folder, and nothing outside the root.")
+    @Test
+    void indexFindsDocuments() throws IOException {
+        Path page = Files.writeString(documentRoot.resolve("index.html"), "<p>index</p>");
+        Path style = Files.writeString(Files.createDirectories(documentRoot.resolve("assets/css")).resolve("style.css"), "p {}");
+        Files.createDirectories(documentRoot.resolve("empty"));
+
+        DocumentIndex documentIndex = DocumentIndex.build(documentRoot, 4);
+
+        assertAll(
+                () -> assertEquals(2, documentIndex.size()),
+                () -> assertEquals(Files.size(page) + Files.size(style), documentIndex.getTotalBytes()),
+                () -> assertEquals(Files.size(style), documentIndex.get(style).size()),
+                () -> assertEquals(Files.getLastModifiedTime(style).toMillis(), documentIndex.get(style).lastModified()),
+                () -> assertNotNull(documentIndex.get(documentRoot.resolve("assets/../index.html"))),
+                () -> assertNull(documentIndex.get(documentRoot.resolve("missing.html"))),
+                () -> assertNull(documentIndex.get(documentRoot.resolve("empty"))),
+                () -> assertNull(documentIndex.get(documentRoot.resolve("../index.html")))
+        );
+    }
+
+    @DisplayName("Preloading reads the smallest documents into the cache, within the budget.")
+    @Test
+    void preloadReadsSmallestDocuments() throws IOException {
+        Path smallPage = Files.writeString(documentRoot.resolve("small.html"), "a".repeat(100));
+        Path mediumPage = Files.writeString(documentRoot.resolve("medium.html"), "b".repeat(200));
+        Files.writeString(documentRoot.resolve("large.html"), "c".repeat(400));
+        ServerMetrics serverMetrics = new ServerMetrics();
+        FileCache fileCache = new FileCache(1024 * 1024, 1024 * 1024, serverMetrics);
+
+        DocumentIndex documentIndex = DocumentIndex.build(documentRoot, 2);
+        long preloadedBytes = documentIndex.preload(fileCache, null, 500, 2);
+
+        assertAll(
+                () -> assertEquals(300, preloadedBytes),
+                () -> assertEquals(300, fileCache.getCachedBytes()),
+                () -> assertNotNull(fileCache.get(documentIndex.get(smallPage).path(), Files.getLastModifiedTime(smallPage).toMillis(), 100).content()),
+                () -> assertNotNull(fileCache.get(documentIndex.get(mediumPage).path(), Files.getLastModifiedTime(mediumPage).toMillis(), 200).content())
+        );
+    }
+
+}
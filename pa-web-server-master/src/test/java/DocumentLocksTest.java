@@ -0,0 +1,75 @@
+import org.junit.jupiter.api.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DocumentLocksTest {
+
+    @DisplayName("With shared locking, a document is served to several clients at the same time.")
+    @Test
+    void sharedDocumentIsServedInParallel() throws InterruptedException {
+        DocumentLocks documentLocks = new DocumentLocks(ServerSettings.DocumentLocking.SHARED);
+        CountDownLatch holdingClients = new CountDownLatch(2);
+        CountDownLatch servedClients = new CountDownLatch(1);
+
+        Thread[] clients = new Thread[2];
+        for (int client = 0; client < clients.length; client++) {
+            clients[client] = Thread.ofVirtual().start(() -> {
+                try {
+                    DocumentLocks.Permit documentPermit = documentLocks.acquire("/www/index.html");
+                    holdingClients.countDown();
+                    servedClients.await();
+                    documentPermit.release();
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        boolean bothHolding = holdingClients.await(5, TimeUnit.SECONDS);
+        servedClients.countDown();
+        for (Thread client : clients) {
+            client.join();
+        }
+
+        assertAll(
+                () -> assertTrue(bothHolding),
+                () -> assertEquals(0, documentLocks.size())
+        );
+    }
+
+    @DisplayName("With exclusive locking, a document is served to one client at a time, without blocking the other documents.")
+    @Test
+    void exclusiveDocumentIsServedToOneClient() throws InterruptedException {
+        DocumentLocks documentLocks = new DocumentLocks(ServerSettings.DocumentLocking.EXCLUSIVE);
+        DocumentLocks.Permit indexPermit = documentLocks.acquire("/www/index.html");
+        AtomicBoolean secondClientServed = new AtomicBoolean();
+
+        Thread secondClient = Thread.ofVirtual().start(() -> {
+            try {
+                DocumentLocks.Permit documentPermit = documentLocks.acquire("/www/index.html");
+                secondClientServed.set(true);
+                documentPermit.release();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        DocumentLocks.Permit otherPermit = documentLocks.acquire("/www/other.html");
+        otherPermit.release();
+        Thread.sleep(100);
+        boolean servedWhileHeld = secondClientServed.get();
+        // The permit isn't owned by a thread, as the non-blocking server releases it from the reactor
+        Thread releasingThread = Thread.ofVirtual().start(indexPermit::release);
+        releasingThread.join();
+        secondClient.join();
+
+        assertAll(
+                () -> assertFalse(servedWhileHeld),
+                () -> assertTrue(secondClientServed.get()),
+                () -> assertEquals(0, documentLocks.size())
+        );
+    }
+
+}
@@ -0,0 +1,132 @@
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileCacheTest {
+
+    @TempDir
+    Path documentRoot;
+
+    @DisplayName("Cache serves an unchanged file from memory.")
+    @Test
+    void cacheServesUnchangedFileFromMemory() throws IOException {
+        ServerMetrics serverMetrics = new ServerMetrics();
+        FileCache fileCache = new FileCache(1024 * 1024, 1024 * 1024, serverMetrics);
+        Path page = Files.writeString(documentRoot.resolve("page.html"), "<p>page</p>");
+
+        FileCache.CachedFile firstRead = fileCache.get(page);
+        FileCache.CachedFile secondRead = fileCache.get(page);
+
+        assertAll(
+                () -> assertSame(firstRead, secondRead),
+                () -> assertEquals(1, serverMetrics.getCacheMisses()),
+                () -> assertEquals(1, serverMetrics.getCacheHits())
+        );
+    }
+
+    @DisplayName("Cache reloads a file after it changes.")
+    @Test
+    void cacheReloadsChangedFile() throws IOException {
+        FileCache fileCache = new FileCache(1024 * 1024, 1024 * 1024, new ServerMetrics());
+        Path page = Files.writeString(documentRoot.resolve("page.html"), "old");
+        Files.setLastModifiedTime(page, FileTime.fromMillis(1_000_000));
+        fileCache.get(page);
+
+        Files.writeString(page, "new");
+        Files.setLastModifiedTime(page, FileTime.fromMillis(2_000_000));
+
+        assertEquals("new", StandardCharsets.UTF_8.decode(fileCache.get(page).content().duplicate()).toString());
+    }
+
+    @DisplayName("Cache answers missing files and folders with null.")
+    @Test
+    void cacheAnswersMissingFilesWithNull() throws IOException {
+        FileCache fileCache = new FileCache(1024 * 1024, 1024 * 1024, new ServerMetrics());
+
+        assertAll(
+                () -> assertNull(fileCache.get(documentRoot.resolve("missing.html"))),
+                () -> assertNull(fileCache.get(documentRoot))
+        );
+    }
+
+    @DisplayName("Cache keeps the frequently requested files within its byte budget.")
+    @Test
+    void cacheKeepsFrequentFilesWithinBudget() throws IOException {
+        ServerMetrics serverMetrics = new ServerMetrics();
+        FileCache fileCache = new FileCache(8 * 100, 1024 * 1024, serverMetrics);
+        Path hotPage = Files.write(documentRoot.resolve("hot.html"), new byte[100]);
+        for (int request = 0; request < 5; request++) {
+            fileCache.get(hotPage);
+        }
+
+        // Many files requested once each compete for more space than the cache has
+        for (int file = 0; file < 50; file++) {
+            fileCache.get(Files.write(documentRoot.resolve("cold" + file + ".html"), new byte[100]));
+        }
+
+        long hitsBefore = serverMetrics.getCacheHits();
+        fileCache.get(hotPage);
+
+        assertAll(
+                () -> assertTrue(fileCache.getCachedBytes() <= 8 * 100),
+                () -> assertEquals(hitsBefore + 1, serverMetrics.getCacheHits())
+        );
+    }
+
+    @DisplayName("Cache evicts nothing when a file it doesn't admit would need a hot file's space too.")
+    @Test
+    void refusedFileEvictsNothing() throws IOException {
+        ServerMetrics serverMetrics = new ServerMetrics();
+        FileCache fileCache = new FileCache(8 * 100, 1024 * 1024, serverMetrics);
+        // From the least to the most recently used: a cold file, a hot file, and files that fill the cache
+        Path coldPage = Files.write(documentRoot.resolve("cold.html"), new byte[60]);
+        fileCache.get(coldPage);
+        Path hotPage = Files.write(documentRoot.resolve("hot.html"), new byte[60]);
+        for (int request = 0; request < 5; request++) {
+            fileCache.get(hotPage);
+        }
+        for (int file = 0; file < 6; file++) {
+            fileCache.get(Files.write(documentRoot.resolve("filler" + file + ".html"), new byte[100]));
+        }
+        fileCache.get(Files.write(documentRoot.resolve("filler.html"), new byte[80]));
+        long cachedBytes = fileCache.getCachedBytes();
+
+        // More frequent than the cold file, less than the hot one, and too large to fit in the cold file's space alone
+        Path newPage = Files.write(documentRoot.resolve("new.html"), new byte[100]);
+        fileCache.get(newPage);
+        fileCache.get(newPage);
+
+        long hitsBefore = serverMetrics.getCacheHits();
+        fileCache.get(coldPage);
+        fileCache.get(hotPage);
+
+        assertAll(
+                () -> assertEquals(8 * 100, cachedBytes),
+                () -> assertEquals(cachedBytes, fileCache.getCachedBytes()),
+                () -> assertEquals(hitsBefore + 2, serverMetrics.getCacheHits())
+        );
+    }
+
+    @DisplayName("Cache doesn't read files larger than the streaming threshold.")
+    @Test
+    void cacheDoesNotReadLargeFiles() throws IOException {
+        FileCache fileCache = new FileCache(1024 * 1024, 100, new ServerMetrics());
+        Path download = Files.write(documentRoot.resolve("download.bin"), new byte[1000]);
+
+        FileCache.CachedFile largeFile = fileCache.get(download);
+
+        assertAll(
+                () -> assertTrue(largeFile.isStreamed()),
+                () -> assertEquals(1000, largeFile.size()),
+                () -> assertEquals(0, fileCache.getCachedBytes())
+        );
+    }
+
+}
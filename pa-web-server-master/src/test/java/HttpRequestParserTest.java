@@ -0,0 +1,147 @@
+import org.junit.jupiter.api.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpRequestParserTest {
+
+    private final HttpRequestParser requestParser = new HttpRequestParser(256);
+    private final ServerMetrics serverMetrics = new ServerMetrics();
+    private final BufferPool headPool = new BufferPool("head", false, 4, false, serverMetrics);
+    private final HttpRequest request = new HttpRequest(headPool, 256, 4);
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(256);
+
+    private void receive(String bytes) {
+        readBuffer.put(bytes.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    @DisplayName("Parser reads the request line and the headers.")
+    @Test
+    void parserReadsRequestLineAndHeaders() {
+        receive("GET /index.html HTTP/1.1\r\nHost: localhost\r\ncontent-LENGTH: 12\r\nX-Empty:\r\n\r\n");
+
+        int requestHeadSize = requestParser.parse(readBuffer, request);
+
+        assertAll(
+                () -> assertEquals(readBuffer.position(), requestHeadSize),
+                () -> assertSame("GET", request.getMethod()),
+                () -> assertEquals("/index.html", request.getRoute()),
+                () -> assertEquals("HTTP/1.1", request.getHttpVersion()),
+                () -> assertEquals("localhost", request.getHeader("host")),
+                () -> assertEquals("", request.getHeader("X-Empty")),
+                () -> assertNull(request.getHeader("Accept")),
+                () -> assertEquals(12, request.getContentLength()),
+                () -> assertTrue(request.isKeepAlive())
+        );
+    }
+
+    @DisplayName("Parser reads the requests received in direct buffers, as the non-blocking connections' read buffers are.")
+    @Test
+    void parserReadsDirectBuffer() {
+        ByteBuffer directBuffer = ByteBuffer.allocateDirect(256);
+        directBuffer.put("\r\nGET /direct HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+
+        int requestHeadSize = requestParser.parse(directBuffer, request);
+
+        assertAll(
+                () -> assertEquals(directBuffer.position(), requestHeadSize),
+                () -> assertEquals("/direct", request.getRoute()),
+                () -> assertEquals("localhost", request.getHeader("Host"))
+        );
+    }
+
+    @DisplayName("Parser waits until the head is complete.")
+    @Test
+    void parserWaitsForCompleteHead() {
+        receive("GET / HTTP/1.0\r\nConnection: Keep-Alive\r\n");
+        assertEquals(-1, requestParser.parse(readBuffer, request));
+
+        receive("\r\n");
+
+        assertAll(
+                () -> assertTrue(requestParser.parse(readBuffer, request) > 0),
+                () -> assertTrue(request.isKeepAlive())
+        );
+    }
+
+    @DisplayName("Parser skips empty lines before the request, and leaves the pipelined requests in the buffer.")
+    @Test
+    void parserLeavesPipelinedRequests() {
+        String firstRequest = "\r\nGET /first HTTP/1.1\r\nConnection: close\r\n\r\n";
+        receive(firstRequest + "GET /second HTTP/1.1\r\n\r\n");
+
+        assertAll(
+                () -> assertEquals(firstRequest.length(), requestParser.parse(readBuffer, request)),
+                () -> assertEquals("/first", request.getRoute()),
+                () -> assertFalse(request.isKeepAlive())
+        );
+    }
+
+    @DisplayName("Parser refuses malformed requests.")
+    @Test
+    void parserRefusesMalformedRequests() {
+        assertAll(
+                () -> assertEquals("400 Bad Request", parseError("GET /\r\n\r\n")),
+                () -> assertEquals("400 Bad Request", parseError("GET / HTTP/1.1\r\nBad Header: x\r\n\r\n")),
+                () -> assertEquals("400 Bad Request", parseError("GET / HTTP/1.1\r\nContent-Length: ten\r\n\r\n")),
+                () -> assertEquals("505 HTTP Version Not Supported", parseError("GET / HTTP/2.0\r\n\r\n"))
+        );
+    }
+
+    @DisplayName("Parser refuses the requests whose body's length is ambiguous, so their body isn't parsed as the next request.")
+    @Test
+    void parserRefusesAmbiguousBodies() {
+        receive("POST / HTTP/1.1\r\nContent-Length: 4\r\ncontent-length: 4\r\n\r\n");
+        int requestHeadSize = requestParser.parse(readBuffer, request);
+
+        assertAll(
+                () -> assertEquals(readBuffer.position(), requestHeadSize),
+                () -> assertEquals(4, request.getContentLength()),
+                () -> assertEquals("400 Bad Request", parseError("POST / HTTP/1.1\r\nContent-Length: 4\r\nContent-Length: 40\r\n\r\n")),
+                () -> assertEquals("501 Not Implemented", parseError("POST / HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n4\r\nGET \r\n0\r\n\r\n")),
+                () -> assertEquals("501 Not Implemented", parseError("POST / HTTP/1.1\r\nContent-Length: 4\r\nTRANSFER-ENCODING: chunked\r\n\r\n"))
+        );
+    }
+
+    @DisplayName("Parser refuses heads that are too large or have too many headers.")
+    @Test
+    void parserRefusesLargeHeads() {
+        assertAll(
+                () -> assertEquals("431 Request Header Fields Too Large", parseError("GET /" + "a".repeat(300))),
+                () -> assertEquals("431 Request Header Fields Too Large", parseError("GET / HTTP/1.1\r\nA: 1\r\nB: 2\r\nC: 3\r\nD: 4\r\nE: 5\r\n\r\n"))
+        );
+    }
+
+    @DisplayName("A request's storage comes from the pool, and is reused by the next connection once released.")
+    @Test
+    void requestStorageIsPooled() {
+        receive("GET /index.html HTTP/1.1\r\nHost: localhost\r\n\r\n");
+        requestParser.parse(readBuffer, request);
+        String host = request.getHeader("Host");
+        request.release();
+
+        HttpRequest nextRequest = new HttpRequest(headPool, 256, 4);
+        readBuffer.clear();
+        receive("GET / HTTP/1.1\r\nAccept: */*\r\n\r\n");
+        requestParser.parse(readBuffer, nextRequest);
+
+        assertAll(
+                () -> assertEquals("localhost", host),
+                () -> assertEquals(2, serverMetrics.getBufferAcquisitions()),
+                () -> assertEquals(1, serverMetrics.getBufferAllocations()),
+                () -> assertEquals("*/*", nextRequest.getHeader("accept")),
+                () -> assertNull(nextRequest.getHeader("Host"))
+        );
+    }
+
+    private String parseError(String bytes) {
+        HttpRequestParser parser = new HttpRequestParser(256);
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        byte[] requestBytes = bytes.getBytes(StandardCharsets.ISO_8859_1);
+        buffer.put(requestBytes, 0, Math.min(requestBytes.length, buffer.capacity()));
+        return assertThrows(HttpParseException.class, () -> parser.parse(buffer, request)).getResponseCode();
+    }
+
+}
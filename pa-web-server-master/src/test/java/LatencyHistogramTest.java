@@ -0,0 +1,46 @@
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @DisplayName("Histogram reports percentiles within its precision.")
+    @Test
+    void histogramReportsPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100_000; value++) {
+            histogram.record(value * 1000);
+        }
+
+        assertAll(
+                () -> assertEquals(100_000, histogram.getCount()),
+                () -> assertEquals(100_000_000, histogram.getMaximum()),
+                () -> assertEquals(50_000_500, histogram.getMean()),
+                () -> assertEquals(50_000_000, histogram.getValueAtPercentile(50), 50_000_000 * 0.016),
+                () -> assertEquals(99_000_000, histogram.getValueAtPercentile(99), 99_000_000 * 0.016),
+                () -> assertEquals(99_900_000, histogram.getValueAtPercentile(99.9), 99_900_000 * 0.016),
+                () -> assertEquals(100_000_000, histogram.getValueAtPercentile(100))
+        );
+    }
+
+    @DisplayName("Histograms are added together, and small values are exact.")
+    @Test
+    void histogramsAreAdded() {
+        LatencyHistogram first = new LatencyHistogram();
+        LatencyHistogram second = new LatencyHistogram();
+        first.record(3);
+        second.record(5);
+        second.record(-1);
+
+        first.add(second);
+
+        assertAll(
+                () -> assertEquals(3, first.getCount()),
+                () -> assertEquals(0, first.getValueAtPercentile(0)),
+                () -> assertEquals(3, first.getValueAtPercentile(50)),
+                () -> assertEquals(5, first.getValueAtPercentile(100)),
+                () -> assertEquals(0, new LatencyHistogram().getValueAtPercentile(99))
+        );
+    }
+
+}
@@ -0,0 +1,65 @@
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedFileStoreTest {
+
+    @TempDir
+    Path documentRoot;
+
+    @DisplayName("Store maps an unchanged file once, and maps it again after it changes.")
+    @Test
+    void storeRemapsChangedFile() throws IOException {
+        ServerMetrics serverMetrics = new ServerMetrics();
+        MappedFileStore mappedFileStore = new MappedFileStore(1024, 1024 * 1024, serverMetrics);
+        Path page = Files.writeString(documentRoot.resolve("page.html"), "old");
+        Files.setLastModifiedTime(page, FileTime.fromMillis(1_000_000));
+
+        FileCache.CachedFile firstRead = mappedFileStore.get(page);
+        FileCache.CachedFile secondRead = mappedFileStore.get(page);
+        Files.move(Files.writeString(documentRoot.resolve("page.tmp"), "newer"), page, StandardCopyOption.REPLACE_EXISTING);
+        Files.setLastModifiedTime(page, FileTime.fromMillis(2_000_000));
+        FileCache.CachedFile changedRead = mappedFileStore.get(page);
+
+        assertAll(
+                () -> assertSame(firstRead, secondRead),
+                () -> assertEquals(1, serverMetrics.getCacheHits()),
+                () -> assertEquals("newer", StandardCharsets.UTF_8.decode(changedRead.content().duplicate()).toString()),
+                () -> assertEquals(5, mappedFileStore.getMappedBytes())
+        );
+    }
+
+    @DisplayName("Store streams the files above the streaming threshold, and the files that don't fit in the mapped bytes.")
+    @Test
+    void storeStreamsLargeFiles() throws IOException {
+        MappedFileStore mappedFileStore = new MappedFileStore(1024, 1536, new ServerMetrics());
+        Path large = Files.write(documentRoot.resolve("large.bin"), new byte[2048]);
+        Path first = Files.write(documentRoot.resolve("first.bin"), new byte[1024]);
+        Path second = Files.write(documentRoot.resolve("second.bin"), new byte[1024]);
+
+        FileCache.CachedFile largeRead = mappedFileStore.get(large);
+        FileCache.CachedFile firstRead = mappedFileStore.get(first);
+        FileCache.CachedFile secondRead = mappedFileStore.get(second);
+        mappedFileStore.invalidateFolder(documentRoot);
+        FileCache.CachedFile secondReadAfterInvalidation = mappedFileStore.get(second);
+
+        assertAll(
+                () -> assertNull(largeRead.content()),
+                () -> assertEquals(2048, largeRead.size()),
+                () -> assertNotNull(firstRead.content()),
+                () -> assertNull(secondRead.content()),
+                () -> assertEquals(1024, secondRead.size()),
+                () -> assertNotNull(secondReadAfterInvalidation.content()),
+                () -> assertEquals(1024, mappedFileStore.getMappedBytes())
+        );
+    }
+
+}
@@ -0,0 +1,78 @@
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MpscRingBufferTest {
+
+    @DisplayName("Queue refuses elements when it is full, and takes them in order.")
+    @Test
+    void queueRefusesElementsWhenFull() {
+        MpscRingBuffer<Integer> ringBuffer = new MpscRingBuffer<>(4);
+        for (int element = 0; element < 4; element++) {
+            assertTrue(ringBuffer.offer(element));
+        }
+
+        assertFalse(ringBuffer.offer(4));
+        assertEquals(0, ringBuffer.poll());
+        assertTrue(ringBuffer.offer(4));
+
+        List<Integer> drained = new ArrayList<>();
+        ringBuffer.drain(drained::add, 10);
+
+        assertAll(
+                () -> assertEquals(List.of(1, 2, 3, 4), drained),
+                () -> assertTrue(ringBuffer.isEmpty()),
+                () -> assertNull(ringBuffer.poll())
+        );
+    }
+
+    @DisplayName("Queue delivers every element of concurrent producers exactly once.")
+    @Test
+    void queueDeliversConcurrentElementsOnce() throws InterruptedException {
+        int producers = 4;
+        int elementsPerProducer = 20_000;
+        MpscRingBuffer<Integer> ringBuffer = new MpscRingBuffer<>(64);
+
+        List<Thread> producerThreads = new ArrayList<>();
+        for (int producer = 0; producer < producers; producer++) {
+            int firstElement = producer * elementsPerProducer;
+            Thread producerThread = new Thread(() -> {
+                for (int element = firstElement; element < firstElement + elementsPerProducer; element++) {
+                    while (!ringBuffer.offer(element)) {
+                        Thread.yield();
+                    }
+                }
+            });
+            producerThreads.add(producerThread);
+            producerThread.start();
+        }
+
+        boolean[] received = new boolean[producers * elementsPerProducer];
+        int[] lastElementOfProducer = new int[producers];
+        Arrays.fill(lastElementOfProducer, -1);
+        int receivedElements = 0;
+        while (receivedElements < received.length) {
+            Integer element = ringBuffer.poll();
+            if (element == null) {
+                Thread.yield();
+                continue;
+            }
+            assertFalse(received[element]);
+            received[element] = true;
+            // Each producer's elements arrive in the order it added them
+            assertTrue(element > lastElementOfProducer[element / elementsPerProducer]);
+            lastElementOfProducer[element / elementsPerProducer] = element;
+            receivedElements++;
+        }
+
+        for (Thread producerThread : producerThreads) {
+            producerThread.join();
+        }
+        assertTrue(ringBuffer.isEmpty());
+    }
+
+}
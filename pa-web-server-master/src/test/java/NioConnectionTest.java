@@ -0,0 +1,214 @@
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NioConnectionTest {
+
+    private static final int requestTimeout = 10000;
+
+    @TempDir
+    Path documentRoot;
+
+    private ServerSocketChannel serverChannel;
+    private ReactorThread reactor;
+    private NioAcceptClientsThread acceptClientsThread;
+    private ExecutorService clientExecutor;
+    private AdmissionController admissionController;
+    private final ConnectionRegistry connectionRegistry = new ConnectionRegistry();
+    private NotFoundCache notFoundCache;
+    private final byte[] largeDocument = new byte[512 * 1024];
+
+    @BeforeEach
+    void startServer() throws IOException {
+        Files.writeString(documentRoot.resolve("index.html"), "<p>index</p>");
+        Files.writeString(documentRoot.resolve("404.html"), "<p>404</p>");
+        Files.writeString(documentRoot.resolve("style.css"), "p { color: black; }\n".repeat(100));
+        for (int index = 0; index < largeDocument.length; index++) {
+            largeDocument[index] = (byte) (index % 251);
+        }
+        Files.write(documentRoot.resolve("large.bin"), largeDocument);
+
+        Properties serverConfig = new Properties();
+        serverConfig.setProperty("server.port", "0");
+        serverConfig.setProperty("server.maximum.requests", "4");
+        serverConfig.setProperty("server.root", documentRoot.toString());
+        serverConfig.setProperty("server.default.page", "index");
+        serverConfig.setProperty("server.default.page.extension", "html");
+        serverConfig.setProperty("server.404.root", documentRoot.toString());
+        serverConfig.setProperty("server.404.page", "404");
+        serverConfig.setProperty("server.404.page.extension", "html");
+        serverConfig.setProperty("server.log.path", documentRoot.resolve("log.txt").toString());
+        serverConfig.setProperty("server.engine", "nio");
+        serverConfig.setProperty("server.streaming.threshold", "4096");
+        ServerSettings serverSettings = new ServerSettings(serverConfig);
+        ServerMetrics serverMetrics = new ServerMetrics();
+        notFoundCache = new NotFoundCache(Path.of(serverSettings.getPageNotFoundPath()), 16, 60_000);
+        // A failing route, like a bug in the request handler, so the failures of the workers can be tested
+        RequestHandler requestHandler = new RequestHandler(serverSettings, new FileCache(1024 * 1024, serverSettings.getStreamingThreshold(), serverMetrics), null,
+                new CompressedFileCache(1024 * 1024, 1024, 6), null, notFoundCache, serverMetrics) {
+            @Override
+            public ResolvedDocument resolve(HttpRequest request) throws IOException {
+                if ("/failing".equals(request.getRoute())) {
+                    throw new IllegalStateException("Failing route.");
+                }
+                return super.resolve(request);
+            }
+        };
+        admissionController = new AdmissionController(serverSettings);
+
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        clientExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        reactor = new ReactorThread("nio-reactor-test", requestHandler, serverMetrics, connectionRegistry, clientExecutor, admissionController,
+                new DocumentLocks(serverSettings.getDocumentLocking()), new RequestLogger(16, ServerSettings.LogBackpressure.DROP), new BufferPool("read", true, 16, false, serverMetrics),
+                new BufferPool("head", false, 16, false, serverMetrics));
+        acceptClientsThread = new NioAcceptClientsThread("nio-accept-clients-test", serverChannel, new ReactorThread[]{reactor}, serverSettings, serverMetrics);
+        reactor.start();
+        acceptClientsThread.start();
+    }
+
+    @AfterEach
+    void stopServer() throws IOException, InterruptedException {
+        serverChannel.close();
+        acceptClientsThread.join();
+        reactor.shutdown();
+        reactor.join();
+        clientExecutor.shutdown();
+    }
+
+    @DisplayName("Non-blocking server answers sequential requests through the same kept-alive connection.")
+    @Test
+    void serverKeepsConnectionAlive() throws IOException {
+        try (Socket clientSocket = connect()) {
+
+            String firstResponse = exchange(clientSocket, "GET / HTTP/1.1\r\nHost: 127.0.0.1\r\n\r\n");
+            String secondResponse = exchange(clientSocket, "GET /index.html HTTP/1.1\r\nHost: 127.0.0.1\r\n\r\n");
+
+            assertAll(
+                    () -> assertTrue(firstResponse.startsWith("HTTP/1.1 200")),
+                    () -> assertTrue(firstResponse.endsWith("<p>index</p>")),
+                    () -> assertTrue(secondResponse.startsWith("HTTP/1.1 200")),
+                    () -> assertTrue(secondResponse.endsWith("<p>index</p>"))
+            );
+        }
+    }
+
+    @DisplayName("Non-blocking server answers pipelined requests in order, without a body for HEAD, and closes the connection when asked.")
+    @Test
+    void serverAnswersPipelinedRequests() throws IOException {
+        try (Socket clientSocket = connect()) {
+
+            String requests = "HEAD / HTTP/1.1\r\nHost: 127.0.0.1\r\n\r\n"
+                    + "GET / HTTP/1.1\r\nHost: 127.0.0.1\r\n\r\n"
+                    + "GET /invalidPath HTTP/1.1\r\nHost: 127.0.0.1\r\nConnection: close\r\n\r\n";
+            clientSocket.getOutputStream().write(requests.getBytes(StandardCharsets.US_ASCII));
+
+            // The server closes the connection after the last response, so everything sent can be read
+            String responses = new String(clientSocket.getInputStream().readAllBytes(), StandardCharsets.ISO_8859_1);
+            int headEnd = responses.indexOf("\r\n\r\n") + 4;
+            String getResponses = responses.substring(headEnd);
+
+            assertAll(
+                    () -> assertTrue(responses.startsWith("HTTP/1.1 200")),
+                    () -> assertTrue(getResponses.startsWith("HTTP/1.1 200")),
+                    () -> assertTrue(getResponses.indexOf("<p>index</p>HTTP/1.1 404") > 0),
+                    () -> assertTrue(getResponses.endsWith("<p>404</p>"))
+            );
+        }
+    }
+
+    @DisplayName("Non-blocking server streams a document above the streaming threshold completely.")
+    @Test
+    void serverStreamsLargeDocument() throws IOException {
+        try (Socket clientSocket = connect()) {
+
+            clientSocket.getOutputStream().write("GET /large.bin HTTP/1.1\r\nHost: 127.0.0.1\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+
+            byte[] response = clientSocket.getInputStream().readAllBytes();
+            String head = new String(response, 0, Math.min(response.length, 1024), StandardCharsets.ISO_8859_1);
+            int headEnd = head.indexOf("\r\n\r\n") + 4;
+
+            assertAll(
+                    () -> assertTrue(head.startsWith("HTTP/1.1 200")),
+                    () -> assertTrue(head.contains("Content-Length: " + largeDocument.length + "\r\n")),
+                    () -> assertArrayEquals(largeDocument, Arrays.copyOfRange(response, headEnd, response.length))
+            );
+        }
+    }
+
+    @DisplayName("Non-blocking server closes the connection of a request that failed unexpectedly, and releases its admission.")
+    @Test
+    void serverReleasesFailedRequest() throws IOException, InterruptedException {
+        try (Socket clientSocket = connect()) {
+
+            clientSocket.getOutputStream().write("GET /failing HTTP/1.1\r\nHost: 127.0.0.1\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            byte[] response = clientSocket.getInputStream().readAllBytes();
+            for (int attempt = 0; attempt < 100 && connectionRegistry.size() > 0; attempt++) {
+                Thread.sleep(20);
+            }
+
+            assertAll(
+                    () -> assertEquals(0, response.length),
+                    () -> assertEquals(0, connectionRegistry.size()),
+                    () -> assertEquals(0, admissionController.getInFlight())
+            );
+        }
+        try (Socket clientSocket = connect()) {
+            assertTrue(exchange(clientSocket, "GET / HTTP/1.1\r\nHost: 127.0.0.1\r\n\r\n").startsWith("HTTP/1.1 200"));
+        }
+    }
+
+    @DisplayName("Non-blocking server compresses a document without a .gz file, and remembers that the file is missing.")
+    @Test
+    void serverRemembersMissingCompressedFile() throws IOException {
+        try (Socket clientSocket = connect()) {
+
+            String request = "GET /style.css HTTP/1.1\r\nHost: 127.0.0.1\r\nAccept-Encoding: gzip\r\n\r\n";
+            String firstResponse = exchange(clientSocket, request);
+            String secondResponse = exchange(clientSocket, request);
+
+            assertAll(
+                    () -> assertTrue(firstResponse.contains("Content-Encoding: gzip\r\n")),
+                    () -> assertTrue(secondResponse.contains("Content-Encoding: gzip\r\n")),
+                    () -> assertTrue(notFoundCache.isMissing(documentRoot.toAbsolutePath().normalize().resolve("style.css.gz")))
+            );
+        }
+    }
+
+    private Socket connect() throws IOException {
+        Socket clientSocket = new Socket(InetAddress.getLoopbackAddress(), serverChannel.socket().getLocalPort());
+        clientSocket.setSoTimeout(requestTimeout);
+        return clientSocket;
+    }
+
+    private static String exchange(Socket clientSocket, String request) throws IOException {
+        clientSocket.getOutputStream().write(request.getBytes(StandardCharsets.US_ASCII));
+
+        // Reads the head, then as many bytes as its Content-Length announces, so the connection can be reused
+        InputStream inputStream = clientSocket.getInputStream();
+        StringBuilder response = new StringBuilder();
+        while (response.indexOf("\r\n\r\n") < 0) {
+            response.append((char) inputStream.read());
+        }
+        int lengthStart = response.indexOf("Content-Length: ") + "Content-Length: ".length();
+        int contentLength = Integer.parseInt(response.substring(lengthStart, response.indexOf("\r", lengthStart)));
+        response.append(new String(inputStream.readNBytes(contentLength), StandardCharsets.ISO_8859_1));
+        return response.toString();
+    }
+
+}
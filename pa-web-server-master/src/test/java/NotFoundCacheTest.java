@@ -0,0 +1,71 @@
+import org.junit.jupiter.api.*;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NotFoundCacheTest {
+
+    private static final Path pageNotFoundPath = Path.of("/www/errors/404.html");
+
+    @DisplayName("Missing paths are remembered up to the maximum, until they expire or are created.")
+    @Test
+    void missingPathsAreRemembered() throws InterruptedException {
+        NotFoundCache notFoundCache = new NotFoundCache(pageNotFoundPath, 2, 200);
+        Path missingPage = Path.of("/www/missing.html");
+        Path missingStyle = Path.of("/www/assets/missing.css");
+        Path createdPage = Path.of("/www/created.html");
+
+        notFoundCache.addMissing(missingPage);
+        notFoundCache.addMissing(missingStyle);
+        notFoundCache.addMissing(createdPage);
+        boolean fullCacheAddsPath = notFoundCache.isMissing(createdPage);
+        notFoundCache.invalidateFolder(Path.of("/www/assets"));
+        notFoundCache.addMissing(createdPage);
+        boolean createdPageMissing = notFoundCache.isMissing(createdPage);
+        notFoundCache.invalidate(createdPage);
+        boolean missingPageRemembered = notFoundCache.isMissing(missingPage);
+        Thread.sleep(300);
+
+        assertAll(
+                () -> assertFalse(fullCacheAddsPath),
+                () -> assertTrue(createdPageMissing),
+                () -> assertFalse(notFoundCache.isMissing(createdPage)),
+                () -> assertFalse(notFoundCache.isMissing(missingStyle)),
+                () -> assertTrue(missingPageRemembered),
+                () -> assertFalse(notFoundCache.isMissing(missingPage)),
+                () -> assertEquals(0, notFoundCache.size())
+        );
+    }
+
+    @DisplayName("The error page is kept for each kind of client, until it changes.")
+    @Test
+    void pageIsKeptUntilItChanges() {
+        NotFoundCache notFoundCache = new NotFoundCache(pageNotFoundPath, 16, 60_000);
+        NotFoundCache disabledCache = new NotFoundCache(pageNotFoundPath, 16, 0);
+        RequestHandler.ResolvedDocument page = page(null);
+        RequestHandler.ResolvedDocument compressedPage = page("gzip");
+
+        notFoundCache.putPage(false, page);
+        notFoundCache.putPage(true, compressedPage);
+        disabledCache.putPage(false, page);
+        disabledCache.addMissing(Path.of("/www/missing.html"));
+        RequestHandler.ResolvedDocument cachedPage = notFoundCache.getPage(false);
+        RequestHandler.ResolvedDocument cachedCompressedPage = notFoundCache.getPage(true);
+        notFoundCache.invalidate(Path.of("/www/errors/404.html.gz"));
+
+        assertAll(
+                () -> assertSame(page, cachedPage),
+                () -> assertSame(compressedPage, cachedCompressedPage),
+                () -> assertNull(notFoundCache.getPage(false)),
+                () -> assertNull(notFoundCache.getPage(true)),
+                () -> assertNull(disabledCache.getPage(false)),
+                () -> assertFalse(disabledCache.isMissing(Path.of("/www/missing.html")))
+        );
+    }
+
+    private static RequestHandler.ResolvedDocument page(String contentEncoding) {
+        return new RequestHandler.ResolvedDocument(pageNotFoundPath.toString(), RequestHandler.NOT_FOUND, null, "text/html", contentEncoding, false, null, 0, -1, null);
+    }
+
+}
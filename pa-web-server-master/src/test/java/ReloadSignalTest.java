@@ -0,0 +1,22 @@
+import org.junit.jupiter.api.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReloadSignalTest {
+
+    @DisplayName("Reload signal runs the action when the process receives SIGHUP.")
+    @Test
+    void reloadSignalRunsAction() throws Exception {
+        CountDownLatch reloaded = new CountDownLatch(1);
+        // Without the handler, SIGHUP would stop the JVM running the tests
+        Assumptions.assumeTrue(ReloadSignal.install(reloaded::countDown));
+
+        new ProcessBuilder("kill", "-HUP", String.valueOf(ProcessHandle.current().pid())).start().waitFor();
+
+        assertTrue(reloaded.await(5, TimeUnit.SECONDS));
+    }
+
+}
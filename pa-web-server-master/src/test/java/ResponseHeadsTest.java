@@ -0,0 +1,118 @@
+import org.junit.jupiter.api.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseHeadsTest {
+
+    private static final long lastModified = 784111777_000L;
+
+    @DisplayName("A document's head is encoded once for each kind of connection, and again when the document changes.")
+    @Test
+    void headsAreReused() {
+        ResponseHeads responseHeads = new ResponseHeads(16);
+        RequestHandler.ResolvedDocument document = document(lastModified);
+        RequestHandler.ResolvedDocument modifiedDocument = document(lastModified + 1000);
+
+        byte[] firstHead = responseHeads.toResponse(document, true).encodeHead();
+        byte[] secondHead = responseHeads.toResponse(document, true).encodeHead();
+        byte[] closeHead = responseHeads.toResponse(document, false).encodeHead();
+        byte[] reusedHead = responseHeads.toResponse(document, true).encodeHead();
+        byte[] modifiedHead = responseHeads.toResponse(modifiedDocument, true).encodeHead();
+
+        assertAll(
+                () -> assertSame(secondHead, reusedHead),
+                () -> assertArrayEquals(document.toResponse(true).encodeHead(), firstHead),
+                () -> assertArrayEquals(document.toResponse(true).encodeHead(), secondHead),
+                () -> assertArrayEquals(document.toResponse(false).encodeHead(), closeHead),
+                () -> assertArrayEquals(modifiedDocument.toResponse(true).encodeHead(), modifiedHead),
+                () -> assertEquals(1, responseHeads.size())
+        );
+    }
+
+    @DisplayName("Head and body are written together, and partial responses aren't reused.")
+    @Test
+    void responsesAreComplete() {
+        ResponseHeads responseHeads = new ResponseHeads(16);
+        RequestHandler.ResolvedDocument document = document(lastModified);
+        responseHeads.toResponse(document, true);
+
+        ByteBuffer[] buffers = responseHeads.toResponse(document, true).toByteBuffers();
+        String response = StandardCharsets.US_ASCII.decode(buffers[0]) + StandardCharsets.US_ASCII.decode(buffers[1]).toString();
+        String notModified = new String(responseHeads.toResponse(document.notModified(), true).encodeHead(), StandardCharsets.US_ASCII);
+
+        assertAll(
+                () -> assertTrue(response.startsWith("HTTP/1.1 200 OK\r\nContent-Type: text/html\r\nContent-Length: 12\r\n")),
+                () -> assertTrue(response.contains("ETag: " + document.entityTag() + "\r\n")),
+                () -> assertTrue(response.endsWith("\r\n\r\n<p>page</p>\n")),
+                () -> assertTrue(notModified.startsWith("HTTP/1.1 304 Not Modified\r\n"))
+        );
+    }
+
+    @DisplayName("The error page's head is reused apart from the same document served on its own route.")
+    @Test
+    void errorPageHeadIsReused() {
+        ResponseHeads responseHeads = new ResponseHeads(16);
+        RequestHandler.ResolvedDocument document = document(lastModified);
+        RequestHandler.ResolvedDocument errorPage = new RequestHandler.ResolvedDocument(document.filePath(), RequestHandler.NOT_FOUND, document.file(),
+                document.contentType(), null, false, null, 0, -1, null);
+
+        byte[] documentHead = responseHeads.toResponse(document, true).encodeHead();
+        responseHeads.toResponse(errorPage, true);
+        byte[] errorPageHead = responseHeads.toResponse(errorPage, true).encodeHead();
+        byte[] reusedHead = responseHeads.toResponse(errorPage, true).encodeHead();
+        String head = new String(reusedHead, StandardCharsets.US_ASCII);
+
+        assertAll(
+                () -> assertSame(errorPageHead, reusedHead),
+                () -> assertNotSame(documentHead, reusedHead),
+                () -> assertTrue(head.startsWith("HTTP/1.1 404 Not found\r\n")),
+                () -> assertFalse(head.contains("ETag")),
+                () -> assertEquals(2, responseHeads.size())
+        );
+    }
+
+    @DisplayName("A document has a single head whatever its path, and the least recently used heads are dropped above the maximum.")
+    @Test
+    void leastRecentlyUsedHeadsAreDropped() {
+        ResponseHeads responseHeads = new ResponseHeads(2);
+        RequestHandler.ResolvedDocument first = document("first.html", lastModified);
+        RequestHandler.ResolvedDocument firstByOtherPath = new RequestHandler.ResolvedDocument("./first.html", "200 OK", first.file(), first.contentType(), null, false,
+                first.entityTag(), lastModified, -1, null);
+        RequestHandler.ResolvedDocument second = document("second.html", lastModified);
+        RequestHandler.ResolvedDocument third = document("third.html", lastModified);
+
+        responseHeads.toResponse(first, true);
+        byte[] firstHead = responseHeads.toResponse(firstByOtherPath, true).encodeHead();
+        int sizeWithFirst = responseHeads.size();
+        responseHeads.toResponse(second, true);
+        responseHeads.toResponse(first, true);
+        responseHeads.toResponse(third, true);
+        byte[] keptHead = responseHeads.toResponse(first, true).encodeHead();
+        byte[] secondHead = responseHeads.toResponse(second, true).encodeHead();
+        byte[] droppedHead = responseHeads.toResponse(second, true).encodeHead();
+
+        assertAll(
+                () -> assertEquals(1, sizeWithFirst),
+                () -> assertSame(firstHead, keptHead),
+                () -> assertNotSame(secondHead, droppedHead),
+                () -> assertArrayEquals(secondHead, droppedHead),
+                () -> assertEquals(2, responseHeads.size())
+        );
+    }
+
+    private static RequestHandler.ResolvedDocument document(long lastModified) {
+        return document("page.html", lastModified);
+    }
+
+    private static RequestHandler.ResolvedDocument document(String filePath, long lastModified) {
+        byte[] content = "<p>page</p>\n".getBytes(StandardCharsets.US_ASCII);
+        FileCache.CachedFile file = new FileCache.CachedFile(Path.of(filePath).toAbsolutePath().normalize(), ByteBuffer.wrap(content).asReadOnlyBuffer(), lastModified, content.length);
+        return new RequestHandler.ResolvedDocument(filePath, "200 OK", file, "text/html", null, false,
+                ConditionalRequests.entityTag(lastModified, content.length, null), lastModified, -1, null);
+    }
+
+}
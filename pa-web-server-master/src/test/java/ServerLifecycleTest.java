@@ -0,0 +1,146 @@
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ServerLifecycleTest {
+
+    @TempDir
+    Path documentRoot;
+
+    private Path configPath;
+    private Properties serverConfig;
+    private ServerSettings serverSettings;
+    private final ServerMetrics serverMetrics = new ServerMetrics();
+    private final ConnectionRegistry connectionRegistry = new ConnectionRegistry();
+
+    @BeforeEach
+    void createDocumentRoot() throws IOException {
+        Files.writeString(documentRoot.resolve("index.html"), "<p>index</p>");
+        Files.writeString(documentRoot.resolve("other.html"), "<p>other</p>");
+        Files.writeString(documentRoot.resolve("404.html"), "<p>404</p>");
+        configPath = documentRoot.resolve("server.config");
+        writeConfig("server.maximum.requests", "2", "server.default.page", "index");
+        serverConfig = new Properties();
+        try (InputStream configInputStream = Files.newInputStream(configPath)) {
+            serverConfig.load(configInputStream);
+        }
+        serverSettings = new ServerSettings(serverConfig);
+    }
+
+    @DisplayName("Reloading applies the new settings, keeps the ones bound to the started server, and refuses invalid roots.")
+    @Test
+    void reloadSwapsSettings() throws IOException, InterruptedException {
+        AdmissionController admissionController = new AdmissionController(serverSettings);
+        RequestHandler requestHandler = new RequestHandler(serverSettings, new FileCache(1024 * 1024, 1024 * 1024, serverMetrics), null, null, null,
+                new NotFoundCache(Path.of(serverSettings.getPageNotFoundPath()), 16, 60_000), serverMetrics);
+        ServerLifecycle serverLifecycle = createLifecycle(Executors.newVirtualThreadPerTaskExecutor(), admissionController, requestHandler, new RequestLogger(16, ServerSettings.LogBackpressure.DROP));
+
+        writeConfig("server.maximum.requests", "5", "server.default.page", "other", "server.port", "4600", "server.log.path", "other.txt");
+        boolean reloaded = serverLifecycle.reload();
+        ServerSettings reloadedSettings = requestHandler.getServerSettings();
+        writeConfig("server.root", documentRoot.resolve("missing").toString());
+        boolean invalidReloaded = serverLifecycle.reload();
+        serverLifecycle.shutdown();
+
+        assertAll(
+                () -> assertTrue(reloaded),
+                () -> assertEquals(5, admissionController.getLimit()),
+                () -> assertTrue(reloadedSettings.getDefaultPagePath().endsWith("other.html")),
+                () -> assertEquals(serverSettings.getPort(), reloadedSettings.getPort()),
+                () -> assertEquals(serverSettings.getLogPath(), reloadedSettings.getLogPath()),
+                () -> assertFalse(invalidReloaded),
+                () -> assertSame(reloadedSettings, requestHandler.getServerSettings())
+        );
+    }
+
+    @DisplayName("Shutting down closes the idle connections, the busy ones after the timeout, and writes the waiting requests to the log.")
+    @Test
+    void shutdownDrainsConnections() throws IOException, InterruptedException {
+        ExecutorService clientExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        RequestLogger requestLogger = new RequestLogger(16, ServerSettings.LogBackpressure.DROP);
+        ServerLifecycle serverLifecycle = createLifecycle(clientExecutor, new AdmissionController(serverSettings), null, requestLogger);
+        // Like the threads serving them, the connections leave the registry when they are closed
+        ConnectionRegistry.Connection[] connections = new ConnectionRegistry.Connection[2];
+        for (int connection = 0; connection < connections.length; connection++) {
+            int index = connection;
+            connections[index] = connectionRegistry.register(() -> connectionRegistry.unregister(connections[index]), new InetSocketAddress("127.0.0.1", 4444), System.nanoTime());
+        }
+        connections[1].setBusy(true);
+        requestLogger.log("GET", "/logged.html", InetAddress.getLoopbackAddress());
+
+        long startTime = System.nanoTime();
+        serverLifecycle.shutdown();
+        long shutdownTime = (System.nanoTime() - startTime) / 1_000_000;
+
+        assertAll(
+                () -> assertEquals(0, connectionRegistry.size()),
+                () -> assertTrue(connectionRegistry.isDraining()),
+                () -> assertTrue(shutdownTime >= 200),
+                () -> assertTrue(clientExecutor.isTerminated()),
+                () -> assertTrue(Files.readString(Path.of(serverSettings.getLogPath())).contains("-Route:/logged.html-"))
+        );
+    }
+
+    @DisplayName("Shutting down writes every request still waiting to be logged.")
+    @Test
+    void shutdownWritesWaitingRequests() throws IOException, InterruptedException {
+        int loggedRequests = 3000;
+        RequestLogger requestLogger = new RequestLogger(4096, ServerSettings.LogBackpressure.DROP);
+        for (int request = 0; request < loggedRequests; request++) {
+            requestLogger.log("GET", "/page" + request + ".html", InetAddress.getLoopbackAddress());
+        }
+        ServerLifecycle serverLifecycle = createLifecycle(Executors.newVirtualThreadPerTaskExecutor(), new AdmissionController(serverSettings), null, requestLogger);
+
+        serverLifecycle.shutdown();
+
+        List<String> lines = Files.readAllLines(Path.of(serverSettings.getLogPath()));
+        assertAll(
+                () -> assertEquals(loggedRequests, lines.size()),
+                () -> assertTrue(lines.get(loggedRequests - 1).contains("-Route:/page" + (loggedRequests - 1) + ".html-"))
+        );
+    }
+
+    private ServerLifecycle createLifecycle(ExecutorService clientExecutor, AdmissionController admissionController, RequestHandler requestHandler, RequestLogger requestLogger) {
+        if (requestHandler == null) {
+            requestHandler = new RequestHandler(serverSettings, new FileCache(1024 * 1024, 1024 * 1024, serverMetrics), null, null, null,
+                    new NotFoundCache(Path.of(serverSettings.getPageNotFoundPath()), 16, 60_000), serverMetrics);
+        }
+        LogRequestsInformationThread logRequestsInformationThread = new LogRequestsInformationThread(requestLogger, serverSettings);
+        logRequestsInformationThread.start();
+        return new ServerLifecycle(configPath, serverConfig, new ServerSocketChannel[0], List.of(), clientExecutor, null,
+                connectionRegistry, admissionController, requestHandler, logRequestsInformationThread, null);
+    }
+
+    private void writeConfig(String... settings) throws IOException {
+        Properties config = new Properties();
+        config.setProperty("server.port", "4599");
+        config.setProperty("server.root", documentRoot.toString());
+        config.setProperty("server.default.page.extension", "html");
+        config.setProperty("server.404.root", documentRoot.toString());
+        config.setProperty("server.404.page", "404");
+        config.setProperty("server.404.page.extension", "html");
+        config.setProperty("server.log.path", documentRoot.resolve("log.txt").toString());
+        config.setProperty("server.shutdown.timeout", "200");
+        for (int index = 0; index < settings.length; index += 2) {
+            config.setProperty(settings[index], settings[index + 1]);
+        }
+        try (OutputStream configOutputStream = Files.newOutputStream(configPath)) {
+            config.store(configOutputStream, null);
+        }
+    }
+
+}
@@ -0,0 +1,64 @@
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class ServerListenersTest {
+
+    private static ServerSettings createSettings(String... settings) {
+        Properties serverConfig = new Properties();
+        serverConfig.setProperty("server.port", "0");
+        serverConfig.setProperty("server.maximum.requests", "10");
+        for (int setting = 0; setting < settings.length; setting += 2) {
+            serverConfig.setProperty(settings[setting], settings[setting + 1]);
+        }
+        return new ServerSettings(serverConfig);
+    }
+
+    private static void close(ServerSocketChannel[] serverChannels) throws IOException {
+        for (ServerSocketChannel serverChannel : serverChannels) {
+            serverChannel.close();
+        }
+    }
+
+    @DisplayName("Acceptors share a single socket unless SO_REUSEPORT is enabled.")
+    @Test
+    void acceptorsShareSocket() throws IOException {
+        ServerSocketChannel[] serverChannels = ServerListeners.open(createSettings("server.acceptors", "4"));
+        try {
+            assertEquals(1, serverChannels.length);
+            assertTrue(serverChannels[0].socket().getLocalPort() > 0);
+        } finally {
+            close(serverChannels);
+        }
+    }
+
+    @DisplayName("With SO_REUSEPORT, each acceptor gets its own socket bound to the same port, and the clients get the configured options.")
+    @Test
+    void acceptorsGetOwnSockets() throws IOException {
+        assumeTrue(ServerListeners.isReusePortSupported());
+
+        ServerSettings serverSettings = createSettings("server.acceptors", "3", "server.reuseport", "true", "server.tcp.nodelay", "true");
+        ServerSocketChannel[] serverChannels = ServerListeners.open(serverSettings);
+        try (Socket clientSocket = new Socket(InetAddress.getLoopbackAddress(), serverChannels[0].socket().getLocalPort())) {
+            ServerListeners.configureClient(clientSocket, serverSettings);
+
+            int port = serverChannels[0].socket().getLocalPort();
+            assertAll(
+                    () -> assertEquals(3, serverChannels.length),
+                    () -> assertEquals(port, serverChannels[1].socket().getLocalPort()),
+                    () -> assertEquals(port, serverChannels[2].socket().getLocalPort()),
+                    () -> assertTrue(clientSocket.getTcpNoDelay())
+            );
+        } finally {
+            close(serverChannels);
+        }
+    }
+
+}
@@ -0,0 +1,49 @@
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ServerMetricsTest {
+
+    @DisplayName("Metrics count the responses by status code, and the latencies by route.")
+    @Test
+    void metricsCountResponses() {
+        ServerMetrics serverMetrics = new ServerMetrics();
+        serverMetrics.recordAcceptedConnection();
+        serverMetrics.recordRequestStarted();
+        serverMetrics.recordResponse("/index.html", "200 OK", 100, 2_000_000);
+        serverMetrics.recordRequestFinished();
+        serverMetrics.recordResponse("/missing", "404 Not found", 50, 1_000_000);
+        serverMetrics.recordResponse(null, "400 Bad Request", 20, 1_000);
+
+        assertAll(
+                () -> assertEquals(1, serverMetrics.getAcceptedConnections()),
+                () -> assertEquals(0, serverMetrics.getActiveRequests()),
+                () -> assertEquals(170, serverMetrics.getBytesSent()),
+                () -> assertEquals(1, serverMetrics.getResponses(200)),
+                () -> assertEquals(1, serverMetrics.getResponses(404)),
+                () -> assertEquals(1, serverMetrics.getRouteLatencies("/index.html").getCount()),
+                () -> assertNull(serverMetrics.getRouteLatencies("/missing")),
+                () -> assertEquals(2, serverMetrics.getRouteLatencies("other").getCount())
+        );
+    }
+
+    @DisplayName("Metrics are exposed in the Prometheus text format.")
+    @Test
+    void metricsAreExposedInPrometheusFormat() {
+        ServerMetrics serverMetrics = new ServerMetrics();
+        serverMetrics.recordResponse("/a\"b", "200 OK", 100, 2_000_000);
+
+        String text = serverMetrics.toPrometheusText();
+
+        assertAll(
+                () -> assertTrue(text.contains("# TYPE webserver_responses_total counter\n")),
+                () -> assertTrue(text.contains("webserver_responses_total{code=\"200\"} 1\n")),
+                () -> assertTrue(text.contains("webserver_sent_bytes_total 100\n")),
+                () -> assertTrue(text.contains("webserver_request_duration_seconds_bucket{route=\"/a\\\"b\",le=\"0.001\"} 0\n")),
+                () -> assertTrue(text.contains("webserver_request_duration_seconds_bucket{route=\"/a\\\"b\",le=\"0.0025\"} 1\n")),
+                () -> assertTrue(text.contains("webserver_request_duration_seconds_count{route=\"/a\\\"b\"} 1\n")),
+                () -> assertFalse(text.contains("route=\"other\""))
+        );
+    }
+
+}
@@ -0,0 +1,82 @@
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WatchDocumentsThreadTest {
+
+    @TempDir
+    Path documentRoot;
+
+    @DisplayName("A modified document is removed from the cache, and a new one is added to the index.")
+    @Test
+    void changedDocumentsAreInvalidated() throws IOException, InterruptedException {
+        Path page = Files.writeString(documentRoot.resolve("index.html"), "<p>index</p>");
+        FileCache fileCache = new FileCache(1024 * 1024, 1024 * 1024, new ServerMetrics());
+        DocumentIndex documentIndex = new DocumentIndex(documentRoot);
+        WatchDocumentsThread watchDocumentsThread = new WatchDocumentsThread(List.of(documentRoot), fileCache, null, null, documentIndex, new NotFoundCache(documentRoot.resolve("404.html"), 16, 60_000));
+        documentIndex.scan(2);
+        fileCache.get(documentIndex.get(page).path());
+        watchDocumentsThread.start();
+
+        try {
+            long cachedBytes = fileCache.getCachedBytes();
+            Files.writeString(page, "<p>new index</p>");
+            Path newPage = Files.writeString(documentRoot.resolve("new.html"), "<p>new</p>");
+
+            assertAll(
+                    () -> assertEquals(12, cachedBytes),
+                    () -> assertTrue(eventually(() -> fileCache.getCachedBytes() == 0)),
+                    () -> assertTrue(eventually(() -> documentIndex.get(newPage) != null)),
+                    () -> assertTrue(eventually(() -> documentIndex.get(page).size() == 16))
+            );
+        } finally {
+            watchDocumentsThread.close();
+        }
+    }
+
+    @DisplayName("Folders created after the thread started are watched, and deleting them removes their documents.")
+    @Test
+    void newFoldersAreWatched() throws IOException, InterruptedException {
+        FileCache fileCache = new FileCache(1024 * 1024, 1024 * 1024, new ServerMetrics());
+        DocumentIndex documentIndex = new DocumentIndex(documentRoot);
+        WatchDocumentsThread watchDocumentsThread = new WatchDocumentsThread(List.of(documentRoot), fileCache, null, null, documentIndex, new NotFoundCache(documentRoot.resolve("404.html"), 16, 60_000));
+        watchDocumentsThread.start();
+
+        try {
+            Path folder = Files.createDirectories(documentRoot.resolve("assets"));
+            Path style = Files.writeString(folder.resolve("style.css"), "p {}");
+            boolean styleIndexed = eventually(() -> documentIndex.get(style) != null);
+            fileCache.get(style);
+
+            Files.delete(style);
+            Files.delete(folder);
+
+            assertAll(
+                    () -> assertTrue(styleIndexed),
+                    () -> assertTrue(eventually(() -> documentIndex.size() == 0)),
+                    () -> assertTrue(eventually(() -> fileCache.getCachedBytes() == 0))
+            );
+        } finally {
+            watchDocumentsThread.close();
+        }
+    }
+
+    private static boolean eventually(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(20);
+        }
+        return true;
+    }
+
+}
@@ -2,9 +2,14 @@ import org.junit.jupiter.api.*;
 
 import java.io.*;
 import java.net.HttpURLConnection;
+import java.net.Socket;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.Properties;
 import java.util.Scanner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static java.lang.Integer.parseInt;
@@ -18,7 +23,7 @@ class MainTest {
 
     @BeforeAll
     @DisplayName("Server starts.")
-    static void startServer() throws IOException {
+    static void startServer() throws IOException, InterruptedException {
         Properties serverConfig = new Properties();
         InputStream configPathInputStream = new FileInputStream(serverConfigPath);
         serverConfig.load(configPathInputStream);
@@ -26,6 +31,15 @@ class MainTest {
             WebServer.main(new String[]{serverConfigPath});
         }).start();
 
+        // Wait until the server accepts clients, so the first test doesn't race its startup
+        int serverPort = parseInt(serverConfig.getProperty("server.port"), 10);
+        for (int attempt = 0; attempt < 100; attempt++) {
+            try (Socket ignored = new Socket("127.0.0.1", serverPort)) {
+                return;
+            } catch (IOException exception) {
+                Thread.sleep(50);
+            }
+        }
     }
 
     @BeforeEach
@@ -143,6 +157,109 @@ class MainTest {
         );
     }
 
+    @DisplayName("Server answers pipelined requests in order through the same connection.")
+    @Test
+    void serverAnswersPipelinedRequests() throws IOException {
+        Properties serverConfig = new Properties();
+        InputStream configPathInputStream = new FileInputStream(serverConfigPath);
+        serverConfig.load(configPathInputStream);
+        int serverPort = parseInt(serverConfig.getProperty("server.port"), 10);
+
+        try (Socket clientSocket = new Socket("127.0.0.1", serverPort)) {
+
+            clientSocket.setSoTimeout(requestTimeout);
+            String requests = "GET / HTTP/1.1\r\nHost: 127.0.0.1\r\n\r\n"
+                    + "GET /invalidPath HTTP/1.1\r\nHost: 127.0.0.1\r\nConnection: close\r\n\r\n";
+            clientSocket.getOutputStream().write(requests.getBytes(StandardCharsets.US_ASCII));
+
+            // The server closes the connection after the second response, so everything sent can be read
+            String responses = new String(clientSocket.getInputStream().readAllBytes(), StandardCharsets.ISO_8859_1);
+            int firstResponse = responses.indexOf("HTTP/1.1 200");
+            int secondResponse = responses.indexOf("HTTP/1.1 404");
+
+            assertAll(
+                    () -> assertTrue(firstResponse >= 0),
+                    () -> assertTrue(secondResponse > firstResponse),
+                    () -> assertTrue(responses.contains("Content-Length: "))
+            );
+        }
+    }
+
+    @DisplayName("Server answers a HEAD request with the GET response's head and no body, so the next response of the connection is framed.")
+    @Test
+    void serverAnswersHeadRequestWithoutBody() throws IOException {
+        Properties serverConfig = new Properties();
+        InputStream configPathInputStream = new FileInputStream(serverConfigPath);
+        serverConfig.load(configPathInputStream);
+        int serverPort = parseInt(serverConfig.getProperty("server.port"), 10);
+
+        try (Socket clientSocket = new Socket("127.0.0.1", serverPort)) {
+
+            clientSocket.setSoTimeout(requestTimeout);
+            String requests = "HEAD / HTTP/1.1\r\nHost: 127.0.0.1\r\n\r\n"
+                    + "GET / HTTP/1.1\r\nHost: 127.0.0.1\r\nConnection: close\r\n\r\n";
+            clientSocket.getOutputStream().write(requests.getBytes(StandardCharsets.US_ASCII));
+
+            String responses = new String(clientSocket.getInputStream().readAllBytes(), StandardCharsets.ISO_8859_1);
+            int headEnd = responses.indexOf("\r\n\r\n") + 4;
+            String headResponse = responses.substring(0, headEnd);
+            String getResponse = responses.substring(headEnd);
+            int getHeadEnd = getResponse.indexOf("\r\n\r\n") + 4;
+
+            assertAll(
+                    () -> assertTrue(headResponse.startsWith("HTTP/1.1 200")),
+                    () -> assertTrue(getResponse.startsWith("HTTP/1.1 200")),
+                    () -> assertEquals(contentLength(headResponse), contentLength(getResponse)),
+                    () -> assertEquals(contentLength(getResponse), getResponse.length() - getHeadEnd)
+            );
+        }
+    }
+
+    private static int contentLength(String response) {
+        int lengthStart = response.indexOf("Content-Length: ") + "Content-Length: ".length();
+        return parseInt(response.substring(lengthStart, response.indexOf('\r', lengthStart)));
+    }
+
+    @DisplayName("Server serves the clients with the configured executor, and caps the idle time of the connections holding a pooled thread.")
+    @Test
+    void serverUsesConfiguredExecutor() throws Exception {
+        Properties serverConfig = new Properties();
+        InputStream configPathInputStream = new FileInputStream(serverConfigPath);
+        serverConfig.load(configPathInputStream);
+        serverConfig.setProperty("server.executor.pool.size", "3");
+        serverConfig.setProperty("server.keepalive.timeout", "5000");
+        serverConfig.setProperty("server.executor.idle.timeout", "200");
+
+        serverConfig.setProperty("server.executor", "virtual");
+        ServerSettings virtualSettings = new ServerSettings(serverConfig);
+        ExecutorService virtualExecutor = WebServer.createClientExecutor(virtualSettings);
+        serverConfig.setProperty("server.executor", "fixed");
+        ServerSettings fixedSettings = new ServerSettings(serverConfig);
+        ExecutorService fixedExecutor = WebServer.createClientExecutor(fixedSettings);
+        serverConfig.setProperty("server.executor", "forkjoin");
+        ServerSettings forkJoinSettings = new ServerSettings(serverConfig);
+        ExecutorService forkJoinExecutor = WebServer.createClientExecutor(forkJoinSettings);
+
+        try {
+            boolean virtualThread = virtualExecutor.submit(() -> Thread.currentThread().isVirtual()).get();
+            boolean fixedVirtualThread = fixedExecutor.submit(() -> Thread.currentThread().isVirtual()).get();
+
+            assertAll(
+                    () -> assertTrue(virtualThread),
+                    () -> assertEquals(5000, virtualSettings.getBlockingKeepAliveTimeout()),
+                    () -> assertFalse(fixedVirtualThread),
+                    () -> assertEquals(3, ((ThreadPoolExecutor) fixedExecutor).getMaximumPoolSize()),
+                    () -> assertEquals(200, fixedSettings.getBlockingKeepAliveTimeout()),
+                    () -> assertEquals(3, ((ForkJoinPool) forkJoinExecutor).getParallelism()),
+                    () -> assertEquals(200, forkJoinSettings.getBlockingKeepAliveTimeout())
+            );
+        } finally {
+            virtualExecutor.shutdown();
+            fixedExecutor.shutdown();
+            forkJoinExecutor.shutdown();
+        }
+    }
+
     @DisplayName("Server logs the request for the index page.")
     @Test
     void serverLogsIndexPageRequest() throws IOException {